@@ -0,0 +1,34 @@
+package com.smartlibrary.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class DashboardExecutorConfig {
+
+    /**
+     * Bounded pool for dashboard sections. When both threads and queue are full a section
+     * is rejected and served degraded rather than run on the request thread.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor dashboardExecutor(@Value("${smartlibrary.dashboard.threads:16}") int threads,
+                                                @Value("${smartlibrary.dashboard.queue-capacity:256}") int queueCapacity) {
+        AtomicInteger sequence = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "dashboard-" + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -8,12 +8,15 @@ import com.smartlibrary.repository.UserRepository;
 import com.smartlibrary.repository.RatingRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 
 import java.util.Arrays;
 import java.util.List;
 
+// the evaluation harness loads its own dataset into an empty database
 @Component
+@Profile("!evaluation")
 public class DataLoader implements CommandLineRunner {
     
     @Autowired
@@ -118,12 +121,7 @@ public class DataLoader implements CommandLineRunner {
             
             Rating rating = new Rating(user, book, 4 + (i % 2)); // Ratings between 4-5
             rating.setReview("This is a wonderful book! Highly recommended.");
-            ratingRepository.save(rating);
-            
-            // Update book average rating
-            book.setAverageRating(4.0 + (i % 2) * 0.5);
-            book.setRatingCount(1);
-            bookRepository.save(book);
+            ratingRepository.save(rating); // the book's rating totals follow via RatingAggregator
         }
         
         System.out.println("Sample data loaded successfully!");
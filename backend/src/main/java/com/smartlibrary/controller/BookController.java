@@ -1,11 +1,15 @@
 package com.smartlibrary.controller;
 
 import com.smartlibrary.model.Book;
+import com.smartlibrary.search.BookFilter;
+import com.smartlibrary.search.CountMode;
+import com.smartlibrary.search.CursorPage;
+import com.smartlibrary.search.Suggestion;
 import com.smartlibrary.service.BookService;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -13,6 +17,7 @@ import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -24,18 +29,37 @@ public class BookController {
     private BookService bookService;
     
     @GetMapping
-    public ResponseEntity<Page<Book>> getAllBooks(
+    public ResponseEntity<Slice<Book>> getAllBooks(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "title") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "exact") String count) {
         
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
             Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        Page<Book> books = bookService.getAllBooks(pageable);
-        return ResponseEntity.ok(books);
+        try {
+            Slice<Book> books = bookService.getAllBooks(pageable, CountMode.fromParam(count));
+            return ResponseEntity.ok(books);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping(params = "cursor")
+    public ResponseEntity<CursorPage<Book>> getBooksByCursor(
+            @RequestParam String cursor,
+            @RequestParam(defaultValue = "12") int size,
+            @RequestParam(defaultValue = "title") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+        
+        try {
+            return ResponseEntity.ok(bookService.getBooksAfter(cursor, sortBy, sortDir.equalsIgnoreCase("desc"), size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @GetMapping("/{id}")
@@ -83,7 +107,7 @@ public class BookController {
     }
     
     @GetMapping("/search")
-    public ResponseEntity<Page<Book>> searchBooks(
+    public ResponseEntity<Slice<Book>> searchBooks(
             @RequestParam(required = false) String q,
             @RequestParam(required = false) String title,
             @RequestParam(required = false) String author,
@@ -99,43 +123,140 @@ public class BookController {
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "12") int size,
             @RequestParam(defaultValue = "title") String sortBy,
-            @RequestParam(defaultValue = "asc") String sortDir) {
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "false") boolean fuzzy,
+            @RequestParam(defaultValue = "exact") String count) {
         
         Sort sort = sortDir.equalsIgnoreCase("desc") ? 
             Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
         Pageable pageable = PageRequest.of(page, size, sort);
         
-        Page<Book> books;
+        Slice<Book> books;
         
-        if (q != null && !q.trim().isEmpty()) {
-            // General search
-            books = bookService.searchBooks(q, pageable);
-        } else {
-            // Advanced search with filters
-            books = bookService.findBooksWithEnhancedFilters(title, author, category, language, isbn, 
-                    publisher, minYear, maxYear, minRating, maxRating, availableOnly, pageable);
+        try {
+            CountMode countMode = CountMode.fromParam(count);
+            if (fuzzy && q != null && !q.trim().isEmpty()) {
+                // Typo-tolerant search, always ranked by closeness of match
+                books = bookService.fuzzySearchBooks(q, PageRequest.of(page, size), countMode);
+            } else if (q != null && !q.trim().isEmpty()) {
+                // General search
+                books = bookService.searchBooks(q, pageable, countMode);
+            } else {
+                // Advanced search with filters
+                books = bookService.findBooksWithEnhancedFilters(title, author, category, language, isbn, 
+                        publisher, minYear, maxYear, minRating, maxRating, availableOnly, pageable, countMode);
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
         }
         
         return ResponseEntity.ok(books);
     }
     
+    @GetMapping(value = "/search", params = "cursor")
+    public ResponseEntity<CursorPage<Book>> searchBooksByCursor(
+            @RequestParam String cursor,
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String language,
+            @RequestParam(required = false) String isbn,
+            @RequestParam(required = false) String publisher,
+            @RequestParam(required = false) Integer minYear,
+            @RequestParam(required = false) Integer maxYear,
+            @RequestParam(required = false) Integer minRating,
+            @RequestParam(required = false) Integer maxRating,
+            @RequestParam(required = false) Boolean availableOnly,
+            @RequestParam(defaultValue = "12") int size,
+            @RequestParam(defaultValue = "title") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir) {
+        
+        BookFilter filter = new BookFilter(title, author, category, language, isbn, publisher,
+                minYear, maxYear, minRating, maxRating, availableOnly);
+        try {
+            return ResponseEntity.ok(bookService.searchBooksAfter(q, filter, cursor, sortBy,
+                    sortDir.equalsIgnoreCase("desc"), size));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+    
+    @GetMapping(value = "/search", params = {"facets=true", "!cursor"})
+    public ResponseEntity<Map<String, Object>> searchBooksWithFacets(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) String title,
+            @RequestParam(required = false) String author,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String language,
+            @RequestParam(required = false) String isbn,
+            @RequestParam(required = false) String publisher,
+            @RequestParam(required = false) Integer minYear,
+            @RequestParam(required = false) Integer maxYear,
+            @RequestParam(required = false) Integer minRating,
+            @RequestParam(required = false) Integer maxRating,
+            @RequestParam(required = false) Boolean availableOnly,
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "12") int size,
+            @RequestParam(defaultValue = "title") String sortBy,
+            @RequestParam(defaultValue = "asc") String sortDir,
+            @RequestParam(defaultValue = "20") int facetLimit) {
+        
+        if (facetLimit < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        Sort sort = sortDir.equalsIgnoreCase("desc") ? 
+            Sort.by(sortBy).descending() : Sort.by(sortBy).ascending();
+        Pageable pageable = PageRequest.of(page, size, sort);
+        
+        BookFilter filter = new BookFilter(title, author, category, language, isbn, publisher,
+                minYear, maxYear, minRating, maxRating, availableOnly);
+        return ResponseEntity.ok(bookService.searchBooksWithFacets(q, filter, pageable, Math.min(facetLimit, 100)));
+    }
+    
+    @GetMapping("/suggest")
+    public ResponseEntity<List<Suggestion>> suggest(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        List<Suggestion> suggestions = bookService.suggest(prefix, Math.min(limit, 50));
+        return ResponseEntity.ok(suggestions);
+    }
+    
+    @GetMapping("/search/cache-stats")
+    public ResponseEntity<Map<String, Object>> getSearchCacheStats() {
+        return ResponseEntity.ok(bookService.getSearchCacheStats());
+    }
+    
     @GetMapping("/available")
-    public ResponseEntity<Page<Book>> getAvailableBooks(
+    public ResponseEntity<Slice<Book>> getAvailableBooks(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "12") int size) {
+            @RequestParam(defaultValue = "12") int size,
+            @RequestParam(defaultValue = "exact") String count) {
         
         Pageable pageable = PageRequest.of(page, size);
-        Page<Book> books = bookService.getAvailableBooks(pageable);
-        return ResponseEntity.ok(books);
+        try {
+            Slice<Book> books = bookService.getAvailableBooks(pageable, CountMode.fromParam(count));
+            return ResponseEntity.ok(books);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @GetMapping("/top-rated")
-    public ResponseEntity<Page<Book>> getTopRatedBooks(
+    public ResponseEntity<Slice<Book>> getTopRatedBooks(
             @RequestParam(defaultValue = "0") int page,
-            @RequestParam(defaultValue = "12") int size) {
+            @RequestParam(defaultValue = "12") int size,
+            @RequestParam(defaultValue = "exact") String count) {
         
-        Page<Book> books = bookService.getTopRatedBooks(page, size);
-        return ResponseEntity.ok(books);
+        try {
+            Slice<Book> books = bookService.getTopRatedBooks(page, size, CountMode.fromParam(count));
+            return ResponseEntity.ok(books);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @GetMapping("/categories")
@@ -162,6 +283,16 @@ public class BookController {
         return ResponseEntity.ok(books);
     }
     
+    /** Copies on the shelf for every card of a catalog grid in one call, e.g. {@code ?ids=1,2,3}. */
+    @GetMapping("/availability")
+    public ResponseEntity<Map<Long, Integer>> getAvailability(@RequestParam List<Long> ids) {
+        try {
+            return ResponseEntity.ok(bookService.getAvailability(ids));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @GetMapping("/{id}/availability")
     public ResponseEntity<Boolean> checkBookAvailability(@PathVariable Long id) {
         boolean isAvailable = bookService.isBookAvailable(id);
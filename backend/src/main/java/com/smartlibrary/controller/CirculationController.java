@@ -0,0 +1,55 @@
+package com.smartlibrary.controller;
+
+import com.smartlibrary.service.CirculationService;
+import com.smartlibrary.service.OverdueProcessor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/circulation")
+@CrossOrigin(origins = "*")
+public class CirculationController {
+    
+    @Autowired
+    private CirculationService circulationService;
+    
+    @Autowired
+    private OverdueProcessor overdueProcessor;
+    
+    @PostMapping("/users/{userId}/checkout")
+    public ResponseEntity<Map<String, Object>> checkout(@PathVariable Long userId, @RequestBody List<Long> bookIds) {
+        try {
+            return ResponseEntity.ok(circulationService.checkout(userId, bookIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @PostMapping("/users/{userId}/return")
+    public ResponseEntity<Map<String, Object>> returnBooks(@PathVariable Long userId, @RequestBody List<Long> bookIds) {
+        try {
+            return ResponseEntity.ok(circulationService.returnBooks(userId, bookIds));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @GetMapping("/overdue/last-run")
+    public ResponseEntity<Map<String, Object>> getLastOverdueRun() {
+        return ResponseEntity.ok(overdueProcessor.getLastRun());
+    }
+    
+    @PostMapping("/overdue/run")
+    public ResponseEntity<Map<String, Object>> runOverdueSweep() {
+        return ResponseEntity.ok(overdueProcessor.run(LocalDate.now()));
+    }
+}
@@ -0,0 +1,65 @@
+package com.smartlibrary.controller;
+
+import com.smartlibrary.service.HoldNotifier;
+import com.smartlibrary.service.HoldService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/holds")
+@CrossOrigin(origins = "*")
+public class HoldController {
+    
+    @Autowired
+    private HoldService holdService;
+    
+    @Autowired
+    private HoldNotifier holdNotifier;
+    
+    @PostMapping("/users/{userId}/books/{bookId}")
+    public ResponseEntity<Map<String, Object>> placeHold(@PathVariable Long userId, @PathVariable Long bookId) {
+        try {
+            return ResponseEntity.ok(holdService.placeHold(userId, bookId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @DeleteMapping("/users/{userId}/{holdId}")
+    public ResponseEntity<Map<String, Object>> cancelHold(@PathVariable Long userId, @PathVariable Long holdId) {
+        try {
+            return ResponseEntity.ok(holdService.cancelHold(userId, holdId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    @GetMapping("/users/{userId}")
+    public ResponseEntity<List<Map<String, Object>>> getHolds(@PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(holdService.getHolds(userId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /** Pushes hold-ready and hold-expired events to the reader instead of having them poll availability. */
+    @GetMapping(value = "/users/{userId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(@PathVariable Long userId) {
+        try {
+            return ResponseEntity.ok(holdNotifier.subscribe(userId, holdService.getReadyHolds(userId)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
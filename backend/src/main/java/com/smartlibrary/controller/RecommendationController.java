@@ -35,6 +35,15 @@ public class RecommendationController {
         return ResponseEntity.ok(similarBooks);
     }
     
+    @GetMapping("/more-like")
+    public ResponseEntity<List<Book>> getMoreLikeThese(
+            @RequestParam List<Long> ids,
+            @RequestParam(defaultValue = "10") int limit) {
+        
+        List<Book> books = recommendationService.getMoreLikeThese(ids, limit);
+        return ResponseEntity.ok(books);
+    }
+    
     @GetMapping("/trending")
     public ResponseEntity<List<Book>> getTrendingBooks(
             @RequestParam(defaultValue = "10") int limit) {
@@ -60,6 +69,11 @@ public class RecommendationController {
         return ResponseEntity.ok(popularBooks);
     }
     
+    @GetMapping("/user/store-stats")
+    public ResponseEntity<Map<String, Object>> getStoreStats() {
+        return ResponseEntity.ok(recommendationService.getStoreStats());
+    }
+    
     @GetMapping("/dashboard/{userId}")
     public ResponseEntity<Map<String, Object>> getPersonalizedDashboard(@PathVariable Long userId) {
         Map<String, Object> dashboard = recommendationService.getPersonalizedDashboard(userId);
@@ -0,0 +1,134 @@
+package com.smartlibrary.evaluation;
+
+import com.smartlibrary.evaluation.InteractionDataset.BookSpec;
+import com.smartlibrary.evaluation.InteractionDataset.Interaction;
+import com.smartlibrary.model.Book;
+import com.smartlibrary.model.User;
+import com.smartlibrary.repository.BookRepository;
+import com.smartlibrary.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Loads a dataset into the (empty) database. Ratings and borrows go in through batched
+ * JDBC so their historical timestamps survive; the entity callbacks would stamp them with
+ * the current time.
+ */
+@Component
+@Profile("evaluation")
+public class DatasetWriter {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final int LOAN_DAYS = 14;
+    private static final int MAX_TEXT_LENGTH = 255;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /** Database ids of the dataset's readers and books, by position. */
+    record Ids(long[] users, long[] books) {}
+
+    Ids writeCatalogue(InteractionDataset dataset) {
+        if (bookRepository.count() > 0 || userRepository.count() > 0) {
+            throw new IllegalStateException("The evaluation harness only runs against an empty database");
+        }
+        List<User> users = new ArrayList<>(dataset.userCount());
+        for (int u = 0; u < dataset.userCount(); u++) {
+            users.add(new User("eval_user_" + u, "eval_user_" + u + "@example.com", "password123", "Eval", "User " + u));
+        }
+        long[] userIds = userRepository.saveAll(users).stream().mapToLong(User::getId).toArray();
+
+        List<Book> books = new ArrayList<>(dataset.books().size());
+        int position = 0;
+        for (BookSpec spec : dataset.books()) {
+            Book book = new Book(truncate(spec.title()), truncate(spec.author()), "EVAL-" + position++,
+                truncate(spec.category()), spec.copies(), spec.copies());
+            book.setPublisher(truncate(spec.publisher()));
+            book.setDescription(truncate(spec.description()));
+            books.add(book);
+        }
+        long[] bookIds = bookRepository.saveAll(books).stream().mapToLong(Book::getId).toArray();
+        return new Ids(userIds, bookIds);
+    }
+
+    /**
+     * Inserts the interactions; a reader's repeated ratings of a book collapse into the
+     * latest, as the application would have updated the row. Borrows that ended before
+     * {@code now} are returned. Book rating aggregates are recomputed at the end.
+     */
+    void writeInteractions(List<Interaction> interactions, Ids ids, LocalDateTime now) {
+        Map<Long, Interaction> latestRatings = new LinkedHashMap<>();
+        List<Object[]> borrows = new ArrayList<>(BATCH_SIZE);
+        for (Interaction interaction : interactions) {
+            if (!interaction.isBorrow()) {
+                latestRatings.put(((long) interaction.user() << 32) | interaction.book(), interaction);
+                continue;
+            }
+            LocalDateTime at = interaction.at();
+            LocalDateTime due = at.plusDays(LOAN_DAYS);
+            boolean returned = due.isBefore(now);
+            borrows.add(new Object[] {
+                ids.users()[interaction.user()], ids.books()[interaction.book()],
+                Date.valueOf(at.toLocalDate()), Date.valueOf(due.toLocalDate()),
+                returned ? Date.valueOf(due.toLocalDate()) : null, returned ? "RETURNED" : "BORROWED",
+                Timestamp.valueOf(at), Timestamp.valueOf(returned ? due : at)});
+            if (borrows.size() == BATCH_SIZE) {
+                insertBorrows(borrows);
+                borrows.clear();
+            }
+        }
+        if (!borrows.isEmpty()) {
+            insertBorrows(borrows);
+        }
+
+        List<Object[]> ratings = new ArrayList<>(BATCH_SIZE);
+        for (Interaction interaction : latestRatings.values()) {
+            Timestamp at = Timestamp.valueOf(interaction.at());
+            ratings.add(new Object[] {
+                ids.users()[interaction.user()], ids.books()[interaction.book()], interaction.rating(), at, at});
+            if (ratings.size() == BATCH_SIZE) {
+                insertRatings(ratings);
+                ratings.clear();
+            }
+        }
+        if (!ratings.isEmpty()) {
+            insertRatings(ratings);
+        }
+
+        jdbcTemplate.update("UPDATE books SET " +
+            "rating_sum = (SELECT COALESCE(SUM(r.rating), 0) FROM ratings r WHERE r.book_id = books.id), " +
+            "average_rating = (SELECT AVG(CAST(r.rating AS DOUBLE PRECISION)) FROM ratings r WHERE r.book_id = books.id), " +
+            "rating_count = (SELECT COUNT(*) FROM ratings r WHERE r.book_id = books.id)");
+    }
+
+    private void insertBorrows(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO borrow_records " +
+            "(user_id, book_id, borrow_date, due_date, return_date, status, fine_amount, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, 0, ?, ?)", rows);
+    }
+
+    private void insertRatings(List<Object[]> rows) {
+        jdbcTemplate.batchUpdate("INSERT INTO ratings (user_id, book_id, rating, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, ?)", rows);
+    }
+
+    private static String truncate(String text) {
+        return text == null || text.length() <= MAX_TEXT_LENGTH ? text : text.substring(0, MAX_TEXT_LENGTH);
+    }
+}
@@ -0,0 +1,172 @@
+package com.smartlibrary.evaluation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Books, readers and their time-stamped ratings and borrows, held in memory so the harness
+ * can split them by time before anything reaches the database. Readers and books are
+ * referred to by their position in the dataset, not by database ids.
+ */
+final class InteractionDataset {
+
+    record BookSpec(String title, String author, String category, String publisher, String description, int copies) {}
+
+    /** A borrow when {@code rating} is 0, otherwise a rating of 1 to 5 stars. */
+    record Interaction(int user, int book, int rating, LocalDateTime at) {
+        boolean isBorrow() {
+            return rating == 0;
+        }
+    }
+
+    private final String source;
+    private final List<BookSpec> books;
+    private final int userCount;
+    private final List<Interaction> interactions;
+
+    InteractionDataset(String source, List<BookSpec> books, int userCount, List<Interaction> interactions) {
+        this.source = source;
+        this.books = books;
+        this.userCount = userCount;
+        this.interactions = new ArrayList<>(interactions);
+        this.interactions.sort(Comparator.comparing(Interaction::at));
+    }
+
+    String source() {
+        return source;
+    }
+
+    List<BookSpec> books() {
+        return books;
+    }
+
+    int userCount() {
+        return userCount;
+    }
+
+    /** All interactions, oldest first. */
+    List<Interaction> interactions() {
+        return interactions;
+    }
+
+    /** The time before which {@code 1 - testFraction} of the interactions happened. */
+    LocalDateTime splitPoint(double testFraction) {
+        if (interactions.isEmpty()) {
+            return LocalDateTime.now();
+        }
+        int index = (int) Math.min(interactions.size() - 1, Math.round(interactions.size() * (1 - testFraction)));
+        return interactions.get(index).at();
+    }
+
+    /**
+     * A copy with every timestamp moved by the same amount so that {@code from} becomes
+     * {@code to}; time-decayed models then see the training data as recent history.
+     */
+    InteractionDataset shifted(LocalDateTime from, LocalDateTime to) {
+        Duration offset = Duration.between(from, to);
+        List<Interaction> moved = new ArrayList<>(interactions.size());
+        for (Interaction interaction : interactions) {
+            moved.add(new Interaction(interaction.user(), interaction.book(), interaction.rating(),
+                interaction.at().plus(offset)));
+        }
+        return new InteractionDataset(source, books, userCount, moved);
+    }
+
+    /**
+     * Reads an export in {@code directory}: {@code books.csv} with
+     * {@code id,title,author,category,publisher,description,total_copies}, and
+     * {@code ratings.csv} ({@code user_id,book_id,rating,created_at}) and
+     * {@code borrows.csv} ({@code user_id,book_id,created_at}), each with a header line and
+     * ISO-8601 timestamps.
+     */
+    static InteractionDataset fromCsv(Path directory) throws IOException {
+        Map<String, Integer> bookIndex = new HashMap<>();
+        List<BookSpec> books = new ArrayList<>();
+        for (List<String> row : readCsv(directory.resolve("books.csv"))) {
+            bookIndex.put(row.get(0), books.size());
+            books.add(new BookSpec(row.get(1), row.get(2), row.get(3), emptyToNull(row.get(4)),
+                emptyToNull(row.get(5)), Math.max(1, Integer.parseInt(row.get(6)))));
+        }
+        Map<String, Integer> userIndex = new HashMap<>();
+        List<Interaction> interactions = new ArrayList<>();
+        for (List<String> row : readCsv(directory.resolve("ratings.csv"))) {
+            Integer book = bookIndex.get(row.get(1));
+            if (book != null) {
+                int user = userIndex.computeIfAbsent(row.get(0), id -> userIndex.size());
+                interactions.add(new Interaction(user, book, Integer.parseInt(row.get(2)), LocalDateTime.parse(row.get(3))));
+            }
+        }
+        for (List<String> row : readCsv(directory.resolve("borrows.csv"))) {
+            Integer book = bookIndex.get(row.get(1));
+            if (book != null) {
+                int user = userIndex.computeIfAbsent(row.get(0), id -> userIndex.size());
+                interactions.add(new Interaction(user, book, 0, LocalDateTime.parse(row.get(2))));
+            }
+        }
+        return new InteractionDataset("csv:" + directory, books, userIndex.size(), interactions);
+    }
+
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    // RFC 4180 fields: quoted fields may hold commas, doubled quotes and line breaks
+    private static List<List<String>> readCsv(Path file) throws IOException {
+        List<List<String>> rows = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<String> row = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean header = true;
+            int c;
+            while ((c = reader.read()) != -1) {
+                char ch = (char) c;
+                if (quoted) {
+                    if (ch != '"') {
+                        field.append(ch);
+                    } else {
+                        reader.mark(1);
+                        if (reader.read() == '"') {
+                            field.append('"');
+                        } else {
+                            reader.reset();
+                            quoted = false;
+                        }
+                    }
+                } else if (ch == '"') {
+                    quoted = true;
+                } else if (ch == ',') {
+                    row.add(field.toString());
+                    field.setLength(0);
+                } else if (ch == '\n') {
+                    row.add(field.toString().strip());
+                    field.setLength(0);
+                    if (!header && !(row.size() == 1 && row.get(0).isEmpty())) {
+                        rows.add(row);
+                    }
+                    header = false;
+                    row = new ArrayList<>();
+                } else if (ch != '\r') {
+                    field.append(ch);
+                }
+            }
+            if (field.length() > 0 || !row.isEmpty()) {
+                row.add(field.toString().strip());
+                if (!header) {
+                    rows.add(row);
+                }
+            }
+        }
+        return rows;
+    }
+}
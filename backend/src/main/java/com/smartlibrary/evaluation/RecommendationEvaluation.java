@@ -0,0 +1,357 @@
+package com.smartlibrary.evaluation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.smartlibrary.evaluation.InteractionDataset.Interaction;
+import com.smartlibrary.model.Book;
+import com.smartlibrary.recommendation.BookEmbeddingIndex;
+import com.smartlibrary.recommendation.ContentSimilarityIndex;
+import com.smartlibrary.recommendation.ItemSimilarityIndex;
+import com.smartlibrary.recommendation.MatrixFactorizationRecommender;
+import com.smartlibrary.recommendation.TrendingIndex;
+import com.smartlibrary.service.RecommendationService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Offline evaluation and latency benchmark of the recommendation strategies.
+ *
+ * With the {@code evaluation} profile (on top of an empty scratch database, e.g.
+ * {@code dev,evaluation}) the application generates or loads a dataset, splits it at a
+ * point in time, loads only the part before the split and lets the models train on it as
+ * they would in production. Each strategy is then asked for {@code k} books per reader and
+ * scored against what the reader actually borrowed or rated highly after the split.
+ * Results, including per-call latency percentiles, are written as JSON and compared with
+ * a baseline file from an earlier run if one is configured.
+ */
+@Component
+@Profile("evaluation")
+public class RecommendationEvaluation implements CommandLineRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(RecommendationEvaluation.class);
+
+    private static final int LIKED_RATING = 4;
+    private static final List<String> QUALITY_METRICS = List.of("precisionAtK", "recallAtK", "coverage");
+
+    @Autowired
+    private DatasetWriter datasetWriter;
+
+    @Autowired
+    private RecommendationService recommendationService;
+
+    @Autowired
+    private ItemSimilarityIndex itemSimilarityIndex;
+
+    @Autowired
+    private ContentSimilarityIndex contentSimilarityIndex;
+
+    @Autowired
+    private BookEmbeddingIndex bookEmbeddingIndex;
+
+    @Autowired
+    private MatrixFactorizationRecommender matrixFactorizationRecommender;
+
+    @Autowired
+    private TrendingIndex trendingIndex;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Value("${smartlibrary.evaluation.source:synthetic}")
+    private String source;
+
+    @Value("${smartlibrary.evaluation.dataset-dir:}")
+    private String datasetDir;
+
+    @Value("${smartlibrary.evaluation.books:5000}")
+    private int books;
+
+    @Value("${smartlibrary.evaluation.users:2000}")
+    private int users;
+
+    @Value("${smartlibrary.evaluation.categories:20}")
+    private int categories;
+
+    @Value("${smartlibrary.evaluation.interactions-per-user:30}")
+    private int interactionsPerUser;
+
+    @Value("${smartlibrary.evaluation.days:180}")
+    private int days;
+
+    @Value("${smartlibrary.evaluation.seed:42}")
+    private long seed;
+
+    @Value("${smartlibrary.evaluation.test-fraction:0.2}")
+    private double testFraction;
+
+    @Value("${smartlibrary.evaluation.k:10}")
+    private int k;
+
+    @Value("${smartlibrary.evaluation.max-readers:500}")
+    private int maxReaders;
+
+    @Value("${smartlibrary.evaluation.warm-up-calls:50}")
+    private int warmUpCalls;
+
+    @Value("${smartlibrary.evaluation.ready-timeout-seconds:900}")
+    private long readyTimeoutSeconds;
+
+    @Value("${smartlibrary.evaluation.label:}")
+    private String label;
+
+    @Value("${smartlibrary.evaluation.output:evaluation/results.json}")
+    private String output;
+
+    @Value("${smartlibrary.evaluation.baseline:}")
+    private String baseline;
+
+    @Value("${smartlibrary.evaluation.quality-tolerance:0.05}")
+    private double qualityTolerance;
+
+    @Value("${smartlibrary.evaluation.latency-tolerance:0.25}")
+    private double latencyTolerance;
+
+    @Value("${smartlibrary.evaluation.exit-when-done:true}")
+    private boolean exitWhenDone;
+
+    private volatile Holdout holdout;
+
+    /** What each reader did after the split, in database ids. */
+    private record Holdout(InteractionDataset dataset, int trainSize, int testSize,
+                           List<Long> readers, List<Long> warmUpReaders,
+                           Map<Long, Long> lastTrainBook, Map<Long, Set<Long>> relevant) {}
+
+    // runs before ApplicationReadyEvent, so the indexes and models build from the loaded data
+    @Override
+    public void run(String... args) throws Exception {
+        long started = System.currentTimeMillis();
+        InteractionDataset dataset = "csv".equalsIgnoreCase(source)
+            ? InteractionDataset.fromCsv(Path.of(datasetDir))
+            : new SyntheticDatasetGenerator(books, users, categories, interactionsPerUser, days, seed).generate();
+        LocalDateTime now = LocalDateTime.now();
+        dataset = dataset.shifted(dataset.splitPoint(testFraction), now);
+
+        List<Interaction> train = new ArrayList<>();
+        List<Interaction> test = new ArrayList<>();
+        for (Interaction interaction : dataset.interactions()) {
+            (interaction.at().isBefore(now) ? train : test).add(interaction);
+        }
+        DatasetWriter.Ids ids = datasetWriter.writeCatalogue(dataset);
+        datasetWriter.writeInteractions(train, ids, now);
+        holdout = holdout(dataset, train, test, ids);
+        log.info("Evaluation dataset {} loaded: {} books, {} readers, {} training and {} held-out interactions in {} ms",
+            dataset.source(), dataset.books().size(), dataset.userCount(), train.size(), test.size(),
+            System.currentTimeMillis() - started);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void evaluateInBackground() {
+        // other ready listeners build the indexes on this thread, so wait for them elsewhere
+        Thread thread = new Thread(this::evaluateAndReport, "recommendation-evaluation");
+        thread.start();
+    }
+
+    private void evaluateAndReport() {
+        int exitCode = 1;
+        try {
+            awaitModels();
+            Map<String, Object> report = evaluate(holdout);
+            List<Map<String, Object>> regressions = compareWithBaseline(report);
+            report.put("regressions", regressions);
+            File file = new File(output);
+            if (file.getAbsoluteFile().getParentFile() != null) {
+                file.getAbsoluteFile().getParentFile().mkdirs();
+            }
+            objectMapper.writerWithDefaultPrettyPrinter().writeValue(file, report);
+            log.info("Evaluation results written to {}", file.getAbsolutePath());
+            regressions.forEach(regression -> log.warn("Regression against baseline: {}", regression));
+            exitCode = regressions.isEmpty() ? 0 : 2;
+        } catch (Exception e) {
+            log.error("Evaluation failed", e);
+        }
+        if (exitWhenDone) {
+            int code = exitCode;
+            System.exit(SpringApplication.exit(context, () -> code));
+        }
+    }
+
+    private void awaitModels() throws InterruptedException {
+        Map<String, BooleanSupplier> checks = new LinkedHashMap<>();
+        checks.put("item similarity", itemSimilarityIndex::isReady);
+        checks.put("content similarity", contentSimilarityIndex::isReady);
+        checks.put("embedding index", bookEmbeddingIndex::isReady);
+        checks.put("ALS model", matrixFactorizationRecommender::isReady);
+        checks.put("trending", () -> trendingIndex.top(1) != null);
+        long deadline = System.currentTimeMillis() + readyTimeoutSeconds * 1000;
+        for (Map.Entry<String, BooleanSupplier> check : checks.entrySet()) {
+            while (!check.getValue().getAsBoolean()) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Timed out waiting for the " + check.getKey());
+                }
+                Thread.sleep(200);
+            }
+        }
+    }
+
+    private Holdout holdout(InteractionDataset dataset, List<Interaction> train,
+                            List<Interaction> test, DatasetWriter.Ids ids) {
+        Map<Long, Set<Long>> seen = new HashMap<>();
+        Map<Long, Long> lastTrainBook = new HashMap<>();
+        for (Interaction interaction : train) {
+            long user = ids.users()[interaction.user()];
+            long book = ids.books()[interaction.book()];
+            seen.computeIfAbsent(user, u -> new HashSet<>()).add(book);
+            lastTrainBook.put(user, book);
+        }
+        Map<Long, Set<Long>> relevant = new HashMap<>();
+        for (Interaction interaction : test) {
+            long user = ids.users()[interaction.user()];
+            long book = ids.books()[interaction.book()];
+            boolean liked = interaction.isBorrow() || interaction.rating() >= LIKED_RATING;
+            if (liked && seen.containsKey(user) && !seen.get(user).contains(book)) {
+                relevant.computeIfAbsent(user, u -> new HashSet<>()).add(book);
+            }
+        }
+        List<Long> readers = new ArrayList<>(relevant.keySet());
+        Collections.sort(readers);
+        Collections.shuffle(readers, new Random(seed));
+        List<Long> evaluated = new ArrayList<>(readers.subList(0, Math.min(maxReaders, readers.size())));
+        // warm the JIT on readers outside the sample so their stored recommendations stay cold
+        List<Long> warmUp = seen.keySet().stream()
+            .filter(user -> !relevant.containsKey(user))
+            .sorted()
+            .limit(warmUpCalls)
+            .collect(Collectors.toList());
+        return new Holdout(dataset, train.size(), test.size(), evaluated, warmUp, lastTrainBook, relevant);
+    }
+
+    private Map<String, Object> evaluate(Holdout holdout) {
+        int catalogueSize = holdout.dataset().books().size();
+        Map<String, Object> strategies = new LinkedHashMap<>();
+
+        StrategyMetrics personal = new StrategyMetrics(k);
+        holdout.warmUpReaders().forEach(user -> recommendationService.getRecommendationsForUser(user, k));
+        for (Long user : holdout.readers()) {
+            long started = System.nanoTime();
+            List<Book> result = recommendationService.getRecommendationsForUser(user, k);
+            personal.record(idsOf(result), holdout.relevant().get(user), System.nanoTime() - started);
+        }
+        strategies.put("userRecommendations", personal.toMap(catalogueSize));
+
+        StrategyMetrics similar = new StrategyMetrics(k);
+        holdout.warmUpReaders().forEach(user ->
+            recommendationService.getSimilarBooks(holdout.lastTrainBook().get(user), k));
+        for (Long user : holdout.readers()) {
+            Long seedBook = holdout.lastTrainBook().get(user);
+            Set<Long> relevant = new HashSet<>(holdout.relevant().get(user));
+            relevant.remove(seedBook);
+            long started = System.nanoTime();
+            List<Book> result = recommendationService.getSimilarBooks(seedBook, k);
+            similar.record(idsOf(result), relevant, System.nanoTime() - started);
+        }
+        strategies.put("similarBooks", similar.toMap(catalogueSize));
+
+        StrategyMetrics trending = new StrategyMetrics(k);
+        for (int i = 0; i < warmUpCalls; i++) {
+            recommendationService.getTrendingBooks(k);
+        }
+        for (Long user : holdout.readers()) {
+            long started = System.nanoTime();
+            List<Book> result = recommendationService.getTrendingBooks(k);
+            trending.record(idsOf(result), holdout.relevant().get(user), System.nanoTime() - started);
+        }
+        strategies.put("trending", trending.toMap(catalogueSize));
+
+        Map<String, Object> dataset = new LinkedHashMap<>();
+        dataset.put("source", holdout.dataset().source());
+        dataset.put("books", catalogueSize);
+        dataset.put("readers", holdout.dataset().userCount());
+        dataset.put("trainingInteractions", holdout.trainSize());
+        dataset.put("heldOutInteractions", holdout.testSize());
+        dataset.put("testFraction", testFraction);
+        dataset.put("evaluatedReaders", holdout.readers().size());
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", label);
+        report.put("generatedAt", LocalDateTime.now().toString());
+        report.put("k", k);
+        report.put("dataset", dataset);
+        report.put("strategies", strategies);
+        return report;
+    }
+
+    private static List<Long> idsOf(List<Book> books) {
+        return books.stream().map(Book::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Quality metrics that dropped by more than {@code quality-tolerance} (relative) and
+     * p99 latencies that grew by more than {@code latency-tolerance} and at least a
+     * millisecond since the baseline run.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> compareWithBaseline(Map<String, Object> report) throws IOException {
+        List<Map<String, Object>> regressions = new ArrayList<>();
+        if (baseline == null || baseline.isBlank() || !new File(baseline).exists()) {
+            return regressions;
+        }
+        Map<String, Object> previous = objectMapper.readValue(new File(baseline), Map.class);
+        Map<String, Object> before = (Map<String, Object>) previous.getOrDefault("strategies", Map.of());
+        Map<String, Object> after = (Map<String, Object>) report.get("strategies");
+        for (Map.Entry<String, Object> strategy : after.entrySet()) {
+            Map<String, Object> old = (Map<String, Object>) before.get(strategy.getKey());
+            if (old == null) {
+                continue;
+            }
+            Map<String, Object> current = (Map<String, Object>) strategy.getValue();
+            for (String metric : QUALITY_METRICS) {
+                double was = number(old.get(metric));
+                double is = number(current.get(metric));
+                if (is < was * (1 - qualityTolerance)) {
+                    regressions.add(regression(strategy.getKey(), metric, was, is));
+                }
+            }
+            Function<Map<String, Object>, Double> p99 = metrics ->
+                number(((Map<String, Object>) metrics.getOrDefault("latencyMs", Map.of())).get("p99"));
+            double was = p99.apply(old);
+            double is = p99.apply(current);
+            if (is > was * (1 + latencyTolerance) && is - was >= 1.0) {
+                regressions.add(regression(strategy.getKey(), "latencyMs.p99", was, is));
+            }
+        }
+        return regressions;
+    }
+
+    private static double number(Object value) {
+        return value instanceof Number ? ((Number) value).doubleValue() : 0.0;
+    }
+
+    private static Map<String, Object> regression(String strategy, String metric, double baseline, double current) {
+        Map<String, Object> regression = new LinkedHashMap<>();
+        regression.put("strategy", strategy);
+        regression.put("metric", metric);
+        regression.put("baseline", baseline);
+        regression.put("current", current);
+        return regression;
+    }
+}
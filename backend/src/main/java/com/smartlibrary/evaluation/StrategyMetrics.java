@@ -0,0 +1,82 @@
+package com.smartlibrary.evaluation;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Quality and latency of one recommendation strategy, accumulated call by call. */
+final class StrategyMetrics {
+
+    private final int k;
+    private final Set<Long> recommended = new HashSet<>();
+    private long[] latencies = new long[256];
+    private int calls;
+    private int evaluated;
+    private double precisionSum;
+    private double recallSum;
+    private double hitRateSum;
+
+    StrategyMetrics(int k) {
+        this.k = k;
+    }
+
+    /** Records one call: what came back, what the reader went on to pick, and how long it took. */
+    void record(List<Long> result, Collection<Long> relevant, long nanos) {
+        if (calls == latencies.length) {
+            latencies = Arrays.copyOf(latencies, calls * 2);
+        }
+        latencies[calls++] = nanos;
+        int hits = 0;
+        for (int i = 0; i < result.size() && i < k; i++) {
+            Long id = result.get(i);
+            recommended.add(id);
+            if (relevant.contains(id)) {
+                hits++;
+            }
+        }
+        if (!relevant.isEmpty()) {
+            evaluated++;
+            precisionSum += (double) hits / k;
+            recallSum += (double) hits / Math.min(k, relevant.size());
+            hitRateSum += hits > 0 ? 1 : 0;
+        }
+    }
+
+    /**
+     * Metrics as plain values: recall is normalised by {@code min(k, relevant)} so a
+     * perfect list scores 1, and coverage is the share of the catalogue ever recommended.
+     */
+    Map<String, Object> toMap(int catalogueSize) {
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("calls", calls);
+        metrics.put("evaluatedReaders", evaluated);
+        metrics.put("precisionAtK", evaluated == 0 ? 0.0 : precisionSum / evaluated);
+        metrics.put("recallAtK", evaluated == 0 ? 0.0 : recallSum / evaluated);
+        metrics.put("hitRateAtK", evaluated == 0 ? 0.0 : hitRateSum / evaluated);
+        metrics.put("coverage", catalogueSize == 0 ? 0.0 : (double) recommended.size() / catalogueSize);
+
+        long[] sorted = Arrays.copyOf(latencies, calls);
+        Arrays.sort(sorted);
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("p50", percentileMillis(sorted, 0.50));
+        latency.put("p90", percentileMillis(sorted, 0.90));
+        latency.put("p99", percentileMillis(sorted, 0.99));
+        latency.put("max", calls == 0 ? 0.0 : sorted[calls - 1] / 1e6);
+        latency.put("mean", calls == 0 ? 0.0 : Arrays.stream(sorted).average().orElse(0) / 1e6);
+        metrics.put("latencyMs", latency);
+        return metrics;
+    }
+
+    // nearest-rank percentile
+    private static double percentileMillis(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)] / 1e6;
+    }
+}
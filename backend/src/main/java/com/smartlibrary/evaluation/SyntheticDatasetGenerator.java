@@ -0,0 +1,136 @@
+package com.smartlibrary.evaluation;
+
+import com.smartlibrary.evaluation.InteractionDataset.BookSpec;
+import com.smartlibrary.evaluation.InteractionDataset.Interaction;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a catalogue and an interaction history with the structure the recommenders
+ * are meant to find: every reader favours a few categories, popularity inside a category
+ * is Zipf-distributed, titles and descriptions share a per-category vocabulary, and
+ * ratings are higher inside a reader's favourite categories. The same seed always gives
+ * the same dataset.
+ */
+final class SyntheticDatasetGenerator {
+
+    private static final int WORDS_PER_CATEGORY = 40;
+    private static final int SHARED_WORDS = 200;
+    private static final int PUBLISHERS = 50;
+    private static final double ZIPF_EXPONENT = 1.1;
+
+    private final int books;
+    private final int users;
+    private final int categories;
+    private final int interactionsPerUser;
+    private final int days;
+    private final long seed;
+
+    SyntheticDatasetGenerator(int books, int users, int categories, int interactionsPerUser, int days, long seed) {
+        this.books = books;
+        this.users = users;
+        this.categories = Math.max(1, categories);
+        this.interactionsPerUser = interactionsPerUser;
+        this.days = Math.max(1, days);
+        this.seed = seed;
+    }
+
+    InteractionDataset generate() {
+        Random random = new Random(seed);
+        List<BookSpec> catalogue = new ArrayList<>(books);
+        List<List<Integer>> booksByCategory = new ArrayList<>();
+        for (int c = 0; c < categories; c++) {
+            booksByCategory.add(new ArrayList<>());
+        }
+        for (int b = 0; b < books; b++) {
+            int category = b % categories;
+            booksByCategory.get(category).add(b);
+            catalogue.add(new BookSpec(
+                words(random, category, 3, 0.8) + " " + b,
+                "Author " + category + "-" + random.nextInt(Math.max(1, books / categories / 4 + 1)),
+                "Category " + category,
+                "Publisher " + random.nextInt(PUBLISHERS),
+                words(random, category, 18, 0.6),
+                1 + random.nextInt(5)));
+        }
+        double[][] popularity = new double[categories][];
+        for (int c = 0; c < categories; c++) {
+            popularity[c] = zipfCumulative(booksByCategory.get(c).size());
+        }
+
+        LocalDateTime end = LocalDateTime.now().withNano(0);
+        LocalDateTime start = end.minusDays(days);
+        long spanSeconds = days * 86_400L;
+        List<Interaction> interactions = new ArrayList<>(users * interactionsPerUser);
+        for (int u = 0; u < users; u++) {
+            int[] favourites = new int[1 + random.nextInt(3)];
+            for (int i = 0; i < favourites.length; i++) {
+                favourites[i] = random.nextInt(categories);
+            }
+            // activity per reader is skewed too: a few heavy readers, many light ones
+            int count = Math.max(2, (int) Math.round(-Math.log(1 - random.nextDouble()) * interactionsPerUser));
+            for (int i = 0; i < count; i++) {
+                boolean favourite = random.nextDouble() < 0.8;
+                int category = favourite ? favourites[random.nextInt(favourites.length)] : random.nextInt(categories);
+                List<Integer> candidates = booksByCategory.get(category);
+                if (candidates.isEmpty()) {
+                    continue;
+                }
+                int book = candidates.get(sample(popularity[category], random));
+                LocalDateTime at = start.plusSeconds((long) (random.nextDouble() * spanSeconds));
+                int rating = 0;
+                if (random.nextDouble() < 0.4) {
+                    rating = favourite ? 3 + random.nextInt(3) : 1 + random.nextInt(4);
+                }
+                interactions.add(new Interaction(u, book, rating, at));
+            }
+        }
+        return new InteractionDataset("synthetic:seed=" + seed, catalogue, users, interactions);
+    }
+
+    private static String words(Random random, int category, int count, double onTopic) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            if (random.nextDouble() < onTopic) {
+                text.append("topic").append(category).append('w').append(random.nextInt(WORDS_PER_CATEGORY));
+            } else {
+                text.append("word").append(random.nextInt(SHARED_WORDS));
+            }
+        }
+        return text.toString();
+    }
+
+    private static double[] zipfCumulative(int n) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPF_EXPONENT);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int sample(double[] cumulative, Random random) {
+        double target = random.nextDouble();
+        int low = 0;
+        int high = cumulative.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulative[middle] < target) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
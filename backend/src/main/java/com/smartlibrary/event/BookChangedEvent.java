@@ -0,0 +1,40 @@
+package com.smartlibrary.event;
+
+import com.smartlibrary.model.Book;
+
+/**
+ * Published by BookService whenever the catalog changes, so in-memory indexes
+ * can follow the database without polling it.
+ */
+public class BookChangedEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED, RATING_CHANGED, AVAILABILITY_CHANGED
+    }
+
+    private final Book book;
+    private final Type type;
+    private final int availabilityDelta;
+
+    public BookChangedEvent(Book book, Type type) {
+        this(book, type, 0);
+    }
+
+    public BookChangedEvent(Book book, Type type, int availabilityDelta) {
+        this.book = book;
+        this.type = type;
+        this.availabilityDelta = availabilityDelta;
+    }
+
+    public Book getBook() { return book; }
+
+    public Long getBookId() { return book.getId(); }
+
+    public Type getType() { return type; }
+
+    /**
+     * For AVAILABILITY_CHANGED, the change in copies on the shelf. Unlike the book's count,
+     * deltas can be applied in any order, as after-commit listeners may see them.
+     */
+    public int getAvailabilityDelta() { return availabilityDelta; }
+}
@@ -0,0 +1,40 @@
+package com.smartlibrary.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * A hold changed state: it was placed, a returned copy was set aside for it (READY), or
+ * it left the queue. Published inside the transaction that made the change; the in-memory
+ * queue and the notification stream follow it only once that transaction commits.
+ */
+public class HoldEvent {
+
+    public enum Type {
+        PLACED, READY, FULFILLED, CANCELLED, EXPIRED
+    }
+
+    private final long holdId;
+    private final long userId;
+    private final long bookId;
+    private final Type type;
+    private final LocalDateTime expiresAt;
+
+    public HoldEvent(long holdId, long userId, long bookId, Type type, LocalDateTime expiresAt) {
+        this.holdId = holdId;
+        this.userId = userId;
+        this.bookId = bookId;
+        this.type = type;
+        this.expiresAt = expiresAt;
+    }
+
+    public long getHoldId() { return holdId; }
+
+    public long getUserId() { return userId; }
+
+    public long getBookId() { return bookId; }
+
+    public Type getType() { return type; }
+
+    /** For READY, the end of the pickup window; null otherwise. */
+    public LocalDateTime getExpiresAt() { return expiresAt; }
+}
@@ -0,0 +1,43 @@
+package com.smartlibrary.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * A reader rated, borrowed or returned a book. Published for every rating and borrow
+ * record that is written, so recommendation structures can learn from activity as it
+ * happens. RETURNED is not a new interaction with the book, only a change in the reader's
+ * state.
+ */
+public class InteractionEvent {
+
+    public enum Type {
+        RATED, BORROWED, RETURNED
+    }
+
+    private final long userId;
+    private final long bookId;
+    private final Type type;
+    private final Integer rating;
+    private final LocalDateTime occurredAt;
+
+    public InteractionEvent(long userId, long bookId, Type type, Integer rating, LocalDateTime occurredAt) {
+        this.userId = userId;
+        this.bookId = bookId;
+        this.type = type;
+        this.rating = rating;
+        this.occurredAt = occurredAt;
+    }
+
+    public long getUserId() { return userId; }
+
+    public long getBookId() { return bookId; }
+
+    public Type getType() { return type; }
+
+    public boolean isInteraction() { return type != Type.RETURNED; }
+
+    /** The star rating for RATED, null otherwise. */
+    public Integer getRating() { return rating; }
+
+    public LocalDateTime getOccurredAt() { return occurredAt; }
+}
@@ -0,0 +1,76 @@
+package com.smartlibrary.event;
+
+import com.smartlibrary.model.BorrowRecord;
+import com.smartlibrary.model.Rating;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * JPA entity listener on {@link Rating} and {@link BorrowRecord} that turns every write
+ * into an {@link InteractionEvent}, whichever code path saved it. Code that writes these
+ * rows with plain JDBC (batched circulation) publishes the events itself. Rating writes,
+ * including deletes, also publish a {@link RatingChangedEvent} with the delta they make to
+ * the book's rating total. Listeners should use {@code @TransactionalEventListener} so
+ * they only see committed activity.
+ */
+@Component
+public class InteractionPublisher {
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostPersist
+    public void onPersist(Object entity) {
+        if (entity instanceof Rating rating) {
+            publishRating(rating);
+            publishRatingDelta(rating, rating.getRating(), 1);
+        } else if (entity instanceof BorrowRecord record) {
+            eventPublisher.publishEvent(new InteractionEvent(record.getUser().getId(), record.getBook().getId(),
+                InteractionEvent.Type.BORROWED, null, orNow(record.getCreatedAt())));
+        }
+    }
+
+    // a re-rating is new activity; of borrow record updates only the return is published
+    @PostUpdate
+    public void onUpdate(Object entity) {
+        if (entity instanceof Rating rating) {
+            publishRating(rating);
+            publishRatingDelta(rating, rating.getRating() - stored(rating), 0);
+        } else if (entity instanceof BorrowRecord record && record.getStatus() == BorrowRecord.Status.RETURNED) {
+            eventPublisher.publishEvent(new InteractionEvent(record.getUser().getId(), record.getBook().getId(),
+                InteractionEvent.Type.RETURNED, null, orNow(record.getUpdatedAt())));
+        }
+    }
+
+    @PostRemove
+    public void onRemove(Object entity) {
+        if (entity instanceof Rating rating) {
+            publishRatingDelta(rating, -stored(rating), -1);
+        }
+    }
+
+    private void publishRating(Rating rating) {
+        eventPublisher.publishEvent(new InteractionEvent(rating.getUser().getId(), rating.getBook().getId(),
+            InteractionEvent.Type.RATED, rating.getRating(), orNow(rating.getUpdatedAt())));
+    }
+
+    private void publishRatingDelta(Rating rating, int sumDelta, int countDelta) {
+        if (sumDelta != 0 || countDelta != 0) {
+            eventPublisher.publishEvent(new RatingChangedEvent(rating.getBook().getId(), sumDelta, countDelta));
+        }
+    }
+
+    private static int stored(Rating rating) {
+        return rating.getStoredRating() != null ? rating.getStoredRating() : rating.getRating();
+    }
+
+    private static LocalDateTime orNow(LocalDateTime time) {
+        return time == null ? LocalDateTime.now() : time;
+    }
+}
@@ -0,0 +1,25 @@
+package com.smartlibrary.event;
+
+/**
+ * A rating was added, changed or removed, as the change it makes to its book's running
+ * rating total: {@code sumDelta} stars and {@code countDelta} ratings (-1, 0 or +1).
+ * Published by {@link InteractionPublisher} alongside the {@link InteractionEvent}.
+ */
+public class RatingChangedEvent {
+
+    private final long bookId;
+    private final long sumDelta;
+    private final int countDelta;
+
+    public RatingChangedEvent(long bookId, long sumDelta, int countDelta) {
+        this.bookId = bookId;
+        this.sumDelta = sumDelta;
+        this.countDelta = countDelta;
+    }
+
+    public long getBookId() { return bookId; }
+
+    public long getSumDelta() { return sumDelta; }
+
+    public int getCountDelta() { return countDelta; }
+}
@@ -9,7 +9,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "books")
+@Table(name = "books", indexes = {
+    @Index(name = "idx_books_category_rating", columnList = "category, average_rating DESC"),
+    @Index(name = "idx_books_average_rating", columnList = "average_rating DESC")
+})
 public class Book {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -53,12 +56,18 @@ public class Book {
     @Column(name = "total_copies")
     private Integer totalCopies;
     
-    @Column(name = "average_rating")
+    // the rating aggregates are only ever moved by RatingAggregator's SQL deltas, never by
+    // saving a (possibly stale) entity
+    @Column(name = "average_rating", updatable = false)
     private Double averageRating;
     
-    @Column(name = "rating_count")
+    @Column(name = "rating_count", nullable = false, updatable = false)
     private Integer ratingCount = 0;
     
+    @Column(name = "rating_sum", nullable = false, updatable = false)
+    @JsonIgnore
+    private Long ratingSum = 0L;
+    
     @Column(name = "created_at")
     private LocalDateTime createdAt;
     
@@ -75,6 +84,10 @@ public class Book {
     @JsonManagedReference("book-borrowRecords")
     private List<BorrowRecord> borrowRecords;
     
+    @OneToMany(mappedBy = "book", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @JsonIgnore
+    private List<Hold> holds;
+    
     // Constructors
     public Book() {}
     
@@ -147,6 +160,9 @@ public class Book {
     public Integer getRatingCount() { return ratingCount; }
     public void setRatingCount(Integer ratingCount) { this.ratingCount = ratingCount; }
     
+    public Long getRatingSum() { return ratingSum; }
+    public void setRatingSum(Long ratingSum) { this.ratingSum = ratingSum; }
+    
     public LocalDateTime getCreatedAt() { return createdAt; }
     public void setCreatedAt(LocalDateTime createdAt) { this.createdAt = createdAt; }
     
@@ -158,4 +174,7 @@ public class Book {
     
     public List<BorrowRecord> getBorrowRecords() { return borrowRecords; }
     public void setBorrowRecords(List<BorrowRecord> borrowRecords) { this.borrowRecords = borrowRecords; }
+    
+    public List<Hold> getHolds() { return holds; }
+    public void setHolds(List<Hold> holds) { this.holds = holds; }
 }
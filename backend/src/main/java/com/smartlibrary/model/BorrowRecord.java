@@ -2,12 +2,20 @@ package com.smartlibrary.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.smartlibrary.event.InteractionPublisher;
 import jakarta.persistence.*;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "borrow_records")
+@EntityListeners(InteractionPublisher.class)
+@Table(name = "borrow_records", indexes = {
+    @Index(name = "idx_borrow_records_user_status", columnList = "user_id, status"),
+    @Index(name = "idx_borrow_records_user_borrow_date", columnList = "user_id, borrow_date DESC"),
+    @Index(name = "idx_borrow_records_book_status", columnList = "book_id, status"),
+    @Index(name = "idx_borrow_records_status_due_date", columnList = "status, due_date"),
+    @Index(name = "idx_borrow_records_status_id", columnList = "status, id")
+})
 public class BorrowRecord {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -0,0 +1,58 @@
+package com.smartlibrary.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * How far a chunked batch job got in its current run, committed together with each chunk
+ * so that a run cut short resumes after the last chunk it finished.
+ */
+@Entity
+@Table(name = "job_checkpoints")
+public class JobCheckpoint {
+    @Id
+    @Column(name = "job_name", length = 100)
+    private String jobName;
+    
+    @Column(name = "run_date")
+    private LocalDate runDate;
+    
+    @Column(name = "last_id", nullable = false)
+    private Long lastId = 0L;
+    
+    @Column(nullable = false)
+    private Boolean completed = false;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Constructors
+    public JobCheckpoint() {}
+    
+    public JobCheckpoint(String jobName) {
+        this.jobName = jobName;
+    }
+    
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+    
+    // Getters and Setters
+    public String getJobName() { return jobName; }
+    public void setJobName(String jobName) { this.jobName = jobName; }
+    
+    public LocalDate getRunDate() { return runDate; }
+    public void setRunDate(LocalDate runDate) { this.runDate = runDate; }
+    
+    public Long getLastId() { return lastId; }
+    public void setLastId(Long lastId) { this.lastId = lastId; }
+    
+    public Boolean getCompleted() { return completed; }
+    public void setCompleted(Boolean completed) { this.completed = completed; }
+    
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+    public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+}
@@ -2,13 +2,18 @@ package com.smartlibrary.model;
 
 import com.fasterxml.jackson.annotation.JsonBackReference;
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.smartlibrary.event.InteractionPublisher;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Min;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "ratings")
+@EntityListeners(InteractionPublisher.class)
+@Table(name = "ratings", indexes = {
+    @Index(name = "idx_ratings_book_created", columnList = "book_id, created_at DESC"),
+    @Index(name = "idx_ratings_user_book", columnList = "user_id, book_id")
+})
 public class Rating {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -38,6 +43,12 @@ public class Rating {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    // the rating as last read from or written to the database, so updates and deletes
+    // can be turned into deltas of the book's running total
+    @Transient
+    @JsonIgnore
+    private Integer storedRating;
+    
     // Constructors
     public Rating() {}
     
@@ -60,6 +71,14 @@ public class Rating {
         updatedAt = LocalDateTime.now();
     }
     
+    // entity callbacks run after the InteractionPublisher listener, which still needs the old value
+    @PostLoad
+    @PostPersist
+    @PostUpdate
+    protected void onStored() {
+        storedRating = rating;
+    }
+    
     // Getters and Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
@@ -81,4 +100,6 @@ public class Rating {
     
     public LocalDateTime getUpdatedAt() { return updatedAt; }
     public void setUpdatedAt(LocalDateTime updatedAt) { this.updatedAt = updatedAt; }
+    
+    public Integer getStoredRating() { return storedRating; }
 }
@@ -61,6 +61,10 @@ public class User {
     @JsonIgnore
     private List<Rating> ratings;
     
+    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @JsonIgnore
+    private List<Hold> holds;
+    
     public enum Role {
         USER, LIBRARIAN, ADMIN
     }
@@ -129,4 +133,7 @@ public class User {
     
     public List<Rating> getRatings() { return ratings; }
     public void setRatings(List<Rating> ratings) { this.ratings = ratings; }
+    
+    public List<Hold> getHolds() { return holds; }
+    public void setHolds(List<Hold> holds) { this.holds = holds; }
 }
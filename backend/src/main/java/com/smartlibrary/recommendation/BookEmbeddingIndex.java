@@ -0,0 +1,286 @@
+package com.smartlibrary.recommendation;
+
+import com.smartlibrary.model.Book;
+import com.smartlibrary.search.CatalogIndex;
+import com.smartlibrary.search.TextAnalyzer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Approximate nearest neighbours over dense content embeddings of every book, for
+ * similar-book and "more like these" queries that stay fast at any catalogue size.
+ *
+ * Embeddings hash the words of title, description, category and publisher into
+ * {@link #DIMENSIONS} signed buckets (the hashing trick), so any book, including one saved
+ * a moment ago, has a vector without a vocabulary or model. They live in an
+ * {@link HnswGraph}, which is saved to disk after a rebuild and on shutdown; on startup the
+ * saved graph is reused if the catalogue has not moved on too far, patching in the books
+ * whose embedded fields changed since.
+ */
+@Component
+public class BookEmbeddingIndex extends CatalogIndex<HnswGraph> {
+
+    private static final Logger log = LoggerFactory.getLogger(BookEmbeddingIndex.class);
+
+    static final int DIMENSIONS = 128;
+
+    private static final int DEFAULT_M = 16;
+    private static final int DEFAULT_EF_CONSTRUCTION = 200;
+    private static final int FILE_MAGIC = 0x484e5357;
+    private static final int PATCH_CHUNK_SIZE = 1000;
+    private static final int MIN_TOMBSTONES_TO_COMPACT = 1000;
+
+    @Value("${smartlibrary.embedding-index.m:16}")
+    private int m;
+
+    @Value("${smartlibrary.embedding-index.ef-construction:200}")
+    private int efConstruction;
+
+    @Value("${smartlibrary.embedding-index.ef:64}")
+    private int ef;
+
+    @Value("${smartlibrary.embedding-index.path:data/book-embeddings.hnsw}")
+    private String path;
+
+    // reuse a saved graph only while patching it is clearly cheaper than a rebuild
+    @Value("${smartlibrary.embedding-index.max-stale-fraction:0.2}")
+    private double maxStaleFraction;
+
+    @Override
+    protected HnswGraph createEmpty() {
+        // also called while the bean is constructed, before the settings are injected
+        return new HnswGraph(DIMENSIONS, m > 0 ? m : DEFAULT_M, efConstruction > 0 ? efConstruction : DEFAULT_EF_CONSTRUCTION);
+    }
+
+    @Override
+    protected void add(HnswGraph graph, Book book) {
+        graph.insert(book.getId(), embed(book));
+    }
+
+    @Override
+    protected void remove(HnswGraph graph, long bookId) {
+        graph.delete(bookId);
+    }
+
+    @Override
+    protected HnswGraph restore() {
+        // once serving, a rebuild is a compaction: the saved graph holds the same tombstones
+        if (isReady() || path == null || path.isBlank() || !Files.exists(Path.of(path))) {
+            return null;
+        }
+        HnswGraph graph;
+        LocalDateTime savedAt;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(path))))) {
+            if (in.readInt() != FILE_MAGIC) {
+                return null;
+            }
+            savedAt = LocalDateTime.ofEpochSecond(in.readLong(), 0, ZoneOffset.UTC);
+            graph = HnswGraph.read(in);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable embedding index at {}: {}", path, e.getMessage());
+            return null;
+        }
+        if (graph.dimensions() != DIMENSIONS) {
+            return null;
+        }
+
+        List<Long> ids = bookRepository.findAllIds();
+        Set<Long> current = new HashSet<>(ids);
+        List<Long> missing = new ArrayList<>();
+        for (Long id : ids) {
+            if (!graph.contains(id)) {
+                missing.add(id);
+            }
+        }
+        List<Long> gone = new ArrayList<>();
+        for (Long label : graph.labels()) {
+            if (!current.contains(label)) {
+                gone.add(label);
+            }
+        }
+        // checkouts, returns and rating flushes bump updated_at too, so a row saved since is
+        // only a candidate: it is stale when its embedding no longer matches the saved vector
+        Set<Long> candidates = new LinkedHashSet<>(bookRepository.findIdsUpdatedAfter(savedAt.minusMinutes(1)));
+        candidates.removeAll(missing);
+        List<Book> changed = new ArrayList<>();
+        forEachBook(candidates, book -> {
+            if (!Arrays.equals(embed(book), graph.vector(book.getId()))) {
+                changed.add(book);
+            }
+        });
+        double limit = maxStaleFraction * Math.max(ids.size(), 1);
+        if (missing.size() + changed.size() + gone.size() + graph.deletedCount() > limit) {
+            return null;
+        }
+        gone.forEach(graph::delete);
+        changed.forEach(book -> add(graph, book));
+        forEachBook(missing, book -> add(graph, book));
+        return graph;
+    }
+
+    @Override
+    protected void afterRebuild(HnswGraph graph) {
+        save();
+    }
+
+    /**
+     * Edits and deletes leave tombstoned nodes that still route searches and are saved with
+     * the graph. Once they outnumber the live nodes, the graph is rebuilt without them; the
+     * old one keeps serving until the new one is swapped in.
+     */
+    @Scheduled(fixedDelayString = "${smartlibrary.embedding-index.compact-check-ms:60000}")
+    public void compactIfMostlyTombstones() {
+        HnswGraph graph = current();
+        int tombstones = graph.deletedCount();
+        if (isReady() && tombstones >= MIN_TOMBSTONES_TO_COMPACT && tombstones > graph.liveCount()) {
+            rebuild();
+        }
+    }
+
+    @PreDestroy
+    public void saveOnShutdown() {
+        if (isReady()) {
+            save();
+        }
+    }
+
+    /** Up to {@code limit} books most like the given one, nearest first. */
+    public List<Long> similar(long bookId, int limit) {
+        return moreLike(List.of(bookId), limit);
+    }
+
+    /** Up to {@code limit} books most like the centroid of the given ones, excluding them. */
+    public List<Long> moreLike(Collection<Long> bookIds, int limit) {
+        HnswGraph graph = current();
+        float[] centroid = new float[DIMENSIONS];
+        int found = 0;
+        for (Long bookId : bookIds) {
+            float[] vector = graph.vector(bookId);
+            if (vector != null) {
+                for (int i = 0; i < DIMENSIONS; i++) {
+                    centroid[i] += vector[i];
+                }
+                found++;
+            }
+        }
+        if (found == 0 || !normalize(centroid)) {
+            return List.of();
+        }
+        List<Long> result = new ArrayList<>(limit);
+        for (Long id : graph.search(centroid, limit + bookIds.size(), Math.max(ef, limit + bookIds.size()))) {
+            if (!bookIds.contains(id)) {
+                result.add(id);
+                if (result.size() == limit) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    static float[] embed(Book book) {
+        float[] vector = new float[DIMENSIONS];
+        hashInto(vector, TextAnalyzer.analyze(book.getTitle()), 2f);
+        hashInto(vector, TextAnalyzer.analyze(book.getDescription()), 1f);
+        if (book.getCategory() != null) {
+            hashInto(vector, List.of("category:" + book.getCategory().toLowerCase(Locale.ROOT)), 1.5f);
+        }
+        if (book.getPublisher() != null) {
+            hashInto(vector, List.of("publisher:" + TextAnalyzer.normalize(book.getPublisher())), 1f);
+        }
+        normalize(vector);
+        return vector;
+    }
+
+    private static void hashInto(float[] vector, List<String> tokens, float weight) {
+        for (String token : tokens) {
+            int hash = mix(token.hashCode());
+            int bucket = Math.floorMod(hash, DIMENSIONS);
+            vector[bucket] += (hash & 0x80000000) == 0 ? weight : -weight;
+        }
+    }
+
+    // murmur3 finalizer, so nearby String hash codes land in unrelated buckets
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    private static boolean normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0) {
+            return false;
+        }
+        float scale = (float) (1 / Math.sqrt(norm));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+        return true;
+    }
+
+    private void forEachBook(Collection<Long> ids, Consumer<Book> action) {
+        List<Long> batch = new ArrayList<>(PATCH_CHUNK_SIZE);
+        for (Long id : ids) {
+            batch.add(id);
+            if (batch.size() == PATCH_CHUNK_SIZE) {
+                bookRepository.findAllById(batch).forEach(action);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            bookRepository.findAllById(batch).forEach(action);
+        }
+    }
+
+    private synchronized void save() {
+        if (path == null || path.isBlank()) {
+            return;
+        }
+        Path target = Path.of(path);
+        try {
+            if (target.getParent() != null) {
+                Files.createDirectories(target.getParent());
+            }
+            Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeLong(LocalDateTime.now().toEpochSecond(ZoneOffset.UTC));
+                current().write(out);
+            }
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("Could not save embedding index to {}: {}", target, e.getMessage());
+        }
+    }
+}
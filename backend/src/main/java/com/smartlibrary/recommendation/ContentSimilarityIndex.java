@@ -0,0 +1,432 @@
+package com.smartlibrary.recommendation;
+
+import com.smartlibrary.model.Book;
+import com.smartlibrary.search.CatalogIndex;
+import com.smartlibrary.search.TextAnalyzer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * "Books like this one" by text: cosine similarity of TF-IDF vectors over title,
+ * description, category and publisher, so books without any activity yet still get
+ * similar lists.
+ *
+ * Vectors are sorted term/weight array pairs and postings plain int arrays. After a full rebuild every book's
+ * top-N neighbours are computed in parallel: candidates come from the postings of its
+ * terms and are scored by merging the two sparse vectors. Saving a book recomputes its own
+ * list and offers it to the lists of the books it matched. Terms carried by more than
+ * {@code maxPostings} books (large categories, common words) still count in the scores but
+ * are not walked to find candidates, which bounds the cost per book.
+ */
+@Component
+public class ContentSimilarityIndex extends CatalogIndex<ContentSimilarityIndex.Corpus> {
+
+    private static final float TITLE_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float PUBLISHER_WEIGHT = 1f;
+
+    @Value("${smartlibrary.content-similarity.neighbours:20}")
+    private int neighbourCount;
+
+    @Value("${smartlibrary.content-similarity.max-postings:5000}")
+    private int maxPostings;
+
+    @Value("${smartlibrary.content-similarity.parallelism:0}")
+    private int parallelism;
+
+    @Override
+    protected Corpus createEmpty() {
+        return new Corpus();
+    }
+
+    @Override
+    protected void add(Corpus corpus, Book book) {
+        corpus.put(book, neighbourCount, maxPostings);
+    }
+
+    @Override
+    protected void remove(Corpus corpus, long bookId) {
+        corpus.remove(bookId);
+    }
+
+    @Override
+    protected void afterRebuild(Corpus corpus) {
+        corpus.index(neighbourCount, maxPostings, parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    /** Up to {@code limit} most similar book ids, best first; empty before the first rebuild. */
+    public List<Long> similar(long bookId, int limit) {
+        return current().similar(bookId, limit);
+    }
+
+    static final class Corpus {
+        private static final int[] NO_INTS = new int[0];
+        private static final float[] NO_FLOATS = new float[0];
+
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final Map<String, Integer> termIds = new HashMap<>();
+        private final Map<Long, Integer> slotByBook = new HashMap<>();
+        private int[] documentFrequency = new int[1024];
+        private int[] postingSize = new int[1024];
+        private int[][] postingSlots = new int[1024][];
+        private long[] bookIds = new long[1024];
+        private int[][] docTerms = new int[1024][];
+        private float[][] docCounts = new float[1024][];
+        private float[][] docWeights = new float[1024][];
+        private int[][] neighbourSlots = new int[1024][];
+        private float[][] neighbourScores = new float[1024][];
+        private int slots;
+        private int liveDocs;
+        // false while a rebuild streams books in: only raw vectors are kept until index()
+        private boolean indexed;
+        private Scratch scratch;
+
+        void put(Book book, int neighbourCount, int maxPostings) {
+            lock.writeLock().lock();
+            try {
+                Integer existing = slotByBook.get(book.getId());
+                int slot;
+                if (existing != null) {
+                    slot = existing;
+                    unindex(slot);
+                } else {
+                    slot = slots++;
+                    ensureSlotCapacity(slot);
+                    slotByBook.put(book.getId(), slot);
+                    bookIds[slot] = book.getId();
+                    liveDocs++;
+                }
+                vectorize(slot, book);
+                if (indexed) {
+                    weigh(slot);
+                    addPostings(slot);
+                    if (scratch == null || scratch.scores.length < slots) {
+                        scratch = new Scratch(Math.max(slots * 2, 1024));
+                    }
+                    int matched = neighbours(slot, neighbourCount, maxPostings, scratch, true);
+                    // a book that used to match this one keeps its score until the next rebuild
+                    for (int t = 0; t < matched; t++) {
+                        offer(scratch.collected[t], slot, scratch.collectedScores[t], neighbourCount);
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long bookId) {
+            lock.writeLock().lock();
+            try {
+                Integer slot = slotByBook.remove(bookId);
+                if (slot == null) {
+                    return;
+                }
+                unindex(slot);
+                bookIds[slot] = 0;
+                docTerms[slot] = null;
+                docCounts[slot] = null;
+                docWeights[slot] = null;
+                neighbourSlots[slot] = null;
+                neighbourScores[slot] = null;
+                liveDocs--;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void index(int neighbourCount, int maxPostings, int parallelism) {
+            lock.writeLock().lock();
+            try {
+                for (int slot = 0; slot < slots; slot++) {
+                    if (docTerms[slot] != null) {
+                        weigh(slot);
+                        addPostings(slot);
+                    }
+                }
+                int count = slots;
+                ThreadLocal<Scratch> scratches = ThreadLocal.withInitial(() -> new Scratch(count));
+                ForkJoinPool pool = new ForkJoinPool(parallelism);
+                try {
+                    pool.submit(() -> IntStream.range(0, count).parallel()
+                        .filter(slot -> docTerms[slot] != null)
+                        .forEach(slot -> neighbours(slot, neighbourCount, maxPostings, scratches.get(), false)))
+                        .get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Content similarity build interrupted", e);
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("Content similarity build failed", e.getCause());
+                } finally {
+                    pool.shutdown();
+                }
+                indexed = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        List<Long> similar(long bookId, int limit) {
+            lock.readLock().lock();
+            try {
+                Integer slot = slotByBook.get(bookId);
+                if (slot == null || neighbourSlots[slot] == null) {
+                    return List.of();
+                }
+                List<Long> ids = new ArrayList<>(Math.min(limit, neighbourSlots[slot].length));
+                for (int other : neighbourSlots[slot]) {
+                    if (ids.size() >= limit) {
+                        break;
+                    }
+                    if (bookIds[other] != 0) {
+                        ids.add(bookIds[other]);
+                    }
+                }
+                return ids;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private void vectorize(int slot, Book book) {
+            Map<Integer, Float> counts = new HashMap<>();
+            count(counts, TextAnalyzer.analyze(book.getTitle()), TITLE_WEIGHT);
+            count(counts, TextAnalyzer.analyze(book.getDescription()), DESCRIPTION_WEIGHT);
+            if (book.getCategory() != null) {
+                count(counts, List.of("category:" + book.getCategory().toLowerCase(Locale.ROOT)), CATEGORY_WEIGHT);
+            }
+            if (book.getPublisher() != null) {
+                count(counts, List.of("publisher:" + TextAnalyzer.normalize(book.getPublisher())), PUBLISHER_WEIGHT);
+            }
+            int[] terms = counts.keySet().stream().mapToInt(Integer::intValue).sorted().toArray();
+            float[] values = new float[terms.length];
+            for (int i = 0; i < terms.length; i++) {
+                values[i] = counts.get(terms[i]);
+                documentFrequency[terms[i]]++;
+            }
+            docTerms[slot] = terms;
+            docCounts[slot] = values;
+        }
+
+        private void count(Map<Integer, Float> counts, List<String> tokens, float weight) {
+            for (String token : tokens) {
+                int term = termIds.computeIfAbsent(token, t -> newTerm());
+                counts.merge(term, weight, Float::sum);
+            }
+        }
+
+        private int newTerm() {
+            int term = termIds.size();
+            if (term == documentFrequency.length) {
+                int capacity = term * 2;
+                documentFrequency = Arrays.copyOf(documentFrequency, capacity);
+                postingSize = Arrays.copyOf(postingSize, capacity);
+                postingSlots = Arrays.copyOf(postingSlots, capacity);
+            }
+            return term;
+        }
+
+        // sublinear tf times smoothed idf, L2-normalized
+        private void weigh(int slot) {
+            int[] terms = docTerms[slot];
+            float[] counts = docCounts[slot];
+            float[] weights = new float[terms.length];
+            double norm = 0;
+            for (int i = 0; i < terms.length; i++) {
+                double idf = Math.log((liveDocs + 1.0) / (documentFrequency[terms[i]] + 1.0)) + 1;
+                weights[i] = (float) ((1 + Math.log(counts[i])) * idf);
+                norm += weights[i] * weights[i];
+            }
+            float scale = norm == 0 ? 0 : (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] *= scale;
+            }
+            docWeights[slot] = weights;
+        }
+
+        private void addPostings(int slot) {
+            for (int term : docTerms[slot]) {
+                int size = postingSize[term];
+                if (postingSlots[term] == null) {
+                    postingSlots[term] = new int[4];
+                } else if (size == postingSlots[term].length) {
+                    postingSlots[term] = Arrays.copyOf(postingSlots[term], size * 2);
+                }
+                postingSlots[term][size] = slot;
+                postingSize[term]++;
+            }
+        }
+
+        private void unindex(int slot) {
+            int[] terms = docTerms[slot];
+            if (terms == null) {
+                return;
+            }
+            for (int term : terms) {
+                documentFrequency[term]--;
+                if (!indexed) {
+                    continue;
+                }
+                int[] postings = postingSlots[term];
+                int size = postingSize[term];
+                for (int i = 0; i < size; i++) {
+                    if (postings[i] == slot) {
+                        postings[i] = postings[size - 1];
+                        postingSize[term]--;
+                        break;
+                    }
+                }
+            }
+        }
+
+        /**
+         * Computes and stores the slot's top neighbours. With {@code collect} every slot that
+         * scored against it is also left in the scratch's collected arrays, and their number
+         * returned, so the caller can offer the slot back to them.
+         */
+        private int neighbours(int slot, int neighbourCount, int maxPostings, Scratch scratch, boolean collect) {
+            float[] scores = scratch.scores;
+            int[] touched = scratch.touched;
+            int touchedCount = 0;
+            int rarest = -1;
+            for (int term : docTerms[slot]) {
+                if (postingSize[term] <= maxPostings) {
+                    touchedCount = collectCandidates(term, postingSize[term], slot, scratch, touchedCount);
+                } else if (rarest < 0 || postingSize[term] < postingSize[rarest]) {
+                    rarest = term;
+                }
+            }
+            // only common terms: sample the rarest of them rather than return nothing
+            if (touchedCount == 0 && rarest >= 0) {
+                touchedCount = collectCandidates(rarest, maxPostings, slot, scratch, touchedCount);
+            }
+            // candidates came from the rare terms only; score them on the full vectors
+            for (int t = 0; t < touchedCount; t++) {
+                scores[touched[t]] = dot(slot, touched[t]);
+            }
+            int capacity = Math.min(neighbourCount, touchedCount);
+            int[] best = new int[capacity];
+            float[] bestScores = new float[capacity];
+            int size = 0;
+            for (int t = 0; t < touchedCount; t++) {
+                int other = touched[t];
+                size = insert(best, bestScores, size, other, scores[other]);
+                if (collect) {
+                    scratch.collected[t] = other;
+                    scratch.collectedScores[t] = scores[other];
+                }
+                scores[other] = 0;
+                scratch.seen[other] = false;
+            }
+            neighbourSlots[slot] = Arrays.copyOf(best, size);
+            neighbourScores[slot] = Arrays.copyOf(bestScores, size);
+            return collect ? touchedCount : 0;
+        }
+
+        private int collectCandidates(int term, int limit, int slot, Scratch scratch, int touchedCount) {
+            int[] postings = postingSlots[term];
+            for (int p = 0, size = Math.min(limit, postingSize[term]); p < size; p++) {
+                int other = postings[p];
+                if (other != slot && !scratch.seen[other]) {
+                    scratch.seen[other] = true;
+                    scratch.touched[touchedCount++] = other;
+                }
+            }
+            return touchedCount;
+        }
+
+        // cosine of two normalized vectors by merging their sorted term arrays
+        private float dot(int a, int b) {
+            int[] termsA = docTerms[a];
+            int[] termsB = docTerms[b];
+            float[] weightsA = docWeights[a];
+            float[] weightsB = docWeights[b];
+            float sum = 0;
+            int i = 0;
+            int j = 0;
+            while (i < termsA.length && j < termsB.length) {
+                if (termsA[i] == termsB[j]) {
+                    sum += weightsA[i++] * weightsB[j++];
+                } else if (termsA[i] < termsB[j]) {
+                    i++;
+                } else {
+                    j++;
+                }
+            }
+            return sum;
+        }
+
+        private void offer(int slot, int candidate, float score, int neighbourCount) {
+            int[] current = neighbourSlots[slot] == null ? NO_INTS : neighbourSlots[slot];
+            float[] currentScores = neighbourScores[slot] == null ? NO_FLOATS : neighbourScores[slot];
+            int[] items = new int[neighbourCount];
+            float[] scores = new float[neighbourCount];
+            int size = 0;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] != candidate) {
+                    size = insert(items, scores, size, current[i], currentScores[i]);
+                }
+            }
+            size = insert(items, scores, size, candidate, score);
+            neighbourSlots[slot] = Arrays.copyOf(items, size);
+            neighbourScores[slot] = Arrays.copyOf(scores, size);
+        }
+
+        private void ensureSlotCapacity(int slot) {
+            if (slot < bookIds.length) {
+                return;
+            }
+            int capacity = bookIds.length * 2;
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            docTerms = Arrays.copyOf(docTerms, capacity);
+            docCounts = Arrays.copyOf(docCounts, capacity);
+            docWeights = Arrays.copyOf(docWeights, capacity);
+            neighbourSlots = Arrays.copyOf(neighbourSlots, capacity);
+            neighbourScores = Arrays.copyOf(neighbourScores, capacity);
+        }
+
+        // keeps items/scores sorted by score descending, dropping the lowest when full
+        private static int insert(int[] items, float[] scores, int size, int item, float score) {
+            if (items.length == 0 || (size == items.length && score <= scores[size - 1])) {
+                return size;
+            }
+            int position = size == items.length ? size - 1 : size;
+            while (position > 0 && scores[position - 1] < score) {
+                items[position] = items[position - 1];
+                scores[position] = scores[position - 1];
+                position--;
+            }
+            items[position] = item;
+            scores[position] = score;
+            return Math.min(size + 1, items.length);
+        }
+    }
+
+    /** Candidate set and scores over the slot space, one per thread. */
+    private static final class Scratch {
+        final float[] scores;
+        final boolean[] seen;
+        final int[] touched;
+        final int[] collected;
+        final float[] collectedScores;
+
+        Scratch(int slots) {
+            scores = new float[slots];
+            seen = new boolean[slots];
+            touched = new int[slots];
+            collected = new int[slots];
+            collectedScores = new float[slots];
+        }
+    }
+}
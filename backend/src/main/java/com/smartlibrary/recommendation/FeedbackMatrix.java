@@ -0,0 +1,200 @@
+package com.smartlibrary.recommendation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sparse reader x book feedback in compressed-row form, stored twice (by reader and by
+ * book) so both halves of an ALS sweep read contiguous rows.
+ *
+ * Each cell packs the implicit-feedback pair into one float: the magnitude is the extra
+ * confidence {@code c - 1} and the sign is the preference, positive for "liked" and
+ * negative for an explicit low rating.
+ */
+final class FeedbackMatrix {
+
+    private final long[] userIds;
+    private final long[] itemIds;
+    private final Map<Long, Integer> userIndex;
+    private final Map<Long, Integer> itemIndex;
+    private final int[] userOffsets;
+    private final int[] userItems;
+    private final float[] userValues;
+    private final int[] itemOffsets;
+    private final int[] itemUsers;
+    private final float[] itemValues;
+
+    private FeedbackMatrix(long[] userIds, long[] itemIds, Map<Long, Integer> userIndex, Map<Long, Integer> itemIndex,
+                           int[] userOffsets, int[] userItems, float[] userValues,
+                           int[] itemOffsets, int[] itemUsers, float[] itemValues) {
+        this.userIds = userIds;
+        this.itemIds = itemIds;
+        this.userIndex = userIndex;
+        this.itemIndex = itemIndex;
+        this.userOffsets = userOffsets;
+        this.userItems = userItems;
+        this.userValues = userValues;
+        this.itemOffsets = itemOffsets;
+        this.itemUsers = itemUsers;
+        this.itemValues = itemValues;
+    }
+
+    int userCount() {
+        return userIds.length;
+    }
+
+    int itemCount() {
+        return itemIds.length;
+    }
+
+    long cellCount() {
+        return userItems.length;
+    }
+
+    Integer user(long userId) {
+        return userIndex.get(userId);
+    }
+
+    Integer item(long bookId) {
+        return itemIndex.get(bookId);
+    }
+
+    long itemId(int item) {
+        return itemIds[item];
+    }
+
+    /** Cells of a reader are {@code userOffsets[u] .. userOffsets[u + 1]}, sorted by item. */
+    int[] userOffsets() { return userOffsets; }
+
+    int[] userItems() { return userItems; }
+
+    float[] userValues() { return userValues; }
+
+    int[] itemOffsets() { return itemOffsets; }
+
+    int[] itemUsers() { return itemUsers; }
+
+    float[] itemValues() { return itemValues; }
+
+    /** Collects (reader, book, value) triples; repeated pairs are merged when built. */
+    static final class Builder {
+        private final Map<Long, Integer> userIndex = new HashMap<>();
+        private final Map<Long, Integer> itemIndex = new HashMap<>();
+        private long[] userIds = new long[1024];
+        private long[] itemIds = new long[1024];
+        private int[] users = new int[1024];
+        private int[] items = new int[1024];
+        private float[] values = new float[1024];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(long userId, long bookId, float value) {
+            if (size == users.length) {
+                users = Arrays.copyOf(users, size * 2);
+                items = Arrays.copyOf(items, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            users[size] = userIndex.computeIfAbsent(userId, id -> {
+                userIds = grow(userIds, userIndex.size());
+                userIds[userIndex.size()] = id;
+                return userIndex.size();
+            });
+            items[size] = itemIndex.computeIfAbsent(bookId, id -> {
+                itemIds = grow(itemIds, itemIndex.size());
+                itemIds[itemIndex.size()] = id;
+                return itemIndex.size();
+            });
+            values[size] = value;
+            size++;
+        }
+
+        FeedbackMatrix build() {
+            int userCount = userIndex.size();
+            int itemCount = itemIndex.size();
+            int[] userOffsets = new int[userCount + 1];
+            int[] rowItems = new int[size];
+            float[] rowValues = new float[size];
+            scatter(users, items, values, size, userCount, userOffsets, rowItems, rowValues);
+
+            // merge repeated (reader, book) cells; confidences add and a dislike wins
+            int[] mergedOffsets = new int[userCount + 1];
+            int longestRow = 0;
+            for (int u = 0; u < userCount; u++) {
+                longestRow = Math.max(longestRow, userOffsets[u + 1] - userOffsets[u]);
+            }
+            long[] buffer = new long[longestRow];
+            int cells = 0;
+            for (int u = 0; u < userCount; u++) {
+                int start = userOffsets[u];
+                int end = userOffsets[u + 1];
+                sortRow(rowItems, rowValues, start, end, buffer);
+                mergedOffsets[u] = cells;
+                for (int i = start; i < end; i++) {
+                    if (cells > mergedOffsets[u] && rowItems[cells - 1] == rowItems[i]) {
+                        float a = rowValues[cells - 1];
+                        float b = rowValues[i];
+                        float magnitude = Math.abs(a) + Math.abs(b);
+                        rowValues[cells - 1] = a < 0 || b < 0 ? -magnitude : magnitude;
+                    } else {
+                        rowItems[cells] = rowItems[i];
+                        rowValues[cells] = rowValues[i];
+                        cells++;
+                    }
+                }
+            }
+            mergedOffsets[userCount] = cells;
+            int[] userItems = Arrays.copyOf(rowItems, cells);
+            float[] userValues = Arrays.copyOf(rowValues, cells);
+
+            int[] cellUsers = new int[cells];
+            for (int u = 0; u < userCount; u++) {
+                Arrays.fill(cellUsers, mergedOffsets[u], mergedOffsets[u + 1], u);
+            }
+            int[] itemOffsets = new int[itemCount + 1];
+            int[] itemUsers = new int[cells];
+            float[] itemValues = new float[cells];
+            scatter(userItems, cellUsers, userValues, cells, itemCount, itemOffsets, itemUsers, itemValues);
+
+            return new FeedbackMatrix(Arrays.copyOf(userIds, userCount), Arrays.copyOf(itemIds, itemCount),
+                userIndex, itemIndex, mergedOffsets, userItems, userValues, itemOffsets, itemUsers, itemValues);
+        }
+
+        // counting sort of the triples by row into compressed-row arrays
+        private static void scatter(int[] rows, int[] columns, float[] cellValues, int count, int rowCount,
+                                    int[] offsets, int[] outColumns, float[] outValues) {
+            for (int i = 0; i < count; i++) {
+                offsets[rows[i] + 1]++;
+            }
+            for (int r = 0; r < rowCount; r++) {
+                offsets[r + 1] += offsets[r];
+            }
+            int[] next = Arrays.copyOf(offsets, rowCount);
+            for (int i = 0; i < count; i++) {
+                int position = next[rows[i]]++;
+                outColumns[position] = columns[i];
+                outValues[position] = cellValues[i];
+            }
+        }
+
+        // sorts one row by column, carrying each value along in the low half of a long
+        private static void sortRow(int[] columns, float[] cellValues, int start, int end, long[] buffer) {
+            int length = end - start;
+            for (int i = 0; i < length; i++) {
+                buffer[i] = ((long) columns[start + i] << 32) | (Float.floatToRawIntBits(cellValues[start + i]) & 0xffffffffL);
+            }
+            Arrays.sort(buffer, 0, length);
+            for (int i = 0; i < length; i++) {
+                columns[start + i] = (int) (buffer[i] >>> 32);
+                cellValues[start + i] = Float.intBitsToFloat((int) buffer[i]);
+            }
+        }
+
+        private static long[] grow(long[] array, int needed) {
+            return needed < array.length ? array : Arrays.copyOf(array, array.length * 2);
+        }
+    }
+}
@@ -0,0 +1,417 @@
+package com.smartlibrary.recommendation;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical navigable small world graph for approximate cosine nearest neighbours
+ * (Malkov and Yashunin). Vectors must be L2-normalized; distance is {@code 1 - dot}.
+ *
+ * {@code m} bounds the links per node on the upper layers (twice that on layer 0) and
+ * {@code efConstruction} the candidate list while inserting; {@code ef} at query time
+ * trades recall for speed. Deletes are tombstones: the node still routes searches but is
+ * never returned, and a fresh build drops it. Searches may run concurrently; inserts and
+ * deletes are exclusive.
+ */
+final class HnswGraph {
+
+    private static final int FORMAT_VERSION = 1;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int dimensions;
+    private final int m;
+    private final int maxLinks0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random = new Random(42);
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    private final Map<Long, Integer> nodeByLabel = new HashMap<>();
+    private long[] labels = new long[1024];
+    private float[] vectors;
+    // links[node][level] holds the neighbour count in slot 0 followed by the neighbours
+    private int[][][] links = new int[1024][][];
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int topLevel = -1;
+
+    HnswGraph(int dimensions, int m, int efConstruction) {
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxLinks0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1 / Math.log(Math.max(m, 2));
+        this.vectors = new float[1024 * dimensions];
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int liveCount() {
+        lock.readLock().lock();
+        try {
+            return size - deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int deletedCount() {
+        lock.readLock().lock();
+        try {
+            return deletedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    boolean contains(long label) {
+        lock.readLock().lock();
+        try {
+            return nodeByLabel.containsKey(label);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Labels of all live nodes. */
+    List<Long> labels() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(nodeByLabel.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Copy of the label's vector, or null if it is not in the graph. */
+    float[] vector(long label) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodeByLabel.get(label);
+            return node == null ? null : Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Adds the vector under {@code label}, replacing (tombstoning) any earlier one. */
+    void insert(long label, float[] vector) {
+        lock.writeLock().lock();
+        try {
+            Integer previous = nodeByLabel.remove(label);
+            if (previous != null) {
+                tombstone(previous);
+            }
+            int node = size++;
+            ensureCapacity(node);
+            labels[node] = label;
+            System.arraycopy(vector, 0, vectors, node * dimensions, dimensions);
+            int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+            links[node] = new int[level + 1][];
+            for (int l = 0; l <= level; l++) {
+                links[node][l] = new int[(l == 0 ? maxLinks0 : m) + 1];
+            }
+            nodeByLabel.put(label, node);
+            if (entryPoint < 0) {
+                entryPoint = node;
+                topLevel = level;
+                return;
+            }
+            int current = entryPoint;
+            for (int l = topLevel; l > level; l--) {
+                current = greedyClosest(vector, current, l);
+            }
+            for (int l = Math.min(level, topLevel); l >= 0; l--) {
+                List<Candidate> candidates = searchLayer(vector, current, efConstruction, l);
+                int[] selected = selectNeighbours(candidates, l == 0 ? maxLinks0 : m);
+                for (int neighbour : selected) {
+                    connect(node, neighbour, l);
+                    connect(neighbour, node, l);
+                }
+                current = candidates.get(0).node;
+            }
+            if (level > topLevel) {
+                topLevel = level;
+                entryPoint = node;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void delete(long label) {
+        lock.writeLock().lock();
+        try {
+            Integer node = nodeByLabel.remove(label);
+            if (node != null) {
+                tombstone(node);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Labels of up to {@code k} live nodes closest to {@code query}, nearest first. */
+    List<Long> search(float[] query, int k, int ef) {
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0 || k <= 0) {
+                return List.of();
+            }
+            int current = entryPoint;
+            for (int l = topLevel; l > 0; l--) {
+                current = greedyClosest(query, current, l);
+            }
+            List<Candidate> candidates = searchLayer(query, current, Math.max(ef, k), 0);
+            List<Long> result = new ArrayList<>(k);
+            for (Candidate candidate : candidates) {
+                if (!deleted.get(candidate.node)) {
+                    result.add(labels[candidate.node]);
+                    if (result.size() == k) {
+                        break;
+                    }
+                }
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void tombstone(int node) {
+        if (!deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    private int greedyClosest(float[] query, int start, int level) {
+        int current = start;
+        float currentDistance = distance(query, current);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            int[] neighbours = links[current][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                float d = distance(query, neighbours[i]);
+                if (d < currentDistance) {
+                    currentDistance = d;
+                    current = neighbours[i];
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /** Best-first search of one layer; returns up to {@code ef} nodes, nearest first. */
+    private List<Candidate> searchLayer(float[] query, int start, int ef, int level) {
+        Visited seen = visited.get();
+        seen.reset(size);
+        PriorityQueue<Candidate> frontier = new PriorityQueue<>(Comparator.comparingDouble(c -> c.distance));
+        PriorityQueue<Candidate> nearest = new PriorityQueue<>(Comparator.comparingDouble(c -> -c.distance));
+        Candidate first = new Candidate(start, distance(query, start));
+        seen.mark(start);
+        frontier.add(first);
+        nearest.add(first);
+        while (!frontier.isEmpty()) {
+            Candidate closest = frontier.poll();
+            if (closest.distance > nearest.peek().distance && nearest.size() >= ef) {
+                break;
+            }
+            int[] neighbours = links[closest.node][level];
+            for (int i = 1; i <= neighbours[0]; i++) {
+                int neighbour = neighbours[i];
+                if (!seen.mark(neighbour)) {
+                    continue;
+                }
+                float d = distance(query, neighbour);
+                if (nearest.size() < ef || d < nearest.peek().distance) {
+                    Candidate candidate = new Candidate(neighbour, d);
+                    frontier.add(candidate);
+                    nearest.add(candidate);
+                    if (nearest.size() > ef) {
+                        nearest.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> result = new ArrayList<>(nearest);
+        result.sort(Comparator.comparingDouble(c -> c.distance));
+        return result;
+    }
+
+    // the paper's heuristic: keep a candidate only if it is closer to the base than to any kept one
+    private int[] selectNeighbours(List<Candidate> candidates, int max) {
+        int[] selected = new int[max];
+        int count = 0;
+        for (Candidate candidate : candidates) {
+            if (count == max) {
+                break;
+            }
+            boolean diverse = true;
+            for (int i = 0; i < count && diverse; i++) {
+                diverse = distanceBetween(candidate.node, selected[i]) >= candidate.distance;
+            }
+            if (diverse) {
+                selected[count++] = candidate.node;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbours = links[from][level];
+        int max = neighbours.length - 1;
+        if (neighbours[0] < max) {
+            neighbours[++neighbours[0]] = to;
+            return;
+        }
+        // full: re-select among the current links plus the new one
+        List<Candidate> candidates = new ArrayList<>(max + 1);
+        for (int i = 1; i <= neighbours[0]; i++) {
+            candidates.add(new Candidate(neighbours[i], distanceBetween(from, neighbours[i])));
+        }
+        candidates.add(new Candidate(to, distanceBetween(from, to)));
+        candidates.sort(Comparator.comparingDouble(c -> c.distance));
+        int[] kept = selectNeighbours(candidates, max);
+        neighbours[0] = kept.length;
+        System.arraycopy(kept, 0, neighbours, 1, kept.length);
+    }
+
+    private float distance(float[] query, int node) {
+        float dot = 0;
+        int base = node * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            dot += query[i] * vectors[base + i];
+        }
+        return 1 - dot;
+    }
+
+    private float distanceBetween(int a, int b) {
+        float dot = 0;
+        int baseA = a * dimensions;
+        int baseB = b * dimensions;
+        for (int i = 0; i < dimensions; i++) {
+            dot += vectors[baseA + i] * vectors[baseB + i];
+        }
+        return 1 - dot;
+    }
+
+    private void ensureCapacity(int node) {
+        if (node < labels.length) {
+            return;
+        }
+        int capacity = labels.length * 2;
+        labels = Arrays.copyOf(labels, capacity);
+        links = Arrays.copyOf(links, capacity);
+        vectors = Arrays.copyOf(vectors, capacity * dimensions);
+    }
+
+    void write(DataOutputStream out) throws IOException {
+        lock.readLock().lock();
+        try {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(dimensions);
+            out.writeInt(m);
+            out.writeInt(efConstruction);
+            out.writeInt(size);
+            out.writeInt(entryPoint);
+            out.writeInt(topLevel);
+            for (int node = 0; node < size; node++) {
+                out.writeLong(labels[node]);
+                out.writeBoolean(deleted.get(node));
+                for (int i = 0; i < dimensions; i++) {
+                    out.writeFloat(vectors[node * dimensions + i]);
+                }
+                out.writeInt(links[node].length);
+                for (int[] level : links[node]) {
+                    out.writeInt(level.length);
+                    for (int i = 0; i <= level[0]; i++) {
+                        out.writeInt(level[i]);
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static HnswGraph read(DataInputStream in) throws IOException {
+        if (in.readInt() != FORMAT_VERSION) {
+            throw new IOException("Unsupported HNSW file version");
+        }
+        HnswGraph graph = new HnswGraph(in.readInt(), in.readInt(), in.readInt());
+        int size = in.readInt();
+        graph.entryPoint = in.readInt();
+        graph.topLevel = in.readInt();
+        for (int node = 0; node < size; node++) {
+            graph.ensureCapacity(node);
+            graph.labels[node] = in.readLong();
+            if (in.readBoolean()) {
+                graph.deleted.set(node);
+                graph.deletedCount++;
+            } else {
+                graph.nodeByLabel.put(graph.labels[node], node);
+            }
+            for (int i = 0; i < graph.dimensions; i++) {
+                graph.vectors[node * graph.dimensions + i] = in.readFloat();
+            }
+            int[][] levels = new int[in.readInt()][];
+            for (int l = 0; l < levels.length; l++) {
+                levels[l] = new int[in.readInt()];
+                levels[l][0] = in.readInt();
+                for (int i = 1; i <= levels[l][0]; i++) {
+                    levels[l][i] = in.readInt();
+                }
+            }
+            graph.links[node] = levels;
+        }
+        graph.size = size;
+        return graph;
+    }
+
+    private record Candidate(int node, float distance) {}
+
+    /** Visited marks reused across searches on one thread; an epoch bump clears them. */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int epoch;
+
+        void reset(int capacity) {
+            if (marks.length < capacity) {
+                marks = new int[Math.max(capacity, marks.length * 2)];
+                epoch = 0;
+            }
+            epoch++;
+            if (epoch == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                epoch = 1;
+            }
+        }
+
+        /** True if the node had not been visited yet. */
+        boolean mark(int node) {
+            if (marks[node] == epoch) {
+                return false;
+            }
+            marks[node] = epoch;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.smartlibrary.recommendation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Bipartite reader/book graph of "rated or borrowed" edges, with dense int indexes for
+ * both sides so similarity passes can work on primitive arrays.
+ *
+ * Each reader keeps at most {@code maxItemsPerUser} books; fed newest-first, that keeps
+ * the most recent history. Not thread-safe: owners guard it.
+ */
+final class InteractionGraph {
+
+    private static final int[] EMPTY = new int[0];
+
+    private final int maxItemsPerUser;
+
+    private final Map<Long, Integer> itemIndex = new HashMap<>();
+    private final Map<Long, Integer> userIndex = new HashMap<>();
+    private long[] itemIds = new long[1024];
+    private long[] userIds = new long[1024];
+    private int[][] itemUsers = new int[1024][];
+    private int[] itemUserCount = new int[1024];
+    private int[][] userItems = new int[1024][];
+    private int[] userItemCount = new int[1024];
+    private int items;
+    private int users;
+    private long edges;
+
+    InteractionGraph(int maxItemsPerUser) {
+        this.maxItemsPerUser = maxItemsPerUser;
+    }
+
+    /** Records the edge; false if it was already there or the reader's history is full. */
+    boolean add(long userId, long bookId) {
+        int user = userIndex.computeIfAbsent(userId, this::newUser);
+        int item = itemIndex.computeIfAbsent(bookId, this::newItem);
+        int[] history = userItems[user];
+        int count = userItemCount[user];
+        for (int i = 0; i < count; i++) {
+            if (history[i] == item) {
+                return false;
+            }
+        }
+        if (count >= maxItemsPerUser) {
+            return false;
+        }
+        userItems[user] = append(history, count, item);
+        userItemCount[user]++;
+        itemUsers[item] = append(itemUsers[item], itemUserCount[item], user);
+        itemUserCount[item]++;
+        edges++;
+        return true;
+    }
+
+    Integer item(long bookId) {
+        return itemIndex.get(bookId);
+    }
+
+    Integer user(long userId) {
+        return userIndex.get(userId);
+    }
+
+    long itemId(int item) {
+        return itemIds[item];
+    }
+
+    long userId(int user) {
+        return userIds[user];
+    }
+
+    int itemCount() {
+        return items;
+    }
+
+    int userCount() {
+        return users;
+    }
+
+    long edgeCount() {
+        return edges;
+    }
+
+    /** Backing array of the item's readers; only the first {@link #degreeOfItem} entries are valid. */
+    int[] usersOf(int item) {
+        return itemUsers[item] == null ? EMPTY : itemUsers[item];
+    }
+
+    int degreeOfItem(int item) {
+        return itemUserCount[item];
+    }
+
+    int[] itemsOf(int user) {
+        return userItems[user] == null ? EMPTY : userItems[user];
+    }
+
+    int degreeOfUser(int user) {
+        return userItemCount[user];
+    }
+
+    private int newItem(long bookId) {
+        if (items == itemIds.length) {
+            int capacity = items * 2;
+            itemIds = Arrays.copyOf(itemIds, capacity);
+            itemUsers = Arrays.copyOf(itemUsers, capacity);
+            itemUserCount = Arrays.copyOf(itemUserCount, capacity);
+        }
+        itemIds[items] = bookId;
+        return items++;
+    }
+
+    private int newUser(long userId) {
+        if (users == userIds.length) {
+            int capacity = users * 2;
+            userIds = Arrays.copyOf(userIds, capacity);
+            userItems = Arrays.copyOf(userItems, capacity);
+            userItemCount = Arrays.copyOf(userItemCount, capacity);
+        }
+        userIds[users] = userId;
+        return users++;
+    }
+
+    private static int[] append(int[] array, int count, int value) {
+        if (array == null) {
+            array = new int[4];
+        } else if (count == array.length) {
+            array = Arrays.copyOf(array, count * 2);
+        }
+        array[count] = value;
+        return array;
+    }
+}
@@ -0,0 +1,137 @@
+package com.smartlibrary.recommendation;
+
+import com.smartlibrary.event.InteractionEvent;
+import com.smartlibrary.repository.BorrowRecordRepository;
+import com.smartlibrary.repository.RatingRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streams ratings and borrow records newest first, in id-keyset chunks: into an
+ * {@link InteractionGraph} capped at {@code maxEdges} distinct edges, or as
+ * {@link InteractionEvent}s back to a given time.
+ */
+@Component
+public class InteractionLoader {
+
+    static final int CHUNK_SIZE = 5000;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    InteractionGraph load(long maxEdges, int maxItemsPerUser) {
+        InteractionGraph graph = new InteractionGraph(maxItemsPerUser);
+        long ratingsBefore = Long.MAX_VALUE;
+        long borrowsBefore = Long.MAX_VALUE;
+        boolean ratingsDone = false;
+        boolean borrowsDone = false;
+        // alternate between the tables so a cap cuts both histories at a similar age
+        while ((!ratingsDone || !borrowsDone) && graph.edgeCount() < maxEdges) {
+            if (!ratingsDone) {
+                List<Object[]> rows = ratingRepository.findInteractionsBefore(ratingsBefore, PageRequest.of(0, CHUNK_SIZE));
+                ratingsBefore = addAll(graph, rows, maxEdges, ratingsBefore);
+                ratingsDone = rows.size() < CHUNK_SIZE;
+            }
+            if (!borrowsDone && graph.edgeCount() < maxEdges) {
+                List<Object[]> rows = borrowRecordRepository.findInteractionsBefore(borrowsBefore, PageRequest.of(0, CHUNK_SIZE));
+                borrowsBefore = addAll(graph, rows, maxEdges, borrowsBefore);
+                borrowsDone = rows.size() < CHUNK_SIZE;
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Loads ratings and borrows as weighted feedback, newest first, up to {@code maxEntries}
+     * rows. A rating of {@code s} stars contributes {@code ratingValues[s]}, a borrow
+     * {@code borrowValue}.
+     */
+    FeedbackMatrix loadFeedback(long maxEntries, float[] ratingValues, float borrowValue) {
+        FeedbackMatrix.Builder builder = new FeedbackMatrix.Builder();
+        long ratingsBefore = Long.MAX_VALUE;
+        long borrowsBefore = Long.MAX_VALUE;
+        boolean ratingsDone = false;
+        boolean borrowsDone = false;
+        while ((!ratingsDone || !borrowsDone) && builder.size() < maxEntries) {
+            if (!ratingsDone) {
+                List<Object[]> rows = ratingRepository.findInteractionsBefore(ratingsBefore, PageRequest.of(0, CHUNK_SIZE));
+                for (Object[] row : rows) {
+                    if (builder.size() >= maxEntries) {
+                        break;
+                    }
+                    int stars = Math.max(1, Math.min(ratingValues.length - 1, ((Number) row[4]).intValue()));
+                    builder.add(((Number) row[1]).longValue(), ((Number) row[2]).longValue(), ratingValues[stars]);
+                    ratingsBefore = ((Number) row[0]).longValue();
+                }
+                ratingsDone = rows.size() < CHUNK_SIZE;
+            }
+            if (!borrowsDone && builder.size() < maxEntries) {
+                List<Object[]> rows = borrowRecordRepository.findInteractionsBefore(borrowsBefore, PageRequest.of(0, CHUNK_SIZE));
+                for (Object[] row : rows) {
+                    if (builder.size() >= maxEntries) {
+                        break;
+                    }
+                    builder.add(((Number) row[1]).longValue(), ((Number) row[2]).longValue(), borrowValue);
+                    borrowsBefore = ((Number) row[0]).longValue();
+                }
+                borrowsDone = rows.size() < CHUNK_SIZE;
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Replays recent activity as events, newest first per table. A table stops at the first
+     * chunk with nothing newer than {@code since}; ids only roughly follow time, so rows
+     * around the cut-off may be included or skipped.
+     */
+    public void replaySince(LocalDateTime since, Consumer<InteractionEvent> sink) {
+        long before = Long.MAX_VALUE;
+        List<Object[]> rows;
+        do {
+            rows = ratingRepository.findInteractionsBefore(before, PageRequest.of(0, CHUNK_SIZE));
+            before = replay(rows, since, InteractionEvent.Type.RATED, sink);
+        } while (rows.size() == CHUNK_SIZE && before > 0);
+        before = Long.MAX_VALUE;
+        do {
+            rows = borrowRecordRepository.findInteractionsBefore(before, PageRequest.of(0, CHUNK_SIZE));
+            before = replay(rows, since, InteractionEvent.Type.BORROWED, sink);
+        } while (rows.size() == CHUNK_SIZE && before > 0);
+    }
+
+    // returns the id to continue below, or 0 once the chunk held nothing recent
+    private static long replay(List<Object[]> rows, LocalDateTime since, InteractionEvent.Type type,
+                               Consumer<InteractionEvent> sink) {
+        boolean recent = false;
+        for (Object[] row : rows) {
+            LocalDateTime time = (LocalDateTime) row[3];
+            if (time == null || time.isBefore(since)) {
+                continue;
+            }
+            recent = true;
+            Integer rating = row.length > 4 && row[4] != null ? ((Number) row[4]).intValue() : null;
+            sink.accept(new InteractionEvent(((Number) row[1]).longValue(), ((Number) row[2]).longValue(),
+                type, rating, time));
+        }
+        return recent && !rows.isEmpty() ? ((Number) rows.get(rows.size() - 1)[0]).longValue() : 0;
+    }
+
+    private static long addAll(InteractionGraph graph, List<Object[]> rows, long maxEdges, long before) {
+        for (Object[] row : rows) {
+            if (graph.edgeCount() >= maxEdges) {
+                break;
+            }
+            graph.add(((Number) row[1]).longValue(), ((Number) row[2]).longValue());
+            before = ((Number) row[0]).longValue();
+        }
+        return before;
+    }
+}
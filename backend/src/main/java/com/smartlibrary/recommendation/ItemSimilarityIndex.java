@@ -0,0 +1,303 @@
+package com.smartlibrary.recommendation;
+
+import com.smartlibrary.event.InteractionEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+
+/**
+ * "Readers who rated or borrowed this also rated or borrowed" neighbours for every book.
+ *
+ * Similarity is the cosine of the books' reader sets. A batch pass computes the top-N
+ * neighbour list of each book in parallel, walking at most {@code maxUsersPerItem} readers
+ * per book so popular titles stay cheap; the interaction graph itself is capped in edges
+ * and in history per reader. New activity then updates the lists of the books involved
+ * incrementally, and a nightly rebuild clears the drift.
+ */
+@Component
+public class ItemSimilarityIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ItemSimilarityIndex.class);
+
+    @Autowired
+    private InteractionLoader interactionLoader;
+
+    @Value("${smartlibrary.similarity.neighbours:20}")
+    private int neighbourCount;
+
+    @Value("${smartlibrary.similarity.max-interactions:2000000}")
+    private long maxInteractions;
+
+    @Value("${smartlibrary.similarity.max-items-per-user:200}")
+    private int maxItemsPerUser;
+
+    @Value("${smartlibrary.similarity.max-users-per-item:1000}")
+    private int maxUsersPerItem;
+
+    @Value("${smartlibrary.similarity.parallelism:0}")
+    private int parallelism;
+
+    private volatile Model model;
+    private volatile boolean rebuilding;
+    private final Queue<InteractionEvent> missedDuringRebuild = new ConcurrentLinkedQueue<>();
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "similarity-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private record Neighbours(int[] items, float[] scores) {
+        static final Neighbours NONE = new Neighbours(new int[0], new float[0]);
+    }
+
+    private static final class Model {
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        final InteractionGraph graph;
+        Neighbours[] neighbours;
+        Scratch scratch;
+
+        Model(InteractionGraph graph, Neighbours[] neighbours) {
+            this.graph = graph;
+            this.neighbours = neighbours;
+        }
+    }
+
+    /** Per-thread co-occurrence accumulator over the item index space. */
+    private static final class Scratch {
+        final int[] counts;
+        final int[] touched;
+
+        Scratch(int items) {
+            counts = new int[items];
+            touched = new int[items];
+        }
+    }
+
+    private interface ScoreSink {
+        void accept(int item, float score);
+    }
+
+    public boolean isReady() {
+        return model != null;
+    }
+
+    /** Up to {@code limit} most similar book ids, best first; empty for books with no co-activity. */
+    public List<Long> similar(long bookId, int limit) {
+        Model current = model;
+        if (current == null) {
+            return List.of();
+        }
+        current.lock.readLock().lock();
+        try {
+            Integer item = current.graph.item(bookId);
+            if (item == null || item >= current.neighbours.length || current.neighbours[item] == null) {
+                return List.of();
+            }
+            int[] items = current.neighbours[item].items();
+            List<Long> ids = new ArrayList<>(Math.min(limit, items.length));
+            for (int i = 0; i < items.length && ids.size() < limit; i++) {
+                ids.add(current.graph.itemId(items[i]));
+            }
+            return ids;
+        } finally {
+            current.lock.readLock().unlock();
+        }
+    }
+
+    // a full pass can take minutes, so neither startup nor the scheduler waits for it
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${smartlibrary.similarity.rebuild-cron:0 30 3 * * *}")
+    public void rebuildInBackground() {
+        rebuilder.execute(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("ItemSimilarityIndex rebuild failed; keeping the previous lists", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stopRebuilding() {
+        rebuilder.shutdownNow();
+    }
+
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        rebuilding = true;
+        Model fresh;
+        try {
+            InteractionGraph graph = interactionLoader.load(maxInteractions, maxItemsPerUser);
+            fresh = new Model(graph, computeAll(graph));
+            model = fresh;
+        } finally {
+            rebuilding = false;
+        }
+        InteractionEvent missed;
+        while ((missed = missedDuringRebuild.poll()) != null) {
+            apply(fresh, missed);
+        }
+        log.info("ItemSimilarityIndex rebuilt from {} interactions over {} books in {} ms",
+            fresh.graph.edgeCount(), fresh.graph.itemCount(), System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInteraction(InteractionEvent event) {
+        if (!event.isInteraction()) {
+            return;
+        }
+        Model current = model;
+        if (current != null) {
+            apply(current, event);
+        }
+        if (rebuilding) {
+            missedDuringRebuild.add(event);
+        }
+    }
+
+    private Neighbours[] computeAll(InteractionGraph graph) {
+        int items = graph.itemCount();
+        Neighbours[] neighbours = new Neighbours[items];
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(items));
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            pool.submit(() -> IntStream.range(0, items).parallel()
+                .forEach(item -> neighbours[item] = topNeighbours(graph, item, scratch.get(), null)))
+                .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Similarity rebuild interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Similarity rebuild failed", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+        return neighbours;
+    }
+
+    /**
+     * Adds the edge, recomputes the book's own list, and offers the book to the lists of
+     * the reader's other books with its new score. Other lists that mention the book keep
+     * a slightly stale score until the next rebuild.
+     */
+    private void apply(Model current, InteractionEvent event) {
+        current.lock.writeLock().lock();
+        try {
+            InteractionGraph graph = current.graph;
+            if (!graph.add(event.getUserId(), event.getBookId())) {
+                return;
+            }
+            int item = graph.item(event.getBookId());
+            int user = graph.user(event.getUserId());
+            if (current.neighbours.length < graph.itemCount()) {
+                current.neighbours = Arrays.copyOf(current.neighbours, Math.max(graph.itemCount(),
+                    current.neighbours.length * 2));
+            }
+            if (current.scratch == null || current.scratch.counts.length < graph.itemCount()) {
+                current.scratch = new Scratch(graph.itemCount() * 2);
+            }
+            Set<Integer> history = new HashSet<>();
+            int[] items = graph.itemsOf(user);
+            for (int i = 0; i < graph.degreeOfUser(user); i++) {
+                if (items[i] != item) {
+                    history.add(items[i]);
+                }
+            }
+            Neighbours[] lists = current.neighbours;
+            lists[item] = topNeighbours(graph, item, current.scratch, (other, score) -> {
+                if (history.contains(other)) {
+                    lists[other] = offer(lists[other], item, score);
+                }
+            });
+        } finally {
+            current.lock.writeLock().unlock();
+        }
+    }
+
+    private Neighbours topNeighbours(InteractionGraph graph, int item, Scratch scratch, ScoreSink sink) {
+        int[] counts = scratch.counts;
+        int[] touched = scratch.touched;
+        int touchedCount = 0;
+        int[] readers = graph.usersOf(item);
+        int readerCount = Math.min(graph.degreeOfItem(item), maxUsersPerItem);
+        for (int r = 0; r < readerCount; r++) {
+            int user = readers[r];
+            int[] items = graph.itemsOf(user);
+            for (int i = 0, n = graph.degreeOfUser(user); i < n; i++) {
+                int other = items[i];
+                if (other != item && counts[other]++ == 0) {
+                    touched[touchedCount++] = other;
+                }
+            }
+        }
+        int[] best = new int[Math.min(neighbourCount, touchedCount)];
+        float[] bestScores = new float[best.length];
+        int size = 0;
+        double degree = graph.degreeOfItem(item);
+        for (int t = 0; t < touchedCount; t++) {
+            int other = touched[t];
+            float score = (float) (counts[other] / Math.sqrt(degree * graph.degreeOfItem(other)));
+            counts[other] = 0;
+            if (sink != null) {
+                sink.accept(other, score);
+            }
+            size = insert(best, bestScores, size, other, score);
+        }
+        return size == 0 ? Neighbours.NONE
+            : new Neighbours(Arrays.copyOf(best, size), Arrays.copyOf(bestScores, size));
+    }
+
+    private Neighbours offer(Neighbours current, int item, float score) {
+        int capacity = Math.max(neighbourCount, 1);
+        int[] items = new int[capacity];
+        float[] scores = new float[capacity];
+        int size = 0;
+        if (current != null) {
+            for (int i = 0; i < current.items().length; i++) {
+                if (current.items()[i] != item) {
+                    size = insert(items, scores, size, current.items()[i], current.scores()[i]);
+                }
+            }
+        }
+        size = insert(items, scores, size, item, score);
+        return new Neighbours(Arrays.copyOf(items, size), Arrays.copyOf(scores, size));
+    }
+
+    // keeps items/scores sorted by score descending, dropping the lowest when full
+    private static int insert(int[] items, float[] scores, int size, int item, float score) {
+        if (items.length == 0 || (size == items.length && score <= scores[size - 1])) {
+            return size;
+        }
+        int position = size == items.length ? size - 1 : size;
+        while (position > 0 && scores[position - 1] < score) {
+            items[position] = items[position - 1];
+            scores[position] = scores[position - 1];
+            position--;
+        }
+        items[position] = item;
+        scores[position] = score;
+        return Math.min(size + 1, items.length);
+    }
+}
@@ -0,0 +1,390 @@
+package com.smartlibrary.recommendation;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Personal recommendations from an implicit-feedback matrix factorization trained with
+ * alternating least squares.
+ *
+ * Ratings and borrows become (preference, confidence) cells: a borrow or a rating of three
+ * stars and up is a "liked" preference, one or two stars an explicit "not liked", and more
+ * stars or repeated activity raise the confidence. Each sweep solves every reader's factor
+ * row with the books fixed, then every book's with the readers fixed, in parallel on a
+ * dedicated fork/join pool and with the shared Gram matrix trick so the cost is linear in
+ * the number of cells. Factors are plain float arrays and a finished model replaces the
+ * previous one atomically.
+ */
+@Component
+public class MatrixFactorizationRecommender {
+
+    private static final Logger log = LoggerFactory.getLogger(MatrixFactorizationRecommender.class);
+
+    @Autowired
+    private InteractionLoader interactionLoader;
+
+    @Value("${smartlibrary.als.factors:32}")
+    private int factors;
+
+    @Value("${smartlibrary.als.iterations:10}")
+    private int iterations;
+
+    @Value("${smartlibrary.als.regularization:0.1}")
+    private double regularization;
+
+    @Value("${smartlibrary.als.alpha:10}")
+    private float alpha;
+
+    @Value("${smartlibrary.als.borrow-weight:1.0}")
+    private float borrowWeight;
+
+    @Value("${smartlibrary.als.max-interactions:20000000}")
+    private long maxInteractions;
+
+    @Value("${smartlibrary.als.parallelism:0}")
+    private int parallelism;
+
+    private volatile Model model;
+
+    private final ExecutorService trainer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "als-training");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Trained factors; never modified once published. */
+    static final class Model {
+        final FeedbackMatrix matrix;
+        final int rank;
+        final float[] userFactors;
+        final float[] itemFactors;
+
+        Model(FeedbackMatrix matrix, int rank, float[] userFactors, float[] itemFactors) {
+            this.matrix = matrix;
+            this.rank = rank;
+            this.userFactors = userFactors;
+            this.itemFactors = itemFactors;
+        }
+
+        float score(int user, int item) {
+            float sum = 0;
+            int u = user * rank;
+            int i = item * rank;
+            for (int f = 0; f < rank; f++) {
+                sum += userFactors[u + f] * itemFactors[i + f];
+            }
+            return sum;
+        }
+    }
+
+    public boolean isReady() {
+        return model != null;
+    }
+
+    /** Predicted preference of the reader for the book, or NaN if either is unknown to the model. */
+    public double score(long userId, long bookId) {
+        Model current = model;
+        if (current == null) {
+            return Double.NaN;
+        }
+        Integer user = current.matrix.user(userId);
+        Integer item = current.matrix.item(bookId);
+        return user == null || item == null ? Double.NaN : current.score(user, item);
+    }
+
+    /**
+     * Up to {@code limit} book ids the reader has not interacted with, best first; empty if
+     * the model is not trained yet or does not know the reader.
+     */
+    public List<Long> recommend(long userId, int limit) {
+        Model current = model;
+        if (current == null || limit <= 0) {
+            return List.of();
+        }
+        Integer user = current.matrix.user(userId);
+        if (user == null) {
+            return List.of();
+        }
+        int[] offsets = current.matrix.userOffsets();
+        int[] seen = current.matrix.userItems();
+        int next = offsets[user];
+        int end = offsets[user + 1];
+        TopK top = new TopK(limit);
+        for (int item = 0, items = current.matrix.itemCount(); item < items; item++) {
+            // the reader's cells are sorted by item, so skipping them is a merge
+            if (next < end && seen[next] == item) {
+                next++;
+                continue;
+            }
+            top.offer(item, current.score(user, item));
+        }
+        int[] best = top.drainDescending();
+        List<Long> ids = new ArrayList<>(best.length);
+        for (int item : best) {
+            ids.add(current.matrix.itemId(item));
+        }
+        return ids;
+    }
+
+    // training takes minutes on a large history, so neither startup nor the scheduler waits for it
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${smartlibrary.als.retrain-cron:0 0 4 * * *}")
+    public void trainInBackground() {
+        trainer.execute(() -> {
+            try {
+                retrain();
+            } catch (RuntimeException e) {
+                log.error("ALS training failed; keeping the previous model", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stopTraining() {
+        trainer.shutdownNow();
+    }
+
+    public synchronized void retrain() {
+        long started = System.currentTimeMillis();
+        float[] ratingValues = new float[6];
+        for (int stars = 1; stars <= 5; stars++) {
+            ratingValues[stars] = stars >= 3 ? alpha * (stars - 2) : -alpha * (3 - stars);
+        }
+        FeedbackMatrix matrix = interactionLoader.loadFeedback(maxInteractions, ratingValues, alpha * borrowWeight);
+        long loaded = System.currentTimeMillis();
+        model = train(matrix);
+        log.info("ALS model trained on {} cells ({} readers, {} books) in {} ms, {} ms loading",
+            matrix.cellCount(), matrix.userCount(), matrix.itemCount(),
+            System.currentTimeMillis() - loaded, loaded - started);
+    }
+
+    Model train(FeedbackMatrix matrix) {
+        int rank = factors;
+        float[] userFactors = new float[matrix.userCount() * rank];
+        float[] itemFactors = new float[matrix.itemCount() * rank];
+        Random random = new Random(42);
+        float scale = (float) (0.1 / Math.sqrt(rank));
+        for (int i = 0; i < itemFactors.length; i++) {
+            itemFactors[i] = (float) random.nextGaussian() * scale;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                solve(pool, rank, userFactors, matrix.userCount(), itemFactors, matrix.itemCount(),
+                    matrix.userOffsets(), matrix.userItems(), matrix.userValues());
+                solve(pool, rank, itemFactors, matrix.itemCount(), userFactors, matrix.userCount(),
+                    matrix.itemOffsets(), matrix.itemUsers(), matrix.itemValues());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        return new Model(matrix, rank, userFactors, itemFactors);
+    }
+
+    /**
+     * One half-sweep: for every row r solves
+     * {@code (FtF + Ft(C_r - I)F + lambda I) x_r = Ft C_r p_r}, where only the row's own
+     * cells contribute beyond the shared {@code FtF}.
+     */
+    private void solve(ForkJoinPool pool, int rank, float[] target, int rows, float[] fixed, int fixedRows,
+                       int[] offsets, int[] columns, float[] values) {
+        double[] gram = gram(fixed, fixedRows, rank);
+        ThreadLocal<double[][]> scratch = ThreadLocal.withInitial(() -> new double[][] {
+            new double[rank * rank], new double[rank]});
+        try {
+            pool.submit(() -> IntStream.range(0, rows).parallel().forEach(row -> {
+                double[][] buffers = scratch.get();
+                solveRow(rank, row, target, fixed, offsets, columns, values, gram, buffers[0], buffers[1]);
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("ALS training interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("ALS training failed", e.getCause());
+        }
+    }
+
+    private void solveRow(int rank, int row, float[] target, float[] fixed, int[] offsets, int[] columns,
+                          float[] values, double[] gram, double[] a, double[] b) {
+        int start = offsets[row];
+        int end = offsets[row + 1];
+        if (start == end) {
+            return;
+        }
+        System.arraycopy(gram, 0, a, 0, a.length);
+        Arrays.fill(b, 0);
+        for (int f = 0; f < rank; f++) {
+            a[f * rank + f] += regularization;
+        }
+        for (int cell = start; cell < end; cell++) {
+            float value = values[cell];
+            double confidence = Math.abs(value);
+            int base = columns[cell] * rank;
+            for (int i = 0; i < rank; i++) {
+                double yi = fixed[base + i];
+                double weighted = confidence * yi;
+                for (int j = i; j < rank; j++) {
+                    a[i * rank + j] += weighted * fixed[base + j];
+                }
+                if (value > 0) {
+                    b[i] += (1 + confidence) * yi;
+                }
+            }
+        }
+        for (int i = 0; i < rank; i++) {
+            for (int j = 0; j < i; j++) {
+                a[i * rank + j] = a[j * rank + i];
+            }
+        }
+        choleskySolve(a, b, rank);
+        int out = row * rank;
+        for (int f = 0; f < rank; f++) {
+            target[out + f] = (float) b[f];
+        }
+    }
+
+    private static double[] gram(float[] factors, int rows, int rank) {
+        double[] gram = new double[rank * rank];
+        for (int r = 0; r < rows; r++) {
+            int base = r * rank;
+            for (int i = 0; i < rank; i++) {
+                double fi = factors[base + i];
+                for (int j = i; j < rank; j++) {
+                    gram[i * rank + j] += fi * factors[base + j];
+                }
+            }
+        }
+        for (int i = 0; i < rank; i++) {
+            for (int j = 0; j < i; j++) {
+                gram[i * rank + j] = gram[j * rank + i];
+            }
+        }
+        return gram;
+    }
+
+    // a is symmetric positive definite (the regularizer guarantees it); b is replaced by x
+    private static void choleskySolve(double[] a, double[] b, int n) {
+        for (int j = 0; j < n; j++) {
+            double diagonal = a[j * n + j];
+            for (int k = 0; k < j; k++) {
+                diagonal -= a[j * n + k] * a[j * n + k];
+            }
+            diagonal = Math.sqrt(Math.max(diagonal, 1e-12));
+            a[j * n + j] = diagonal;
+            for (int i = j + 1; i < n; i++) {
+                double sum = a[i * n + j];
+                for (int k = 0; k < j; k++) {
+                    sum -= a[i * n + k] * a[j * n + k];
+                }
+                a[i * n + j] = sum / diagonal;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            double sum = b[i];
+            for (int k = 0; k < i; k++) {
+                sum -= a[i * n + k] * b[k];
+            }
+            b[i] = sum / a[i * n + i];
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            double sum = b[i];
+            for (int k = i + 1; k < n; k++) {
+                sum -= a[k * n + i] * b[k];
+            }
+            b[i] = sum / a[i * n + i];
+        }
+    }
+
+    /** Bounded min-heap of the best {@code capacity} (item, score) pairs seen so far. */
+    static final class TopK {
+        private final int[] items;
+        private final float[] scores;
+        private int size;
+
+        TopK(int capacity) {
+            items = new int[capacity];
+            scores = new float[capacity];
+        }
+
+        void offer(int item, float score) {
+            if (size < items.length) {
+                items[size] = item;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (score > scores[0]) {
+                items[0] = item;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        /** Items best first; empties the heap. */
+        int[] drainDescending() {
+            int[] result = new int[size];
+            for (int i = size - 1; i >= 0; i--) {
+                result[i] = items[0];
+                size--;
+                items[0] = items[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int item = items[a];
+            items[a] = items[b];
+            items[b] = item;
+            float score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.smartlibrary.recommendation;
+
+import com.smartlibrary.event.InteractionEvent;
+import com.smartlibrary.model.Book;
+import com.smartlibrary.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Books ranked by exponentially decayed borrow and rating activity.
+ *
+ * Scores use forward decay: an event at time t adds {@code weight * e^((t - landmark) / tau)}
+ * to a per-book {@link DoubleAdder}, so recording is a lock-free striped add and every
+ * score shares the same decay factor; ranking needs no per-read decay at all. A periodic
+ * refresh extracts the top K into an immutable snapshot of books, which is what requests
+ * read. Quiet books are pruned and the landmark is moved forward before the factors get
+ * large.
+ */
+@Component
+public class TrendingIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(TrendingIndex.class);
+
+    // rebase once the newest factor reaches e^REBASE_AFTER; far below double overflow
+    private static final double REBASE_AFTER = 30;
+    private static final double PRUNE_BELOW = 1e-3;
+
+    @Autowired
+    private InteractionLoader interactionLoader;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Value("${smartlibrary.trending.half-life-hours:72}")
+    private double halfLifeHours;
+
+    @Value("${smartlibrary.trending.size:100}")
+    private int size;
+
+    @Value("${smartlibrary.trending.borrow-weight:1.0}")
+    private double borrowWeight;
+
+    @Value("${smartlibrary.trending.rating-weight:0.5}")
+    private double ratingWeight;
+
+    private volatile Epoch epoch = new Epoch(System.currentTimeMillis());
+    private volatile List<Book> snapshot;
+
+    private static final class Epoch {
+        final long landmark;
+        final ConcurrentHashMap<Long, DoubleAdder> scores = new ConcurrentHashMap<>();
+
+        Epoch(long landmark) {
+            this.landmark = landmark;
+        }
+    }
+
+    /**
+     * The current top books, most trending first; null until the first refresh or when
+     * more are asked for than the snapshot holds.
+     */
+    public List<Book> top(int limit) {
+        List<Book> current = snapshot;
+        if (current == null || limit > size) {
+            return null;
+        }
+        return current.subList(0, Math.min(Math.max(limit, 0), current.size()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onInteraction(InteractionEvent event) {
+        if (event.isInteraction()) {
+            record(event);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        long started = System.currentTimeMillis();
+        // older activity has decayed below a few percent of a fresh event
+        LocalDateTime since = LocalDateTime.now().minusMinutes((long) (halfLifeHours * 60 * 5));
+        interactionLoader.replaySince(since, this::record);
+        refresh();
+        log.info("TrendingIndex warmed up with {} books in {} ms",
+            epoch.scores.size(), System.currentTimeMillis() - started);
+    }
+
+    @Scheduled(fixedDelayString = "${smartlibrary.trending.refresh-ms:10000}",
+               initialDelayString = "${smartlibrary.trending.refresh-ms:10000}")
+    public synchronized void refresh() {
+        long now = System.currentTimeMillis();
+        Epoch current = epoch;
+        double exponent = (now - current.landmark) / tauMillis();
+        if (exponent > REBASE_AFTER) {
+            current = rebase(current, now);
+            exponent = 0;
+        }
+        double threshold = PRUNE_BELOW * Math.exp(exponent);
+
+        PriorityQueue<Map.Entry<Long, Double>> best = new PriorityQueue<>(Map.Entry.comparingByValue());
+        for (Map.Entry<Long, DoubleAdder> entry : current.scores.entrySet()) {
+            double score = entry.getValue().sum();
+            if (score < threshold) {
+                current.scores.remove(entry.getKey(), entry.getValue());
+                continue;
+            }
+            if (best.size() < size) {
+                best.add(Map.entry(entry.getKey(), score));
+            } else if (score > best.peek().getValue()) {
+                best.poll();
+                best.add(Map.entry(entry.getKey(), score));
+            }
+        }
+        List<Long> ids = best.stream()
+            .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+            .map(Map.Entry::getKey)
+            .collect(Collectors.toList());
+
+        Map<Long, Book> loaded = new HashMap<>();
+        bookRepository.findAllById(ids).forEach(book -> loaded.put(book.getId(), book));
+        List<Book> books = new ArrayList<>();
+        for (Long id : ids) {
+            if (loaded.containsKey(id)) {
+                books.add(loaded.get(id));
+            }
+        }
+        // pad a quiet catalogue with the best rated books so the list is never short
+        if (books.size() < size) {
+            Set<Long> present = new HashSet<>(loaded.keySet());
+            bookRepository.findTopRatedBooks(PageRequest.of(0, size)).getContent().stream()
+                .filter(book -> present.add(book.getId()))
+                .limit(size - books.size())
+                .forEach(books::add);
+        }
+        snapshot = List.copyOf(books);
+    }
+
+    private void record(InteractionEvent event) {
+        double weight = event.getType() == InteractionEvent.Type.BORROWED ? borrowWeight : ratingWeight;
+        long time = event.getOccurredAt() == null ? System.currentTimeMillis()
+            : event.getOccurredAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Epoch current = epoch;
+        current.scores.computeIfAbsent(event.getBookId(), id -> new DoubleAdder())
+            .add(weight * Math.exp((time - current.landmark) / tauMillis()));
+    }
+
+    /**
+     * Moves the landmark to {@code now}, scaling every score down to match. Adds that
+     * race the swap may land in the retired epoch and be lost; at most a few events,
+     * once every REBASE_AFTER time constants.
+     */
+    private Epoch rebase(Epoch old, long now) {
+        Epoch fresh = new Epoch(now);
+        epoch = fresh;
+        double scale = Math.exp(-(now - old.landmark) / tauMillis());
+        old.scores.forEach((id, score) ->
+            fresh.scores.computeIfAbsent(id, key -> new DoubleAdder()).add(score.sum() * scale));
+        return fresh;
+    }
+
+    private double tauMillis() {
+        return halfLifeHours * 3_600_000 / Math.log(2);
+    }
+}
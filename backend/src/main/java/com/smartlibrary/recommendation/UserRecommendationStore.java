@@ -0,0 +1,130 @@
+package com.smartlibrary.recommendation;
+
+import com.smartlibrary.event.InteractionEvent;
+import com.smartlibrary.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Precomputed recommendations for recently active users, in a size-capped LRU.
+ *
+ * A user becomes active by asking; a miss is computed live by the caller and stored. The
+ * user's own borrows, returns and ratings drop the entry, and a scheduled job recomputes
+ * dropped and aged entries of users that are still active, so most requests are a map
+ * lookup. Versions keep a computation that raced an invalidation from being stored.
+ */
+@Component
+public class UserRecommendationStore {
+
+    /** What is kept per user: the ranked candidates and the categories they came from. */
+    public record Entry(List<Book> books, List<String> preferredCategories) {}
+
+    private static final class Slot {
+        Entry entry;
+        long version;
+        long computedAt;
+        long lastAccess;
+    }
+
+    private final int maxUsers;
+    private final int size;
+    private final long maxAgeMillis;
+    private final long activeWindowMillis;
+    private final LinkedHashMap<Long, Slot> slots;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public UserRecommendationStore(@Value("${smartlibrary.user-recommendations.max-users:50000}") int maxUsers,
+                                   @Value("${smartlibrary.user-recommendations.size:20}") int size,
+                                   @Value("${smartlibrary.user-recommendations.max-age-minutes:30}") long maxAgeMinutes,
+                                   @Value("${smartlibrary.user-recommendations.active-window-hours:24}") long activeWindowHours) {
+        this.maxUsers = maxUsers;
+        this.size = size;
+        this.maxAgeMillis = maxAgeMinutes * 60_000;
+        this.activeWindowMillis = activeWindowHours * 3_600_000;
+        this.slots = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Slot> eldest) {
+                return size() > UserRecommendationStore.this.maxUsers;
+            }
+        };
+    }
+
+    /** Number of recommendations kept per user; callers compute this many. */
+    public int size() {
+        return size;
+    }
+
+    /** The stored entry, or null if the user has none; either way marks the user active. */
+    public synchronized Entry get(long userId) {
+        Slot slot = slots.computeIfAbsent(userId, id -> new Slot());
+        slot.lastAccess = System.currentTimeMillis();
+        if (slot.entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return slot.entry;
+    }
+
+    /** Current version for the user; pass it back to {@link #put} with the computed entry. */
+    public synchronized long version(long userId) {
+        Slot slot = slots.get(userId);
+        return slot == null ? -1 : slot.version;
+    }
+
+    /** Stores the entry unless the user was invalidated or evicted since {@code version} was read. */
+    public synchronized void put(long userId, long version, Entry entry) {
+        Slot slot = slots.get(userId);
+        if (slot != null && slot.version == version) {
+            slot.entry = entry;
+            slot.computedAt = System.currentTimeMillis();
+        }
+    }
+
+    /** Active users whose entry is missing or older than the max age, least recently seen first. */
+    public synchronized List<Long> dueForRefresh(int max) {
+        long now = System.currentTimeMillis();
+        List<Long> due = new ArrayList<>();
+        for (Map.Entry<Long, Slot> e : slots.entrySet()) {
+            Slot slot = e.getValue();
+            if (now - slot.lastAccess <= activeWindowMillis
+                    && (slot.entry == null || now - slot.computedAt > maxAgeMillis)) {
+                due.add(e.getKey());
+                if (due.size() >= max) {
+                    break;
+                }
+            }
+        }
+        return due;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onInteraction(InteractionEvent event) {
+        Slot slot = slots.get(event.getUserId());
+        if (slot != null) {
+            slot.entry = null;
+            slot.version++;
+            invalidations.incrementAndGet();
+        }
+    }
+
+    public synchronized Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("users", slots.size());
+        stats.put("maxUsers", maxUsers);
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+}
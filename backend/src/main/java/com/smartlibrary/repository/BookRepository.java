@@ -1,21 +1,31 @@
 package com.smartlibrary.repository;
 
 import com.smartlibrary.model.Book;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BookRepository extends JpaRepository<Book, Long> {
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
     
     Optional<Book> findByIsbn(String isbn);
     
+    /** Locks the book's row until the transaction ends, so an edit sees the exact copy count it replaces. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM Book b WHERE b.id = :id")
+    Optional<Book> findByIdForUpdate(@Param("id") Long id);
+    
     List<Book> findByTitleContainingIgnoreCase(String title);
     
     List<Book> findByAuthorContainingIgnoreCase(String author);
@@ -24,6 +34,28 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     
     List<Book> findByLanguage(String language);
     
+    List<Book> findByIdGreaterThanOrderByIdAsc(Long lastId, Pageable pageable);
+    
+    @Query("SELECT b.id FROM Book b")
+    List<Long> findAllIds();
+    
+    /** (id, availableCopies) in id order after {@code afterId}, for keyset-paged bulk loads. */
+    @Query("SELECT b.id, b.availableCopies FROM Book b WHERE b.id > :afterId ORDER BY b.id")
+    List<Object[]> findAvailabilityAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /** (id, availableCopies) of the given books that exist. */
+    @Query("SELECT b.id, b.availableCopies FROM Book b WHERE b.id IN :ids")
+    List<Object[]> findAvailability(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT MAX(b.id) FROM Book b")
+    Long findMaxId();
+    
+    @Query("SELECT b.id FROM Book b WHERE b.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+    
+    @Query("SELECT b.id FROM Book b WHERE b.updatedAt > :since")
+    List<Long> findIdsUpdatedAfter(@Param("since") LocalDateTime since);
+    
     @Query("SELECT DISTINCT b.category FROM Book b ORDER BY b.category")
     List<String> findAllCategories();
     
@@ -71,6 +103,46 @@ public interface BookRepository extends JpaRepository<Book, Long> {
                                            @Param("availableOnly") Boolean availableOnly,
                                            Pageable pageable);
     
+    @Query("SELECT b FROM Book b WHERE b.id IN :ids AND " +
+           "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+           "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+           "(:category IS NULL OR b.category = :category) AND " +
+           "(:language IS NULL OR b.language = :language) AND " +
+           "(:isbn IS NULL OR b.isbn = :isbn)")
+    Page<Book> findBooksWithFiltersAmong(@Param("ids") Collection<Long> ids,
+                                        @Param("title") String title,
+                                        @Param("author") String author,
+                                        @Param("category") String category,
+                                        @Param("language") String language,
+                                        @Param("isbn") String isbn,
+                                        Pageable pageable);
+    
+    @Query("SELECT b FROM Book b WHERE b.id IN :ids AND " +
+           "(:title IS NULL OR LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))) AND " +
+           "(:author IS NULL OR LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))) AND " +
+           "(:category IS NULL OR b.category = :category) AND " +
+           "(:language IS NULL OR b.language = :language) AND " +
+           "(:isbn IS NULL OR b.isbn = :isbn) AND " +
+           "(:publisher IS NULL OR LOWER(b.publisher) LIKE LOWER(CONCAT('%', :publisher, '%'))) AND " +
+           "(:minYear IS NULL OR b.publicationYear >= :minYear) AND " +
+           "(:maxYear IS NULL OR b.publicationYear <= :maxYear) AND " +
+           "(:minRating IS NULL OR b.averageRating >= :minRating) AND " +
+           "(:maxRating IS NULL OR b.averageRating <= :maxRating) AND " +
+           "(:availableOnly IS NULL OR :availableOnly = false OR b.availableCopies > 0)")
+    Page<Book> findBooksWithEnhancedFiltersAmong(@Param("ids") Collection<Long> ids,
+                                                @Param("title") String title,
+                                                @Param("author") String author,
+                                                @Param("category") String category,
+                                                @Param("language") String language,
+                                                @Param("isbn") String isbn,
+                                                @Param("publisher") String publisher,
+                                                @Param("minYear") Integer minYear,
+                                                @Param("maxYear") Integer maxYear,
+                                                @Param("minRating") Integer minRating,
+                                                @Param("maxRating") Integer maxRating,
+                                                @Param("availableOnly") Boolean availableOnly,
+                                                Pageable pageable);
+    
     @Query("SELECT b FROM Book b WHERE " +
            "LOWER(b.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
            "LOWER(b.author) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
@@ -81,15 +153,69 @@ public interface BookRepository extends JpaRepository<Book, Long> {
     @Query("SELECT b FROM Book b WHERE b.availableCopies > 0")
     Page<Book> findAvailableBooks(Pageable pageable);
     
+    /**
+     * Takes one copy in a single conditional UPDATE, so concurrent checkouts cannot
+     * oversell; returns 0 if none was left (or the book does not exist).
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies - 1, b.updatedAt = :now " +
+           "WHERE b.id = :id AND b.availableCopies > 0")
+    int decrementAvailableCopies(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    /** Puts one copy back unless all are already on the shelf; returns the rows changed. */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Book b SET b.availableCopies = b.availableCopies + 1, b.updatedAt = :now " +
+           "WHERE b.id = :id AND b.availableCopies < b.totalCopies")
+    int incrementAvailableCopies(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
     @Query("SELECT b FROM Book b ORDER BY b.averageRating DESC NULLS LAST")
     Page<Book> findTopRatedBooks(Pageable pageable);
     
-    @Query("SELECT b FROM Book b WHERE b.averageRating >= :minRating ORDER BY b.averageRating DESC")
-    List<Book> findBooksByMinRating(@Param("minRating") Double minRating);
-    
     @Query("SELECT b FROM Book b WHERE b.category = :category ORDER BY b.averageRating DESC NULLS LAST")
     List<Book> findRecommendedBooksByCategory(@Param("category") String category, Pageable pageable);
     
+    /**
+     * Recommendation candidates for a user in one round trip, best first: the top
+     * {@code perCategory} available books of each of the user's {@code maxCategories} most
+     * borrowed categories, then available books rated at least {@code minRating}, then any
+     * available books. Duplicates keep their best position. The LIMITed tiers are derived
+     * tables rather than CTEs, as H2 loses the LIMIT parameters of a CTE that another CTE reads.
+     */
+    @Query(value = "WITH preferred AS (" +
+           "  SELECT b.category AS category, ROW_NUMBER() OVER (ORDER BY COUNT(*) DESC, b.category) AS position" +
+           "  FROM borrow_records br JOIN books b ON b.id = br.book_id" +
+           "  WHERE br.user_id = :userId AND b.category IS NOT NULL" +
+           "  GROUP BY b.category" +
+           "), per_category AS (" +
+           "  SELECT b.id AS book_id, p.position AS position," +
+           "         ROW_NUMBER() OVER (PARTITION BY b.category ORDER BY b.average_rating DESC NULLS LAST, b.id) AS rnk" +
+           "  FROM books b JOIN preferred p ON p.category = b.category" +
+           "  WHERE p.position <= :maxCategories AND b.available_copies > 0" +
+           ") " +
+           "SELECT b.* FROM (" +
+           "  SELECT book_id, tier, position, rnk," +
+           "         ROW_NUMBER() OVER (PARTITION BY book_id ORDER BY tier, position, rnk) AS occurrence" +
+           "  FROM (" +
+           "    SELECT book_id, 0 AS tier, position, rnk FROM per_category WHERE rnk <= :perCategory" +
+           "    UNION ALL SELECT book_id, 1, 0, rnk FROM (" +
+           "      SELECT b.id AS book_id, ROW_NUMBER() OVER (ORDER BY b.average_rating DESC, b.id) AS rnk FROM books b" +
+           "      WHERE b.average_rating >= :minRating AND b.available_copies > 0" +
+           "      ORDER BY b.average_rating DESC, b.id LIMIT :limit" +
+           "    ) top_rated" +
+           "    UNION ALL SELECT book_id, 2, 0, rnk FROM (" +
+           "      SELECT b.id AS book_id, ROW_NUMBER() OVER (ORDER BY b.id) AS rnk FROM books b" +
+           "      WHERE b.available_copies > 0 ORDER BY b.id LIMIT :limit" +
+           "    ) any_available" +
+           "  ) candidates" +
+           ") r JOIN books b ON b.id = r.book_id WHERE r.occurrence = 1 " +
+           "ORDER BY r.tier, r.position, r.rnk LIMIT :limit",
+           nativeQuery = true)
+    List<Book> findRecommendationCandidates(@Param("userId") Long userId,
+                                            @Param("maxCategories") int maxCategories,
+                                            @Param("perCategory") int perCategory,
+                                            @Param("minRating") double minRating,
+                                            @Param("limit") int limit);
+    
     @Query("SELECT b FROM Book b WHERE b.author = :author AND b.id != :excludeId ORDER BY b.averageRating DESC NULLS LAST")
     List<Book> findBooksByAuthorExcluding(@Param("author") String author, @Param("excludeId") Long excludeId, Pageable pageable);
 }
@@ -0,0 +1,58 @@
+package com.smartlibrary.repository;
+
+import com.smartlibrary.model.Book;
+import com.smartlibrary.search.BookCursor;
+import com.smartlibrary.search.BookFilter;
+import com.smartlibrary.search.BookSortKey;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface BookRepositoryCustom {
+    
+    /**
+     * Keyset ("seek") query: up to {@code limit} books ordered by {@code sortKey} (NULLs last,
+     * then id) that come strictly after {@code after}. Only the clauses for non-null
+     * arguments are emitted, so each filter combination gets its own plan.
+     */
+    List<Book> findBooksAfter(BookFilter filter, String searchTerm, Collection<Long> ids,
+                              BookSortKey sortKey, boolean descending, BookCursor after, int limit);
+    
+    /**
+     * Offset page of the books matching the non-null arguments, without the COUNT query a
+     * {@code Page} needs: one extra row is fetched to tell whether another page follows.
+     *
+     * @throws IllegalArgumentException if the pageable sorts on an unsupported property
+     */
+    Slice<Book> findBooksSlice(BookFilter filter, String searchTerm, Collection<Long> ids, Pageable pageable);
+    
+    /**
+     * Takes one copy of each book with a single JDBC batch of conditional UPDATEs, issued in
+     * id order so concurrent batches lock rows in the same order. Returns the ids that got
+     * a copy; the others had none left or do not exist. Pending JPA changes are flushed
+     * first, but {@code Book} entities already loaded are not refreshed.
+     */
+    List<Long> decrementAvailableCopies(Collection<Long> ids);
+    
+    /** Puts back one copy of each book unless all are on the shelf; returns the ids changed. */
+    List<Long> incrementAvailableCopies(Collection<Long> ids);
+    
+    /**
+     * Adds {@code {sumDelta, countDelta}} to each book's running rating total and recomputes
+     * its average from the new totals, in one JDBC batch issued in id order. Returns the ids
+     * changed; deltas for books that no longer exist are dropped.
+     */
+    List<Long> addRatingDeltas(Map<Long, long[]> deltas);
+    
+    /** Ids in {@code (afterId, upToId]} of the books whose stored rating totals disagree with their ratings. */
+    List<Long> findRatingDrift(long afterId, long upToId);
+    
+    /**
+     * Locks the given books' rows, then recomputes the rating totals from the ratings table
+     * for those whose stored totals still disagree with it; returns their ids.
+     */
+    List<Long> reconcileRatingTotals(Collection<Long> ids);
+}
@@ -0,0 +1,278 @@
+package com.smartlibrary.repository;
+
+import com.smartlibrary.model.Book;
+import com.smartlibrary.search.BookCursor;
+import com.smartlibrary.search.BookFilter;
+import com.smartlibrary.search.BookSortKey;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+public class BookRepositoryCustomImpl implements BookRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public List<Book> findBooksAfter(BookFilter filter, String searchTerm, Collection<Long> ids,
+                                     BookSortKey sortKey, boolean descending, BookCursor after, int limit) {
+        List<String> clauses = new ArrayList<>();
+        Map<String, Object> params = new HashMap<>();
+        addMatchClauses(filter, searchTerm, ids, clauses, params);
+        if (after != null) {
+            addSeekClause(sortKey, descending, after, clauses, params);
+        }
+        
+        String direction = descending ? "DESC" : "ASC";
+        String jpql = "SELECT b FROM Book b" +
+            (clauses.isEmpty() ? "" : " WHERE " + String.join(" AND ", clauses)) +
+            " ORDER BY b." + sortKey.getProperty() + " " + direction +
+            (sortKey.isNullable() ? " NULLS LAST" : "") +
+            (sortKey == BookSortKey.ID ? "" : ", b.id " + direction);
+        
+        TypedQuery<Book> query = entityManager.createQuery(jpql, Book.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+    
+    @Override
+    public Slice<Book> findBooksSlice(BookFilter filter, String searchTerm, Collection<Long> ids, Pageable pageable) {
+        List<String> clauses = new ArrayList<>();
+        Map<String, Object> params = new HashMap<>();
+        addMatchClauses(filter, searchTerm, ids, clauses, params);
+        
+        List<String> orderBy = new ArrayList<>();
+        for (Sort.Order order : pageable.getSort()) {
+            // validates the property too: it is spliced into the JPQL
+            BookSortKey sortKey = BookSortKey.fromProperty(order.getProperty());
+            orderBy.add("b." + sortKey.getProperty() + (order.isDescending() ? " DESC" : " ASC") +
+                (order.getNullHandling() == Sort.NullHandling.NULLS_LAST ? " NULLS LAST" :
+                 order.getNullHandling() == Sort.NullHandling.NULLS_FIRST ? " NULLS FIRST" : ""));
+        }
+        String jpql = "SELECT b FROM Book b" +
+            (clauses.isEmpty() ? "" : " WHERE " + String.join(" AND ", clauses)) +
+            (orderBy.isEmpty() ? "" : " ORDER BY " + String.join(", ", orderBy));
+        
+        TypedQuery<Book> query = entityManager.createQuery(jpql, Book.class);
+        params.forEach(query::setParameter);
+        List<Book> rows = query.setFirstResult((int) pageable.getOffset())
+            .setMaxResults(pageable.getPageSize() + 1)
+            .getResultList();
+        boolean hasNext = rows.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? rows.subList(0, pageable.getPageSize()) : rows, pageable, hasNext);
+    }
+    
+    private static void addMatchClauses(BookFilter filter, String searchTerm, Collection<Long> ids,
+                                        List<String> clauses, Map<String, Object> params) {
+        if (ids != null) {
+            clauses.add("b.id IN :ids");
+            params.put("ids", ids);
+        }
+        if (searchTerm != null) {
+            clauses.add("(LOWER(b.title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+                        "LOWER(b.author) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+                        "LOWER(b.description) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+                        "LOWER(b.category) LIKE LOWER(CONCAT('%', :searchTerm, '%')))");
+            params.put("searchTerm", searchTerm);
+        }
+        if (filter != null) {
+            addFilterClauses(filter, clauses, params);
+        }
+    }
+    
+    private static void addFilterClauses(BookFilter filter, List<String> clauses, Map<String, Object> params) {
+        if (filter.title() != null) {
+            clauses.add("LOWER(b.title) LIKE LOWER(CONCAT('%', :title, '%'))");
+            params.put("title", filter.title());
+        }
+        if (filter.author() != null) {
+            clauses.add("LOWER(b.author) LIKE LOWER(CONCAT('%', :author, '%'))");
+            params.put("author", filter.author());
+        }
+        if (filter.category() != null) {
+            clauses.add("b.category = :category");
+            params.put("category", filter.category());
+        }
+        if (filter.language() != null) {
+            clauses.add("b.language = :language");
+            params.put("language", filter.language());
+        }
+        if (filter.isbn() != null) {
+            clauses.add("b.isbn = :isbn");
+            params.put("isbn", filter.isbn());
+        }
+        if (filter.publisher() != null) {
+            clauses.add("LOWER(b.publisher) LIKE LOWER(CONCAT('%', :publisher, '%'))");
+            params.put("publisher", filter.publisher());
+        }
+        if (filter.minYear() != null) {
+            clauses.add("b.publicationYear >= :minYear");
+            params.put("minYear", filter.minYear());
+        }
+        if (filter.maxYear() != null) {
+            clauses.add("b.publicationYear <= :maxYear");
+            params.put("maxYear", filter.maxYear());
+        }
+        if (filter.minRating() != null) {
+            clauses.add("b.averageRating >= :minRating");
+            params.put("minRating", filter.minRating().doubleValue());
+        }
+        if (filter.maxRating() != null) {
+            clauses.add("b.averageRating <= :maxRating");
+            params.put("maxRating", filter.maxRating().doubleValue());
+        }
+        if (filter.isAvailableOnly()) {
+            clauses.add("b.availableCopies > 0");
+        }
+    }
+    
+    /*
+     * Rows after (v, id) in "col <dir> NULLS LAST, id <dir>" order:
+     *   col beyond v, or col = v with a later id, or (nullable columns) any NULL row;
+     *   once the cursor itself is in the NULL tail, only NULL rows with a later id.
+     */
+    private static void addSeekClause(BookSortKey sortKey, boolean descending, BookCursor after,
+                                      List<String> clauses, Map<String, Object> params) {
+        String column = "b." + sortKey.getProperty();
+        String beyond = descending ? "<" : ">";
+        params.put("afterId", after.getId());
+        
+        if (sortKey == BookSortKey.ID) {
+            clauses.add("b.id " + beyond + " :afterId");
+            return;
+        }
+        if (after.getValue() == null) {
+            clauses.add(column + " IS NULL AND b.id " + beyond + " :afterId");
+            return;
+        }
+        try {
+            params.put("afterValue", sortKey.parse(after.getValue()));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        clauses.add("(" + column + " " + beyond + " :afterValue" +
+                    " OR (" + column + " = :afterValue AND b.id " + beyond + " :afterId)" +
+                    (sortKey.isNullable() ? " OR " + column + " IS NULL" : "") + ")");
+    }
+    
+    @Override
+    public List<Long> decrementAvailableCopies(Collection<Long> ids) {
+        return batchUpdateCopies("UPDATE books SET available_copies = available_copies - 1, updated_at = ? " +
+            "WHERE id = ? AND available_copies > 0", ids);
+    }
+    
+    @Override
+    public List<Long> incrementAvailableCopies(Collection<Long> ids) {
+        return batchUpdateCopies("UPDATE books SET available_copies = available_copies + 1, updated_at = ? " +
+            "WHERE id = ? AND available_copies < total_copies", ids);
+    }
+    
+    private List<Long> batchUpdateCopies(String sql, Collection<Long> ids) {
+        List<Long> ordered = new ArrayList<>(new TreeSet<>(ids));
+        if (ordered.isEmpty()) {
+            return ordered;
+        }
+        entityManager.flush();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(ordered.size());
+        for (Long id : ordered) {
+            args.add(new Object[] {now, id});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(sql, args);
+        List<Long> changed = new ArrayList<>(ordered.size());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                changed.add(ordered.get(i));
+            }
+        }
+        return changed;
+    }
+    
+    @Override
+    public List<Long> addRatingDeltas(Map<Long, long[]> deltas) {
+        List<Long> ordered = new ArrayList<>(deltas.size());
+        List<Object[]> args = new ArrayList<>(deltas.size());
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        for (Map.Entry<Long, long[]> delta : new TreeMap<>(deltas).entrySet()) {
+            long sum = delta.getValue()[0];
+            long count = delta.getValue()[1];
+            ordered.add(delta.getKey());
+            args.add(new Object[] {sum, count, count, sum, count, now, delta.getKey()});
+        }
+        if (args.isEmpty()) {
+            return ordered;
+        }
+        // every right-hand side sees the row as it was before this UPDATE
+        int[] counts = jdbcTemplate.batchUpdate("UPDATE books SET " +
+            "rating_sum = rating_sum + ?, rating_count = rating_count + ?, " +
+            "average_rating = CASE WHEN rating_count + ? > 0 " +
+            "THEN CAST(rating_sum + ? AS DOUBLE PRECISION) / (rating_count + ?) END, " +
+            "updated_at = ? WHERE id = ?", args);
+        List<Long> changed = new ArrayList<>(ordered.size());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                changed.add(ordered.get(i));
+            }
+        }
+        return changed;
+    }
+    
+    @Override
+    public List<Long> findRatingDrift(long afterId, long upToId) {
+        return jdbcTemplate.queryForList("SELECT b.id FROM books b LEFT JOIN " +
+            "(SELECT book_id, SUM(rating) AS total, COUNT(*) AS n FROM ratings " +
+            "WHERE book_id > ? AND book_id <= ? GROUP BY book_id) r ON r.book_id = b.id " +
+            "WHERE b.id > ? AND b.id <= ? " +
+            "AND (b.rating_sum <> COALESCE(r.total, 0) OR b.rating_count <> COALESCE(r.n, 0))",
+            Long.class, afterId, upToId, afterId, upToId);
+    }
+    
+    @Override
+    public List<Long> reconcileRatingTotals(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        String in = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Object[] idArgs = ids.toArray();
+        // id order, like addRatingDeltas, so the two never wait on each other in a cycle
+        jdbcTemplate.queryForList("SELECT id FROM books WHERE id IN (" + in + ") ORDER BY id FOR UPDATE", Long.class, idArgs);
+        List<Long> drifted = jdbcTemplate.queryForList("SELECT b.id FROM books b WHERE b.id IN (" + in + ") " +
+            "AND (b.rating_sum <> (SELECT COALESCE(SUM(r.rating), 0) FROM ratings r WHERE r.book_id = b.id) " +
+            "OR b.rating_count <> (SELECT COUNT(*) FROM ratings r WHERE r.book_id = b.id))", Long.class, idArgs);
+        if (drifted.isEmpty()) {
+            return drifted;
+        }
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> args = new ArrayList<>(drifted.size());
+        for (Long id : drifted) {
+            args.add(new Object[] {now, id});
+        }
+        jdbcTemplate.batchUpdate("UPDATE books SET " +
+            "rating_sum = (SELECT COALESCE(SUM(r.rating), 0) FROM ratings r WHERE r.book_id = books.id), " +
+            "rating_count = (SELECT COUNT(*) FROM ratings r WHERE r.book_id = books.id), " +
+            "average_rating = (SELECT AVG(CAST(r.rating AS DOUBLE PRECISION)) FROM ratings r WHERE r.book_id = books.id), " +
+            "updated_at = ? WHERE id = ?", args);
+        return drifted;
+    }
+}
@@ -1,16 +1,20 @@
 package com.smartlibrary.repository;
 
 import com.smartlibrary.model.BorrowRecord;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
-public interface BorrowRecordRepository extends JpaRepository<BorrowRecord, Long> {
+public interface BorrowRecordRepository extends JpaRepository<BorrowRecord, Long>, BorrowRecordRepositoryCustom {
     
     List<BorrowRecord> findByUserIdAndStatus(Long userId, BorrowRecord.Status status);
     
@@ -21,12 +25,37 @@ public interface BorrowRecordRepository extends JpaRepository<BorrowRecord, Long
     @Query("SELECT br FROM BorrowRecord br WHERE br.dueDate < :currentDate AND br.status = 'BORROWED'")
     List<BorrowRecord> findOverdueRecords(@Param("currentDate") LocalDate currentDate);
     
+    /**
+     * (id, dueDate) of open loans due before {@code today}, in id order after
+     * {@code afterId}, one keyset page at a time.
+     */
+    @Query("SELECT br.id, br.dueDate FROM BorrowRecord br " +
+           "WHERE br.status IN ('BORROWED', 'OVERDUE') AND br.dueDate < :today AND br.id > :afterId ORDER BY br.id")
+    List<Object[]> findOverdueAfter(@Param("today") LocalDate today, @Param("afterId") Long afterId, Pageable pageable);
+    
+    /** Marks the still-open loans among {@code ids} OVERDUE with the given fine. */
+    @Modifying
+    @Query("UPDATE BorrowRecord br SET br.status = 'OVERDUE', " +
+           "br.fineAmount = :fine, br.updatedAt = :now " +
+           "WHERE br.id IN :ids AND br.status IN ('BORROWED', 'OVERDUE')")
+    int markOverdue(@Param("ids") Collection<Long> ids, @Param("fine") Double fine, @Param("now") LocalDateTime now);
+    
     @Query("SELECT br FROM BorrowRecord br WHERE br.user.id = :userId AND br.book.id = :bookId AND br.status = 'BORROWED'")
     List<BorrowRecord> findActiveBorrowRecord(@Param("userId") Long userId, @Param("bookId") Long bookId);
     
-    @Query("SELECT COUNT(br) FROM BorrowRecord br WHERE br.user.id = :userId AND br.status = 'BORROWED'")
+    // an overdue loan is still out, so it counts against the reader's limit
+    @Query("SELECT COUNT(br) FROM BorrowRecord br WHERE br.user.id = :userId AND br.status IN ('BORROWED', 'OVERDUE')")
     Long countActiveBorrowsByUser(@Param("userId") Long userId);
     
+    /** (id, bookId, dueDate) of the reader's open loans of the given books. */
+    @Query("SELECT br.id, br.book.id, br.dueDate FROM BorrowRecord br " +
+           "WHERE br.user.id = :userId AND br.book.id IN :bookIds AND br.status IN ('BORROWED', 'OVERDUE')")
+    List<Object[]> findOpenLoans(@Param("userId") Long userId, @Param("bookIds") Collection<Long> bookIds);
+    
     @Query("SELECT DISTINCT br.book.category FROM BorrowRecord br WHERE br.user.id = :userId")
     List<String> findUserPreferredCategories(@Param("userId") Long userId);
+    
+    /** (id, userId, bookId, createdAt) rows, newest first, for keyset-paged bulk loads. */
+    @Query("SELECT br.id, br.user.id, br.book.id, br.createdAt FROM BorrowRecord br WHERE br.id < :beforeId ORDER BY br.id DESC")
+    List<Object[]> findInteractionsBefore(@Param("beforeId") Long beforeId, Pageable pageable);
 }
@@ -0,0 +1,19 @@
+package com.smartlibrary.repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface BorrowRecordRepositoryCustom {
+    
+    /**
+     * Inserts a BORROWED loan of each book for the reader with one JDBC batch. Entity
+     * callbacks do not run, so the caller publishes any events.
+     */
+    void insertLoans(Long userId, List<Long> bookIds, LocalDate borrowDate, LocalDate dueDate);
+    
+    /**
+     * Marks the loans RETURNED with their fines in one JDBC batch, skipping any that were
+     * closed meanwhile; returns, per record, whether it was still open.
+     */
+    boolean[] closeLoans(List<Long> recordIds, List<Double> fines, LocalDate returnDate);
+}
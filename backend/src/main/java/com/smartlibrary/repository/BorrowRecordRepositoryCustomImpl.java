@@ -0,0 +1,59 @@
+package com.smartlibrary.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BorrowRecordRepositoryCustomImpl implements BorrowRecordRepositoryCustom {
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Override
+    public void insertLoans(Long userId, List<Long> bookIds, LocalDate borrowDate, LocalDate dueDate) {
+        if (bookIds.isEmpty()) {
+            return;
+        }
+        entityManager.flush();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(bookIds.size());
+        for (Long bookId : bookIds) {
+            rows.add(new Object[] {userId, bookId, Date.valueOf(borrowDate), Date.valueOf(dueDate), now, now});
+        }
+        jdbcTemplate.batchUpdate("INSERT INTO borrow_records " +
+            "(user_id, book_id, borrow_date, due_date, status, fine_amount, created_at, updated_at) " +
+            "VALUES (?, ?, ?, ?, 'BORROWED', 0, ?, ?)", rows);
+    }
+    
+    @Override
+    public boolean[] closeLoans(List<Long> recordIds, List<Double> fines, LocalDate returnDate) {
+        boolean[] closed = new boolean[recordIds.size()];
+        if (recordIds.isEmpty()) {
+            return closed;
+        }
+        entityManager.flush();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>(recordIds.size());
+        for (int i = 0; i < recordIds.size(); i++) {
+            rows.add(new Object[] {Date.valueOf(returnDate), fines.get(i), now, recordIds.get(i)});
+        }
+        int[] counts = jdbcTemplate.batchUpdate("UPDATE borrow_records " +
+            "SET status = 'RETURNED', return_date = ?, fine_amount = ?, updated_at = ? " +
+            "WHERE id = ? AND status IN ('BORROWED', 'OVERDUE')", rows);
+        for (int i = 0; i < counts.length; i++) {
+            closed[i] = counts[i] > 0;
+        }
+        return closed;
+    }
+}
@@ -0,0 +1,72 @@
+package com.smartlibrary.repository;
+
+import com.smartlibrary.model.Hold;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface HoldRepository extends JpaRepository<Hold, Long> {
+    
+    List<Hold> findByUserIdOrderByCreatedAtDesc(Long userId);
+    
+    @Query("SELECT COUNT(h) > 0 FROM Hold h WHERE h.user.id = :userId AND h.book.id = :bookId " +
+           "AND h.status IN ('WAITING', 'READY')")
+    boolean existsActiveHold(@Param("userId") Long userId, @Param("bookId") Long bookId);
+    
+    @Query("SELECT COUNT(h) FROM Hold h WHERE h.user.id = :userId AND h.status IN ('WAITING', 'READY')")
+    long countActiveHoldsByUser(@Param("userId") Long userId);
+    
+    /** Holds ahead of {@code holdId} in its book's queue. */
+    @Query("SELECT COUNT(h) FROM Hold h WHERE h.book.id = :bookId AND h.status = 'WAITING' AND h.id < :holdId")
+    long countWaitingBefore(@Param("bookId") Long bookId, @Param("holdId") Long holdId);
+    
+    /** (id, userId, bookId) of waiting holds in id order after {@code afterId}, for keyset-paged loads. */
+    @Query("SELECT h.id, h.user.id, h.book.id FROM Hold h WHERE h.status = 'WAITING' AND h.id > :afterId ORDER BY h.id")
+    List<Object[]> findWaitingAfter(@Param("afterId") Long afterId, Pageable pageable);
+    
+    /** (id, userId) of the first waiting holds on one book, oldest first. */
+    @Query("SELECT h.id, h.user.id FROM Hold h WHERE h.book.id = :bookId AND h.status = 'WAITING' ORDER BY h.id")
+    List<Object[]> findWaitingByBook(@Param("bookId") Long bookId, Pageable pageable);
+    
+    /**
+     * Sets a copy aside for a waiting hold. Returns 0 if the hold is no longer waiting,
+     * which a concurrent allocation or cancellation decides by holding the row lock.
+     */
+    @Modifying
+    @Query("UPDATE Hold h SET h.status = 'READY', h.readyAt = :now, " +
+           "h.expiresAt = :expiresAt, h.updatedAt = :now WHERE h.id = :id AND h.status = 'WAITING'")
+    int markReady(@Param("id") Long id, @Param("now") LocalDateTime now, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    /** (id, userId, bookId) of ready holds whose pickup window closed before {@code now}. */
+    @Query("SELECT h.id, h.user.id, h.book.id FROM Hold h WHERE h.status = 'READY' AND h.expiresAt < :now ORDER BY h.expiresAt")
+    List<Object[]> findExpiredReady(@Param("now") LocalDateTime now, Pageable pageable);
+    
+    @Modifying
+    @Query("UPDATE Hold h SET h.status = 'EXPIRED', h.updatedAt = :now " +
+           "WHERE h.id = :id AND h.status = 'READY'")
+    int markExpired(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    /** Books with a copy on the shelf and a hold still waiting, as a hold placed during a return can leave them. */
+    @Query("SELECT DISTINCT h.book.id FROM Hold h WHERE h.status = 'WAITING' AND h.book.availableCopies > 0")
+    List<Long> findBooksWithWaitingHoldsAndCopies(Pageable pageable);
+    
+    /** The reader's ready holds on the given books, locked so expiry cannot pass them on meanwhile. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM Hold h WHERE h.user.id = :userId AND h.book.id IN :bookIds AND h.status = 'READY'")
+    List<Hold> findReadyForUpdate(@Param("userId") Long userId, @Param("bookIds") Collection<Long> bookIds);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT h FROM Hold h WHERE h.id = :id")
+    Optional<Hold> findByIdForUpdate(@Param("id") Long id);
+}
@@ -0,0 +1,20 @@
+package com.smartlibrary.repository;
+
+import com.smartlibrary.model.JobCheckpoint;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface JobCheckpointRepository extends JpaRepository<JobCheckpoint, String> {
+    
+    /** Locks the job's checkpoint until the transaction ends, so only one instance works a chunk. */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM JobCheckpoint c WHERE c.jobName = :jobName")
+    Optional<JobCheckpoint> findForUpdate(@Param("jobName") String jobName);
+}
@@ -1,6 +1,7 @@
 package com.smartlibrary.repository;
 
 import com.smartlibrary.model.Rating;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -26,4 +27,8 @@ public interface RatingRepository extends JpaRepository<Rating, Long> {
     
     @Query("SELECT r FROM Rating r WHERE r.book.id = :bookId AND r.review IS NOT NULL AND r.review != '' ORDER BY r.createdAt DESC")
     List<Rating> findReviewsByBookId(@Param("bookId") Long bookId);
+    
+    /** (id, userId, bookId, updatedAt, rating) rows, newest first, for keyset-paged bulk loads. */
+    @Query("SELECT r.id, r.user.id, r.book.id, r.updatedAt, r.rating FROM Rating r WHERE r.id < :beforeId ORDER BY r.id DESC")
+    List<Object[]> findInteractionsBefore(@Param("beforeId") Long beforeId, Pageable pageable);
 }
@@ -0,0 +1,109 @@
+package com.smartlibrary.search;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Burkhard-Keller tree over a term vocabulary under Levenshtein distance.
+ *
+ * A lookup with tolerance d only descends into children whose edge distance lies within
+ * d of the query's distance to the parent (triangle inequality), so a typo lookup reads
+ * a small part of the vocabulary. Terms are never removed; callers skip terms that no
+ * longer have postings.
+ */
+final class BkTree {
+
+    record Match(String term, int distance) {}
+
+    private Node root;
+    private int size;
+
+    void add(String term) {
+        if (root == null) {
+            root = new Node(term);
+            size++;
+            return;
+        }
+        Node node = root;
+        while (true) {
+            int distance = distance(term, node.term, Integer.MAX_VALUE);
+            if (distance == 0) {
+                return;
+            }
+            Node child = node.children.get(distance);
+            if (child == null) {
+                node.children.put(distance, new Node(term));
+                size++;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    List<Match> search(String term, int maxDistance) {
+        List<Match> matches = new ArrayList<>();
+        if (root == null) {
+            return matches;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(term, node.term, Integer.MAX_VALUE);
+            if (distance <= maxDistance) {
+                matches.add(new Match(node.term, distance));
+            }
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= maxDistance) {
+                    pending.push(child.getValue());
+                }
+            }
+        }
+        return matches;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /** Levenshtein distance, giving up with {@code limit + 1} once it must exceed {@code limit}. */
+    static int distance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static final class Node {
+        final String term;
+        final Map<Integer, Node> children = new HashMap<>(4);
+
+        Node(String term) {
+            this.term = term;
+        }
+    }
+}
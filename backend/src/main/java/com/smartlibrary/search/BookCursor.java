@@ -0,0 +1,72 @@
+package com.smartlibrary.search;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Continuation token for keyset paging: the sort the client asked for plus the sort
+ * value and id of the last row it has seen. Serialized as URL-safe Base64 so clients
+ * treat it as opaque.
+ *
+ * {@code sortBy} is a {@link BookSortKey} property, or {@link #RELEVANCE} for ranked
+ * full-text results where the value is the hit score.
+ */
+public final class BookCursor {
+
+    public static final String RELEVANCE = "relevance";
+
+    private static final String VERSION = "v1";
+
+    private final String sortBy;
+    private final boolean descending;
+    private final String value;
+    private final long id;
+
+    public BookCursor(String sortBy, boolean descending, Object value, long id) {
+        this.sortBy = sortBy;
+        this.descending = descending;
+        this.value = value == null ? null : value.toString();
+        this.id = id;
+    }
+
+    public String getSortBy() { return sortBy; }
+
+    public boolean isDescending() { return descending; }
+
+    /** Raw sort value, or null when the last row had a NULL in the sort column. */
+    public String getValue() { return value; }
+
+    public long getId() { return id; }
+
+    public String encode() {
+        // the value goes last so separators inside it (e.g. a title) survive decoding
+        String raw = String.join("\n", VERSION, sortBy, descending ? "desc" : "asc",
+            Long.toString(id), value == null ? "" : "=" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Decodes a token and checks it was issued for the same ordering; a cursor from a
+     * different sort would silently skip or repeat rows.
+     */
+    public static BookCursor decode(String token, String sortBy, boolean descending) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8).split("\n", 5);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (parts.length != 5 || !VERSION.equals(parts[0]) || !(parts[4].isEmpty() || parts[4].startsWith("="))) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (!parts[1].equals(sortBy) || parts[2].equals("desc") != descending) {
+            throw new IllegalArgumentException("Cursor was issued for a different sort order");
+        }
+        String value = parts[4].isEmpty() ? null : parts[4].substring(1);
+        try {
+            return new BookCursor(parts[1], descending, value, Long.parseLong(parts[3]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+}
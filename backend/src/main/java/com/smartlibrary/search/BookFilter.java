@@ -0,0 +1,74 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.model.Book;
+
+import java.util.Locale;
+
+/**
+ * The advanced-search filter set of {@code /api/books/search}, with the same meaning as
+ * the parameters of {@code BookRepository.findBooksWithEnhancedFilters}: null means
+ * "not filtered".
+ */
+public record BookFilter(String title,
+                         String author,
+                         String category,
+                         String language,
+                         String isbn,
+                         String publisher,
+                         Integer minYear,
+                         Integer maxYear,
+                         Integer minRating,
+                         Integer maxRating,
+                         Boolean availableOnly) {
+
+    public boolean hasSubstringFilters() {
+        return title != null || author != null || publisher != null;
+    }
+
+    public boolean isAvailableOnly() {
+        return Boolean.TRUE.equals(availableOnly);
+    }
+
+    public boolean hasRatingFilter() {
+        return minRating != null || maxRating != null;
+    }
+
+    /**
+     * Canonical form for use as a cache key: substring filters are case-insensitive and
+     * {@code availableOnly=false} means the same as no availability filter.
+     */
+    public BookFilter normalized() {
+        return new BookFilter(lower(title), lower(author), category, language, isbn,
+            lower(publisher), minYear, maxYear, minRating, maxRating, isAvailableOnly() ? Boolean.TRUE : null);
+    }
+
+    /** In-memory evaluation with the same meaning as the repository query. */
+    public boolean matches(Book book) {
+        return contains(book.getTitle(), title)
+            && contains(book.getAuthor(), author)
+            && (category == null || category.equals(book.getCategory()))
+            && (language == null || language.equals(book.getLanguage()))
+            && (isbn == null || isbn.equals(book.getIsbn()))
+            && contains(book.getPublisher(), publisher)
+            && (minYear == null || (book.getPublicationYear() != null && book.getPublicationYear() >= minYear))
+            && (maxYear == null || (book.getPublicationYear() != null && book.getPublicationYear() <= maxYear))
+            && (minRating == null || (book.getAverageRating() != null && book.getAverageRating() >= minRating))
+            && (maxRating == null || (book.getAverageRating() != null && book.getAverageRating() <= maxRating))
+            && (!isAvailableOnly() || (book.getAvailableCopies() != null && book.getAvailableCopies() > 0));
+    }
+
+    private static boolean contains(String value, String fragment) {
+        return fragment == null
+            || (value != null && value.toLowerCase(Locale.ROOT).contains(fragment.toLowerCase(Locale.ROOT)));
+    }
+
+    private static String lower(String value) {
+        return value == null ? null : value.toLowerCase(Locale.ROOT);
+    }
+
+    public boolean isEmpty() {
+        return !hasSubstringFilters() && category == null && language == null && isbn == null
+            && minYear == null && maxYear == null && minRating == null && maxRating == null
+            && !isAvailableOnly();
+    }
+}
@@ -0,0 +1,72 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Full-text index over title, author, category and description that serves
+ * {@code /api/books/search?q=} without touching the books table.
+ */
+@Component
+public class BookSearchIndex extends CatalogIndex<InvertedIndex> {
+
+    private static final float TITLE_WEIGHT = 3.0f;
+    private static final float AUTHOR_WEIGHT = 2.0f;
+    private static final float CATEGORY_WEIGHT = 1.5f;
+    private static final float DESCRIPTION_WEIGHT = 1.0f;
+
+    public int size() {
+        return current().size();
+    }
+
+    public List<SearchHit> search(String query) {
+        List<String> typed = TextAnalyzer.tokenize(query, false);
+        if (typed.isEmpty()) {
+            return List.of();
+        }
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.analyze(query)));
+        String prefix = null;
+        String lastTyped = typed.get(typed.size() - 1);
+        boolean stillTyping = !Character.isWhitespace(query.charAt(query.length() - 1));
+        if (stillTyping && terms.remove(lastTyped)) {
+            prefix = lastTyped;
+        }
+        return current().search(terms, prefix);
+    }
+
+    @Override
+    protected InvertedIndex createEmpty() {
+        return new InvertedIndex();
+    }
+
+    @Override
+    protected void add(InvertedIndex index, Book book) {
+        index.add(book.getId(), weightedTerms(book));
+    }
+
+    @Override
+    protected void remove(InvertedIndex index, long bookId) {
+        index.remove(bookId);
+    }
+
+    static Map<String, Float> weightedTerms(Book book) {
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, book.getTitle(), TITLE_WEIGHT);
+        addField(terms, book.getAuthor(), AUTHOR_WEIGHT);
+        addField(terms, book.getCategory(), CATEGORY_WEIGHT);
+        addField(terms, book.getDescription(), DESCRIPTION_WEIGHT);
+        return terms;
+    }
+
+    private static void addField(Map<String, Float> terms, String text, float weight) {
+        for (String term : TextAnalyzer.analyze(text)) {
+            terms.merge(term, weight, Float::sum);
+        }
+    }
+}
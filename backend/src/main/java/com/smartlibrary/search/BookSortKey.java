@@ -0,0 +1,66 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.model.Book;
+
+import java.time.LocalDateTime;
+import java.util.function.Function;
+
+/**
+ * The columns books can be ordered by in cursor (keyset) mode, with what is needed to
+ * seek past a row: the column type for decoding cursors and whether NULLs can occur.
+ * NULLs always sort last and ties are broken by id in the same direction.
+ */
+public enum BookSortKey {
+    ID("id", Long.class, false, Book::getId),
+    TITLE("title", String.class, false, Book::getTitle),
+    AUTHOR("author", String.class, false, Book::getAuthor),
+    ISBN("isbn", String.class, false, Book::getIsbn),
+    CATEGORY("category", String.class, false, Book::getCategory),
+    PUBLISHER("publisher", String.class, true, Book::getPublisher),
+    LANGUAGE("language", String.class, true, Book::getLanguage),
+    PUBLICATION_YEAR("publicationYear", Integer.class, true, Book::getPublicationYear),
+    PAGE_COUNT("pageCount", Integer.class, true, Book::getPageCount),
+    AVAILABLE_COPIES("availableCopies", Integer.class, false, Book::getAvailableCopies),
+    TOTAL_COPIES("totalCopies", Integer.class, false, Book::getTotalCopies),
+    AVERAGE_RATING("averageRating", Double.class, true, Book::getAverageRating),
+    RATING_COUNT("ratingCount", Integer.class, true, Book::getRatingCount),
+    CREATED_AT("createdAt", LocalDateTime.class, true, Book::getCreatedAt),
+    UPDATED_AT("updatedAt", LocalDateTime.class, true, Book::getUpdatedAt);
+
+    private final String property;
+    private final Class<?> type;
+    private final boolean nullable;
+    private final Function<Book, Object> getter;
+
+    BookSortKey(String property, Class<?> type, boolean nullable, Function<Book, Object> getter) {
+        this.property = property;
+        this.type = type;
+        this.nullable = nullable;
+        this.getter = getter;
+    }
+
+    public String getProperty() { return property; }
+
+    public boolean isNullable() { return nullable; }
+
+    public Object valueOf(Book book) {
+        return getter.apply(book);
+    }
+
+    public Object parse(String value) {
+        if (type == Long.class) return Long.valueOf(value);
+        if (type == Integer.class) return Integer.valueOf(value);
+        if (type == Double.class) return Double.valueOf(value);
+        if (type == LocalDateTime.class) return LocalDateTime.parse(value);
+        return value;
+    }
+
+    public static BookSortKey fromProperty(String property) {
+        for (BookSortKey key : values()) {
+            if (key.property.equals(property)) {
+                return key;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported sort property for cursor paging: " + property);
+    }
+}
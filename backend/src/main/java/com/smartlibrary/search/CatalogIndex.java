@@ -0,0 +1,148 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import com.smartlibrary.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Base for in-memory structures that mirror the books table.
+ *
+ * A full rebuild streams the table in id order into a fresh structure and swaps it in
+ * once complete; committed {@link BookChangedEvent}s keep it current afterwards.
+ * Changes that land while a rebuild is running are replayed after the swap.
+ *
+ * @param <T> the structure being maintained
+ */
+public abstract class CatalogIndex<T> {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogIndex.class);
+
+    static final int REBUILD_CHUNK_SIZE = 1000;
+
+    @Autowired
+    protected BookRepository bookRepository;
+
+    private volatile T current = createEmpty();
+    private volatile boolean ready;
+    private volatile boolean rebuilding;
+    private final Queue<Long> changedDuringRebuild = new ConcurrentLinkedQueue<>();
+
+    /** Must not rely on injected fields: it also runs while the bean is constructed. */
+    protected abstract T createEmpty();
+
+    protected abstract void add(T structure, Book book);
+
+    protected abstract void remove(T structure, long bookId);
+
+    /** Which kinds of change this index cares about; DELETED always removes. */
+    protected Set<BookChangedEvent.Type> relevantChanges() {
+        return EnumSet.of(BookChangedEvent.Type.CREATED, BookChangedEvent.Type.UPDATED,
+            BookChangedEvent.Type.DELETED);
+    }
+
+    /**
+     * A ready structure obtained some cheaper way than streaming the table (e.g. from
+     * disk), or null to rebuild from the database. Runs during a rebuild, so changes made
+     * meanwhile are still replayed.
+     */
+    protected T restore() {
+        return null;
+    }
+
+    /** Called once a freshly built or restored structure has been swapped in. */
+    protected void afterRebuild(T structure) {}
+
+    protected T current() {
+        return current;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        long started = System.currentTimeMillis();
+        int books = 0;
+        rebuilding = true;
+        boolean restored;
+        try {
+            T fresh = restore();
+            restored = fresh != null;
+            if (!restored) {
+                fresh = createEmpty();
+                long lastId = 0;
+                List<Book> chunk;
+                do {
+                    chunk = bookRepository.findByIdGreaterThanOrderByIdAsc(lastId, PageRequest.of(0, REBUILD_CHUNK_SIZE));
+                    for (Book book : chunk) {
+                        add(fresh, book);
+                        lastId = book.getId();
+                    }
+                    books += chunk.size();
+                } while (chunk.size() == REBUILD_CHUNK_SIZE);
+            }
+            current = fresh;
+        } finally {
+            rebuilding = false;
+        }
+        replayChangesMissedByRebuild();
+        afterRebuild(current);
+        ready = true;
+        log.info("{} {} in {} ms", getClass().getSimpleName(),
+            restored ? "restored" : "rebuilt from " + books + " books", System.currentTimeMillis() - started);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!relevantChanges().contains(event.getType())) {
+            return;
+        }
+        // recorded before current is read, so a change written into a structure that is
+        // being replaced is always replayed into the one replacing it
+        if (rebuilding) {
+            changedDuringRebuild.add(event.getBookId());
+        }
+        apply(current, event);
+    }
+
+    /** Applies one relevant change: DELETED removes the book, anything else re-adds it. */
+    protected void apply(T structure, BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            remove(structure, event.getBookId());
+        } else {
+            add(structure, event.getBook());
+        }
+    }
+
+    private void replayChangesMissedByRebuild() {
+        Set<Long> ids = new HashSet<>();
+        Long id;
+        while ((id = changedDuringRebuild.poll()) != null) {
+            ids.add(id);
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        T structure = current;
+        for (Book book : bookRepository.findAllById(ids)) {
+            add(structure, book);
+            ids.remove(book.getId());
+        }
+        ids.forEach(missing -> remove(structure, missing));
+    }
+}
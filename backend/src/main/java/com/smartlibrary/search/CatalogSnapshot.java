@@ -0,0 +1,674 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntBinaryOperator;
+
+/**
+ * Column-oriented copy of the catalog that answers filter-and-sort requests in memory.
+ *
+ * Each book occupies a slot across primitive columns. Category, language and publisher
+ * are dictionary-encoded with a bitmap of slots per value, so equality filters are
+ * bitmap ANDs and a publisher "contains" filter is an OR over the matching dictionary
+ * values. Year and rating ranges are binary searches over the sort permutation of that
+ * column. Sorted paging walks a precomputed permutation of slots, skipping rows that are
+ * not in the filter bitmap. The permutations are sorted once after a rebuild; after that a
+ * changed book is only moved to its new place in the permutations of the columns it changed.
+ *
+ * Only the page of ids comes out of here; callers load those rows by primary key.
+ */
+@Component
+public class CatalogSnapshot extends CatalogIndex<CatalogSnapshot.Columns> {
+
+    private static final int NONE = -1;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_TIME = Long.MIN_VALUE;
+
+    // case-sensitive, as H2 and a C-collated Postgres compare text; equal values fall back to id
+    private static final Comparator<String> TEXT_ORDER = Comparator.naturalOrder();
+
+    /** One page of matching book ids in sort order, plus the size of the whole match set. */
+    public record IdPage(List<Long> ids, long total) {}
+
+    /**
+     * Matches {@code filter} (and, when non-null, {@code restrictTo}) sorted by
+     * {@code sortKey} with NULLs last and ties broken by id in the same direction.
+     * Returns {@code null} when the filter uses LIKE wildcards, which only the database
+     * interprets.
+     */
+    public IdPage query(BookFilter filter, Collection<Long> restrictTo, BookSortKey sortKey,
+                        boolean descending, long offset, int limit) {
+        if (hasWildcards(filter.title()) || hasWildcards(filter.author()) || hasWildcards(filter.publisher())) {
+            return null;
+        }
+        return current().query(filter, restrictTo, sortKey, descending, offset, limit);
+    }
+
+    private static boolean hasWildcards(String fragment) {
+        return fragment != null && (fragment.indexOf('%') >= 0 || fragment.indexOf('_') >= 0
+            || fragment.indexOf('\\') >= 0);
+    }
+
+    @Override
+    protected Set<BookChangedEvent.Type> relevantChanges() {
+        return EnumSet.allOf(BookChangedEvent.Type.class);
+    }
+
+    @Override
+    protected Columns createEmpty() {
+        return new Columns();
+    }
+
+    @Override
+    protected void add(Columns columns, Book book) {
+        columns.put(book);
+    }
+
+    @Override
+    protected void remove(Columns columns, long bookId) {
+        columns.remove(bookId);
+    }
+
+    // copies move by their deltas: an edit publishes its own, and the entity's count may be stale
+    @Override
+    protected void apply(Columns columns, BookChangedEvent event) {
+        switch (event.getType()) {
+            case AVAILABILITY_CHANGED -> columns.addAvailableCopies(event.getBookId(), event.getAvailabilityDelta());
+            case UPDATED, RATING_CHANGED -> columns.put(event.getBook(), true);
+            default -> super.apply(columns, event);
+        }
+    }
+
+    // sorted here, on the rebuilding thread, rather than by the first request for each column
+    @Override
+    protected void afterRebuild(Columns columns) {
+        columns.sortAll();
+    }
+
+    /** Dictionary of a low-cardinality column with the slots holding each value. */
+    static final class Bitmaps {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private final List<BitSet> slots = new ArrayList<>();
+
+        int set(int slot, String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+                slots.add(new BitSet());
+            }
+            slots.get(id).set(slot);
+            return id;
+        }
+
+        void clear(int slot, int id) {
+            if (id != NONE) {
+                slots.get(id).clear(slot);
+            }
+        }
+
+        String value(int id) {
+            return id == NONE ? null : values.get(id);
+        }
+
+        BitSet equalTo(String value) {
+            Integer id = ids.get(value);
+            return id == null ? new BitSet() : slots.get(id);
+        }
+
+        BitSet containing(String fragment) {
+            String needle = fragment.toLowerCase(Locale.ROOT);
+            BitSet union = new BitSet();
+            for (int id = 0; id < values.size(); id++) {
+                if (values.get(id).toLowerCase(Locale.ROOT).contains(needle)) {
+                    union.or(slots.get(id));
+                }
+            }
+            return union;
+        }
+    }
+
+    /**
+     * Slots ordered by one column: non-null values ascending by (value, id), then NULLs by
+     * id. Holds every slot ever used, deleted ones included; changed only under the write lock.
+     */
+    private static final class Permutation {
+        private int[] order;
+        private int size;
+        private int nullStart;
+
+        Permutation(int[] order, int nullStart) {
+            this.order = order;
+            this.size = order.length;
+            this.nullStart = nullStart;
+        }
+
+        void removeAt(int index) {
+            System.arraycopy(order, index + 1, order, index, size - index - 1);
+            size--;
+            if (index < nullStart) {
+                nullStart--;
+            }
+        }
+
+        void insertAt(int index, int slot, boolean isNull) {
+            if (size == order.length) {
+                order = Arrays.copyOf(order, Math.max(16, size + (size >> 1)));
+            }
+            System.arraycopy(order, index, order, index + 1, size - index);
+            order[index] = slot;
+            size++;
+            if (!isNull) {
+                nullStart++;
+            }
+        }
+    }
+
+    static final class Columns {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final Map<Long, Integer> slotByBook = new HashMap<>();
+        private final Map<String, Integer> slotByIsbn = new HashMap<>();
+        private final BitSet live = new BitSet();
+        private final BitSet available = new BitSet();
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+        private int nextSlot;
+
+        private long[] bookIds = new long[1024];
+        private String[] titles = new String[1024];
+        private String[] authors = new String[1024];
+        private String[] isbns = new String[1024];
+        private int[] category = new int[1024];
+        private int[] language = new int[1024];
+        private int[] publisher = new int[1024];
+        private int[] year = new int[1024];
+        private int[] pageCount = new int[1024];
+        private int[] availableCopies = new int[1024];
+        private int[] totalCopies = new int[1024];
+        private int[] ratingCount = new int[1024];
+        private double[] rating = new double[1024];
+        private long[] createdAt = new long[1024];
+        private long[] updatedAt = new long[1024];
+
+        private final Bitmaps categories = new Bitmaps();
+        private final Bitmaps languages = new Bitmaps();
+        private final Bitmaps publishers = new Bitmaps();
+
+        private final AtomicReferenceArray<Permutation> permutations =
+            new AtomicReferenceArray<>(BookSortKey.values().length);
+
+        void put(Book book) {
+            put(book, false);
+        }
+
+        /** With {@code keepCopies}, a book already present keeps its available copies. */
+        void put(Book book, boolean keepCopies) {
+            lock.writeLock().lock();
+            try {
+                Integer existing = slotByBook.get(book.getId());
+                Integer copies = keepCopies && existing != null
+                    ? nullIfNone(availableCopies[existing]) : book.getAvailableCopies();
+                int slot;
+                // a reused slot still holds the deleted book's values, and is placed by them
+                boolean placed = existing != null || freeCount > 0;
+                if (existing != null) {
+                    slot = existing;
+                    clearSlot(slot);
+                } else {
+                    slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+                    ensureCapacity(slot);
+                    slotByBook.put(book.getId(), slot);
+                }
+                Book before = placed ? snapshotOf(slot) : null;
+                List<BookSortKey> moved = new ArrayList<>();
+                for (BookSortKey key : BookSortKey.values()) {
+                    Permutation permutation = permutations.get(key.ordinal());
+                    Object value = key == BookSortKey.AVAILABLE_COPIES ? copies : key.valueOf(book);
+                    if (permutation == null || (before != null && before.getId().equals(book.getId())
+                            && Objects.equals(value, key.valueOf(before)))) {
+                        continue;
+                    }
+                    if (placed) {
+                        permutation.removeAt(indexOf(key, permutation, slot));
+                    }
+                    moved.add(key);
+                }
+                write(slot, book, copies);
+                for (BookSortKey key : moved) {
+                    Permutation permutation = permutations.get(key.ordinal());
+                    permutation.insertAt(position(key, permutation, slot), slot, isNull(key, slot));
+                }
+                live.set(slot);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        /** Moves a present book's available copies by {@code delta}, never below zero. */
+        void addAvailableCopies(long bookId, int delta) {
+            lock.writeLock().lock();
+            try {
+                Integer slot = slotByBook.get(bookId);
+                if (slot == null || availableCopies[slot] == NULL_INT || delta == 0) {
+                    return;
+                }
+                Permutation permutation = permutations.get(BookSortKey.AVAILABLE_COPIES.ordinal());
+                if (permutation != null) {
+                    permutation.removeAt(indexOf(BookSortKey.AVAILABLE_COPIES, permutation, slot));
+                }
+                availableCopies[slot] = Math.max(0, availableCopies[slot] + delta);
+                available.set(slot, availableCopies[slot] > 0);
+                if (permutation != null) {
+                    permutation.insertAt(position(BookSortKey.AVAILABLE_COPIES, permutation, slot), slot, false);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long bookId) {
+            lock.writeLock().lock();
+            try {
+                Integer slot = slotByBook.remove(bookId);
+                if (slot == null) {
+                    return;
+                }
+                // the slot's values stay put, so permutations remain sorted; the live bitmap hides it
+                clearSlot(slot);
+                live.clear(slot);
+                if (freeCount == freeSlots.length) {
+                    freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+                }
+                freeSlots[freeCount++] = slot;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void write(int slot, Book book, Integer copies) {
+            bookIds[slot] = book.getId();
+            titles[slot] = book.getTitle();
+            authors[slot] = book.getAuthor();
+            isbns[slot] = book.getIsbn();
+            if (book.getIsbn() != null) {
+                slotByIsbn.put(book.getIsbn(), slot);
+            }
+            category[slot] = categories.set(slot, book.getCategory());
+            language[slot] = languages.set(slot, book.getLanguage());
+            publisher[slot] = publishers.set(slot, book.getPublisher());
+            year[slot] = intOrNull(book.getPublicationYear());
+            pageCount[slot] = intOrNull(book.getPageCount());
+            availableCopies[slot] = intOrNull(copies);
+            totalCopies[slot] = intOrNull(book.getTotalCopies());
+            ratingCount[slot] = intOrNull(book.getRatingCount());
+            rating[slot] = book.getAverageRating() == null ? Double.NaN : book.getAverageRating();
+            createdAt[slot] = timeOrNull(book.getCreatedAt());
+            updatedAt[slot] = timeOrNull(book.getUpdatedAt());
+            available.set(slot, copies != null && copies > 0);
+        }
+
+        private void clearSlot(int slot) {
+            if (isbns[slot] != null) {
+                slotByIsbn.remove(isbns[slot], slot);
+            }
+            categories.clear(slot, category[slot]);
+            languages.clear(slot, language[slot]);
+            publishers.clear(slot, publisher[slot]);
+            available.clear(slot);
+        }
+
+        // just enough of the row to tell which sort columns an update touched
+        private Book snapshotOf(int slot) {
+            Book book = new Book();
+            book.setId(bookIds[slot]);
+            book.setTitle(titles[slot]);
+            book.setAuthor(authors[slot]);
+            book.setIsbn(isbns[slot]);
+            book.setCategory(categories.value(category[slot]));
+            book.setLanguage(languages.value(language[slot]));
+            book.setPublisher(publishers.value(publisher[slot]));
+            book.setPublicationYear(nullIfNone(year[slot]));
+            book.setPageCount(nullIfNone(pageCount[slot]));
+            book.setAvailableCopies(nullIfNone(availableCopies[slot]));
+            book.setTotalCopies(nullIfNone(totalCopies[slot]));
+            book.setRatingCount(nullIfNone(ratingCount[slot]));
+            book.setAverageRating(Double.isNaN(rating[slot]) ? null : rating[slot]);
+            book.setCreatedAt(timeOf(createdAt[slot]));
+            book.setUpdatedAt(timeOf(updatedAt[slot]));
+            return book;
+        }
+
+        IdPage query(BookFilter filter, Collection<Long> restrictTo, BookSortKey sortKey,
+                     boolean descending, long offset, int limit) {
+            lock.readLock().lock();
+            try {
+                BitSet matches = evaluate(filter, restrictTo);
+                long total = matches.cardinality();
+                List<Long> ids = new ArrayList<>(Math.min(limit, (int) Math.min(total, Integer.MAX_VALUE)));
+                if (offset >= total || limit <= 0) {
+                    return new IdPage(ids, total);
+                }
+                Permutation permutation = permutation(sortKey);
+                int[] order = permutation.order;
+                long skipped = 0;
+                int[][] runs = descending
+                    ? new int[][] {{permutation.nullStart - 1, -1}, {permutation.size - 1, permutation.nullStart - 1}}
+                    : new int[][] {{0, permutation.nullStart}, {permutation.nullStart, permutation.size}};
+                int step = descending ? -1 : 1;
+                for (int[] run : runs) {
+                    for (int i = run[0]; i != run[1] && ids.size() < limit; i += step) {
+                        int slot = order[i];
+                        if (matches.get(slot) && skipped++ >= offset) {
+                            ids.add(bookIds[slot]);
+                        }
+                    }
+                }
+                return new IdPage(ids, total);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private BitSet evaluate(BookFilter filter, Collection<Long> restrictTo) {
+            BitSet result;
+            if (filter.isbn() != null) {
+                result = new BitSet();
+                Integer slot = slotByIsbn.get(filter.isbn());
+                if (slot != null) {
+                    result.set(slot);
+                }
+            } else {
+                result = (BitSet) live.clone();
+            }
+            if (restrictTo != null) {
+                BitSet allowed = new BitSet();
+                for (Long id : restrictTo) {
+                    Integer slot = slotByBook.get(id);
+                    if (slot != null) {
+                        allowed.set(slot);
+                    }
+                }
+                result.and(allowed);
+            }
+            if (filter.category() != null) {
+                result.and(categories.equalTo(filter.category()));
+            }
+            if (filter.language() != null) {
+                result.and(languages.equalTo(filter.language()));
+            }
+            if (filter.publisher() != null) {
+                result.and(publishers.containing(filter.publisher()));
+            }
+            if (filter.isAvailableOnly()) {
+                result.and(available);
+            }
+            if (filter.minYear() != null || filter.maxYear() != null) {
+                result.and(range(BookSortKey.PUBLICATION_YEAR, filter.minYear(), filter.maxYear()));
+            }
+            if (filter.minRating() != null || filter.maxRating() != null) {
+                result.and(range(BookSortKey.AVERAGE_RATING, filter.minRating(), filter.maxRating()));
+            }
+            // high-cardinality text: scan only what the cheaper filters left over
+            if (filter.title() != null || filter.author() != null) {
+                String title = lower(filter.title());
+                String author = lower(filter.author());
+                for (int slot = result.nextSetBit(0); slot >= 0; slot = result.nextSetBit(slot + 1)) {
+                    if (!contains(titles[slot], title) || !contains(authors[slot], author)) {
+                        result.clear(slot);
+                    }
+                }
+            }
+            return result;
+        }
+
+        /** Slots whose value lies in [min, max] (either bound may be null), found by binary search. */
+        private BitSet range(BookSortKey key, Integer min, Integer max) {
+            Permutation permutation = permutation(key);
+            int[] order = permutation.order;
+            int from = min == null ? 0 : lowerBound(key, order, permutation.nullStart, min);
+            int to = max == null ? permutation.nullStart : upperBound(key, order, permutation.nullStart, max);
+            BitSet slots = new BitSet();
+            for (int i = from; i < to; i++) {
+                slots.set(order[i]);
+            }
+            return slots;
+        }
+
+        private int lowerBound(BookSortKey key, int[] order, int end, double bound) {
+            int lo = 0, hi = end;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (numeric(key, order[mid]) < bound) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private int upperBound(BookSortKey key, int[] order, int end, double bound) {
+            int lo = 0, hi = end;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (numeric(key, order[mid]) <= bound) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        private double numeric(BookSortKey key, int slot) {
+            return key == BookSortKey.AVERAGE_RATING ? rating[slot] : year[slot];
+        }
+
+        void sortAll() {
+            lock.readLock().lock();
+            try {
+                for (BookSortKey key : BookSortKey.values()) {
+                    permutation(key);
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /**
+         * Normally sorted by {@link #sortAll()} once the snapshot is built, otherwise on first
+         * use. Sorting runs under the read lock and writers patch permutations under the
+         * write lock, so a sort never sees a half-applied change.
+         */
+        private Permutation permutation(BookSortKey key) {
+            Permutation permutation = permutations.get(key.ordinal());
+            if (permutation != null) {
+                return permutation;
+            }
+            int[] order = new int[nextSlot];
+            for (int slot = 0; slot < nextSlot; slot++) {
+                order[slot] = slot;
+            }
+            sort(order, (a, b) -> compare(key, a, b));
+            int nullStart = order.length;
+            for (int i = 0; i < order.length; i++) {
+                if (isNull(key, order[i])) {
+                    nullStart = i;
+                    break;
+                }
+            }
+            permutation = new Permutation(order, nullStart);
+            permutations.set(key.ordinal(), permutation);
+            return permutation;
+        }
+
+        // bottom-up merge sort over the slot numbers themselves, so no row is boxed
+        private static void sort(int[] slots, IntBinaryOperator comparator) {
+            int[] buffer = new int[slots.length];
+            for (int width = 1; width < slots.length; width *= 2) {
+                for (int lo = 0; lo + width < slots.length; lo += 2 * width) {
+                    int mid = lo + width;
+                    int hi = Math.min(lo + 2 * width, slots.length);
+                    if (comparator.applyAsInt(slots[mid - 1], slots[mid]) <= 0) {
+                        continue;
+                    }
+                    int left = lo, right = mid;
+                    for (int i = lo; i < hi; i++) {
+                        buffer[i] = right >= hi || (left < mid && comparator.applyAsInt(slots[left], slots[right]) <= 0)
+                            ? slots[left++] : slots[right++];
+                    }
+                    System.arraycopy(buffer, lo, slots, lo, hi - lo);
+                }
+            }
+        }
+
+        // where the slot belongs by its current values: the first position not ordered before it
+        private int position(BookSortKey key, Permutation permutation, int slot) {
+            int lo = 0, hi = permutation.size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (compare(key, permutation.order[mid], slot) < 0) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        // a deleted book's slot can tie with its re-added copy, so step past equal neighbours
+        private int indexOf(BookSortKey key, Permutation permutation, int slot) {
+            for (int index = position(key, permutation, slot); index < permutation.size; index++) {
+                if (permutation.order[index] == slot) {
+                    return index;
+                }
+                if (compare(key, permutation.order[index], slot) != 0) {
+                    break;
+                }
+            }
+            throw new IllegalStateException("Slot " + slot + " is not where its " + key + " value sorts");
+        }
+
+        private int compare(BookSortKey key, int a, int b) {
+            boolean aNull = isNull(key, a), bNull = isNull(key, b);
+            if (aNull != bNull) {
+                return aNull ? 1 : -1;
+            }
+            int byValue = aNull ? 0 : compareSlots(key, a, b);
+            return byValue != 0 ? byValue : Long.compare(bookIds[a], bookIds[b]);
+        }
+
+        private boolean isNull(BookSortKey key, int slot) {
+            return switch (key) {
+                case ID -> false;
+                case TITLE -> titles[slot] == null;
+                case AUTHOR -> authors[slot] == null;
+                case ISBN -> isbns[slot] == null;
+                case CATEGORY -> category[slot] == NONE;
+                case PUBLISHER -> publisher[slot] == NONE;
+                case LANGUAGE -> language[slot] == NONE;
+                case PUBLICATION_YEAR -> year[slot] == NULL_INT;
+                case PAGE_COUNT -> pageCount[slot] == NULL_INT;
+                case AVAILABLE_COPIES -> availableCopies[slot] == NULL_INT;
+                case TOTAL_COPIES -> totalCopies[slot] == NULL_INT;
+                case AVERAGE_RATING -> Double.isNaN(rating[slot]);
+                case RATING_COUNT -> ratingCount[slot] == NULL_INT;
+                case CREATED_AT -> createdAt[slot] == NULL_TIME;
+                case UPDATED_AT -> updatedAt[slot] == NULL_TIME;
+            };
+        }
+
+        private int compareSlots(BookSortKey key, int a, int b) {
+            return switch (key) {
+                case ID -> Long.compare(bookIds[a], bookIds[b]);
+                case TITLE -> TEXT_ORDER.compare(titles[a], titles[b]);
+                case AUTHOR -> TEXT_ORDER.compare(authors[a], authors[b]);
+                case ISBN -> TEXT_ORDER.compare(isbns[a], isbns[b]);
+                case CATEGORY -> TEXT_ORDER.compare(categories.value(category[a]), categories.value(category[b]));
+                case PUBLISHER -> TEXT_ORDER.compare(publishers.value(publisher[a]), publishers.value(publisher[b]));
+                case LANGUAGE -> TEXT_ORDER.compare(languages.value(language[a]), languages.value(language[b]));
+                case PUBLICATION_YEAR -> Integer.compare(year[a], year[b]);
+                case PAGE_COUNT -> Integer.compare(pageCount[a], pageCount[b]);
+                case AVAILABLE_COPIES -> Integer.compare(availableCopies[a], availableCopies[b]);
+                case TOTAL_COPIES -> Integer.compare(totalCopies[a], totalCopies[b]);
+                case AVERAGE_RATING -> Double.compare(rating[a], rating[b]);
+                case RATING_COUNT -> Integer.compare(ratingCount[a], ratingCount[b]);
+                case CREATED_AT -> Long.compare(createdAt[a], createdAt[b]);
+                case UPDATED_AT -> Long.compare(updatedAt[a], updatedAt[b]);
+            };
+        }
+
+        private void ensureCapacity(int slot) {
+            if (slot < bookIds.length) {
+                return;
+            }
+            int capacity = bookIds.length * 2;
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            authors = Arrays.copyOf(authors, capacity);
+            isbns = Arrays.copyOf(isbns, capacity);
+            category = Arrays.copyOf(category, capacity);
+            language = Arrays.copyOf(language, capacity);
+            publisher = Arrays.copyOf(publisher, capacity);
+            year = Arrays.copyOf(year, capacity);
+            pageCount = Arrays.copyOf(pageCount, capacity);
+            availableCopies = Arrays.copyOf(availableCopies, capacity);
+            totalCopies = Arrays.copyOf(totalCopies, capacity);
+            ratingCount = Arrays.copyOf(ratingCount, capacity);
+            rating = Arrays.copyOf(rating, capacity);
+            createdAt = Arrays.copyOf(createdAt, capacity);
+            updatedAt = Arrays.copyOf(updatedAt, capacity);
+        }
+
+        private static int intOrNull(Integer value) {
+            return value == null ? NULL_INT : value;
+        }
+
+        private static Integer nullIfNone(int value) {
+            return value == NULL_INT ? null : value;
+        }
+
+        private static long timeOrNull(LocalDateTime time) {
+            return time == null ? NULL_TIME : time.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + time.getNano();
+        }
+
+        private static LocalDateTime timeOf(long value) {
+            return value == NULL_TIME ? null
+                : LocalDateTime.ofEpochSecond(Math.floorDiv(value, 1_000_000_000L),
+                    (int) Math.floorMod(value, 1_000_000_000L), ZoneOffset.UTC);
+        }
+
+        private static String lower(String value) {
+            return value == null ? null : value.toLowerCase(Locale.ROOT);
+        }
+
+        private static boolean contains(String value, String lowerFragment) {
+            return lowerFragment == null
+                || (value != null && value.toLowerCase(Locale.ROOT).contains(lowerFragment));
+        }
+    }
+}
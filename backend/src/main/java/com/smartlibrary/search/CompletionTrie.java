@@ -0,0 +1,256 @@
+package com.smartlibrary.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Weighted prefix trie for typeahead.
+ *
+ * Every node caches the highest weight found anywhere below it, so top-k completion is
+ * a best-first walk that stops as soon as k entries have been emitted; it never visits
+ * the whole subtree of a short prefix. Children are kept in sorted parallel arrays
+ * rather than maps to keep the per-node footprint small.
+ */
+final class CompletionTrie {
+
+    static final int MAX_KEY_LENGTH = 40;
+
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Node root = new Node();
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /** A completion shared by every key it is reachable from. */
+    static final class Entry {
+        final String text;
+        final String type;
+        final Long bookId;
+        final String[] keys;
+        double weight;
+        int contributors;
+
+        Entry(String text, String type, Long bookId, String[] keys) {
+            this.text = text;
+            this.type = type;
+            this.bookId = bookId;
+            this.keys = keys;
+        }
+    }
+
+    /**
+     * Adds {@code delta} weight (and one contributor) to the entry identified by
+     * {@code id}, creating it under {@code keys} if needed. Returns the entry so the
+     * caller can later withdraw the same contribution.
+     */
+    Entry contribute(String id, String text, String type, Long bookId, String[] keys, double delta) {
+        lock.writeLock().lock();
+        try {
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                entry = new Entry(text, type, bookId, keys);
+                entries.put(id, entry);
+                for (String key : keys) {
+                    nodeFor(key).addEntry(entry);
+                }
+            }
+            entry.weight += delta;
+            entry.contributors++;
+            refresh(entry);
+            return entry;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void withdraw(String id, Entry entry, double delta) {
+        lock.writeLock().lock();
+        try {
+            entry.weight -= delta;
+            entry.contributors--;
+            if (entry.contributors <= 0) {
+                entries.remove(id, entry);
+                for (String key : entry.keys) {
+                    Node node = find(key);
+                    if (node != null) {
+                        node.removeEntry(entry);
+                    }
+                }
+            }
+            refresh(entry);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    List<Entry> complete(String prefix, int limit) {
+        lock.readLock().lock();
+        try {
+            Node start = find(prefix.length() > MAX_KEY_LENGTH ? prefix.substring(0, MAX_KEY_LENGTH) : prefix);
+            List<Entry> results = new ArrayList<>();
+            if (start == null || limit <= 0) {
+                return results;
+            }
+            PriorityQueue<Candidate> frontier = new PriorityQueue<>();
+            frontier.add(new Candidate(start.max, start, null));
+            Map<Entry, Boolean> emitted = new IdentityHashMap<>();
+            while (!frontier.isEmpty() && results.size() < limit) {
+                Candidate next = frontier.poll();
+                if (next.entry != null) {
+                    if (emitted.put(next.entry, Boolean.TRUE) == null) {
+                        results.add(next.entry);
+                    }
+                    continue;
+                }
+                for (Entry entry : next.node.entries) {
+                    frontier.add(new Candidate(entry.weight, null, entry));
+                }
+                for (Node child : next.node.children) {
+                    if (child.max != Double.NEGATIVE_INFINITY) {
+                        frontier.add(new Candidate(child.max, child, null));
+                    }
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void refresh(Entry entry) {
+        for (String key : entry.keys) {
+            Node[] path = new Node[key.length() + 1];
+            path[0] = root;
+            int depth = 0;
+            while (depth < key.length() && path[depth] != null) {
+                path[depth + 1] = path[depth].child(key.charAt(depth));
+                depth++;
+            }
+            for (int i = depth; i >= 0; i--) {
+                if (path[i] != null) {
+                    path[i].recomputeMax();
+                }
+            }
+        }
+    }
+
+    private Node nodeFor(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.childOrCreate(key.charAt(i));
+        }
+        return node;
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static final class Node {
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        Entry[] entries = NO_ENTRIES;
+        double max = Double.NEGATIVE_INFINITY;
+
+        Node child(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node childOrCreate(char label) {
+            int i = Arrays.binarySearch(labels, label);
+            if (i >= 0) {
+                return children[i];
+            }
+            i = -i - 1;
+            Node created = new Node();
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, i);
+            System.arraycopy(children, 0, newChildren, 0, i);
+            newLabels[i] = label;
+            newChildren[i] = created;
+            System.arraycopy(labels, i, newLabels, i + 1, labels.length - i);
+            System.arraycopy(children, i, newChildren, i + 1, children.length - i);
+            labels = newLabels;
+            children = newChildren;
+            return created;
+        }
+
+        void addEntry(Entry entry) {
+            for (Entry existing : entries) {
+                if (existing == entry) {
+                    return;
+                }
+            }
+            entries = Arrays.copyOf(entries, entries.length + 1);
+            entries[entries.length - 1] = entry;
+        }
+
+        void removeEntry(Entry entry) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i] == entry) {
+                    Entry[] remaining = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, remaining, 0, i);
+                    System.arraycopy(entries, i + 1, remaining, i, entries.length - i - 1);
+                    entries = remaining;
+                    return;
+                }
+            }
+        }
+
+        void recomputeMax() {
+            double best = Double.NEGATIVE_INFINITY;
+            for (Entry entry : entries) {
+                best = Math.max(best, entry.weight);
+            }
+            for (Node child : children) {
+                best = Math.max(best, child.max);
+            }
+            max = best;
+        }
+    }
+
+    private static final class Candidate implements Comparable<Candidate> {
+        final double weight;
+        final Node node;
+        final Entry entry;
+
+        Candidate(double weight, Node node, Entry entry) {
+            this.weight = weight;
+            this.node = node;
+            this.entry = entry;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int byWeight = Double.compare(other.weight, weight);
+            if (byWeight != 0) {
+                return byWeight;
+            }
+            // at equal weight emit entries before expanding nodes so ties stop early
+            return Boolean.compare(entry == null, other.entry == null);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.smartlibrary.search;
+
+import java.util.Locale;
+
+/**
+ * How a paged listing reports its total, chosen with the {@code count} request parameter.
+ *
+ * EXACT runs a COUNT query when the total is not already known in memory. APPROXIMATE
+ * takes the total from maintained counters and index hit counts, which may lag a commit
+ * or, for text search, count index hits rather than database matches; when no such
+ * figure exists the response is a slice. NONE never reports a total: the response only
+ * says whether another page follows.
+ */
+public enum CountMode {
+    EXACT, APPROXIMATE, NONE;
+
+    public static CountMode fromParam(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unsupported count mode: " + value);
+        }
+    }
+}
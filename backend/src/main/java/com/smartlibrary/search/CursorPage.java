@@ -0,0 +1,9 @@
+package com.smartlibrary.search;
+
+import java.util.List;
+
+/**
+ * A slice of results for keyset paging: no total count, just whether more rows follow
+ * and the token to fetch them with.
+ */
+public record CursorPage<T>(List<T> content, int size, boolean hasNext, String nextCursor) {}
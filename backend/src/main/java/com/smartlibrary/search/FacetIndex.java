@@ -0,0 +1,445 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Category, language, publisher, decade and availability counts for the catalog.
+ *
+ * Whole-catalog counts are maintained as books change, so the distinct-value lists and
+ * an unfiltered facet panel cost nothing to serve. For a filtered search the matching
+ * rows are counted from dictionary-encoded columns held here.
+ */
+@Component
+public class FacetIndex extends CatalogIndex<FacetIndex.Columns> {
+
+    public static final String CATEGORY = "category";
+    public static final String LANGUAGE = "language";
+    public static final String PUBLISHER = "publisher";
+    public static final String DECADE = "decade";
+    public static final String AVAILABILITY = "availability";
+
+    private static final int NONE = -1;
+
+    public List<String> categories() {
+        return current().distinct(c -> c.categories);
+    }
+
+    public List<String> languages() {
+        return current().distinct(c -> c.languages);
+    }
+
+    public List<String> publishers() {
+        return current().distinct(c -> c.publishers);
+    }
+
+    /**
+     * Facet counts over the books that match {@code filter} and, when {@code restrictTo}
+     * is non-null, are also in that id set. Substring filters are not evaluated here;
+     * callers resolve them into {@code restrictTo} first.
+     */
+    public Map<String, Map<String, Long>> count(BookFilter filter, Collection<Long> restrictTo, int limit) {
+        return current().count(filter, restrictTo, limit);
+    }
+
+    public long bookCount() {
+        return current().totals()[0];
+    }
+
+    public long availableCount() {
+        return current().totals()[1];
+    }
+
+    /** Number of books {@link #count} would tally; same contract for substring filters. */
+    public long matchCount(BookFilter filter, Collection<Long> restrictTo) {
+        return current().matchCount(filter, restrictTo);
+    }
+
+    @Override
+    protected Set<BookChangedEvent.Type> relevantChanges() {
+        return EnumSet.allOf(BookChangedEvent.Type.class);
+    }
+
+    @Override
+    protected void apply(Columns columns, BookChangedEvent event) {
+        switch (event.getType()) {
+            case AVAILABILITY_CHANGED -> columns.addAvailableCopies(event.getBookId(), event.getAvailabilityDelta());
+            case UPDATED, RATING_CHANGED -> columns.put(event.getBook(), true);
+            default -> super.apply(columns, event);
+        }
+    }
+
+    @Override
+    protected Columns createEmpty() {
+        return new Columns();
+    }
+
+    @Override
+    protected void add(Columns columns, Book book) {
+        columns.put(book);
+    }
+
+    @Override
+    protected void remove(Columns columns, long bookId) {
+        columns.remove(bookId);
+    }
+
+    static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> values = new ArrayList<>();
+        private int[] counts = new int[16];
+
+        int acquire(String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer id = ids.get(value);
+            if (id == null) {
+                id = values.size();
+                ids.put(value, id);
+                values.add(value);
+                if (id == counts.length) {
+                    counts = Arrays.copyOf(counts, id * 2);
+                }
+            }
+            counts[id]++;
+            return id;
+        }
+
+        void release(int id) {
+            if (id != NONE) {
+                counts[id]--;
+            }
+        }
+
+        Integer idOf(String value) {
+            return ids.get(value);
+        }
+
+        int size() {
+            return values.size();
+        }
+    }
+
+    static final class Columns {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+        private final Map<Long, Integer> slotByBook = new HashMap<>();
+        private final Map<String, Integer> slotByIsbn = new HashMap<>();
+        private final BitSet live = new BitSet();
+        private final BitSet available = new BitSet();
+        private int[] freeSlots = new int[16];
+        private int freeCount;
+        private int nextSlot;
+
+        private long[] bookIds = new long[1024];
+        private String[] isbns = new String[1024];
+        private int[] category = new int[1024];
+        private int[] language = new int[1024];
+        private int[] publisher = new int[1024];
+        private int[] year = new int[1024];
+        private double[] rating = new double[1024];
+        private int[] copies = new int[1024];
+
+        final Dictionary categories = new Dictionary();
+        final Dictionary languages = new Dictionary();
+        final Dictionary publishers = new Dictionary();
+        private final Map<Integer, Integer> decadeCounts = new TreeMap<>();
+        private int availableCount;
+
+        void put(Book book) {
+            put(book, false);
+        }
+
+        /** With {@code keepCopies}, a book already present keeps its available copies. */
+        void put(Book book, boolean keepCopies) {
+            lock.writeLock().lock();
+            try {
+                Integer existing = slotByBook.get(book.getId());
+                int availableCopies = keepCopies && existing != null ? copies[existing]
+                    : book.getAvailableCopies() == null ? 0 : book.getAvailableCopies();
+                removeLocked(book.getId());
+                int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+                ensureCapacity(slot);
+                slotByBook.put(book.getId(), slot);
+                bookIds[slot] = book.getId();
+                isbns[slot] = book.getIsbn();
+                if (book.getIsbn() != null) {
+                    slotByIsbn.put(book.getIsbn(), slot);
+                }
+                category[slot] = categories.acquire(book.getCategory());
+                language[slot] = languages.acquire(book.getLanguage());
+                publisher[slot] = publishers.acquire(book.getPublisher());
+                year[slot] = book.getPublicationYear() == null ? Integer.MIN_VALUE : book.getPublicationYear();
+                rating[slot] = book.getAverageRating() == null ? Double.NaN : book.getAverageRating();
+                if (year[slot] != Integer.MIN_VALUE) {
+                    decadeCounts.merge(decade(year[slot]), 1, Integer::sum);
+                }
+                copies[slot] = availableCopies;
+                available.set(slot, availableCopies > 0);
+                if (availableCopies > 0) {
+                    availableCount++;
+                }
+                live.set(slot);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void addAvailableCopies(long bookId, int delta) {
+            lock.writeLock().lock();
+            try {
+                Integer slot = slotByBook.get(bookId);
+                if (slot == null) {
+                    return;
+                }
+                boolean wasAvailable = available.get(slot);
+                copies[slot] = Math.max(0, copies[slot] + delta);
+                available.set(slot, copies[slot] > 0);
+                availableCount += (copies[slot] > 0 ? 1 : 0) - (wasAvailable ? 1 : 0);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long bookId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeLocked(long bookId) {
+            Integer slot = slotByBook.remove(bookId);
+            if (slot == null) {
+                return;
+            }
+            if (isbns[slot] != null) {
+                slotByIsbn.remove(isbns[slot], slot);
+            }
+            categories.release(category[slot]);
+            languages.release(language[slot]);
+            publishers.release(publisher[slot]);
+            if (year[slot] != Integer.MIN_VALUE) {
+                decadeCounts.merge(decade(year[slot]), -1, Integer::sum);
+                decadeCounts.remove(decade(year[slot]), 0);
+            }
+            if (available.get(slot)) {
+                availableCount--;
+            }
+            live.clear(slot);
+            available.clear(slot);
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = slot;
+        }
+
+        List<String> distinct(Function<Columns, Dictionary> dimension) {
+            lock.readLock().lock();
+            try {
+                Dictionary dictionary = dimension.apply(this);
+                List<String> values = new ArrayList<>();
+                for (int id = 0; id < dictionary.size(); id++) {
+                    if (dictionary.counts[id] > 0) {
+                        values.add(dictionary.values.get(id));
+                    }
+                }
+                values.sort(null);
+                return values;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        Map<String, Map<String, Long>> count(BookFilter filter, Collection<Long> restrictTo, int limit) {
+            lock.readLock().lock();
+            try {
+                int[] categoryCounts;
+                int[] languageCounts;
+                int[] publisherCounts;
+                Map<Integer, Integer> decades;
+                int availableMatches;
+                int total;
+
+                if (restrictTo == null && (filter == null || filter.isEmpty())) {
+                    categoryCounts = categories.counts;
+                    languageCounts = languages.counts;
+                    publisherCounts = publishers.counts;
+                    decades = decadeCounts;
+                    availableMatches = availableCount;
+                    total = slotByBook.size();
+                } else {
+                    int[] categoryTally = new int[categories.size()];
+                    int[] languageTally = new int[languages.size()];
+                    int[] publisherTally = new int[publishers.size()];
+                    Map<Integer, Integer> decadeTally = new TreeMap<>();
+                    int[] matched = new int[2];
+                    SlotPredicate matches = compile(filter);
+                    forEachCandidate(filter, restrictTo, slot -> {
+                        if (!matches.test(slot)) {
+                            return;
+                        }
+                        matched[0]++;
+                        if (category[slot] != NONE) categoryTally[category[slot]]++;
+                        if (language[slot] != NONE) languageTally[language[slot]]++;
+                        if (publisher[slot] != NONE) publisherTally[publisher[slot]]++;
+                        if (year[slot] != Integer.MIN_VALUE) decadeTally.merge(decade(year[slot]), 1, Integer::sum);
+                        if (available.get(slot)) matched[1]++;
+                    });
+                    categoryCounts = categoryTally;
+                    languageCounts = languageTally;
+                    publisherCounts = publisherTally;
+                    decades = decadeTally;
+                    total = matched[0];
+                    availableMatches = matched[1];
+                }
+
+                Map<String, Map<String, Long>> facets = new LinkedHashMap<>();
+                facets.put(CATEGORY, top(categories, categoryCounts, limit));
+                facets.put(LANGUAGE, top(languages, languageCounts, limit));
+                facets.put(PUBLISHER, top(publishers, publisherCounts, limit));
+                Map<String, Long> decadeFacet = new LinkedHashMap<>();
+                decades.forEach((decade, count) -> {
+                    if (count > 0) decadeFacet.put(decade + "s", (long) count);
+                });
+                facets.put(DECADE, decadeFacet);
+                Map<String, Long> availability = new LinkedHashMap<>();
+                availability.put("available", (long) availableMatches);
+                availability.put("unavailable", (long) (total - availableMatches));
+                facets.put(AVAILABILITY, availability);
+                return facets;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long[] totals() {
+            lock.readLock().lock();
+            try {
+                return new long[] {slotByBook.size(), availableCount};
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        long matchCount(BookFilter filter, Collection<Long> restrictTo) {
+            lock.readLock().lock();
+            try {
+                long[] matched = new long[1];
+                SlotPredicate matches = compile(filter);
+                forEachCandidate(filter, restrictTo, slot -> {
+                    if (matches.test(slot)) {
+                        matched[0]++;
+                    }
+                });
+                return matched[0];
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        private interface SlotPredicate {
+            boolean test(int slot);
+        }
+
+        private SlotPredicate compile(BookFilter filter) {
+            if (filter == null) {
+                return slot -> true;
+            }
+            int categoryId = idOrMissing(categories, filter.category());
+            int languageId = idOrMissing(languages, filter.language());
+            return slot -> (filter.category() == null || category[slot] == categoryId)
+                && (filter.language() == null || language[slot] == languageId)
+                && (filter.isbn() == null || filter.isbn().equals(isbns[slot]))
+                && (filter.minYear() == null || (year[slot] != Integer.MIN_VALUE && year[slot] >= filter.minYear()))
+                && (filter.maxYear() == null || (year[slot] != Integer.MIN_VALUE && year[slot] <= filter.maxYear()))
+                && (filter.minRating() == null || rating[slot] >= filter.minRating())
+                && (filter.maxRating() == null || rating[slot] <= filter.maxRating())
+                && (!filter.isAvailableOnly() || available.get(slot));
+        }
+
+        private void forEachCandidate(BookFilter filter, Collection<Long> restrictTo, IntConsumer action) {
+            if (filter != null && filter.isbn() != null) {
+                Integer slot = slotByIsbn.get(filter.isbn());
+                if (slot != null && (restrictTo == null || restrictTo.contains(bookIds[slot]))) {
+                    action.accept(slot);
+                }
+            } else if (restrictTo != null) {
+                for (Long id : restrictTo) {
+                    Integer slot = slotByBook.get(id);
+                    if (slot != null) {
+                        action.accept(slot);
+                    }
+                }
+            } else {
+                for (int slot = live.nextSetBit(0); slot >= 0; slot = live.nextSetBit(slot + 1)) {
+                    action.accept(slot);
+                }
+            }
+        }
+
+        private static int idOrMissing(Dictionary dictionary, String value) {
+            if (value == null) {
+                return NONE;
+            }
+            Integer id = dictionary.idOf(value);
+            // an unknown value must match nothing, so use an id no slot can hold
+            return id == null ? Integer.MIN_VALUE : id;
+        }
+
+        private static Map<String, Long> top(Dictionary dictionary, int[] counts, int limit) {
+            List<Integer> ids = new ArrayList<>();
+            for (int id = 0; id < Math.min(counts.length, dictionary.size()); id++) {
+                if (counts[id] > 0) {
+                    ids.add(id);
+                }
+            }
+            ids.sort((a, b) -> counts[a] != counts[b]
+                ? Integer.compare(counts[b], counts[a])
+                : dictionary.values.get(a).compareTo(dictionary.values.get(b)));
+            Map<String, Long> facet = new LinkedHashMap<>();
+            for (int id : ids.subList(0, Math.max(0, Math.min(limit, ids.size())))) {
+                facet.put(dictionary.values.get(id), (long) counts[id]);
+            }
+            return facet;
+        }
+
+        private static int decade(int year) {
+            return Math.floorDiv(year, 10) * 10;
+        }
+
+        private void ensureCapacity(int slot) {
+            if (slot < bookIds.length) {
+                return;
+            }
+            int capacity = bookIds.length * 2;
+            bookIds = Arrays.copyOf(bookIds, capacity);
+            isbns = Arrays.copyOf(isbns, capacity);
+            category = Arrays.copyOf(category, capacity);
+            language = Arrays.copyOf(language, capacity);
+            publisher = Arrays.copyOf(publisher, capacity);
+            year = Arrays.copyOf(year, capacity);
+            rating = Arrays.copyOf(rating, capacity);
+            copies = Arrays.copyOf(copies, capacity);
+        }
+    }
+}
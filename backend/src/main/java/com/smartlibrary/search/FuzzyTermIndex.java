@@ -0,0 +1,171 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Typo-tolerant lookup over the title and author vocabulary for
+ * {@code /api/books/search?fuzzy=true}.
+ *
+ * Every query word is expanded to vocabulary terms within a small edit distance (none
+ * for very short words, one up to five letters, two beyond), and a book has to match
+ * each word through one of its expansions. Hits rank by total edit distance, then
+ * average rating. The work is bounded by the BK-tree walk and the postings of at most
+ * {@value #MAX_EXPANSIONS} terms per word.
+ */
+@Component
+public class FuzzyTermIndex extends CatalogIndex<FuzzyTermIndex.Vocabulary> {
+
+    static final int MAX_EXPANSIONS = 32;
+
+    // one edit always outweighs the whole 0-5 rating range
+    private static final float DISTANCE_PENALTY = 10f;
+
+    public List<SearchHit> search(String query) {
+        List<String> words = new ArrayList<>(new LinkedHashSet<>(TextAnalyzer.analyze(query)));
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        return current().search(words);
+    }
+
+    static int maxDistance(String word) {
+        if (word.length() <= 2) return 0;
+        if (word.length() <= 5) return 1;
+        return 2;
+    }
+
+    @Override
+    protected Set<BookChangedEvent.Type> relevantChanges() {
+        return EnumSet.of(BookChangedEvent.Type.CREATED, BookChangedEvent.Type.UPDATED,
+            BookChangedEvent.Type.DELETED, BookChangedEvent.Type.RATING_CHANGED);
+    }
+
+    @Override
+    protected Vocabulary createEmpty() {
+        return new Vocabulary();
+    }
+
+    @Override
+    protected void add(Vocabulary vocabulary, Book book) {
+        Set<String> terms = new HashSet<>(TextAnalyzer.analyze(book.getTitle()));
+        terms.addAll(TextAnalyzer.analyze(book.getAuthor()));
+        double rating = book.getAverageRating() == null ? 0 : book.getAverageRating();
+        vocabulary.put(book.getId(), terms.toArray(new String[0]), (float) rating);
+    }
+
+    @Override
+    protected void remove(Vocabulary vocabulary, long bookId) {
+        vocabulary.remove(bookId);
+    }
+
+    static final class Vocabulary {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final BkTree tree = new BkTree();
+        private final Map<String, Set<Long>> postings = new HashMap<>();
+        private final Map<Long, String[]> termsByBook = new HashMap<>();
+        private final Map<Long, Float> ratings = new HashMap<>();
+
+        void put(long bookId, String[] terms, float rating) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(bookId);
+                for (String term : terms) {
+                    Set<Long> books = postings.get(term);
+                    if (books == null) {
+                        books = new HashSet<>();
+                        postings.put(term, books);
+                        tree.add(term);
+                    }
+                    books.add(bookId);
+                }
+                termsByBook.put(bookId, terms);
+                ratings.put(bookId, rating);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        void remove(long bookId) {
+            lock.writeLock().lock();
+            try {
+                removeLocked(bookId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        private void removeLocked(long bookId) {
+            String[] terms = termsByBook.remove(bookId);
+            ratings.remove(bookId);
+            if (terms == null) {
+                return;
+            }
+            for (String term : terms) {
+                // the term stays in the BK-tree; an empty posting set just never matches
+                postings.get(term).remove(bookId);
+            }
+        }
+
+        List<SearchHit> search(List<String> words) {
+            lock.readLock().lock();
+            try {
+                List<Map<Long, Integer>> slots = new ArrayList<>();
+                for (String word : words) {
+                    Map<Long, Integer> closest = closestBooks(word);
+                    if (closest.isEmpty()) {
+                        return List.of();
+                    }
+                    slots.add(closest);
+                }
+                slots.sort(Comparator.comparingInt(Map::size));
+
+                List<SearchHit> hits = new ArrayList<>();
+                candidates:
+                for (Map.Entry<Long, Integer> candidate : slots.get(0).entrySet()) {
+                    int total = candidate.getValue();
+                    for (int s = 1; s < slots.size(); s++) {
+                        Integer distance = slots.get(s).get(candidate.getKey());
+                        if (distance == null) {
+                            continue candidates;
+                        }
+                        total += distance;
+                    }
+                    float score = ratings.get(candidate.getKey()) - DISTANCE_PENALTY * total;
+                    hits.add(new SearchHit(candidate.getKey(), score));
+                }
+                hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                    .thenComparingLong(SearchHit::bookId));
+                return hits;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        /** Book id -> smallest edit distance at which one of its terms matches {@code word}. */
+        private Map<Long, Integer> closestBooks(String word) {
+            List<BkTree.Match> matches = tree.search(word, maxDistance(word));
+            matches.removeIf(match -> postings.get(match.term()).isEmpty());
+            matches.sort(Comparator.comparingInt(BkTree.Match::distance));
+            Map<Long, Integer> closest = new HashMap<>();
+            for (BkTree.Match match : matches.subList(0, Math.min(MAX_EXPANSIONS, matches.size()))) {
+                for (Long bookId : postings.get(match.term())) {
+                    closest.merge(bookId, match.distance(), Math::min);
+                }
+            }
+            return closest;
+        }
+    }
+}
@@ -0,0 +1,342 @@
+package com.smartlibrary.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Term -> postings index with BM25 scoring.
+ *
+ * Documents get a fresh internal number every time they are (re)indexed, so postings
+ * only ever grow at the tail and stay sorted without re-sorting. Updates remove the
+ * old number from the postings it appeared in and append the new one. Once dead numbers
+ * outnumber live ones, live documents are renumbered in order and emptied terms dropped,
+ * which keeps every posting sorted and the arrays bounded by the live catalog.
+ */
+final class InvertedIndex {
+
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+    private static final int MIN_PREFIX_LENGTH = 2;
+    private static final int MIN_DEAD_TO_COMPACT = 1024;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final TreeMap<String, Integer> termIds = new TreeMap<>();
+    private Posting[] postings = new Posting[1024];
+    private int termCount;
+
+    private final Map<Long, Integer> docByBook = new HashMap<>();
+    private long[] bookIds = new long[1024];
+    private float[] docLengths = new float[1024];
+    private int[][] docTerms = new int[1024][];
+    private int nextDoc;
+    private int liveDocs;
+    private double totalLength;
+
+    void add(long bookId, Map<String, Float> weightedTerms) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+            if (weightedTerms.isEmpty()) {
+                return;
+            }
+            int doc = nextDoc++;
+            ensureDocCapacity(doc);
+            int[] terms = new int[weightedTerms.size()];
+            float length = 0;
+            int i = 0;
+            for (Map.Entry<String, Float> entry : weightedTerms.entrySet()) {
+                int termId = termIdFor(entry.getKey());
+                postings[termId].append(doc, entry.getValue());
+                terms[i++] = termId;
+                length += entry.getValue();
+            }
+            bookIds[doc] = bookId;
+            docLengths[doc] = length;
+            docTerms[doc] = terms;
+            docByBook.put(bookId, doc);
+            liveDocs++;
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long bookId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(bookId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Internal document numbers handed out since the last compaction, live or dead. */
+    int docNumbers() {
+        lock.readLock().lock();
+        try {
+            return nextDoc;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Every term must match (AND). When {@code prefix} is given it is one more required
+     * slot satisfied by any indexed term starting with it, so "tolk" finds "tolkien".
+     */
+    List<SearchHit> search(List<String> terms, String prefix) {
+        lock.readLock().lock();
+        try {
+            List<Posting[]> slots = new ArrayList<>();
+            for (String term : terms) {
+                Integer termId = termIds.get(term);
+                if (termId == null || postings[termId].size == 0) {
+                    return List.of();
+                }
+                slots.add(new Posting[] { postings[termId] });
+            }
+            if (prefix != null) {
+                Posting[] expansions = expand(prefix);
+                if (expansions.length == 0) {
+                    return List.of();
+                }
+                slots.add(expansions);
+            }
+            if (slots.isEmpty() || liveDocs == 0) {
+                return List.of();
+            }
+            slots.sort(Comparator.comparingLong(InvertedIndex::documentFrequency));
+
+            float avgLength = (float) (totalLength / liveDocs);
+            Posting[] rarest = slots.get(0);
+            int[] candidates = new int[(int) documentFrequency(rarest)];
+            float[] scores = new float[candidates.length];
+            int count = union(rarest, avgLength, candidates, scores);
+
+            for (int s = 1; s < slots.size() && count > 0; s++) {
+                Posting[] slot = slots.get(s);
+                int kept = 0;
+                for (int c = 0; c < count; c++) {
+                    float best = bestScore(slot, candidates[c], avgLength);
+                    if (best > 0) {
+                        candidates[kept] = candidates[c];
+                        scores[kept] = scores[c] + best;
+                        kept++;
+                    }
+                }
+                count = kept;
+            }
+
+            List<SearchHit> hits = new ArrayList<>(count);
+            for (int c = 0; c < count; c++) {
+                hits.add(new SearchHit(bookIds[candidates[c]], scores[c]));
+            }
+            hits.sort(Comparator.comparingDouble(SearchHit::score).reversed()
+                .thenComparingLong(SearchHit::bookId));
+            return hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Posting[] expand(String prefix) {
+        if (prefix.length() < MIN_PREFIX_LENGTH) {
+            Integer termId = termIds.get(prefix);
+            return termId == null || postings[termId].size == 0
+                ? new Posting[0] : new Posting[] { postings[termId] };
+        }
+        List<Posting> matches = new ArrayList<>();
+        for (Integer termId : termIds.subMap(prefix, prefix + Character.MAX_VALUE).values()) {
+            if (postings[termId].size > 0) {
+                matches.add(postings[termId]);
+                if (matches.size() == MAX_PREFIX_EXPANSIONS) {
+                    break;
+                }
+            }
+        }
+        return matches.toArray(new Posting[0]);
+    }
+
+    private static long documentFrequency(Posting[] slot) {
+        long df = 0;
+        for (Posting posting : slot) {
+            df += posting.size;
+        }
+        return df;
+    }
+
+    /** Merges the slot's postings into (doc, best score) pairs sorted by doc. */
+    private int union(Posting[] slot, float avgLength, int[] docs, float[] scores) {
+        int count = 0;
+        int[] mergedDocs = new int[docs.length];
+        float[] mergedScores = new float[docs.length];
+        for (Posting posting : slot) {
+            float idf = idf(posting.size);
+            int i = 0, j = 0, n = 0;
+            while (i < count || j < posting.size) {
+                if (j == posting.size || (i < count && docs[i] < posting.docs[j])) {
+                    mergedDocs[n] = docs[i];
+                    mergedScores[n++] = scores[i++];
+                } else {
+                    float score = bm25(idf, posting.tfs[j], posting.docs[j], avgLength);
+                    if (i < count && docs[i] == posting.docs[j]) {
+                        score = Math.max(score, scores[i++]);
+                    }
+                    mergedDocs[n] = posting.docs[j++];
+                    mergedScores[n++] = score;
+                }
+            }
+            System.arraycopy(mergedDocs, 0, docs, 0, n);
+            System.arraycopy(mergedScores, 0, scores, 0, n);
+            count = n;
+        }
+        return count;
+    }
+
+    private float bestScore(Posting[] slot, int doc, float avgLength) {
+        float best = 0;
+        for (Posting posting : slot) {
+            int i = Arrays.binarySearch(posting.docs, 0, posting.size, doc);
+            if (i >= 0) {
+                best = Math.max(best, bm25(idf(posting.size), posting.tfs[i], doc, avgLength));
+            }
+        }
+        return best;
+    }
+
+    private float idf(int df) {
+        return (float) Math.log(1 + (liveDocs - df + 0.5) / (df + 0.5));
+    }
+
+    private float bm25(float idf, float tf, int doc, float avgLength) {
+        float norm = K1 * (1 - B + B * docLengths[doc] / avgLength);
+        return idf * tf * (K1 + 1) / (tf + norm);
+    }
+
+    private void removeLocked(long bookId) {
+        Integer doc = docByBook.remove(bookId);
+        if (doc == null) {
+            return;
+        }
+        for (int termId : docTerms[doc]) {
+            postings[termId].remove(doc);
+        }
+        totalLength -= docLengths[doc];
+        docTerms[doc] = null;
+        liveDocs--;
+        int dead = nextDoc - liveDocs;
+        if (dead >= MIN_DEAD_TO_COMPACT && dead > liveDocs) {
+            compactLocked();
+        }
+    }
+
+    private void compactLocked() {
+        int[] docRenumbering = new int[nextDoc];
+        int live = 0;
+        for (int doc = 0; doc < nextDoc; doc++) {
+            if (docTerms[doc] == null) {
+                continue;
+            }
+            docRenumbering[doc] = live;
+            bookIds[live] = bookIds[doc];
+            docLengths[live] = docLengths[doc];
+            docTerms[live] = docTerms[doc];
+            docByBook.put(bookIds[live], live);
+            live++;
+        }
+        Arrays.fill(docTerms, live, nextDoc, null);
+        nextDoc = live;
+
+        int[] termRenumbering = new int[termCount];
+        Posting[] kept = new Posting[postings.length];
+        int terms = 0;
+        for (Iterator<Map.Entry<String, Integer>> it = termIds.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Integer> entry = it.next();
+            Posting posting = postings[entry.getValue()];
+            if (posting.size == 0) {
+                it.remove();
+                continue;
+            }
+            // live documents keep their relative order, so the renumbered postings stay sorted
+            for (int i = 0; i < posting.size; i++) {
+                posting.docs[i] = docRenumbering[posting.docs[i]];
+            }
+            termRenumbering[entry.getValue()] = terms;
+            kept[terms] = posting;
+            entry.setValue(terms++);
+        }
+        postings = kept;
+        termCount = terms;
+        for (int doc = 0; doc < nextDoc; doc++) {
+            int[] docTermIds = docTerms[doc];
+            for (int i = 0; i < docTermIds.length; i++) {
+                docTermIds[i] = termRenumbering[docTermIds[i]];
+            }
+        }
+    }
+
+    private int termIdFor(String term) {
+        Integer termId = termIds.get(term);
+        if (termId != null) {
+            return termId;
+        }
+        if (termCount == postings.length) {
+            postings = Arrays.copyOf(postings, termCount * 2);
+        }
+        postings[termCount] = new Posting();
+        termIds.put(term, termCount);
+        return termCount++;
+    }
+
+    private void ensureDocCapacity(int doc) {
+        if (doc < bookIds.length) {
+            return;
+        }
+        int capacity = bookIds.length * 2;
+        bookIds = Arrays.copyOf(bookIds, capacity);
+        docLengths = Arrays.copyOf(docLengths, capacity);
+        docTerms = Arrays.copyOf(docTerms, capacity);
+    }
+
+    private static final class Posting {
+        int[] docs = new int[4];
+        float[] tfs = new float[4];
+        int size;
+
+        void append(int doc, float tf) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                tfs = Arrays.copyOf(tfs, size * 2);
+            }
+            docs[size] = doc;
+            tfs[size++] = tf;
+        }
+
+        void remove(int doc) {
+            int i = Arrays.binarySearch(docs, 0, size, doc);
+            if (i >= 0) {
+                System.arraycopy(docs, i + 1, docs, i, size - i - 1);
+                System.arraycopy(tfs, i + 1, tfs, i, size - i - 1);
+                size--;
+            }
+        }
+    }
+}
@@ -0,0 +1,3 @@
+package com.smartlibrary.search;
+
+public record SearchHit(long bookId, float score) {}
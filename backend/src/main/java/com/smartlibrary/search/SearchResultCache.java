@@ -0,0 +1,148 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of search and filter result pages with a time-to-live.
+ *
+ * Entries are dropped as precisely as the change allows: a new or deleted book only
+ * evicts filter pages it could appear on, a rating change only pages that filter or
+ * sort on rating, and an availability change only pages filtered with
+ * {@code availableOnly} or sorted by copies. Edits to an existing book evict everything,
+ * since its previous values are no longer known.
+ */
+@Component
+public class SearchResultCache {
+
+    public record Key(String searchTerm, BookFilter filter, int page, int size, Sort sort, CountMode count) {
+
+        public static Key forSearch(String searchTerm, Pageable pageable, CountMode count) {
+            return new Key(searchTerm.toLowerCase(Locale.ROOT), null,
+                pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort(), count);
+        }
+
+        public static Key forFilter(BookFilter filter, Pageable pageable, CountMode count) {
+            return new Key(null, filter.normalized(), pageable.getPageNumber(), pageable.getPageSize(),
+                pageable.getSort(), count);
+        }
+
+        boolean sortsOn(String... properties) {
+            for (String property : properties) {
+                if (sort.getOrderFor(property) != null) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Entry(Slice<Book> page, long expiresAt) {}
+
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public SearchResultCache(@Value("${smartlibrary.search-cache.max-entries:1000}") int maxEntries,
+                             @Value("${smartlibrary.search-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > SearchResultCache.this.maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Slice<Book> get(Key key, Supplier<Slice<Book>> loader) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt() > now) {
+                hits.incrementAndGet();
+                return entry.page();
+            }
+            if (entry != null) {
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        long loadedAt = generation.get();
+        Slice<Book> page = loader.get();
+        synchronized (entries) {
+            // skip caching if a change landed while we were loading; the page may predate it
+            if (generation.get() == loadedAt && maxEntries > 0) {
+                entries.put(key, new Entry(page, now + ttlMillis));
+            }
+        }
+        return page;
+    }
+
+    public Map<String, Object> stats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", entries.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        Book book = event.getBook();
+        switch (event.getType()) {
+            case CREATED, DELETED -> invalidate(key -> key.searchTerm() != null || key.filter().matches(book));
+            case UPDATED -> invalidate(key -> true);
+            case RATING_CHANGED -> invalidate(key -> key.sortsOn("averageRating", "ratingCount")
+                || (key.filter() != null && key.filter().hasRatingFilter()));
+            case AVAILABILITY_CHANGED -> invalidate(key -> key.sortsOn("availableCopies")
+                || (key.filter() != null && key.filter().isAvailableOnly()));
+        }
+    }
+
+    private void invalidate(Predicate<Key> affected) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            Iterator<Key> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (affected.test(keys.next())) {
+                    keys.remove();
+                    invalidations.incrementAndGet();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Trigram indexes for the title, author and publisher "contains" filters of
+ * {@code /api/books/search}. They narrow a filter to candidate ids up front so the
+ * database query only has to look at those rows.
+ */
+@Component
+public class SubstringFilterIndex extends CatalogIndex<SubstringFilterIndex.Columns> {
+
+    static final class Columns {
+        final TrigramIndex title = new TrigramIndex();
+        final TrigramIndex author = new TrigramIndex();
+        final TrigramIndex publisher = new TrigramIndex();
+    }
+
+    /**
+     * Ids of books matching every given substring filter (null filters are ignored),
+     * or {@code null} when none of the filters can be answered from the index or the
+     * match set is larger than {@code limit}; the caller then runs the plain query.
+     */
+    public List<Long> candidates(String title, String author, String publisher, int limit) {
+        if (!isReady()) {
+            return null;
+        }
+        Columns columns = current();
+        long[] ids = null;
+        long[][] perColumn = {
+            match(columns.title, title, limit),
+            match(columns.author, author, limit),
+            match(columns.publisher, publisher, limit)
+        };
+        for (long[] matches : perColumn) {
+            if (matches != null) {
+                ids = ids == null ? matches : intersect(ids, matches);
+            }
+        }
+        if (ids == null) {
+            return null;
+        }
+        List<Long> result = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            result.add(id);
+        }
+        return result;
+    }
+
+    private static long[] match(TrigramIndex index, String fragment, int limit) {
+        // LIKE wildcards and escapes in user input change the semantics; let the database handle those
+        if (fragment == null || fragment.indexOf('%') >= 0 || fragment.indexOf('_') >= 0
+                || fragment.indexOf('\\') >= 0) {
+            return null;
+        }
+        return index.matching(fragment, limit);
+    }
+
+    private static long[] intersect(long[] a, long[] b) {
+        long[] out = new long[Math.min(a.length, b.length)];
+        int i = 0, j = 0, n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    @Override
+    protected Columns createEmpty() {
+        return new Columns();
+    }
+
+    @Override
+    protected void add(Columns columns, Book book) {
+        columns.title.put(book.getId(), book.getTitle());
+        columns.author.put(book.getId(), book.getAuthor());
+        columns.publisher.put(book.getId(), book.getPublisher());
+    }
+
+    @Override
+    protected void remove(Columns columns, long bookId) {
+        columns.title.remove(bookId);
+        columns.author.remove(bookId);
+        columns.publisher.remove(bookId);
+    }
+}
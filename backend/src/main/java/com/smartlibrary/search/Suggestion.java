@@ -0,0 +1,7 @@
+package com.smartlibrary.search;
+
+/**
+ * One typeahead completion. {@code bookId} is set for title and ISBN completions,
+ * which point at a single book; author and category completions cover many.
+ */
+public record Suggestion(String text, String type, Long bookId, double weight) {}
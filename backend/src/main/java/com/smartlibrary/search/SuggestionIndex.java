@@ -0,0 +1,134 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Typeahead over titles, authors, ISBNs and categories for {@code /api/books/suggest}.
+ *
+ * Each book contributes a popularity weight, derived from its rating, to its title,
+ * author, ISBN and category completions; author and category completions add up the
+ * weight of all their books. Titles and authors can also be found from any of their
+ * first few words, so "hobb" finds "The Hobbit".
+ */
+@Component
+public class SuggestionIndex extends CatalogIndex<SuggestionIndex.Completions> {
+
+    public static final String TITLE = "title";
+    public static final String AUTHOR = "author";
+    public static final String ISBN = "isbn";
+    public static final String CATEGORY = "category";
+
+    private static final int MAX_WORD_STARTS = 4;
+
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = key(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        return current().trie.complete(key, limit).stream()
+            .map(entry -> new Suggestion(entry.text, entry.type, entry.bookId, entry.weight))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    protected Set<BookChangedEvent.Type> relevantChanges() {
+        return EnumSet.of(BookChangedEvent.Type.CREATED, BookChangedEvent.Type.UPDATED,
+            BookChangedEvent.Type.DELETED, BookChangedEvent.Type.RATING_CHANGED);
+    }
+
+    @Override
+    protected Completions createEmpty() {
+        return new Completions();
+    }
+
+    @Override
+    protected void add(Completions completions, Book book) {
+        completions.put(book);
+    }
+
+    @Override
+    protected void remove(Completions completions, long bookId) {
+        completions.remove(bookId);
+    }
+
+    /** Unrated books still get a small base weight so they can be suggested at all. */
+    static double weight(Book book) {
+        double rating = book.getAverageRating() == null ? 0 : book.getAverageRating();
+        int count = book.getRatingCount() == null ? 0 : book.getRatingCount();
+        return 1 + rating * Math.log1p(count);
+    }
+
+    static String key(String text) {
+        String key = TextAnalyzer.normalize(text).trim().replaceAll("\\s+", " ");
+        return key.length() > CompletionTrie.MAX_KEY_LENGTH ? key.substring(0, CompletionTrie.MAX_KEY_LENGTH) : key;
+    }
+
+    static final class Completions {
+        final CompletionTrie trie = new CompletionTrie();
+        private final Map<Long, Contribution> byBook = new HashMap<>();
+
+        private record Contribution(String[] ids, CompletionTrie.Entry[] entries, double weight) {}
+
+        synchronized void put(Book book) {
+            remove(book.getId());
+            double weight = weight(book);
+            List<String> ids = new ArrayList<>();
+            List<CompletionTrie.Entry> entries = new ArrayList<>();
+            contribute(ids, entries, TITLE, book.getTitle(), book.getId(), true, weight);
+            contribute(ids, entries, AUTHOR, book.getAuthor(), null, true, weight);
+            contribute(ids, entries, CATEGORY, book.getCategory(), null, false, weight);
+            contribute(ids, entries, ISBN, book.getIsbn(), book.getId(), false, weight);
+            byBook.put(book.getId(), new Contribution(ids.toArray(new String[0]),
+                entries.toArray(new CompletionTrie.Entry[0]), weight));
+        }
+
+        synchronized void remove(long bookId) {
+            Contribution old = byBook.remove(bookId);
+            if (old == null) {
+                return;
+            }
+            for (int i = 0; i < old.ids().length; i++) {
+                trie.withdraw(old.ids()[i], old.entries()[i], old.weight());
+            }
+        }
+
+        private void contribute(List<String> ids, List<CompletionTrie.Entry> entries, String type,
+                                String text, Long bookId, boolean wordStarts, double weight) {
+            if (text == null || text.isBlank()) {
+                return;
+            }
+            String key = key(text);
+            String id = type + '\u0000' + key + (bookId == null ? "" : "\u0000" + bookId);
+            ids.add(id);
+            entries.add(trie.contribute(id, text.trim(), type, bookId, keysFor(type, key, wordStarts), weight));
+        }
+
+        private static String[] keysFor(String type, String key, boolean wordStarts) {
+            Set<String> keys = new LinkedHashSet<>();
+            keys.add(key);
+            if (ISBN.equals(type)) {
+                keys.add(key.replaceAll("[^0-9x]", ""));
+            }
+            if (wordStarts) {
+                int starts = 0;
+                for (int i = key.indexOf(' '); i >= 0 && starts < MAX_WORD_STARTS; i = key.indexOf(' ', i + 1)) {
+                    keys.add(key.substring(i + 1));
+                    starts++;
+                }
+            }
+            keys.remove("");
+            return keys.toArray(new String[0]);
+        }
+    }
+}
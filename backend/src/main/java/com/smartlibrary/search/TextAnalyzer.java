@@ -0,0 +1,59 @@
+package com.smartlibrary.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Turns free text into index terms: folds case and diacritics ("Brontë" -> "bronte"),
+ * splits on anything that is not a letter or digit and drops common English stop words.
+ */
+public final class TextAnalyzer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "in", "into",
+        "is", "it", "of", "on", "or", "that", "the", "to", "was", "with"
+    );
+
+    private TextAnalyzer() {}
+
+    public static String normalize(String text) {
+        if (text == null || text.isEmpty()) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    public static List<String> analyze(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * Same as {@link #analyze(String)} but keeps stop words, for callers that need
+     * every typed word (e.g. the trailing prefix of a query).
+     */
+    public static List<String> tokenize(String text, boolean dropStopWords) {
+        List<String> terms = new ArrayList<>();
+        String normalized = normalize(text);
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String term = normalized.substring(start, i);
+                if (!dropStopWords || !STOP_WORDS.contains(term)) {
+                    terms.add(term);
+                }
+                start = -1;
+            }
+        }
+        return terms;
+    }
+}
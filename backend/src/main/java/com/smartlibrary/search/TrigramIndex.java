@@ -0,0 +1,156 @@
+package com.smartlibrary.search;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Case-insensitive substring index for one column.
+ *
+ * Each lower-cased value is broken into overlapping three-character grams. A fragment
+ * of three or more characters can only occur in values that contain all of its grams,
+ * so intersecting those posting lists gives a small candidate set that is then checked
+ * with {@link String#contains}, matching {@code LOWER(col) LIKE '%fragment%'} exactly.
+ */
+final class TrigramIndex {
+
+    static final int GRAM = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IdPosting> postings = new HashMap<>();
+    private final Map<Long, String> values = new HashMap<>();
+
+    void put(long id, String value) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+            if (value == null) {
+                return;
+            }
+            String lower = value.toLowerCase(Locale.ROOT);
+            values.put(id, lower);
+            for (long gram : grams(lower)) {
+                postings.computeIfAbsent(gram, g -> new IdPosting()).insert(id);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Sorted ids whose value contains {@code fragment}, or {@code null} when the index
+     * cannot answer: the fragment is shorter than a gram or more than {@code limit}
+     * values match.
+     */
+    long[] matching(String fragment, int limit) {
+        String lower = fragment.toLowerCase(Locale.ROOT);
+        if (lower.length() < GRAM) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            Set<Long> grams = grams(lower);
+            IdPosting[] lists = new IdPosting[grams.size()];
+            int n = 0;
+            for (long gram : grams) {
+                IdPosting posting = postings.get(gram);
+                if (posting == null || posting.size == 0) {
+                    return new long[0];
+                }
+                lists[n++] = posting;
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+            long[] result = new long[Math.min(lists[0].size, limit + 1)];
+            int count = 0;
+            IdPosting smallest = lists[0];
+            outer:
+            for (int i = 0; i < smallest.size; i++) {
+                long id = smallest.ids[i];
+                for (int l = 1; l < lists.length; l++) {
+                    if (!lists[l].contains(id)) {
+                        continue outer;
+                    }
+                }
+                if (!values.get(id).contains(lower)) {
+                    continue;
+                }
+                if (count == limit) {
+                    return null;
+                }
+                result[count++] = id;
+            }
+            return Arrays.copyOf(result, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeLocked(long id) {
+        String old = values.remove(id);
+        if (old == null) {
+            return;
+        }
+        for (long gram : grams(old)) {
+            IdPosting posting = postings.get(gram);
+            if (posting != null) {
+                posting.remove(id);
+                if (posting.size == 0) {
+                    postings.remove(gram);
+                }
+            }
+        }
+    }
+
+    private static Set<Long> grams(String text) {
+        Set<Long> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2));
+        }
+        return grams;
+    }
+
+    private static final class IdPosting {
+        long[] ids = new long[2];
+        int size;
+
+        void insert(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                return;
+            }
+            i = -i - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, i, ids, i + 1, size - i);
+            ids[i] = id;
+            size++;
+        }
+
+        void remove(long id) {
+            int i = Arrays.binarySearch(ids, 0, size, id);
+            if (i >= 0) {
+                System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                size--;
+            }
+        }
+
+        boolean contains(long id) {
+            return Arrays.binarySearch(ids, 0, size, id) >= 0;
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Copies on the shelf for every book, held in memory so availability checks never touch
+ * the database.
+ *
+ * Counts live in primitive open-addressing tables (no boxed keys or entries), split into
+ * stripes by id so writers to different books do not contend. Reads are optimistic: a
+ * lookup takes no lock unless a write to the same stripe overlapped it. The table is
+ * loaded at startup from an (id, availableCopies) projection. After that it follows
+ * committed changes as deltas only: checkouts, returns and edits that change the copies
+ * publish their +n/-n, a create puts the count the book was created with, and deletes
+ * drop it. Deltas commute, so after-commit listeners running out of order still arrive
+ * at the committed count; nothing re-reads a row once the table is live. Changes heard
+ * of while it loads are re-read before it goes live, and until then lookups read
+ * the projection instead.
+ */
+@Service
+public class AvailabilityTable {
+
+    private static final Logger log = LoggerFactory.getLogger(AvailabilityTable.class);
+
+    private static final int STRIPE_BITS = 6;
+    private static final int LOAD_CHUNK_SIZE = 10000;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final Stripe[] stripes = new Stripe[1 << STRIPE_BITS];
+
+    // ids changed while loading, re-read before the table goes live
+    private final Set<Long> changedWhileLoading = new HashSet<>();
+    private volatile boolean loaded;
+
+    public AvailabilityTable() {
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.currentTimeMillis();
+        long afterId = 0;
+        int count = 0;
+        List<Object[]> rows;
+        do {
+            rows = bookRepository.findAvailabilityAfter(afterId, PageRequest.of(0, LOAD_CHUNK_SIZE));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                put(afterId, copies(row[1]));
+                count++;
+            }
+        } while (rows.size() == LOAD_CHUNK_SIZE);
+
+        // rows read before a change committed are read again, until none are left over
+        while (true) {
+            List<Long> changed;
+            synchronized (changedWhileLoading) {
+                if (changedWhileLoading.isEmpty()) {
+                    loaded = true;
+                    break;
+                }
+                changed = new ArrayList<>(changedWhileLoading);
+                changedWhileLoading.clear();
+            }
+            changed.forEach(this::remove);
+            for (Object[] row : bookRepository.findAvailability(changed)) {
+                put((Long) row[0], copies(row[1]));
+            }
+        }
+        log.info("AvailabilityTable loaded {} books in {} ms", count, System.currentTimeMillis() - started);
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /** Copies of the book on the shelf, or -1 if there is no such book. */
+    public int availableCopies(long bookId) {
+        if (!loaded) {
+            List<Object[]> rows = bookRepository.findAvailability(List.of(bookId));
+            return rows.isEmpty() ? -1 : copies(rows.get(0)[1]);
+        }
+        return stripe(bookId).get(bookId);
+    }
+
+    /** Copies on the shelf by book id, in request order; unknown ids are left out. */
+    public Map<Long, Integer> availableCopies(Collection<Long> bookIds) {
+        Map<Long, Integer> copies = new LinkedHashMap<>();
+        if (!loaded) {
+            Map<Long, Integer> found = new LinkedHashMap<>();
+            for (Object[] row : bookRepository.findAvailability(bookIds)) {
+                found.put((Long) row[0], copies(row[1]));
+            }
+            bookIds.stream().filter(found::containsKey).forEach(id -> copies.put(id, found.get(id)));
+            return copies;
+        }
+        for (Long bookId : bookIds) {
+            int count = stripe(bookId).get(bookId);
+            if (count >= 0) {
+                copies.put(bookId, count);
+            }
+        }
+        return copies;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.RATING_CHANGED) {
+            return;
+        }
+        long bookId = event.getBookId();
+        if (!loaded) {
+            synchronized (changedWhileLoading) {
+                if (!loaded) {
+                    changedWhileLoading.add(bookId);
+                    return;
+                }
+            }
+        }
+        switch (event.getType()) {
+            case CREATED -> put(bookId, copies(event.getBook().getAvailableCopies()));
+            case DELETED -> remove(bookId);
+            case AVAILABILITY_CHANGED -> stripe(bookId).add(bookId, event.getAvailabilityDelta());
+            default -> { }
+        }
+    }
+
+    private void put(long bookId, int copies) {
+        stripe(bookId).put(bookId, copies);
+    }
+
+    private void remove(long bookId) {
+        stripe(bookId).remove(bookId);
+    }
+
+    private Stripe stripe(long bookId) {
+        return stripes[(int) (mix(bookId) >>> (64 - STRIPE_BITS))];
+    }
+
+    private static long mix(long id) {
+        return id * 0x9E3779B97F4A7C15L;
+    }
+
+    private static int copies(Object value) {
+        return value == null ? 0 : Math.max(0, ((Number) value).intValue());
+    }
+
+    /**
+     * One stripe: a linear-probing long -> int table. Key 0 marks an empty slot, which
+     * is safe because book ids start at 1. Keys and values are swapped together on resize,
+     * so an optimistic reader always probes a consistent pair of arrays.
+     */
+    static final class Stripe {
+
+        private record Slots(long[] keys, int[] values) {}
+
+        private final StampedLock lock = new StampedLock();
+        private Slots slots = new Slots(new long[16], new int[16]);
+        private int size;
+
+        int get(long key) {
+            if (key <= 0) {
+                return -1;
+            }
+            long stamp = lock.tryOptimisticRead();
+            int value = find(slots, key);
+            if (!lock.validate(stamp)) {
+                stamp = lock.readLock();
+                try {
+                    value = find(slots, key);
+                } finally {
+                    lock.unlockRead(stamp);
+                }
+            }
+            return value;
+        }
+
+        void put(long key, int value) {
+            if (key <= 0) {
+                return;
+            }
+            long stamp = lock.writeLock();
+            try {
+                if ((size + 1) * 2 > slots.keys().length) {
+                    resize();
+                }
+                int slot = slotFor(slots, key);
+                if (slots.keys()[slot] == 0) {
+                    slots.keys()[slot] = key;
+                    size++;
+                }
+                slots.values()[slot] = value;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        // only books already in the table: a delta can outrun nothing but a delete
+        void add(long key, int delta) {
+            if (key <= 0) {
+                return;
+            }
+            long stamp = lock.writeLock();
+            try {
+                int slot = slotFor(slots, key);
+                if (slots.keys()[slot] == key) {
+                    slots.values()[slot] = Math.max(0, slots.values()[slot] + delta);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        void remove(long key) {
+            if (key <= 0) {
+                return;
+            }
+            long stamp = lock.writeLock();
+            try {
+                long[] keys = slots.keys();
+                int[] values = slots.values();
+                int mask = keys.length - 1;
+                int slot = slotFor(slots, key);
+                if (keys[slot] != key) {
+                    return;
+                }
+                // backward-shift deletion keeps every probe chain unbroken without tombstones
+                int hole = slot;
+                for (int next = (hole + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+                    int home = home(keys[next], mask);
+                    if (((next - home) & mask) >= ((next - hole) & mask)) {
+                        keys[hole] = keys[next];
+                        values[hole] = values[next];
+                        hole = next;
+                    }
+                }
+                keys[hole] = 0;
+                values[hole] = 0;
+                size--;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private void resize() {
+            Slots old = slots;
+            Slots grown = new Slots(new long[old.keys().length * 2], new int[old.keys().length * 2]);
+            for (int i = 0; i < old.keys().length; i++) {
+                if (old.keys()[i] != 0) {
+                    int slot = slotFor(grown, old.keys()[i]);
+                    grown.keys()[slot] = old.keys()[i];
+                    grown.values()[slot] = old.values()[i];
+                }
+            }
+            slots = grown;
+        }
+
+        // bounded by the table length, so a read torn by a concurrent write still ends
+        private static int find(Slots slots, long key) {
+            long[] keys = slots.keys();
+            int mask = keys.length - 1;
+            int slot = home(key, mask);
+            for (int probes = 0; probes < keys.length; probes++) {
+                long found = keys[slot];
+                if (found == key) {
+                    return slots.values()[slot];
+                }
+                if (found == 0) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        // the slot holding key, or the empty slot where it belongs
+        private static int slotFor(Slots slots, long key) {
+            long[] keys = slots.keys();
+            int mask = keys.length - 1;
+            int slot = home(key, mask);
+            while (keys[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        private static int home(long key, int mask) {
+            return (int) (mix(key) >>> 16) & mask;
+        }
+    }
+}
@@ -1,18 +1,47 @@
 package com.smartlibrary.service;
 
+import com.smartlibrary.event.BookChangedEvent;
 import com.smartlibrary.model.Book;
 import com.smartlibrary.repository.BookRepository;
-import com.smartlibrary.repository.RatingRepository;
+import com.smartlibrary.search.BookCursor;
+import com.smartlibrary.search.BookFilter;
+import com.smartlibrary.search.BookSearchIndex;
+import com.smartlibrary.search.BookSortKey;
+import com.smartlibrary.search.CatalogSnapshot;
+import com.smartlibrary.search.CountMode;
+import com.smartlibrary.search.CursorPage;
+import com.smartlibrary.search.FacetIndex;
+import com.smartlibrary.search.FuzzyTermIndex;
+import com.smartlibrary.search.SearchHit;
+import com.smartlibrary.search.SearchResultCache;
+import com.smartlibrary.search.SubstringFilterIndex;
+import com.smartlibrary.search.Suggestion;
+import com.smartlibrary.search.SuggestionIndex;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @Transactional
@@ -22,14 +51,64 @@ public class BookService {
     private BookRepository bookRepository;
     
     @Autowired
-    private RatingRepository ratingRepository;
+    private RatingAggregator ratingAggregator;
+    
+    @Autowired
+    private HoldQueue holdQueue;
+    
+    @Autowired
+    private AvailabilityTable availabilityTable;
+    
+    @Value("${smartlibrary.availability.max-ids:500}")
+    private int maxAvailabilityIds;
+    
+    @Autowired
+    private BookSearchIndex bookSearchIndex;
+    
+    @Autowired
+    private SubstringFilterIndex substringFilterIndex;
+    
+    @Autowired
+    private FacetIndex facetIndex;
+    
+    @Autowired
+    private SuggestionIndex suggestionIndex;
+    
+    @Autowired
+    private FuzzyTermIndex fuzzyTermIndex;
+    
+    @Autowired
+    private SearchResultCache searchResultCache;
+    
+    @Autowired
+    private CatalogSnapshot catalogSnapshot;
+    
+    @Value("${smartlibrary.catalog-snapshot.enabled:true}")
+    private boolean catalogSnapshotEnabled;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    public static final String RELEVANCE_SORT = BookCursor.RELEVANCE;
+    
+    // Index-narrowed queries are fetched with an id IN (...) filter; past this many
+    // candidates the bind list gets too large and the plain LIKE query is used instead.
+    private static final int MAX_HITS_FOR_ID_FILTER = 5000;
+    
+    private static final BookFilter AVAILABLE_ONLY =
+        new BookFilter(null, null, null, null, null, null, null, null, null, null, true);
     
     public List<Book> getAllBooks() {
         return bookRepository.findAll();
     }
     
-    public Page<Book> getAllBooks(Pageable pageable) {
-        return bookRepository.findAll(pageable);
+    public Slice<Book> getAllBooks(Pageable pageable, CountMode count) {
+        if (count == CountMode.EXACT) {
+            return bookRepository.findAll(pageable);
+        }
+        Slice<Book> slice = bookRepository.findBooksSlice(null, null, null, pageable);
+        return count == CountMode.APPROXIMATE && facetIndex.isReady()
+            ? withTotal(slice, facetIndex.bookCount()) : slice;
     }
     
     public Optional<Book> getBookById(Long id) {
@@ -41,12 +120,21 @@ public class BookService {
     }
     
     public Book saveBook(Book book) {
-        return bookRepository.save(book);
+        Optional<Book> existing = book.getId() == null ? Optional.empty() : bookRepository.findByIdForUpdate(book.getId());
+        Integer copiesBefore = existing.map(Book::getAvailableCopies).orElse(null);
+        Book saved = bookRepository.save(book);
+        if (existing.isPresent()) {
+            publishEdit(saved, copiesBefore);
+        } else {
+            eventPublisher.publishEvent(new BookChangedEvent(saved, BookChangedEvent.Type.CREATED));
+        }
+        return saved;
     }
     
     public Book updateBook(Long id, Book bookDetails) {
-        Book book = bookRepository.findById(id)
+        Book book = bookRepository.findByIdForUpdate(id)
             .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
+        Integer copiesBefore = book.getAvailableCopies();
         
         book.setTitle(bookDetails.getTitle());
         book.setAuthor(bookDetails.getAuthor());
@@ -61,54 +149,371 @@ public class BookService {
         book.setAvailableCopies(bookDetails.getAvailableCopies());
         book.setTotalCopies(bookDetails.getTotalCopies());
         
-        return bookRepository.save(book);
+        Book saved = bookRepository.save(book);
+        publishEdit(saved, copiesBefore);
+        return saved;
+    }
+    
+    // the row lock makes the copy change exact, so it travels as a delta like a checkout's
+    private void publishEdit(Book saved, Integer copiesBefore) {
+        eventPublisher.publishEvent(new BookChangedEvent(saved, BookChangedEvent.Type.UPDATED));
+        int delta = Objects.requireNonNullElse(saved.getAvailableCopies(), 0) - Objects.requireNonNullElse(copiesBefore, 0);
+        if (delta != 0) {
+            eventPublisher.publishEvent(new BookChangedEvent(saved, BookChangedEvent.Type.AVAILABILITY_CHANGED, delta));
+        }
     }
     
     public void deleteBook(Long id) {
         Book book = bookRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
         bookRepository.delete(book);
+        eventPublisher.publishEvent(new BookChangedEvent(book, BookChangedEvent.Type.DELETED));
     }
     
-    public Page<Book> searchBooks(String searchTerm, Pageable pageable) {
+    public Slice<Book> searchBooks(String searchTerm, Pageable pageable, CountMode count) {
         if (searchTerm == null || searchTerm.trim().isEmpty()) {
-            return bookRepository.findAll(pageable);
+            return getAllBooks(pageable, count);
+        }
+        if (!bookSearchIndex.isReady()) {
+            Pageable unranked = withoutRelevanceSort(pageable);
+            return count == CountMode.EXACT
+                ? bookRepository.searchBooks(searchTerm.trim(), unranked)
+                : bookRepository.findBooksSlice(null, searchTerm.trim(), null, unranked);
+        }
+        
+        return searchResultCache.get(SearchResultCache.Key.forSearch(searchTerm, pageable, count),
+                () -> pageOfHits(searchTerm, bookSearchIndex.search(searchTerm), pageable, count));
+    }
+    
+    /**
+     * Typo-tolerant search ranked by edit distance, then rating. Served only from the
+     * in-memory vocabulary: until it is built this returns an empty page rather than
+     * scanning the table.
+     */
+    public Slice<Book> fuzzySearchBooks(String searchTerm, Pageable pageable, CountMode count) {
+        if (searchTerm == null || searchTerm.trim().isEmpty() || !fuzzyTermIndex.isReady()) {
+            return counted(Page.empty(pageable), count);
+        }
+        return counted(pageByRelevance(fuzzyTermIndex.search(searchTerm), pageable), count);
+    }
+    
+    // The hit count is the exact total for an id-restricted page, so no COUNT query is needed there.
+    private Slice<Book> pageOfHits(String searchTerm, List<SearchHit> hits, Pageable pageable, CountMode count) {
+        if (isRelevanceSort(pageable)) {
+            return counted(pageByRelevance(hits, pageable), count);
+        }
+        if (hits.size() > MAX_HITS_FOR_ID_FILTER) {
+            if (count == CountMode.EXACT) {
+                return bookRepository.searchBooks(searchTerm.trim(), pageable);
+            }
+            Slice<Book> slice = bookRepository.findBooksSlice(null, searchTerm.trim(), null, pageable);
+            return count == CountMode.APPROXIMATE ? withTotal(slice, hits.size()) : slice;
+        }
+        if (hits.isEmpty()) {
+            return counted(Page.empty(pageable), count);
+        }
+        List<Long> ids = hits.stream().map(SearchHit::bookId).collect(Collectors.toList());
+        Slice<Book> slice = bookRepository.findBooksSlice(null, null, ids, pageable);
+        return count == CountMode.NONE ? slice : withTotal(slice, hits.size());
+    }
+    
+    private static Slice<Book> counted(Page<Book> page, CountMode count) {
+        return count == CountMode.NONE ? new SliceImpl<>(page.getContent(), page.getPageable(), page.hasNext()) : page;
+    }
+    
+    private static Page<Book> withTotal(Slice<Book> slice, long total) {
+        return new PageImpl<>(slice.getContent(), slice.getPageable(), total);
+    }
+    
+    private Page<Book> pageByRelevance(List<SearchHit> hits, Pageable pageable) {
+        int from = (int) Math.min(pageable.getOffset(), hits.size());
+        int to = Math.min(from + pageable.getPageSize(), hits.size());
+        return new PageImpl<>(loadInHitOrder(hits.subList(from, to)), pageable, hits.size());
+    }
+    
+    private List<Book> loadInHitOrder(List<SearchHit> hits) {
+        return loadInOrder(hits.stream().map(SearchHit::bookId).collect(Collectors.toList()));
+    }
+    
+    private List<Book> loadInOrder(List<Long> ids) {
+        Map<Long, Integer> rank = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            rank.put(ids.get(i), i);
         }
-        return bookRepository.searchBooks(searchTerm.trim(), pageable);
+        return bookRepository.findAllById(ids).stream()
+            .sorted(Comparator.comparing(book -> rank.get(book.getId())))
+            .collect(Collectors.toList());
+    }
+    
+    public CursorPage<Book> getBooksAfter(String cursor, String sortBy, boolean descending, int size) {
+        return searchBooksAfter(null, null, cursor, sortBy, descending, size);
+    }
+    
+    /**
+     * Keyset-paged variant of search: no OFFSET and no COUNT, so every page costs the
+     * same however deep the client scrolls. An empty or null cursor starts from the top.
+     *
+     * @throws IllegalArgumentException for an unknown sort or a cursor that does not fit it
+     */
+    public CursorPage<Book> searchBooksAfter(String searchTerm, BookFilter filter, String cursor,
+                                             String sortBy, boolean descending, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Page size must be positive");
+        }
+        BookCursor after = cursor == null || cursor.isEmpty() ? null : BookCursor.decode(cursor, sortBy, descending);
+        boolean fullText = searchTerm != null && !searchTerm.trim().isEmpty();
+        
+        if (fullText && RELEVANCE_SORT.equals(sortBy)) {
+            if (!bookSearchIndex.isReady()) {
+                throw new IllegalStateException("Relevance ranking is not available yet");
+            }
+            return hitsAfter(bookSearchIndex.search(searchTerm), after, descending, size);
+        }
+        
+        BookSortKey sortKey = BookSortKey.fromProperty(sortBy);
+        Collection<Long> ids = null;
+        String likeTerm = null;
+        if (fullText) {
+            filter = null;
+            List<SearchHit> hits = bookSearchIndex.isReady() ? bookSearchIndex.search(searchTerm) : null;
+            if (hits != null && hits.size() <= MAX_HITS_FOR_ID_FILTER) {
+                ids = hits.stream().map(SearchHit::bookId).collect(Collectors.toList());
+            } else {
+                likeTerm = searchTerm.trim();
+            }
+        } else if (filter != null) {
+            ids = substringFilterIndex.candidates(filter.title(), filter.author(), filter.publisher(), MAX_HITS_FOR_ID_FILTER);
+        }
+        if (ids != null && ids.isEmpty()) {
+            return new CursorPage<>(List.of(), 0, false, null);
+        }
+        
+        List<Book> rows = bookRepository.findBooksAfter(filter, likeTerm, ids, sortKey, descending, after, size + 1);
+        boolean hasNext = rows.size() > size;
+        List<Book> content = hasNext ? rows.subList(0, size) : rows;
+        String next = null;
+        if (hasNext) {
+            Book last = content.get(content.size() - 1);
+            next = new BookCursor(sortBy, descending, sortKey.valueOf(last), last.getId()).encode();
+        }
+        return new CursorPage<>(content, content.size(), hasNext, next);
+    }
+    
+    // Hits are ordered by score descending, then id ascending; relevance cursors ignore sortDir.
+    private CursorPage<Book> hitsAfter(List<SearchHit> hits, BookCursor after, boolean descending, int size) {
+        int from = 0;
+        if (after != null) {
+            float score;
+            try {
+                score = Float.parseFloat(after.getValue());
+            } catch (NullPointerException | NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            int lo = 0, hi = hits.size();
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                SearchHit hit = hits.get(mid);
+                boolean isAfter = hit.score() < score || (hit.score() == score && hit.bookId() > after.getId());
+                if (isAfter) {
+                    hi = mid;
+                } else {
+                    lo = mid + 1;
+                }
+            }
+            from = lo;
+        }
+        int to = Math.min(from + size, hits.size());
+        List<SearchHit> window = hits.subList(from, to);
+        boolean hasNext = to < hits.size();
+        String next = null;
+        if (hasNext) {
+            SearchHit last = window.get(window.size() - 1);
+            next = new BookCursor(RELEVANCE_SORT, descending, last.score(), last.bookId()).encode();
+        }
+        List<Book> content = loadInHitOrder(window);
+        return new CursorPage<>(content, content.size(), hasNext, next);
+    }
+    
+    private static boolean isRelevanceSort(Pageable pageable) {
+        return pageable.getSort().isUnsorted() || pageable.getSort().getOrderFor(RELEVANCE_SORT) != null;
+    }
+    
+    private static Pageable withoutRelevanceSort(Pageable pageable) {
+        return pageable.getSort().getOrderFor(RELEVANCE_SORT) != null
+            ? PageRequest.of(pageable.getPageNumber(), pageable.getPageSize())
+            : pageable;
     }
     
     public Page<Book> findBooksWithFilters(String title, String author, String category, 
                                           String language, String isbn, Pageable pageable) {
-        return bookRepository.findBooksWithFilters(title, author, category, language, isbn, pageable);
+        pageable = withoutRelevanceSort(pageable);
+        Page<Book> fromSnapshot = pageFromSnapshot(new BookFilter(title, author, category, language, isbn,
+                null, null, null, null, null, null), pageable);
+        if (fromSnapshot != null) {
+            return fromSnapshot;
+        }
+        List<Long> candidates = substringFilterIndex.candidates(title, author, null, MAX_HITS_FOR_ID_FILTER);
+        if (candidates == null) {
+            return bookRepository.findBooksWithFilters(title, author, category, language, isbn, pageable);
+        }
+        if (candidates.isEmpty()) {
+            return Page.empty(pageable);
+        }
+        return bookRepository.findBooksWithFiltersAmong(candidates, title, author, category, language, isbn, pageable);
+    }
+    
+    public Slice<Book> findBooksWithEnhancedFilters(String title, String author, String category, 
+                                                   String language, String isbn, String publisher,
+                                                   Integer minYear, Integer maxYear, Integer minRating, 
+                                                   Integer maxRating, Boolean availableOnly, Pageable pageable,
+                                                   CountMode count) {
+        BookFilter filter = new BookFilter(title, author, category, language, isbn, publisher,
+                minYear, maxYear, minRating, maxRating, availableOnly);
+        Pageable unranked = withoutRelevanceSort(pageable);
+        return searchResultCache.get(SearchResultCache.Key.forFilter(filter, unranked, count),
+                () -> loadWithEnhancedFilters(filter, unranked, count));
     }
     
-    public Page<Book> findBooksWithEnhancedFilters(String title, String author, String category, 
-                                                  String language, String isbn, String publisher,
-                                                  Integer minYear, Integer maxYear, Integer minRating, 
-                                                  Integer maxRating, Boolean availableOnly, Pageable pageable) {
-        return bookRepository.findBooksWithEnhancedFilters(title, author, category, language, isbn, 
-                publisher, minYear, maxYear, minRating, maxRating, availableOnly, pageable);
+    /**
+     * Filters and sorts in the columnar snapshot, touching the database only to load the
+     * page by primary key. Returns null when the snapshot is disabled, still building, or
+     * cannot express the request (multi-column sort, LIKE wildcards in a filter).
+     */
+    private Page<Book> pageFromSnapshot(BookFilter filter, Pageable pageable) {
+        if (!catalogSnapshotEnabled || !catalogSnapshot.isReady()) {
+            return null;
+        }
+        List<Sort.Order> orders = pageable.getSort().toList();
+        if (orders.size() > 1) {
+            return null;
+        }
+        BookSortKey sortKey;
+        try {
+            sortKey = orders.isEmpty() ? BookSortKey.ID : BookSortKey.fromProperty(orders.get(0).getProperty());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        boolean descending = !orders.isEmpty() && orders.get(0).isDescending();
+        // title/author trigram candidates save a scan; publisher is cheaper via the snapshot's dictionary
+        List<Long> candidates = substringFilterIndex.candidates(filter.title(), filter.author(), null,
+                MAX_HITS_FOR_ID_FILTER);
+        CatalogSnapshot.IdPage ids = catalogSnapshot.query(filter, candidates, sortKey, descending,
+                pageable.getOffset(), pageable.getPageSize());
+        if (ids == null) {
+            return null;
+        }
+        return new PageImpl<>(loadInOrder(ids.ids()), pageable, ids.total());
+    }
+    
+    public Map<String, Object> getSearchCacheStats() {
+        return searchResultCache.stats();
+    }
+    
+    private Slice<Book> loadWithEnhancedFilters(BookFilter filter, Pageable pageable, CountMode count) {
+        Page<Book> fromSnapshot = pageFromSnapshot(filter, pageable);
+        if (fromSnapshot != null) {
+            return counted(fromSnapshot, count);
+        }
+        String title = filter.title(), author = filter.author(), category = filter.category();
+        String language = filter.language(), isbn = filter.isbn(), publisher = filter.publisher();
+        Integer minYear = filter.minYear(), maxYear = filter.maxYear();
+        Integer minRating = filter.minRating(), maxRating = filter.maxRating();
+        Boolean availableOnly = filter.availableOnly();
+        List<Long> candidates = substringFilterIndex.candidates(title, author, publisher, MAX_HITS_FOR_ID_FILTER);
+        if (candidates != null && candidates.isEmpty()) {
+            return counted(Page.empty(pageable), count);
+        }
+        if (count != CountMode.EXACT) {
+            Slice<Book> slice = bookRepository.findBooksSlice(filter, null, candidates, pageable);
+            // the facet columns evaluate everything except substring filters, which the candidates
+            // resolve (an over-count if one fragment was too short for the trigram index)
+            if (count == CountMode.APPROXIMATE && facetIndex.isReady()
+                    && (candidates != null || !filter.hasSubstringFilters())) {
+                return withTotal(slice, facetIndex.matchCount(filter, candidates));
+            }
+            return slice;
+        }
+        if (candidates == null) {
+            return bookRepository.findBooksWithEnhancedFilters(title, author, category, language, isbn, 
+                    publisher, minYear, maxYear, minRating, maxRating, availableOnly, pageable);
+        }
+        return bookRepository.findBooksWithEnhancedFiltersAmong(candidates, title, author, category, language, 
+                isbn, publisher, minYear, maxYear, minRating, maxRating, availableOnly, pageable);
+    }
+    
+    /**
+     * One page of results plus facet counts for the whole match set. "facets" is null
+     * when the counts cannot be computed in memory yet (indexes still warming up, or a
+     * substring filter too short for the trigram index).
+     */
+    public Map<String, Object> searchBooksWithFacets(String searchTerm, BookFilter filter,
+                                                     Pageable pageable, int facetLimit) {
+        Slice<Book> results;
+        BookFilter facetFilter = filter;
+        Collection<Long> restrictTo = null;
+        boolean facetsAvailable = facetIndex.isReady();
+        
+        if (searchTerm != null && !searchTerm.trim().isEmpty()) {
+            facetFilter = null;
+            if (bookSearchIndex.isReady()) {
+                List<SearchHit> hits = bookSearchIndex.search(searchTerm);
+                results = pageOfHits(searchTerm, hits, pageable, CountMode.EXACT);
+                restrictTo = hits.stream().map(SearchHit::bookId).collect(Collectors.toList());
+            } else {
+                results = searchBooks(searchTerm, pageable, CountMode.EXACT);
+                facetsAvailable = false;
+            }
+        } else {
+            results = findBooksWithEnhancedFilters(filter.title(), filter.author(), filter.category(),
+                filter.language(), filter.isbn(), filter.publisher(), filter.minYear(), filter.maxYear(),
+                filter.minRating(), filter.maxRating(), filter.availableOnly(), pageable, CountMode.EXACT);
+            if (filter.hasSubstringFilters()) {
+                restrictTo = substringFilterIndex.candidates(filter.title(), filter.author(),
+                    filter.publisher(), Integer.MAX_VALUE);
+                facetsAvailable &= restrictTo != null;
+            }
+        }
+        
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("results", results);
+        response.put("facets", facetsAvailable ? facetIndex.count(facetFilter, restrictTo, facetLimit) : null);
+        return response;
+    }
+    
+    public List<Suggestion> suggest(String prefix, int limit) {
+        return suggestionIndex.suggest(prefix, limit);
     }
     
     public List<String> getAllCategories() {
-        return bookRepository.findAllCategories();
+        return facetIndex.isReady() ? facetIndex.categories() : bookRepository.findAllCategories();
     }
     
     public List<String> getAllLanguages() {
-        return bookRepository.findAllLanguages();
+        return facetIndex.isReady() ? facetIndex.languages() : bookRepository.findAllLanguages();
     }
     
     public List<String> getAllPublishers() {
-        return bookRepository.findAllPublishers();
+        return facetIndex.isReady() ? facetIndex.publishers() : bookRepository.findAllPublishers();
     }
     
-    public Page<Book> getAvailableBooks(Pageable pageable) {
-        return bookRepository.findAvailableBooks(pageable);
+    public Slice<Book> getAvailableBooks(Pageable pageable, CountMode count) {
+        if (count == CountMode.EXACT) {
+            return bookRepository.findAvailableBooks(pageable);
+        }
+        Slice<Book> slice = bookRepository.findBooksSlice(AVAILABLE_ONLY, null, null, pageable);
+        return count == CountMode.APPROXIMATE && facetIndex.isReady()
+            ? withTotal(slice, facetIndex.availableCount()) : slice;
     }
     
-    public Page<Book> getTopRatedBooks(int page, int size) {
-        Pageable pageable = PageRequest.of(page, size, Sort.by("averageRating").descending());
-        return bookRepository.findTopRatedBooks(pageable);
+    public Slice<Book> getTopRatedBooks(int page, int size, CountMode count) {
+        if (count == CountMode.EXACT) {
+            Pageable pageable = PageRequest.of(page, size, Sort.by("averageRating").descending());
+            return bookRepository.findTopRatedBooks(pageable);
+        }
+        Pageable pageable = PageRequest.of(page, size, Sort.by(Sort.Order.desc("averageRating").nullsLast()));
+        Slice<Book> slice = bookRepository.findBooksSlice(null, null, null, pageable);
+        return count == CountMode.APPROXIMATE && facetIndex.isReady()
+            ? withTotal(slice, facetIndex.bookCount()) : slice;
     }
     
     public List<Book> getBooksByCategory(String category) {
@@ -123,42 +528,113 @@ public class BookService {
         return bookRepository.findByAuthorContainingIgnoreCase(author);
     }
     
+    // rating writes keep the totals current through RatingAggregator; this only repairs a
+    // book whose totals have drifted from its ratings
     public void updateBookRating(Long bookId) {
-        Double averageRating = ratingRepository.findAverageRatingByBookId(bookId);
-        Long ratingCount = ratingRepository.countRatingsByBookId(bookId);
-        
-        Book book = bookRepository.findById(bookId)
-            .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
-        
-        book.setAverageRating(averageRating);
-        book.setRatingCount(ratingCount.intValue());
-        bookRepository.save(book);
+        if (!bookRepository.existsById(bookId)) {
+            throw new RuntimeException("Book not found with id: " + bookId);
+        }
+        ratingAggregator.reconcile(bookId);
     }
     
+    // answered from memory, so not worth opening a transaction (and taking a connection) for
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public boolean isBookAvailable(Long bookId) {
-        Optional<Book> book = bookRepository.findById(bookId);
-        return book.isPresent() && book.get().getAvailableCopies() > 0;
+        return availabilityTable.availableCopies(bookId) > 0;
+    }
+    
+    /**
+     * Copies on the shelf of each listed book, by id; ids of books that do not exist are
+     * left out.
+     *
+     * @throws IllegalArgumentException if the list is empty, too long or holds a null id
+     */
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
+    public Map<Long, Integer> getAvailability(List<Long> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            throw new IllegalArgumentException("No books given");
+        }
+        if (bookIds.size() > maxAvailabilityIds) {
+            throw new IllegalArgumentException("At most " + maxAvailabilityIds + " books per request");
+        }
+        if (bookIds.contains(null)) {
+            throw new IllegalArgumentException("Book ids must not be null");
+        }
+        return availabilityTable.availableCopies(bookIds);
     }
     
+    // conditional UPDATEs: only the row write itself is serialized, and a checkout that
+    // loses the race for the last copy changes no row instead of overselling
     public void decreaseAvailableCopies(Long bookId) {
-        Book book = bookRepository.findById(bookId)
-            .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
-        
-        if (book.getAvailableCopies() > 0) {
-            book.setAvailableCopies(book.getAvailableCopies() - 1);
-            bookRepository.save(book);
-        } else {
+        if (bookRepository.decrementAvailableCopies(bookId, LocalDateTime.now()) == 0) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new RuntimeException("Book not found with id: " + bookId);
+            }
             throw new RuntimeException("No available copies for this book");
         }
+        publishAvailabilityChanged(bookId, -1);
     }
     
+    // a copy coming back goes to the head of the book's hold queue before the shelf
     public void increaseAvailableCopies(Long bookId) {
-        Book book = bookRepository.findById(bookId)
-            .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
-        
-        if (book.getAvailableCopies() < book.getTotalCopies()) {
-            book.setAvailableCopies(book.getAvailableCopies() + 1);
-            bookRepository.save(book);
+        if (!holdQueue.allocate(List.of(bookId)).isEmpty()) {
+            return;
+        }
+        if (bookRepository.incrementAvailableCopies(bookId, LocalDateTime.now()) == 0) {
+            if (!bookRepository.existsById(bookId)) {
+                throw new RuntimeException("Book not found with id: " + bookId);
+            }
+            return;
         }
+        publishAvailabilityChanged(bookId, 1);
+    }
+    
+    /** Batched checkout of one copy of each book; returns the ids that got a copy. */
+    public List<Long> decreaseAvailableCopies(Collection<Long> bookIds) {
+        List<Long> taken = bookRepository.decrementAvailableCopies(bookIds);
+        publishAvailabilityChanged(taken, -1);
+        return taken;
+    }
+    
+    /**
+     * Batched return of one copy of each book. Copies of books with holds are set aside for
+     * the next holder; the ids returned are the books whose shelf count went up.
+     */
+    public List<Long> increaseAvailableCopies(Collection<Long> bookIds) {
+        Set<Long> held = holdQueue.allocate(bookIds);
+        List<Long> returned = bookRepository.incrementAvailableCopies(held.isEmpty() ? bookIds :
+            bookIds.stream().filter(id -> !held.contains(id)).toList());
+        publishAvailabilityChanged(returned, 1);
+        return returned;
+    }
+    
+    /**
+     * Moves a copy from the shelf to the oldest waiting hold on the book; false if there was
+     * no copy on the shelf or nobody waiting.
+     */
+    public boolean passShelvedCopyToHold(Long bookId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (bookRepository.decrementAvailableCopies(bookId, now) == 0) {
+            return false;
+        }
+        if (holdQueue.allocate(List.of(bookId)).isEmpty()) {
+            bookRepository.incrementAvailableCopies(bookId, now);
+            return false;
+        }
+        publishAvailabilityChanged(bookId, -1);
+        return true;
+    }
+    
+    private void publishAvailabilityChanged(Collection<Long> bookIds, int delta) {
+        if (!bookIds.isEmpty()) {
+            bookRepository.findAllById(bookIds).forEach(book ->
+                eventPublisher.publishEvent(new BookChangedEvent(book, BookChangedEvent.Type.AVAILABILITY_CHANGED, delta)));
+        }
+    }
+    
+    private void publishAvailabilityChanged(Long bookId, int delta) {
+        // the update cleared the persistence context, so this reads the new count
+        bookRepository.findById(bookId).ifPresent(book ->
+            eventPublisher.publishEvent(new BookChangedEvent(book, BookChangedEvent.Type.AVAILABILITY_CHANGED, delta)));
     }
 }
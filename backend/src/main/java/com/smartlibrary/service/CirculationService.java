@@ -0,0 +1,221 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.event.InteractionEvent;
+import com.smartlibrary.repository.BookRepository;
+import com.smartlibrary.repository.BorrowRecordRepository;
+import com.smartlibrary.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+/**
+ * Checks lists of books out to a reader and back in, each list in one transaction and a
+ * fixed number of statements however long it is: one lock on the reader, one count of
+ * their open loans, one batched availability change and one batched insert or update of
+ * the loan rows. Every book gets its own result, so one unavailable title does not fail
+ * the rest of the list.
+ */
+@Service
+@Transactional
+public class CirculationService {
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private BookRepository bookRepository;
+    
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+    
+    @Autowired
+    private BookService bookService;
+    
+    @Autowired
+    private HoldService holdService;
+    
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    @Value("${smartlibrary.circulation.loan-days:14}")
+    private int loanDays;
+    
+    @Value("${smartlibrary.circulation.max-active-loans:5}")
+    private int maxActiveLoans;
+    
+    @Value("${smartlibrary.circulation.max-batch-size:20}")
+    private int maxBatchSize;
+    
+    @Value("${smartlibrary.circulation.fine-per-day:0.25}")
+    private double finePerDay;
+    
+    /**
+     * Lends one copy of each listed book to the reader, in list order until their loan
+     * limit is reached.
+     *
+     * @throws IllegalArgumentException if the list is empty, too long or holds a null id
+     * @throws RuntimeException if the reader does not exist
+     */
+    public Map<String, Object> checkout(Long userId, List<Long> bookIds) {
+        validate(bookIds);
+        // the row lock keeps two checkouts for one reader from both passing the limit check
+        userRepository.findByIdForUpdate(userId)
+            .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+        Set<Long> alreadyBorrowed = openLoans(userId, bookIds).keySet();
+        long slots = Math.max(0, maxActiveLoans - borrowRecordRepository.countActiveBorrowsByUser(userId));
+        
+        List<Map<String, Object>> items = new ArrayList<>(bookIds.size());
+        Map<Long, Map<String, Object>> byBook = new HashMap<>();
+        Map<Long, Map<String, Object>> pending = new LinkedHashMap<>();
+        for (Long bookId : bookIds) {
+            Map<String, Object> item = item(bookId);
+            items.add(item);
+            if (byBook.putIfAbsent(bookId, item) != null) {
+                fail(item, "Listed more than once");
+            } else if (alreadyBorrowed.contains(bookId)) {
+                fail(item, "Already borrowed by this user");
+            } else if (pending.size() >= slots) {
+                fail(item, "Borrow limit of " + maxActiveLoans + " reached");
+            } else {
+                pending.put(bookId, item);
+            }
+        }
+        
+        // a copy set aside for the reader's hold is already off the shelf
+        Set<Long> taken = holdService.fulfillReadyHolds(userId, pending.keySet());
+        taken.addAll(bookService.decreaseAvailableCopies(pending.keySet().stream()
+            .filter(bookId -> !taken.contains(bookId)).toList()));
+        LocalDate today = LocalDate.now();
+        LocalDate dueDate = today.plusDays(loanDays);
+        List<Long> loaned = new ArrayList<>(taken.size());
+        List<Long> notTaken = new ArrayList<>();
+        for (Long bookId : pending.keySet()) {
+            (taken.contains(bookId) ? loaned : notTaken).add(bookId);
+        }
+        borrowRecordRepository.insertLoans(userId, loaned, today, dueDate);
+        
+        Set<Long> existing = notTaken.isEmpty() ? Set.of() : new HashSet<>(bookRepository.findExistingIds(notTaken));
+        for (Long bookId : notTaken) {
+            fail(pending.get(bookId), existing.contains(bookId) ? "No available copies" : "Book not found");
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (Long bookId : loaned) {
+            Map<String, Object> item = pending.get(bookId);
+            item.put("success", true);
+            item.put("dueDate", dueDate);
+            // the rows were written with JDBC, so the entity listener did not see them
+            eventPublisher.publishEvent(new InteractionEvent(userId, bookId, InteractionEvent.Type.BORROWED, null, now));
+        }
+        return response(userId, items);
+    }
+    
+    /**
+     * Closes the reader's open loans of the listed books, charging
+     * {@code fine-per-day} for every day past the due date, and puts the copies back.
+     *
+     * @throws IllegalArgumentException if the list is empty, too long or holds a null id
+     * @throws RuntimeException if the reader does not exist
+     */
+    public Map<String, Object> returnBooks(Long userId, List<Long> bookIds) {
+        validate(bookIds);
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found with id: " + userId);
+        }
+        Map<Long, Object[]> loans = openLoans(userId, bookIds);
+        LocalDate today = LocalDate.now();
+        
+        List<Map<String, Object>> items = new ArrayList<>(bookIds.size());
+        Map<Long, Map<String, Object>> byBook = new HashMap<>();
+        List<Long> returning = new ArrayList<>();
+        List<Long> recordIds = new ArrayList<>();
+        List<Double> fines = new ArrayList<>();
+        for (Long bookId : bookIds) {
+            Map<String, Object> item = item(bookId);
+            items.add(item);
+            Object[] loan = loans.get(bookId);
+            if (byBook.putIfAbsent(bookId, item) != null) {
+                fail(item, "Listed more than once");
+            } else if (loan == null) {
+                fail(item, "Not borrowed by this user");
+            } else {
+                returning.add(bookId);
+                recordIds.add((Long) loan[0]);
+                fines.add(fine((LocalDate) loan[2], today));
+            }
+        }
+        
+        boolean[] closed = borrowRecordRepository.closeLoans(recordIds, fines, today);
+        List<Long> shelved = new ArrayList<>(returning.size());
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < returning.size(); i++) {
+            Long bookId = returning.get(i);
+            Map<String, Object> item = byBook.get(bookId);
+            if (!closed[i]) {
+                fail(item, "Not borrowed by this user");
+                continue;
+            }
+            shelved.add(bookId);
+            item.put("success", true);
+            item.put("fineAmount", fines.get(i));
+            eventPublisher.publishEvent(new InteractionEvent(userId, bookId, InteractionEvent.Type.RETURNED, null, now));
+        }
+        bookService.increaseAvailableCopies(shelved);
+        return response(userId, items);
+    }
+    
+    /** The fine for a loan due on {@code dueDate} as of {@code asOf}, rounded to cents. */
+    public double fine(LocalDate dueDate, LocalDate asOf) {
+        long daysLate = Math.max(0, ChronoUnit.DAYS.between(dueDate, asOf));
+        return Math.round(daysLate * finePerDay * 100) / 100.0;
+    }
+    
+    private void validate(List<Long> bookIds) {
+        if (bookIds == null || bookIds.isEmpty()) {
+            throw new IllegalArgumentException("No books given");
+        }
+        if (bookIds.size() > maxBatchSize) {
+            throw new IllegalArgumentException("At most " + maxBatchSize + " books per request");
+        }
+        if (bookIds.stream().anyMatch(Objects::isNull)) {
+            throw new IllegalArgumentException("Book ids must not be null");
+        }
+    }
+    
+    // open loans by book id; should a book somehow be out twice, the one due first
+    private Map<Long, Object[]> openLoans(Long userId, List<Long> bookIds) {
+        Map<Long, Object[]> loans = new HashMap<>();
+        for (Object[] row : borrowRecordRepository.findOpenLoans(userId, new HashSet<>(bookIds))) {
+            loans.merge((Long) row[1], row, (a, b) -> ((LocalDate) a[2]).isAfter((LocalDate) b[2]) ? b : a);
+        }
+        return loans;
+    }
+    
+    private static Map<String, Object> item(Long bookId) {
+        Map<String, Object> item = new LinkedHashMap<>();
+        item.put("bookId", bookId);
+        item.put("success", false);
+        return item;
+    }
+    
+    private static void fail(Map<String, Object> item, String message) {
+        item.put("success", false);
+        item.put("message", message);
+    }
+    
+    private static Map<String, Object> response(Long userId, List<Map<String, Object>> items) {
+        long succeeded = items.stream().filter(item -> Boolean.TRUE.equals(item.get("success"))).count();
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("userId", userId);
+        response.put("succeeded", succeeded);
+        response.put("failed", items.size() - succeeded);
+        response.put("items", items);
+        return response;
+    }
+}
@@ -0,0 +1,120 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.event.HoldEvent;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Server-Sent Events streams that tell readers when a copy has been set aside for them.
+ *
+ * Streams are async requests, so an idle reader holds an open connection and a registry
+ * entry but no thread. One stream per reader carries all of their holds. Events go out on
+ * a single dispatcher thread, which keeps a slow client from stalling the transaction that
+ * freed the copy. A comment line is sent on every stream at a fixed interval so proxies
+ * keep it open and dead connections are noticed and dropped.
+ */
+@Service
+public class HoldNotifier {
+
+    @Value("${smartlibrary.holds.stream-timeout-ms:1800000}")
+    private long streamTimeoutMs;
+
+    private final ConcurrentHashMap<Long, Set<SseEmitter>> streams = new ConcurrentHashMap<>();
+
+    private final ExecutorService dispatcher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hold-notifier");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Opens a stream for the reader and replays the copies already waiting for them. */
+    public SseEmitter subscribe(Long userId, List<Map<String, Object>> readyHolds) {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMs);
+        streams.compute(userId, (id, emitters) -> {
+            Set<SseEmitter> target = emitters == null ? ConcurrentHashMap.newKeySet() : emitters;
+            target.add(emitter);
+            return target;
+        });
+        emitter.onCompletion(() -> unregister(userId, emitter));
+        emitter.onTimeout(() -> unregister(userId, emitter));
+        emitter.onError(error -> unregister(userId, emitter));
+        dispatcher.execute(() -> {
+            for (Map<String, Object> hold : readyHolds) {
+                send(userId, emitter, SseEmitter.event().name("hold-ready").data(hold));
+            }
+        });
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoldEvent(HoldEvent event) {
+        if (event.getType() != HoldEvent.Type.READY && event.getType() != HoldEvent.Type.EXPIRED) {
+            return;
+        }
+        Set<SseEmitter> emitters = streams.get(event.getUserId());
+        if (emitters == null) {
+            return;
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("holdId", event.getHoldId());
+        payload.put("bookId", event.getBookId());
+        payload.put("status", event.getType().name());
+        payload.put("expiresAt", event.getExpiresAt());
+        String name = event.getType() == HoldEvent.Type.READY ? "hold-ready" : "hold-expired";
+        dispatcher.execute(() -> {
+            for (SseEmitter emitter : emitters) {
+                send(event.getUserId(), emitter, SseEmitter.event().name(name).id(String.valueOf(event.getHoldId())).data(payload));
+            }
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${smartlibrary.holds.heartbeat-ms:25000}")
+    public void heartbeat() {
+        streams.forEach((userId, emitters) -> {
+            for (SseEmitter emitter : emitters) {
+                send(userId, emitter, SseEmitter.event().comment("keep-alive"));
+            }
+        });
+    }
+
+    public int openStreams() {
+        return streams.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void close() {
+        dispatcher.shutdownNow();
+        streams.values().forEach(emitters -> emitters.forEach(SseEmitter::complete));
+        streams.clear();
+    }
+
+    private void send(Long userId, SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            // the client went away; completing the emitter releases the request
+            unregister(userId, emitter);
+            emitter.completeWithError(e);
+        }
+    }
+
+    private void unregister(Long userId, SseEmitter emitter) {
+        streams.computeIfPresent(userId, (id, emitters) -> {
+            emitters.remove(emitter);
+            return emitters.isEmpty() ? null : emitters;
+        });
+    }
+}
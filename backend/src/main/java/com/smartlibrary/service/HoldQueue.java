@@ -0,0 +1,182 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.event.HoldEvent;
+import com.smartlibrary.repository.HoldRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * In-memory mirror of the waiting holds, one FIFO per book, so a returned copy finds its
+ * next holder without a query, and a book nobody is waiting for costs nothing at all.
+ *
+ * The holds table stays the source of truth: a copy is only given to a hold by the
+ * conditional {@code WAITING -> READY} update, so two returns racing for the same head
+ * are settled by the row lock and the loser moves on to the next in line. The queues are
+ * read without locks; changes are applied once the transaction that made them commits.
+ * Until the queues are loaded at startup, allocation reads the head from the table.
+ */
+@Service
+public class HoldQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(HoldQueue.class);
+
+    private static final int LOAD_CHUNK_SIZE = 5000;
+    private static final int FALLBACK_CANDIDATES = 16;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${smartlibrary.holds.pickup-days:3}")
+    private int pickupDays;
+
+    private record Waiter(long holdId, long userId) {}
+
+    // only books with someone waiting have an entry
+    private final ConcurrentHashMap<Long, ConcurrentLinkedDeque<Waiter>> queues = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        long started = System.currentTimeMillis();
+        Map<Long, List<Waiter>> waiting = new HashMap<>();
+        long afterId = 0;
+        int count = 0;
+        List<Object[]> rows;
+        do {
+            rows = holdRepository.findWaitingAfter(afterId, PageRequest.of(0, LOAD_CHUNK_SIZE));
+            for (Object[] row : rows) {
+                afterId = (Long) row[0];
+                waiting.computeIfAbsent((Long) row[2], id -> new ArrayList<>()).add(new Waiter(afterId, (Long) row[1]));
+                count++;
+            }
+        } while (rows.size() == LOAD_CHUNK_SIZE);
+
+        // holds placed while loading are already queued; they go behind the older ones
+        waiting.forEach((bookId, loadedWaiters) -> queues.compute(bookId, (id, live) -> {
+            ConcurrentLinkedDeque<Waiter> queue = new ConcurrentLinkedDeque<>(loadedWaiters);
+            if (live != null) {
+                Set<Long> seen = new HashSet<>();
+                loadedWaiters.forEach(waiter -> seen.add(waiter.holdId()));
+                live.stream().filter(waiter -> !seen.contains(waiter.holdId())).forEach(queue::add);
+            }
+            return queue;
+        }));
+        loaded = true;
+        log.info("HoldQueue loaded {} waiting holds on {} books in {} ms",
+            count, waiting.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Sets one returned copy of each book aside for the oldest waiting hold on it, and
+     * returns the ids of the books that had one; the rest belong on the shelf. Must run in
+     * the transaction that takes the copies back, so the holders are only notified once
+     * it commits.
+     */
+    public Set<Long> allocate(Collection<Long> bookIds) {
+        Set<Long> allocated = new HashSet<>();
+        Set<Long> readied = readiedInThisTransaction();
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime expiresAt = now.plusDays(pickupDays);
+        for (Long bookId : bookIds) {
+            for (Waiter waiter : candidates(bookId)) {
+                // a hold served or cancelled elsewhere (or readied earlier in this transaction)
+                // leaves the queue through its HoldEvent once that commits, never before
+                if (!readied.contains(waiter.holdId()) && holdRepository.markReady(waiter.holdId(), now, expiresAt) > 0) {
+                    readied.add(waiter.holdId());
+                    eventPublisher.publishEvent(new HoldEvent(waiter.holdId(), waiter.userId(), bookId,
+                        HoldEvent.Type.READY, expiresAt));
+                    allocated.add(bookId);
+                    break;
+                }
+            }
+        }
+        return allocated;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHoldEvent(HoldEvent event) {
+        if (event.getType() == HoldEvent.Type.PLACED) {
+            queues.compute(event.getBookId(), (id, queue) -> {
+                ConcurrentLinkedDeque<Waiter> target = queue == null ? new ConcurrentLinkedDeque<>() : queue;
+                target.add(new Waiter(event.getHoldId(), event.getUserId()));
+                return target;
+            });
+        } else {
+            remove(event.getBookId(), event.getHoldId());
+        }
+    }
+
+    // a deleted book's holds went with it
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            queues.remove(event.getBookId());
+        }
+    }
+
+    // holds this transaction has readied, which stay queued until it commits
+    @SuppressWarnings("unchecked")
+    private Set<Long> readiedInThisTransaction() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new HashSet<>();
+        }
+        Set<Long> readied = (Set<Long>) TransactionSynchronizationManager.getResource(this);
+        if (readied == null) {
+            Set<Long> created = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(this, created);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(HoldQueue.this);
+                }
+            });
+            readied = created;
+        }
+        return readied;
+    }
+
+    private Iterable<Waiter> candidates(Long bookId) {
+        if (loaded) {
+            ConcurrentLinkedDeque<Waiter> queue = queues.get(bookId);
+            return queue == null ? List.of() : queue;
+        }
+        List<Waiter> waiters = new ArrayList<>();
+        for (Object[] row : holdRepository.findWaitingByBook(bookId, PageRequest.of(0, FALLBACK_CANDIDATES))) {
+            waiters.add(new Waiter((Long) row[0], (Long) row[1]));
+        }
+        return waiters;
+    }
+
+    // compute keeps an emptied queue from being dropped while a hold is being added to it
+    private void remove(long bookId, long holdId) {
+        queues.computeIfPresent(bookId, (id, queue) -> {
+            queue.removeIf(waiter -> waiter.holdId() == holdId);
+            return queue.isEmpty() ? null : queue;
+        });
+    }
+}
@@ -0,0 +1,192 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.event.HoldEvent;
+import com.smartlibrary.model.Book;
+import com.smartlibrary.model.Hold;
+import com.smartlibrary.model.User;
+import com.smartlibrary.repository.BookRepository;
+import com.smartlibrary.repository.BorrowRecordRepository;
+import com.smartlibrary.repository.HoldRepository;
+import com.smartlibrary.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Per-book hold queues. A reader can place a hold on a book with no copy on the shelf;
+ * holds are served first come, first served as copies come back (see {@link HoldQueue}),
+ * and a copy set aside stays with its holder for {@code pickup-days} before it passes
+ * to the next one. Checking the book out fulfils the hold.
+ */
+@Service
+@Transactional
+public class HoldService {
+
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${smartlibrary.holds.max-active:10}")
+    private int maxActiveHolds;
+
+    /**
+     * Puts the reader at the back of the book's queue.
+     *
+     * @throws IllegalArgumentException if a copy is on the shelf, the reader already holds
+     *         or has borrowed the book, or has reached the hold limit
+     * @throws RuntimeException if the reader or the book does not exist
+     */
+    public Map<String, Object> placeHold(Long userId, Long bookId) {
+        User user = userRepository.findById(userId)
+            .orElseThrow(() -> new RuntimeException("User not found with id: " + userId));
+        Book book = bookRepository.findById(bookId)
+            .orElseThrow(() -> new RuntimeException("Book not found with id: " + bookId));
+        if (book.getAvailableCopies() > 0) {
+            throw new IllegalArgumentException("Copies are available; check the book out instead");
+        }
+        if (holdRepository.existsActiveHold(userId, bookId)) {
+            throw new IllegalArgumentException("Already holding this book");
+        }
+        if (!borrowRecordRepository.findOpenLoans(userId, Set.of(bookId)).isEmpty()) {
+            throw new IllegalArgumentException("Already borrowed by this user");
+        }
+        if (holdRepository.countActiveHoldsByUser(userId) >= maxActiveHolds) {
+            throw new IllegalArgumentException("Hold limit of " + maxActiveHolds + " reached");
+        }
+        Hold hold = holdRepository.save(new Hold(user, book));
+        eventPublisher.publishEvent(new HoldEvent(hold.getId(), userId, bookId, HoldEvent.Type.PLACED, null));
+        return toMap(hold);
+    }
+
+    /**
+     * Withdraws a waiting or ready hold; a copy that was set aside for it goes to the next
+     * holder or back on the shelf.
+     *
+     * @throws IllegalArgumentException if the hold is no longer active
+     * @throws RuntimeException if the reader has no such hold
+     */
+    public Map<String, Object> cancelHold(Long userId, Long holdId) {
+        Hold hold = holdRepository.findByIdForUpdate(holdId)
+            .filter(found -> found.getUser().getId().equals(userId))
+            .orElseThrow(() -> new RuntimeException("Hold not found with id: " + holdId));
+        Hold.Status status = hold.getStatus();
+        if (status != Hold.Status.WAITING && status != Hold.Status.READY) {
+            throw new IllegalArgumentException("Hold is already " + status.name().toLowerCase());
+        }
+        Long bookId = hold.getBook().getId();
+        hold.setStatus(Hold.Status.CANCELLED);
+        holdRepository.save(hold);
+        eventPublisher.publishEvent(new HoldEvent(holdId, userId, bookId, HoldEvent.Type.CANCELLED, null));
+        if (status == Hold.Status.READY) {
+            bookService.increaseAvailableCopies(bookId);
+        }
+        return toMap(hold);
+    }
+
+    /**
+     * Marks the reader's ready holds on the given books fulfilled and returns those books'
+     * ids: their copies are already set aside, so checkout must not take another off the
+     * shelf.
+     */
+    public Set<Long> fulfillReadyHolds(Long userId, Collection<Long> bookIds) {
+        Set<Long> fulfilled = new HashSet<>();
+        for (Hold hold : holdRepository.findReadyForUpdate(userId, bookIds)) {
+            Long bookId = hold.getBook().getId();
+            if (!fulfilled.add(bookId)) {
+                continue;
+            }
+            hold.setStatus(Hold.Status.FULFILLED);
+            holdRepository.save(hold);
+            eventPublisher.publishEvent(new HoldEvent(hold.getId(), userId, bookId, HoldEvent.Type.FULFILLED, null));
+        }
+        return fulfilled;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getHolds(Long userId) {
+        if (!userRepository.existsById(userId)) {
+            throw new RuntimeException("User not found with id: " + userId);
+        }
+        List<Map<String, Object>> holds = new ArrayList<>();
+        for (Hold hold : holdRepository.findByUserIdOrderByCreatedAtDesc(userId)) {
+            holds.add(toMap(hold));
+        }
+        return holds;
+    }
+
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getReadyHolds(Long userId) {
+        return getHolds(userId).stream()
+            .filter(hold -> Hold.Status.READY.name().equals(hold.get("status")))
+            .toList();
+    }
+
+    /**
+     * Expires ready holds whose pickup window has passed, handing each copy on, and serves
+     * waiting holds on books that have a copy on the shelf anyway. Every expiry and every
+     * copy handed on commits in its own transaction, so one failure rolls back only itself.
+     */
+    @Scheduled(fixedDelayString = "${smartlibrary.holds.sweep-ms:60000}")
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        for (Object[] row : holdRepository.findExpiredReady(now, PageRequest.of(0, SWEEP_BATCH_SIZE))) {
+            Long holdId = (Long) row[0];
+            Long bookId = (Long) row[2];
+            transactionTemplate.executeWithoutResult(status -> {
+                if (holdRepository.markExpired(holdId, now) > 0) {
+                    eventPublisher.publishEvent(new HoldEvent(holdId, (Long) row[1], bookId, HoldEvent.Type.EXPIRED, null));
+                    bookService.increaseAvailableCopies(bookId);
+                }
+            });
+        }
+        for (Long bookId : holdRepository.findBooksWithWaitingHoldsAndCopies(PageRequest.of(0, SWEEP_BATCH_SIZE))) {
+            while (Boolean.TRUE.equals(transactionTemplate.execute(status -> bookService.passShelvedCopyToHold(bookId)))) {
+                // one copy per waiting hold, until either runs out
+            }
+        }
+    }
+
+    private Map<String, Object> toMap(Hold hold) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        Long bookId = hold.getBook().getId();
+        map.put("holdId", hold.getId());
+        map.put("bookId", bookId);
+        map.put("status", hold.getStatus().name());
+        if (hold.getStatus() == Hold.Status.WAITING) {
+            map.put("position", holdRepository.countWaitingBefore(bookId, hold.getId()) + 1);
+        }
+        map.put("createdAt", hold.getCreatedAt());
+        map.put("readyAt", hold.getReadyAt());
+        map.put("expiresAt", hold.getExpiresAt());
+        return map;
+    }
+}
@@ -0,0 +1,159 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.model.JobCheckpoint;
+import com.smartlibrary.repository.BorrowRecordRepository;
+import com.smartlibrary.repository.JobCheckpointRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nightly sweep that marks loans past their due date OVERDUE and brings their fines up to
+ * date.
+ *
+ * Open overdue loans are walked in id order one keyset chunk at a time, so memory stays at
+ * one chunk however large the backlog. Each chunk is a transaction: loans sharing a due
+ * date share a fine and are updated with one bulk UPDATE, and the job's checkpoint moves
+ * past the chunk in the same commit. A run that dies part way resumes from its checkpoint
+ * on the next start the same day; a later day's run starts over, as every fine depends on
+ * the date.
+ */
+@Service
+public class OverdueProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(OverdueProcessor.class);
+
+    static final String JOB_NAME = "overdue-fines";
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private JobCheckpointRepository jobCheckpointRepository;
+
+    @Autowired
+    private CirculationService circulationService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${smartlibrary.overdue.chunk-size:1000}")
+    private int chunkSize;
+
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    /** Counts of one chunk; {@code scanned} is 0 once the run is complete. */
+    private record Chunk(int scanned, int updated, long resumedAfter) {}
+
+    @Scheduled(cron = "${smartlibrary.overdue.cron:0 30 1 * * *}")
+    public void runNightly() {
+        run(LocalDate.now());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedRun() {
+        LocalDate today = LocalDate.now();
+        boolean interrupted = jobCheckpointRepository.findById(JOB_NAME)
+            .map(checkpoint -> today.equals(checkpoint.getRunDate()) && !Boolean.TRUE.equals(checkpoint.getCompleted()))
+            .orElse(false);
+        if (interrupted) {
+            Thread thread = new Thread(() -> run(today), "overdue-resume");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /** Processes the remaining chunks of the run for {@code asOf}; returns its metrics. */
+    public synchronized Map<String, Object> run(LocalDate asOf) {
+        long started = System.nanoTime();
+        long scanned = 0;
+        long updated = 0;
+        int chunks = 0;
+        long slowestChunk = 0;
+        Long resumedAfter = null;
+        while (true) {
+            long chunkStarted = System.nanoTime();
+            Chunk chunk = transactionTemplate.execute(status -> processChunk(asOf));
+            if (resumedAfter == null) {
+                resumedAfter = chunk.resumedAfter();
+            }
+            if (chunk.scanned() == 0) {
+                break;
+            }
+            scanned += chunk.scanned();
+            updated += chunk.updated();
+            chunks++;
+            slowestChunk = Math.max(slowestChunk, System.nanoTime() - chunkStarted);
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Map<String, Object> metrics = new LinkedHashMap<>();
+        metrics.put("asOf", asOf);
+        metrics.put("finishedAt", LocalDateTime.now());
+        metrics.put("resumedAfterId", resumedAfter);
+        metrics.put("rowsScanned", scanned);
+        metrics.put("rowsUpdated", updated);
+        metrics.put("chunks", chunks);
+        metrics.put("durationMs", elapsed / 1_000_000);
+        metrics.put("rowsPerSecond", elapsed == 0 ? 0.0 : scanned * 1e9 / elapsed);
+        metrics.put("meanChunkMs", chunks == 0 ? 0.0 : elapsed / 1e6 / chunks);
+        metrics.put("maxChunkMs", slowestChunk / 1e6);
+        lastRun = metrics;
+        log.info("Overdue sweep for {}: {} loans scanned, {} updated in {} chunks, {} ms ({} rows/s)",
+            asOf, scanned, updated, chunks, elapsed / 1_000_000, Math.round((double) metrics.get("rowsPerSecond")));
+        return metrics;
+    }
+
+    public Map<String, Object> getLastRun() {
+        return lastRun;
+    }
+
+    private Chunk processChunk(LocalDate asOf) {
+        JobCheckpoint checkpoint = jobCheckpointRepository.findForUpdate(JOB_NAME)
+            .orElseGet(() -> jobCheckpointRepository.save(new JobCheckpoint(JOB_NAME)));
+        if (!asOf.equals(checkpoint.getRunDate())) {
+            checkpoint.setRunDate(asOf);
+            checkpoint.setLastId(0L);
+            checkpoint.setCompleted(false);
+        }
+        long resumedAfter = checkpoint.getLastId();
+        if (Boolean.TRUE.equals(checkpoint.getCompleted())) {
+            return new Chunk(0, 0, resumedAfter);
+        }
+        List<Object[]> rows = borrowRecordRepository.findOverdueAfter(asOf, checkpoint.getLastId(),
+            PageRequest.of(0, chunkSize));
+        if (rows.isEmpty()) {
+            checkpoint.setCompleted(true);
+            jobCheckpointRepository.save(checkpoint);
+            return new Chunk(0, 0, resumedAfter);
+        }
+
+        Map<LocalDate, List<Long>> byDueDate = new LinkedHashMap<>();
+        for (Object[] row : rows) {
+            byDueDate.computeIfAbsent((LocalDate) row[1], date -> new ArrayList<>()).add((Long) row[0]);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int updated = 0;
+        for (Map.Entry<LocalDate, List<Long>> group : byDueDate.entrySet()) {
+            double fine = circulationService.fine(group.getKey(), asOf);
+            updated += borrowRecordRepository.markOverdue(group.getValue(), fine, now);
+        }
+        checkpoint.setLastId((Long) rows.get(rows.size() - 1)[0]);
+        jobCheckpointRepository.save(checkpoint);
+        return new Chunk(rows.size(), updated, resumedAfter);
+    }
+}
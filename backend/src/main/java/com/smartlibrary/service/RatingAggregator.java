@@ -0,0 +1,166 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.event.RatingChangedEvent;
+import com.smartlibrary.repository.BookRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps each book's running rating total (sum and count, and the average derived from
+ * them) in step with its ratings without re-aggregating them.
+ *
+ * Committed rating changes arrive as {@link RatingChangedEvent} deltas and are coalesced
+ * per book in memory; a short-interval flush applies them as one batch of
+ * {@code UPDATE ... SET rating_sum = rating_sum + ?} statements, so a burst of ratings on
+ * a popular book costs one row write per flush instead of one aggregate query and save per
+ * rating. Deltas still buffered when the process dies are lost, which is what the
+ * periodic reconciliation pass is for: it recomputes the totals of any book that has
+ * drifted from its ratings.
+ *
+ * Flushes and corrections commit in transactions of their own, so a caller's rollback
+ * cannot discard deltas already taken out of the buffer.
+ *
+ * Totals lag by at most one flush interval only while a scheduler thread is free to run
+ * the flush; {@code spring.task.scheduling.pool.size} keeps one free beside the long
+ * nightly and hourly jobs.
+ */
+@Service
+public class RatingAggregator {
+
+    private static final Logger log = LoggerFactory.getLogger(RatingAggregator.class);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${smartlibrary.rating-aggregation.reconcile-chunk-size:5000}")
+    private int reconcileChunkSize;
+
+    // book id -> {sum delta, count delta}; values are replaced, never mutated
+    private final ConcurrentHashMap<Long, long[]> pending = new ConcurrentHashMap<>();
+
+    private TransactionTemplate ownTransaction;
+
+    @PostConstruct
+    void init() {
+        ownTransaction = new TransactionTemplate(transactionManager);
+        ownTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onRatingChanged(RatingChangedEvent event) {
+        add(event.getBookId(), event.getSumDelta(), event.getCountDelta());
+    }
+
+    /** Writes the buffered deltas; returns the ids of the books whose totals moved. */
+    @Scheduled(fixedDelayString = "${smartlibrary.rating-aggregation.flush-ms:500}")
+    public synchronized List<Long> flush() {
+        if (pending.isEmpty()) {
+            return List.of();
+        }
+        // removing entry by entry hands each delta to exactly one flush; anything merged
+        // in after its removal starts a new entry for the next one
+        Map<Long, long[]> batch = new HashMap<>();
+        for (Long bookId : pending.keySet()) {
+            long[] delta = pending.remove(bookId);
+            if (delta != null && (delta[0] != 0 || delta[1] != 0)) {
+                batch.put(bookId, delta);
+            }
+        }
+        try {
+            return ownTransaction.execute(status -> {
+                List<Long> changed = bookRepository.addRatingDeltas(batch);
+                publishRatingChanged(changed);
+                return changed;
+            });
+        } catch (RuntimeException e) {
+            batch.forEach((bookId, delta) -> add(bookId, delta[0], delta[1]));
+            throw e;
+        }
+    }
+
+    /**
+     * Recomputes the totals of every book that disagrees with its ratings, one id range at
+     * a time; returns how many were corrected. Buffered deltas are flushed before each
+     * range so they are not mistaken for drift.
+     */
+    @Scheduled(cron = "${smartlibrary.rating-aggregation.reconcile-cron:0 45 * * * *}")
+    public int reconcile() {
+        long started = System.currentTimeMillis();
+        Long maxId = bookRepository.findMaxId();
+        int corrected = 0;
+        for (long afterId = 0; maxId != null && afterId < maxId; afterId += reconcileChunkSize) {
+            corrected += reconcile(afterId, Math.min(afterId + reconcileChunkSize, maxId)).size();
+        }
+        if (corrected > 0) {
+            log.warn("Rating reconciliation corrected the totals of {} books in {} ms",
+                corrected, System.currentTimeMillis() - started);
+        } else {
+            log.info("Rating reconciliation found no drift in {} ms", System.currentTimeMillis() - started);
+        }
+        return corrected;
+    }
+
+    /** Recomputes one book's totals from its ratings if they have drifted. */
+    public boolean reconcile(Long bookId) {
+        return !reconcile(bookId - 1, bookId).isEmpty();
+    }
+
+    private synchronized List<Long> reconcile(long afterId, long upToId) {
+        flush();
+        List<Long> suspects = ownTransaction.execute(status -> bookRepository.findRatingDrift(afterId, upToId));
+        if (suspects.isEmpty()) {
+            return suspects;
+        }
+        // a rating that committed after the flush looks like drift until its delta is written;
+        // recomputing it then would count it twice, so only what is still off after a second
+        // flush is corrected
+        flush();
+        return ownTransaction.execute(status -> {
+            List<Long> drifted = bookRepository.reconcileRatingTotals(suspects);
+            publishRatingChanged(drifted);
+            return drifted;
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    private void add(long bookId, long sumDelta, long countDelta) {
+        pending.merge(bookId, new long[] {sumDelta, countDelta},
+            (a, b) -> new long[] {a[0] + b[0], a[1] + b[1]});
+    }
+
+    private void publishRatingChanged(Collection<Long> bookIds) {
+        if (!bookIds.isEmpty()) {
+            bookRepository.findAllById(bookIds).forEach(book ->
+                eventPublisher.publishEvent(new BookChangedEvent(book, BookChangedEvent.Type.RATING_CHANGED)));
+        }
+    }
+}
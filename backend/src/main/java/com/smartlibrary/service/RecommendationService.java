@@ -2,20 +2,39 @@ package com.smartlibrary.service;
 
 import com.smartlibrary.model.Book;
 import com.smartlibrary.model.BorrowRecord;
+import com.smartlibrary.recommendation.BookEmbeddingIndex;
+import com.smartlibrary.recommendation.ContentSimilarityIndex;
+import com.smartlibrary.recommendation.ItemSimilarityIndex;
+import com.smartlibrary.recommendation.MatrixFactorizationRecommender;
+import com.smartlibrary.recommendation.TrendingIndex;
+import com.smartlibrary.recommendation.UserRecommendationStore;
 import com.smartlibrary.repository.BookRepository;
 import com.smartlibrary.repository.BorrowRecordRepository;
 import com.smartlibrary.repository.RatingRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @Service
 public class RecommendationService {
     
+    private static final Logger log = LoggerFactory.getLogger(RecommendationService.class);
+    
     @Autowired
     private BookRepository bookRepository;
     
@@ -25,88 +44,216 @@ public class RecommendationService {
     @Autowired
     private RatingRepository ratingRepository;
     
+    @Autowired
+    private ItemSimilarityIndex itemSimilarityIndex;
+    
+    @Autowired
+    private ContentSimilarityIndex contentSimilarityIndex;
+    
+    @Autowired
+    private BookEmbeddingIndex bookEmbeddingIndex;
+    
+    @Autowired
+    private TrendingIndex trendingIndex;
+    
+    @Autowired
+    private MatrixFactorizationRecommender matrixFactorizationRecommender;
+    
+    @Autowired
+    private UserRecommendationStore userRecommendationStore;
+    
+    @Autowired
+    private ThreadPoolExecutor dashboardExecutor;
+    
+    @Value("${smartlibrary.dashboard.section-timeout-ms:300}")
+    private long dashboardSectionTimeoutMs;
+    
+    @Value("${smartlibrary.user-recommendations.refresh-batch-size:500}")
+    private int storeRefreshBatchSize;
+    
     private static final int DEFAULT_RECOMMENDATION_SIZE = 10;
+    private static final int MAX_CACHED_SECTIONS = 10_000;
+    private static final int BOOKS_PER_CATEGORY = 3;
+    private static final double RECOMMENDED_MIN_RATING = 4.0;
+    
+    private final Map<String, Object> lastGoodSections = Collections.synchronizedMap(
+        new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Object> eldest) {
+                return size() > MAX_CACHED_SECTIONS;
+            }
+        });
     
     public List<Book> getRecommendationsForUser(Long userId) {
         return getRecommendationsForUser(userId, DEFAULT_RECOMMENDATION_SIZE);
     }
     
+    /**
+     * Served from {@link UserRecommendationStore}; a miss, or a limit beyond what the store
+     * keeps, is computed live and a miss is stored for next time.
+     */
     public List<Book> getRecommendationsForUser(Long userId, int limit) {
-        Set<Book> recommendations = new LinkedHashSet<>();
-        
-        // 1. Get user's preferred categories based on borrowing history
-        List<String> preferredCategories = borrowRecordRepository.findUserPreferredCategories(userId);
-        
-        // 2. Get highly rated books from preferred categories
-        for (String category : preferredCategories) {
-            Pageable pageable = PageRequest.of(0, 3);
-            List<Book> categoryBooks = bookRepository.findRecommendedBooksByCategory(category, pageable);
-            recommendations.addAll(categoryBooks);
-            
-            if (recommendations.size() >= limit) break;
+        if (limit <= 0) {
+            return Collections.emptyList();
         }
-        
-        // 3. If we still need more recommendations, add top-rated books overall
-        if (recommendations.size() < limit) {
-            Pageable pageable = PageRequest.of(0, limit - recommendations.size());
-            List<Book> topRatedBooks = bookRepository.findBooksByMinRating(4.0);
-            recommendations.addAll(topRatedBooks.stream()
-                .limit(limit - recommendations.size())
-                .collect(Collectors.toList()));
+        if (limit > userRecommendationStore.size()) {
+            return computeRecommendations(userId, limit);
         }
-        
-        // 4. If still need more, add available books
-        if (recommendations.size() < limit) {
-            Pageable pageable = PageRequest.of(0, limit - recommendations.size());
-            List<Book> availableBooks = bookRepository.findAvailableBooks(pageable).getContent();
-            recommendations.addAll(availableBooks);
+        UserRecommendationStore.Entry stored = userRecommendationStore.get(userId);
+        if (stored == null) {
+            stored = storeRecommendations(userId);
+        }
+        return stored.books().subList(0, Math.min(limit, stored.books().size()));
+    }
+    
+    /**
+     * Personal picks from the factorization model first, then one set-based candidate
+     * query: top books of the user's favourite categories, then top-rated, then anything
+     * available. The number of categories considered is capped at {@code limit}, so the
+     * cost does not grow with the user's borrowing breadth.
+     */
+    private List<Book> computeRecommendations(Long userId, int limit) {
+        Map<Long, Book> picks = new LinkedHashMap<>();
+        // over-fetch because unavailable books are dropped
+        List<Long> personal = matrixFactorizationRecommender.recommend(userId, limit * 2);
+        if (!personal.isEmpty()) {
+            Map<Long, Book> loaded = bookRepository.findAllById(personal).stream()
+                .collect(Collectors.toMap(Book::getId, b -> b));
+            for (Long id : personal) {
+                Book book = loaded.get(id);
+                if (book != null && book.getAvailableCopies() != null && book.getAvailableCopies() > 0
+                        && picks.size() < limit) {
+                    picks.put(id, book);
+                }
+            }
+        }
+        if (picks.size() < limit) {
+            bookRepository.findRecommendationCandidates(userId, limit, BOOKS_PER_CATEGORY, RECOMMENDED_MIN_RATING, limit)
+                .forEach(book -> {
+                    if (picks.size() < limit) {
+                        picks.putIfAbsent(book.getId(), book);
+                    }
+                });
+        }
+        return new ArrayList<>(picks.values());
+    }
+    
+    private UserRecommendationStore.Entry storeRecommendations(Long userId) {
+        long version = userRecommendationStore.version(userId);
+        UserRecommendationStore.Entry entry = new UserRecommendationStore.Entry(
+            List.copyOf(computeRecommendations(userId, userRecommendationStore.size())),
+            List.copyOf(borrowRecordRepository.findUserPreferredCategories(userId)));
+        userRecommendationStore.put(userId, version, entry);
+        return entry;
+    }
+    
+    /** Recomputes stored recommendations of active users that were invalidated or have aged. */
+    @Scheduled(fixedDelayString = "${smartlibrary.user-recommendations.refresh-ms:60000}")
+    public void refreshStoredRecommendations() {
+        for (Long userId : userRecommendationStore.dueForRefresh(storeRefreshBatchSize)) {
+            try {
+                storeRecommendations(userId);
+            } catch (RuntimeException e) {
+                log.warn("Could not refresh recommendations for user {}", userId, e);
+            }
         }
-        
-        return recommendations.stream()
-            .filter(book -> book.getAvailableCopies() > 0)
-            .limit(limit)
-            .collect(Collectors.toList());
+    }
+    
+    public Map<String, Object> getStoreStats() {
+        return userRecommendationStore.stats();
     }
     
     public List<Book> getSimilarBooks(Long bookId) {
         return getSimilarBooks(bookId, 5);
     }
     
+    /**
+     * Co-activity neighbours from {@link ItemSimilarityIndex} first, then text neighbours
+     * from {@link ContentSimilarityIndex} for books with little history and embedding
+     * neighbours from {@link BookEmbeddingIndex}, loaded in one query; the same-author and
+     * same-category lookups only fill up what is still missing.
+     */
     public List<Book> getSimilarBooks(Long bookId, int limit) {
+        List<Long> neighbourIds = new ArrayList<>(itemSimilarityIndex.similar(bookId, limit));
+        if (neighbourIds.size() < limit) {
+            fillFrom(neighbourIds, contentSimilarityIndex.similar(bookId, limit), limit);
+        }
+        if (neighbourIds.size() < limit && bookEmbeddingIndex.isReady()) {
+            fillFrom(neighbourIds, bookEmbeddingIndex.similar(bookId, limit), limit);
+        }
+        Map<Long, Book> similarBooks = loadInOrder(neighbourIds);
+        if (similarBooks.size() >= limit) {
+            return new ArrayList<>(similarBooks.values());
+        }
+        
         Optional<Book> bookOpt = bookRepository.findById(bookId);
         if (!bookOpt.isPresent()) {
-            return Collections.emptyList();
+            return new ArrayList<>(similarBooks.values());
         }
         
         Book book = bookOpt.get();
-        Set<Book> similarBooks = new LinkedHashSet<>();
         
         // 1. Books by the same author
         Pageable pageable = PageRequest.of(0, 3);
         List<Book> sameAuthorBooks = bookRepository.findBooksByAuthorExcluding(
             book.getAuthor(), bookId, pageable);
-        similarBooks.addAll(sameAuthorBooks);
+        sameAuthorBooks.forEach(b -> similarBooks.putIfAbsent(b.getId(), b));
         
         // 2. Books in the same category
         if (similarBooks.size() < limit) {
             List<Book> sameCategoryBooks = bookRepository.findRecommendedBooksByCategory(
-                book.getCategory(), PageRequest.of(0, limit - similarBooks.size()));
-            similarBooks.addAll(sameCategoryBooks.stream()
+                book.getCategory(), PageRequest.of(0, limit - similarBooks.size() + 1));
+            sameCategoryBooks.stream()
                 .filter(b -> !b.getId().equals(bookId))
-                .collect(Collectors.toList()));
+                .forEach(b -> similarBooks.putIfAbsent(b.getId(), b));
         }
         
-        return similarBooks.stream()
+        return similarBooks.values().stream()
             .limit(limit)
             .collect(Collectors.toList());
     }
     
+    /** Books most like the given ones taken together, e.g. a reading list or a basket. */
+    public List<Book> getMoreLikeThese(List<Long> bookIds, int limit) {
+        if (bookIds.isEmpty() || !bookEmbeddingIndex.isReady()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(loadInOrder(bookEmbeddingIndex.moreLike(new LinkedHashSet<>(bookIds), limit)).values());
+    }
+    
+    private static void fillFrom(List<Long> ids, List<Long> more, int limit) {
+        more.stream()
+            .filter(id -> !ids.contains(id))
+            .limit(limit - ids.size())
+            .forEach(ids::add);
+    }
+    
+    private Map<Long, Book> loadInOrder(List<Long> ids) {
+        Map<Long, Book> books = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return books;
+        }
+        Map<Long, Book> loaded = bookRepository.findAllById(ids).stream()
+            .collect(Collectors.toMap(Book::getId, b -> b));
+        for (Long id : ids) {
+            Book book = loaded.get(id);
+            if (book != null) {
+                books.put(id, book);
+            }
+        }
+        return books;
+    }
+    
     public List<Book> getTrendingBooks() {
         return getTrendingBooks(10);
     }
     
     public List<Book> getTrendingBooks(int limit) {
-        // Get books with highest ratings and recent activity
+        List<Book> trending = trendingIndex.top(limit);
+        if (trending != null) {
+            return trending;
+        }
+        // not warmed up yet, or more than the snapshot holds
         Pageable pageable = PageRequest.of(0, limit);
         return bookRepository.findTopRatedBooks(pageable).getContent();
     }
@@ -131,27 +278,93 @@ public class RecommendationService {
         return bookRepository.findRecommendedBooksByCategory(category, pageable);
     }
     
+    /**
+     * Sections run concurrently on the dashboard executor, all due within the section
+     * timeout of the request starting. A section that is late, rejected or failing is
+     * served from its last good value when there is one and left out otherwise; either
+     * way it is named under "degradedSections".
+     */
     public Map<String, Object> getPersonalizedDashboard(Long userId) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(dashboardSectionTimeoutMs);
+        List<String> degraded = new ArrayList<>();
         Map<String, Object> dashboard = new HashMap<>();
         
-        // Personal recommendations
-        dashboard.put("recommendations", getRecommendationsForUser(userId, 6));
+        // a store miss is computed once; recommendations and categories both come from the entry
+        UserRecommendationStore.Entry stored = userRecommendationStore.get(userId);
+        CompletableFuture<UserRecommendationStore.Entry> entry = stored != null
+            ? CompletableFuture.completedFuture(stored)
+            : async(() -> storeRecommendations(userId));
+        CompletableFuture<List<Book>> recommendations = remember("recommendations:" + userId,
+            entry.thenApply(found -> found.books().subList(0, Math.min(6, found.books().size()))));
+        CompletableFuture<List<Book>> trending = section("trending", () -> getTrendingBooks(6));
+        CompletableFuture<List<Book>> newArrivals = section("newArrivals", () -> getNewArrivals(6));
+        CompletableFuture<List<String>> preferredCategories = remember("preferredCategories:" + userId,
+            entry.thenApply(UserRecommendationStore.Entry::preferredCategories));
         
-        // Trending books
-        dashboard.put("trending", getTrendingBooks(6));
+        // category sections depend on the user's categories, so they start once those arrive
+        List<String> categories = await("categoryRecommendations", "preferredCategories:" + userId,
+            preferredCategories, deadline, degraded);
+        Map<String, CompletableFuture<List<Book>>> categorySections = new LinkedHashMap<>();
+        if (categories != null) {
+            for (String category : categories.stream().limit(3).collect(Collectors.toList())) {
+                categorySections.put(category, section("category:" + category, () -> getPopularInCategory(category, 4)));
+            }
+        }
         
-        // New arrivals
-        dashboard.put("newArrivals", getNewArrivals(6));
+        putIfPresent(dashboard, "recommendations",
+            await("recommendations", "recommendations:" + userId, recommendations, deadline, degraded));
+        putIfPresent(dashboard, "trending", await("trending", "trending", trending, deadline, degraded));
+        putIfPresent(dashboard, "newArrivals", await("newArrivals", "newArrivals", newArrivals, deadline, degraded));
         
-        // User's preferred categories with popular books
-        List<String> preferredCategories = borrowRecordRepository.findUserPreferredCategories(userId);
         Map<String, List<Book>> categoryBooks = new HashMap<>();
-        
-        for (String category : preferredCategories.stream().limit(3).collect(Collectors.toList())) {
-            categoryBooks.put(category, getPopularInCategory(category, 4));
-        }
+        categorySections.forEach((category, future) ->
+            putIfPresent(categoryBooks, category,
+                await("category:" + category, "category:" + category, future, deadline, degraded)));
         dashboard.put("categoryRecommendations", categoryBooks);
         
+        if (!degraded.isEmpty()) {
+            dashboard.put("degradedSections", degraded);
+        }
         return dashboard;
     }
+    
+    // runs on the dashboard pool; any completed result, even a late one, refreshes the fallback
+    private <T> CompletableFuture<T> section(String key, Supplier<T> work) {
+        return remember(key, async(work));
+    }
+    
+    private <T> CompletableFuture<T> async(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, dashboardExecutor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    private <T> CompletableFuture<T> remember(String key, CompletableFuture<T> future) {
+        return future.whenComplete((value, error) -> {
+            if (error == null && value != null) {
+                lastGoodSections.put(key, value);
+            }
+        });
+    }
+    
+    @SuppressWarnings("unchecked")
+    private <T> T await(String section, String key, CompletableFuture<T> future, long deadline, List<String> degraded) {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // fall through to the last good value
+        }
+        degraded.add(section);
+        return (T) lastGoodSections.get(key);
+    }
+    
+    private static <V> void putIfPresent(Map<String, V> map, String key, V value) {
+        if (value != null) {
+            map.put(key, value);
+        }
+    }
 }
@@ -0,0 +1,59 @@
+-- Schema as previously created by hibernate.ddl-auto=update. Existing databases are
+-- baselined at this version (spring.flyway.baseline-on-migrate) and skip this script.
+
+CREATE TABLE IF NOT EXISTS users (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    username        VARCHAR(255) NOT NULL UNIQUE,
+    email           VARCHAR(255) NOT NULL UNIQUE,
+    password        VARCHAR(255) NOT NULL,
+    first_name      VARCHAR(255) NOT NULL,
+    last_name       VARCHAR(255) NOT NULL,
+    phone_number    VARCHAR(255),
+    role            VARCHAR(255) CHECK (role IN ('USER', 'LIBRARIAN', 'ADMIN')),
+    is_active       BOOLEAN,
+    created_at      TIMESTAMP(6),
+    updated_at      TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS books (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    title             VARCHAR(255) NOT NULL,
+    author            VARCHAR(255) NOT NULL,
+    isbn              VARCHAR(255) NOT NULL UNIQUE,
+    description       VARCHAR(255),
+    category          VARCHAR(255),
+    publisher         VARCHAR(255),
+    publication_year  INTEGER,
+    page_count        INTEGER,
+    language          VARCHAR(255),
+    cover_image_url   VARCHAR(255),
+    available_copies  INTEGER,
+    total_copies      INTEGER,
+    average_rating    FLOAT(53),
+    rating_count      INTEGER,
+    created_at        TIMESTAMP(6),
+    updated_at        TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS borrow_records (
+    id           BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id      BIGINT NOT NULL REFERENCES users (id),
+    book_id      BIGINT NOT NULL REFERENCES books (id),
+    borrow_date  DATE NOT NULL,
+    due_date     DATE NOT NULL,
+    return_date  DATE,
+    status       VARCHAR(255) CHECK (status IN ('BORROWED', 'RETURNED', 'OVERDUE', 'LOST')),
+    fine_amount  FLOAT(53),
+    created_at   TIMESTAMP(6),
+    updated_at   TIMESTAMP(6)
+);
+
+CREATE TABLE IF NOT EXISTS ratings (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id     BIGINT NOT NULL REFERENCES users (id),
+    book_id     BIGINT NOT NULL REFERENCES books (id),
+    rating      INTEGER NOT NULL,
+    review      VARCHAR(1000),
+    created_at  TIMESTAMP(6),
+    updated_at  TIMESTAMP(6)
+);
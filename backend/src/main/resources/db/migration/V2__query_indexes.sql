@@ -0,0 +1,34 @@
+-- Secondary indexes matched to the repository queries. Names and columns mirror the
+-- @Index declarations on the entities, which is what the dev (H2) schema gets.
+
+-- findByCategory, findRecommendedBooksByCategory (ORDER BY average_rating DESC NULLS LAST)
+CREATE INDEX IF NOT EXISTS idx_books_category_rating
+    ON books (category, average_rating DESC NULLS LAST);
+
+-- findTopRatedBooks and the rating filters of findBooksWithEnhancedFilters
+CREATE INDEX IF NOT EXISTS idx_books_average_rating
+    ON books (average_rating DESC NULLS LAST);
+
+-- countActiveBorrowsByUser, findByUserIdAndStatus, findActiveBorrowRecord
+CREATE INDEX IF NOT EXISTS idx_borrow_records_user_status
+    ON borrow_records (user_id, status);
+
+-- findByUserIdOrderByBorrowDateDesc, findUserPreferredCategories
+CREATE INDEX IF NOT EXISTS idx_borrow_records_user_borrow_date
+    ON borrow_records (user_id, borrow_date DESC);
+
+-- findByBookIdAndStatus; also covers the book_id foreign key
+CREATE INDEX IF NOT EXISTS idx_borrow_records_book_status
+    ON borrow_records (book_id, status);
+
+-- findOverdueRecords
+CREATE INDEX IF NOT EXISTS idx_borrow_records_status_due_date
+    ON borrow_records (status, due_date);
+
+-- findAverageRatingByBookId, countRatingsByBookId, findByBookIdOrderByCreatedAtDesc, findReviewsByBookId
+CREATE INDEX IF NOT EXISTS idx_ratings_book_created
+    ON ratings (book_id, created_at DESC);
+
+-- findByUserIdAndBookId; the user_id prefix also serves findByUserIdOrderByCreatedAtDesc
+CREATE INDEX IF NOT EXISTS idx_ratings_user_book
+    ON ratings (user_id, book_id);
@@ -0,0 +1,12 @@
+-- Progress of chunked batch jobs (the nightly overdue sweep), so an interrupted run resumes.
+CREATE TABLE IF NOT EXISTS job_checkpoints (
+    job_name    VARCHAR(100) PRIMARY KEY,
+    run_date    DATE,
+    last_id     BIGINT NOT NULL DEFAULT 0,
+    completed   BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at  TIMESTAMP(6)
+);
+
+-- findOverdueAfter: open loans walked in id order
+CREATE INDEX IF NOT EXISTS idx_borrow_records_status_id
+    ON borrow_records (status, id);
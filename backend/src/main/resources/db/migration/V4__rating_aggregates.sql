@@ -0,0 +1,10 @@
+-- Running rating totals: the average is kept as rating_sum / rating_count and moved by deltas.
+ALTER TABLE books ADD COLUMN IF NOT EXISTS rating_sum BIGINT NOT NULL DEFAULT 0;
+
+UPDATE books SET
+    rating_sum = (SELECT COALESCE(SUM(r.rating), 0) FROM ratings r WHERE r.book_id = books.id),
+    rating_count = (SELECT COUNT(*) FROM ratings r WHERE r.book_id = books.id),
+    average_rating = (SELECT AVG(CAST(r.rating AS DOUBLE PRECISION)) FROM ratings r WHERE r.book_id = books.id);
+
+ALTER TABLE books ALTER COLUMN rating_count SET DEFAULT 0;
+ALTER TABLE books ALTER COLUMN rating_count SET NOT NULL;
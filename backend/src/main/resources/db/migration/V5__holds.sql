@@ -0,0 +1,23 @@
+-- Per-book hold queues: WAITING holds are served in id order as copies come back.
+CREATE TABLE IF NOT EXISTS holds (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    user_id     BIGINT NOT NULL REFERENCES users (id),
+    book_id     BIGINT NOT NULL REFERENCES books (id),
+    status      VARCHAR(255) NOT NULL CHECK (status IN ('WAITING', 'READY', 'FULFILLED', 'CANCELLED', 'EXPIRED')),
+    ready_at    TIMESTAMP(6),
+    expires_at  TIMESTAMP(6),
+    created_at  TIMESTAMP(6),
+    updated_at  TIMESTAMP(6)
+);
+
+-- head of a book's queue
+CREATE INDEX IF NOT EXISTS idx_holds_book_status_id
+    ON holds (book_id, status, id);
+
+-- a reader's holds
+CREATE INDEX IF NOT EXISTS idx_holds_user_status
+    ON holds (user_id, status);
+
+-- copies set aside past their pickup window
+CREATE INDEX IF NOT EXISTS idx_holds_status_expires_at
+    ON holds (status, expires_at);
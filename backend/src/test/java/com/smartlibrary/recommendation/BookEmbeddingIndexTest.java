@@ -0,0 +1,127 @@
+package com.smartlibrary.recommendation;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import com.smartlibrary.repository.BookRepository;
+import com.smartlibrary.search.CatalogIndex;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookEmbeddingIndexTest {
+
+    private static final int BOOKS = 50;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restoresOverRowsWhoseOnlyChangeWasCirculation() throws Exception {
+        Map<Long, Book> books = catalog();
+        loaded(books, new AtomicInteger(), List.of());
+
+        // every row was touched by a checkout or a rating flush since the save; one was also retitled
+        books.get(7L).setTitle("An entirely different title");
+        AtomicInteger streamed = new AtomicInteger();
+        BookEmbeddingIndex restored = loaded(books, streamed, List.copyOf(books.keySet()));
+
+        HnswGraph graph = graph(restored);
+        assertEquals(0, streamed.get());
+        assertEquals(1, graph.deletedCount());
+        assertEquals(BOOKS, graph.liveCount());
+        assertArrayEquals(BookEmbeddingIndex.embed(books.get(7L)), graph.vector(7L));
+    }
+
+    @Test
+    void rebuildsWhenTooManyEmbeddedFieldsChanged() throws Exception {
+        Map<Long, Book> books = catalog();
+        loaded(books, new AtomicInteger(), List.of());
+
+        books.values().stream().limit(BOOKS / 2).forEach(book -> book.setDescription("rewritten " + book.getId()));
+        AtomicInteger streamed = new AtomicInteger();
+        loaded(books, streamed, List.copyOf(books.keySet()));
+
+        assertTrue(streamed.get() > 0);
+    }
+
+    @Test
+    void rebuildsWithoutTombstonesOnceTheyOutnumberLiveNodes() throws Exception {
+        Map<Long, Book> books = catalog();
+        AtomicInteger streamed = new AtomicInteger();
+        BookEmbeddingIndex index = loaded(books, streamed, List.of());
+        streamed.set(0);
+
+        for (int edit = 0; edit < 999; edit++) {
+            index.onBookChanged(new BookChangedEvent(books.get(1L + edit % BOOKS), BookChangedEvent.Type.UPDATED));
+        }
+        index.compactIfMostlyTombstones();
+        assertEquals(0, streamed.get());
+        assertEquals(999, graph(index).deletedCount());
+
+        index.onBookChanged(new BookChangedEvent(books.remove(1L), BookChangedEvent.Type.DELETED));
+        index.compactIfMostlyTombstones();
+        assertTrue(streamed.get() > 0);
+        assertEquals(0, graph(index).deletedCount());
+        assertEquals(BOOKS - 1, graph(index).liveCount());
+    }
+
+    // an index over a fake repository, rebuilt (or restored from the shared file) as at startup
+    private BookEmbeddingIndex loaded(Map<Long, Book> books, AtomicInteger streamed, List<Long> updatedSinceSave)
+            throws Exception {
+        BookEmbeddingIndex index = new BookEmbeddingIndex();
+        BookRepository repository = (BookRepository) Proxy.newProxyInstance(BookRepository.class.getClassLoader(),
+            new Class<?>[] {BookRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "findByIdGreaterThanOrderByIdAsc" -> {
+                    streamed.incrementAndGet();
+                    yield books.values().stream().filter(book -> book.getId() > (Long) args[0]).toList();
+                }
+                case "findAllIds" -> List.copyOf(books.keySet());
+                case "findIdsUpdatedAfter" -> updatedSinceSave;
+                case "findAllById" -> ((Collection<?>) args[0]).stream().filter(books::containsKey).map(books::get).toList();
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        set(CatalogIndex.class, index, "bookRepository", repository);
+        set(BookEmbeddingIndex.class, index, "path", directory.resolve("books.hnsw").toString());
+        set(BookEmbeddingIndex.class, index, "maxStaleFraction", 0.2);
+        set(BookEmbeddingIndex.class, index, "ef", 64);
+        index.rebuild();
+        return index;
+    }
+
+    private static HnswGraph graph(BookEmbeddingIndex index) throws Exception {
+        Method current = CatalogIndex.class.getDeclaredMethod("current");
+        current.setAccessible(true);
+        return (HnswGraph) current.invoke(index);
+    }
+
+    private static void set(Class<?> owner, Object target, String name, Object value) throws Exception {
+        Field field = owner.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static Map<Long, Book> catalog() {
+        String[] categories = {"Fiction", "History", "Science"};
+        Map<Long, Book> books = new TreeMap<>();
+        for (long id = 1; id <= BOOKS; id++) {
+            Book book = new Book("Title " + id, "Author", "isbn-" + id, categories[(int) (id % 3)], 1, 1);
+            book.setId(id);
+            book.setDescription("A story numbered " + id);
+            books.put(id, book);
+        }
+        return books;
+    }
+}
@@ -0,0 +1,146 @@
+package com.smartlibrary.recommendation;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HnswGraphTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int POINTS = 2000;
+    private static final int K = 10;
+
+    @Test
+    void recallsTheTrueNeighboursOfABruteForceScan() {
+        Random random = new Random(17);
+        float[][] vectors = randomVectors(random, POINTS);
+        HnswGraph graph = build(vectors);
+
+        assertEquals(POINTS, graph.liveCount());
+        assertTrue(recall(graph, vectors, random, Set.of()) >= 0.9);
+    }
+
+    @Test
+    void neverReturnsDeletedLabels() {
+        Random random = new Random(23);
+        float[][] vectors = randomVectors(random, POINTS);
+        HnswGraph graph = build(vectors);
+        Set<Long> deleted = new HashSet<>();
+        for (long label = 0; label < POINTS; label += 3) {
+            graph.delete(label);
+            deleted.add(label);
+        }
+
+        assertEquals(POINTS - deleted.size(), graph.liveCount());
+        assertEquals(deleted.size(), graph.deletedCount());
+        assertFalse(graph.contains(0));
+        assertTrue(recall(graph, vectors, random, deleted) >= 0.9);
+        for (long label : deleted) {
+            assertFalse(graph.search(vectors[(int) label], K, 100).contains(label));
+        }
+    }
+
+    @Test
+    void replacesTheVectorOfAReinsertedLabel() {
+        Random random = new Random(29);
+        float[][] vectors = randomVectors(random, 200);
+        HnswGraph graph = build(vectors);
+        float[] moved = randomVectors(random, 1)[0];
+        graph.insert(5, moved);
+
+        assertEquals(200, graph.liveCount());
+        assertEquals(1, graph.deletedCount());
+        assertArrayEquals(moved, graph.vector(5));
+        assertEquals(List.of(5L), graph.search(moved, 1, 50));
+    }
+
+    @Test
+    void answersTheSameAfterARoundTrip() throws IOException {
+        Random random = new Random(31);
+        float[][] vectors = randomVectors(random, 500);
+        HnswGraph graph = build(vectors);
+        graph.delete(7);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        graph.write(new DataOutputStream(bytes));
+        HnswGraph copy = HnswGraph.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(graph.liveCount(), copy.liveCount());
+        assertFalse(copy.contains(7));
+        for (int i = 0; i < 20; i++) {
+            float[] query = randomVectors(random, 1)[0];
+            assertEquals(graph.search(query, K, 50), copy.search(query, K, 50));
+        }
+    }
+
+    private static HnswGraph build(float[][] vectors) {
+        HnswGraph graph = new HnswGraph(DIMENSIONS, 16, 100);
+        for (int i = 0; i < vectors.length; i++) {
+            graph.insert(i, vectors[i]);
+        }
+        return graph;
+    }
+
+    private static double recall(HnswGraph graph, float[][] vectors, Random random, Set<Long> deleted) {
+        int found = 0;
+        int queries = 100;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomVectors(random, 1)[0];
+            List<Long> expected = IntStream.range(0, vectors.length)
+                .filter(i -> !deleted.contains((long) i))
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> -dot(query, vectors[i])))
+                .limit(K)
+                .map(Integer::longValue)
+                .toList();
+            List<Long> actual = graph.search(query, K, 100);
+            assertEquals(K, actual.size());
+            for (Long label : actual) {
+                assertFalse(deleted.contains(label));
+                if (expected.contains(label)) {
+                    found++;
+                }
+            }
+        }
+        return found / (double) (queries * K);
+    }
+
+    private static float[][] randomVectors(Random random, int count) {
+        float[][] vectors = new float[count][DIMENSIONS];
+        for (float[] vector : vectors) {
+            double norm = 0;
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vector[d] = (float) random.nextGaussian();
+                norm += vector[d] * vector[d];
+            }
+            float scale = (float) (1 / Math.sqrt(norm));
+            for (int d = 0; d < DIMENSIONS; d++) {
+                vector[d] *= scale;
+            }
+        }
+        return vectors;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int d = 0; d < a.length; d++) {
+            sum += a[d] * b[d];
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,262 @@
+package com.smartlibrary.repository;
+
+import com.smartlibrary.model.Book;
+import com.smartlibrary.model.BorrowRecord;
+import com.smartlibrary.model.Hold;
+import com.smartlibrary.model.Rating;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+// the schema comes from the Flyway migrations, and Hibernate only validates the entities against it
+@DataJpaTest(properties = {
+    "spring.flyway.enabled=true",
+    "spring.jpa.hibernate.ddl-auto=validate"
+})
+@ActiveProfiles("dev")
+class QueryIndexTest {
+
+    private static final int PAGE_SIZE = 10;
+
+    private static final List<Class<?>> ENTITIES = List.of(Book.class, BorrowRecord.class, Rating.class, Hold.class);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    @Autowired
+    private RatingRepository ratingRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private StatementRecorder recorder;
+
+    // ANALYZE commits, so the rows outlive the test's rollback and are seeded once
+    @BeforeEach
+    void seed() {
+        if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM users", Integer.class) > 0) {
+            return;
+        }
+        jdbcTemplate.update("INSERT INTO users (username, email, password, first_name, last_name, role, is_active) " +
+            "SELECT 'reader' || x, 'reader' || x || '@example.com', 'password', 'Reader', 'No. ' || x, 'USER', TRUE " +
+            "FROM SYSTEM_RANGE(1, 200)");
+        jdbcTemplate.update("INSERT INTO books (title, author, isbn, category, available_copies, total_copies, " +
+            "average_rating) SELECT 'Book ' || x, 'Author ' || MOD(x, 100), 'isbn-' || x, 'Category ' || MOD(x, 20), " +
+            "MOD(x, 3), 3, MOD(x, 50) / 10.0 FROM SYSTEM_RANGE(1, 2000)");
+        jdbcTemplate.update("INSERT INTO borrow_records (user_id, book_id, borrow_date, due_date, status) " +
+            "SELECT 1 + MOD(x, 200), 1 + MOD(x * 7, 2000), DATEADD(DAY, -MOD(x, 90), DATE '2024-06-01'), " +
+            "DATEADD(DAY, 14 - MOD(x, 90), DATE '2024-06-01'), " +
+            "CASE MOD(x, 20) WHEN 0 THEN 'BORROWED' WHEN 1 THEN 'OVERDUE' ELSE 'RETURNED' END FROM SYSTEM_RANGE(1, 20000)");
+        jdbcTemplate.update("INSERT INTO ratings (user_id, book_id, rating, created_at) " +
+            "SELECT 1 + MOD(x, 200), 1 + MOD(x * 11, 2000), 1 + MOD(x, 5), TIMESTAMP '2024-01-01 00:00:00' " +
+            "FROM SYSTEM_RANGE(1, 10000)");
+        jdbcTemplate.update("INSERT INTO holds (user_id, book_id, status, expires_at) " +
+            "SELECT 1 + MOD(x, 200), 1 + MOD(x * 13, 2000), " +
+            "CASE MOD(x, 10) WHEN 0 THEN 'WAITING' WHEN 1 THEN 'READY' ELSE 'FULFILLED' END, " +
+            "TIMESTAMP '2024-06-01 00:00:00' FROM SYSTEM_RANGE(1, 5000)");
+        jdbcTemplate.execute("ANALYZE");
+    }
+
+    @Test
+    void migrationsCreateExactlyTheDeclaredIndexes() throws Exception {
+        for (Class<?> entity : ENTITIES) {
+            Table table = entity.getAnnotation(Table.class);
+            Map<String, List<String>> declared = new TreeMap<>();
+            for (Index index : table.indexes()) {
+                declared.put(index.name().toUpperCase(Locale.ROOT), Arrays.stream(index.columnList().split(","))
+                    .map(column -> column.trim().replaceAll("\\s+", " ").toUpperCase(Locale.ROOT))
+                    .toList());
+            }
+            Map<String, List<String>> migrated = new TreeMap<>(migratedIndexes(table.name()));
+            migrated.keySet().removeIf(name -> !name.startsWith("IDX_"));
+            assertEquals(declared, migrated, entity.getSimpleName());
+        }
+    }
+
+    @Test
+    void categoryListingsUseTheCategoryRatingIndex() throws Exception {
+        assertPlanUses("IDX_BOOKS_CATEGORY_RATING",
+            firstStatement(() -> bookRepository.findRecommendedBooksByCategory("Category 7", PageRequest.of(0, PAGE_SIZE))),
+            "Category 7");
+    }
+
+    @Test
+    void loansByReaderUseTheReaderIndexes() throws Exception {
+        assertPlanUses("IDX_BORROW_RECORDS_USER_STATUS",
+            firstStatement(() -> borrowRecordRepository.findByUserIdAndStatus(1L, BorrowRecord.Status.BORROWED)),
+            1L, "BORROWED");
+        assertPlanUses("IDX_BORROW_RECORDS_USER_BORROW_DATE",
+            firstStatement(() -> borrowRecordRepository.findByUserIdOrderByBorrowDateDesc(1L)), 1L);
+    }
+
+    @Test
+    void loansByBookUseTheBookStatusIndex() throws Exception {
+        assertPlanUses("IDX_BORROW_RECORDS_BOOK_STATUS",
+            firstStatement(() -> borrowRecordRepository.findByBookIdAndStatus(1L, BorrowRecord.Status.BORROWED)),
+            1L, "BORROWED");
+    }
+
+    @Test
+    void overdueScansUseTheStatusIndexes() throws Exception {
+        LocalDate today = LocalDate.of(2024, 6, 1);
+        assertPlanUses("IDX_BORROW_RECORDS_STATUS_DUE_DATE",
+            firstStatement(() -> borrowRecordRepository.findOverdueRecords(today)), today);
+        // H2 prefers the due-date range to the id order of idx_borrow_records_status_id
+        assertPlanUses("IDX_BORROW_RECORDS_STATUS_DUE_DATE",
+            firstStatement(() -> borrowRecordRepository.findOverdueAfter(today, 0L, PageRequest.of(0, PAGE_SIZE))),
+            today, 0L);
+    }
+
+    @Test
+    void preferredCategoriesStartFromTheReadersLoans() throws Exception {
+        assertPlanUses("IDX_BORROW_RECORDS_USER_BORROW_DATE",
+            firstStatement(() -> borrowRecordRepository.findUserPreferredCategories(1L)), 1L);
+    }
+
+    @Test
+    void recommendationCandidatesUseTheReaderAndRatingIndexes() throws Exception {
+        // bound in order of appearance, :limit once per use
+        String sql = firstStatement(() -> bookRepository.findRecommendationCandidates(1L, 3, 5, 4.0, 20));
+        Object[] args = {1L, 3, 5, 4.0, 20, 20, 20};
+        assertPlanUses("IDX_BORROW_RECORDS_USER_BORROW_DATE", sql, args);
+        assertPlanUses("IDX_BOOKS_CATEGORY_RATING", sql, args);
+        assertPlanUses("IDX_BOOKS_AVERAGE_RATING", sql, args);
+    }
+
+    @Test
+    void ratingLookupsUseTheRatingIndexes() throws Exception {
+        assertPlanUses("IDX_RATINGS_BOOK_CREATED",
+            firstStatement(() -> ratingRepository.findByBookIdOrderByCreatedAtDesc(1L)), 1L);
+        assertPlanUses("IDX_RATINGS_USER_BOOK",
+            firstStatement(() -> ratingRepository.findByUserIdAndBookId(1L, 2L)), 1L, 2L);
+    }
+
+    @Test
+    void holdQueuesUseTheHoldIndexes() throws Exception {
+        assertPlanUses("IDX_HOLDS_BOOK_STATUS_ID",
+            firstStatement(() -> holdRepository.findWaitingByBook(1L, PageRequest.of(0, PAGE_SIZE))), 1L);
+        assertPlanUses("IDX_HOLDS_BOOK_STATUS_ID",
+            firstStatement(() -> holdRepository.countWaitingBefore(1L, 100L)), 1L, 100L);
+        assertPlanUses("IDX_HOLDS_USER_STATUS",
+            firstStatement(() -> holdRepository.countActiveHoldsByUser(1L)), 1L);
+        LocalDateTime now = LocalDateTime.of(2024, 6, 2, 0, 0);
+        assertPlanUses("IDX_HOLDS_STATUS_EXPIRES_AT",
+            firstStatement(() -> holdRepository.findExpiredReady(now, PageRequest.of(0, PAGE_SIZE))), now);
+    }
+
+    // index name -> columns, DESC marked, of one migrated table
+    private Map<String, List<String>> migratedIndexes(String table) throws Exception {
+        Map<String, List<String>> indexes = new TreeMap<>();
+        try (Connection connection = dataSource.getConnection();
+             ResultSet rows = connection.getMetaData().getIndexInfo(null, null, table.toUpperCase(Locale.ROOT), false, false)) {
+            while (rows.next()) {
+                String column = rows.getString("COLUMN_NAME") + ("D".equals(rows.getString("ASC_OR_DESC")) ? " DESC" : "");
+                List<String> columns = indexes.computeIfAbsent(rows.getString("INDEX_NAME"), name -> new ArrayList<>());
+                int position = rows.getInt("ORDINAL_POSITION");
+                while (columns.size() < position) {
+                    columns.add(null);
+                }
+                columns.set(position - 1, column);
+            }
+        }
+        return indexes;
+    }
+
+    // the first statement a repository call sends; later ones load associations or count pages
+    private String firstStatement(Runnable query) {
+        recorder.statements.clear();
+        query.run();
+        assertTrue(!recorder.statements.isEmpty(), "no SQL recorded");
+        return recorder.statements.get(0);
+    }
+
+    /*
+     * Binds args in order, then the page size for the LIMIT/FETCH parameters Hibernate appends.
+     * H2 indexes each REFERENCES column of V1 on its own, and picks that index over a declared one
+     * it ties with, so an index on a leading part of the expected one also passes.
+     */
+    private void assertPlanUses(String index, String sql, Object... args) throws Exception {
+        int parameters = (int) sql.chars().filter(c -> c == '?').count();
+        Object[] bound = Arrays.copyOf(args, parameters);
+        Arrays.fill(bound, args.length, parameters, PAGE_SIZE);
+        String plan = String.join("\n", jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, bound));
+
+        Map<String, List<String>> indexes = new TreeMap<>();
+        for (Class<?> entity : ENTITIES) {
+            indexes.putAll(migratedIndexes(entity.getAnnotation(Table.class).name()));
+        }
+        List<String> expected = indexes.get(index);
+        assertTrue(expected != null, index + " is not in the migrated schema");
+        Matcher used = Pattern.compile("/\\* PUBLIC\\.(\\w+)").matcher(plan);
+        while (used.find()) {
+            List<String> columns = indexes.get(used.group(1));
+            if (columns != null && columns.size() <= expected.size() && columns.equals(expected.subList(0, columns.size()))) {
+                return;
+            }
+        }
+        fail("no index on " + expected + " in\n" + plan);
+    }
+
+    static class StatementRecorder implements StatementInspector {
+
+        final List<String> statements = new ArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+
+    @TestConfiguration
+    static class RecorderConfiguration {
+
+        @Bean
+        StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspector(StatementRecorder recorder) {
+            return properties -> properties.put("hibernate.session_factory.statement_inspector", recorder);
+        }
+    }
+}
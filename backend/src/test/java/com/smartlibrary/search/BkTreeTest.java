@@ -0,0 +1,83 @@
+package com.smartlibrary.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BkTreeTest {
+
+    @Test
+    void computesLevenshteinDistance() {
+        assertEquals(0, BkTree.distance("gatsby", "gatsby", 10));
+        assertEquals(1, BkTree.distance("gatsby", "gatsbi", 10));
+        assertEquals(1, BkTree.distance("gatsby", "gatby", 10));
+        assertEquals(1, BkTree.distance("gatsby", "gatssby", 10));
+        assertEquals(2, BkTree.distance("gatsby", "agtsby", 10));
+        assertEquals(3, BkTree.distance("kitten", "sitting", 10));
+        assertEquals(5, BkTree.distance("", "hello", 10));
+    }
+
+    @Test
+    void givesUpOnceTheLimitIsExceeded() {
+        assertEquals(3, BkTree.distance("kitten", "sitting", 3));
+        assertEquals(3, BkTree.distance("kitten", "sitting", 2));
+        assertEquals(2, BkTree.distance("a", "abcdef", 1));
+        assertEquals(2, BkTree.distance("orwell", "zzzzzz", 1));
+    }
+
+    @Test
+    void findsTermsWithinTheTolerance() {
+        BkTree tree = new BkTree();
+        for (String term : List.of("orwell", "orwel", "powell", "howell", "austen", "austin", "orwell")) {
+            tree.add(term);
+        }
+        assertEquals(6, tree.size());
+        assertEquals(Set.of("orwell:0", "orwel:1"), matches(tree, "orwell", 1));
+        assertEquals(Set.of("orwell:0", "orwel:1", "powell:2", "howell:2"), matches(tree, "orwell", 2));
+        assertEquals(Set.of("austen:1", "austin:1"), matches(tree, "austan", 1));
+        assertEquals(Set.of(), matches(new BkTree(), "orwell", 2));
+    }
+
+    @Test
+    void agreesWithAScanOfTheVocabulary() {
+        Random random = new Random(3);
+        BkTree tree = new BkTree();
+        Set<String> vocabulary = new HashSet<>();
+        for (int i = 0; i < 3000; i++) {
+            String term = randomTerm(random);
+            vocabulary.add(term);
+            tree.add(term);
+        }
+        assertEquals(vocabulary.size(), tree.size());
+        for (int i = 0; i < 200; i++) {
+            String query = randomTerm(random);
+            int tolerance = random.nextInt(3);
+            Set<String> expected = vocabulary.stream()
+                .filter(term -> BkTree.distance(query, term, Integer.MAX_VALUE) <= tolerance)
+                .map(term -> term + ":" + BkTree.distance(query, term, Integer.MAX_VALUE))
+                .collect(Collectors.toSet());
+            Set<String> actual = matches(tree, query, tolerance);
+            assertEquals(expected, actual, query);
+        }
+    }
+
+    private static Set<String> matches(BkTree tree, String term, int maxDistance) {
+        return tree.search(term, maxDistance).stream()
+            .map(match -> match.term() + ":" + match.distance())
+            .collect(Collectors.toSet());
+    }
+
+    private static String randomTerm(Random random) {
+        StringBuilder term = new StringBuilder();
+        for (int i = 0, length = 3 + random.nextInt(6); i < length; i++) {
+            term.append((char) ('a' + random.nextInt(6)));
+        }
+        return term.toString();
+    }
+}
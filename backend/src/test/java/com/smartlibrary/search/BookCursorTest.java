@@ -0,0 +1,82 @@
+package com.smartlibrary.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookCursorTest {
+
+    @Test
+    void roundTripsValueAndId() {
+        BookCursor cursor = BookCursor.decode(new BookCursor("title", false, "War and Peace", 42).encode(), "title", false);
+        assertEquals("title", cursor.getSortBy());
+        assertFalse(cursor.isDescending());
+        assertEquals("War and Peace", cursor.getValue());
+        assertEquals(42L, cursor.getId());
+    }
+
+    @Test
+    void keepsSeparatorsAndEmptyStringsInsideTheValue() {
+        String title = "Line one\nline two = three";
+        assertEquals(title, BookCursor.decode(new BookCursor("title", true, title, 7).encode(), "title", true).getValue());
+        assertEquals("", BookCursor.decode(new BookCursor("title", true, "", 7).encode(), "title", true).getValue());
+    }
+
+    @Test
+    void distinguishesNullFromValues() {
+        BookCursor cursor = BookCursor.decode(new BookCursor("publisher", false, null, 9).encode(), "publisher", false);
+        assertNull(cursor.getValue());
+        assertEquals(9L, cursor.getId());
+    }
+
+    @Test
+    void carriesTypedValuesThatTheSortKeyParses() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 3, 1, 12, 30, 15);
+        BookCursor cursor = BookCursor.decode(new BookCursor("createdAt", true, createdAt, 3).encode(), "createdAt", true);
+        assertEquals(createdAt, BookSortKey.CREATED_AT.parse(cursor.getValue()));
+        BookCursor rating = BookCursor.decode(new BookCursor("averageRating", true, 4.25, 3).encode(), "averageRating", true);
+        assertEquals(4.25, BookSortKey.AVERAGE_RATING.parse(rating.getValue()));
+    }
+
+    @Test
+    void isUrlSafe() {
+        String token = new BookCursor("title", false, "??>>//++", Long.MAX_VALUE).encode();
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+    }
+
+    @Test
+    void rejectsACursorIssuedForAnotherOrdering() {
+        String token = new BookCursor("title", false, "Emma", 1).encode();
+        assertEquals("Cursor was issued for a different sort order",
+            assertThrows(IllegalArgumentException.class, () -> BookCursor.decode(token, "author", false)).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> BookCursor.decode(token, "title", true));
+    }
+
+    @Test
+    void rejectsTamperedTokens() {
+        String token = new BookCursor("title", false, "Emma", 1).encode();
+        assertMalformed("not a cursor!");
+        assertMalformed(token.substring(0, token.length() / 2));
+        assertMalformed(raw("v2\ntitle\nasc\n1\n=Emma"));
+        assertMalformed(raw("v1\ntitle\nasc\none\n=Emma"));
+        assertMalformed(raw("v1\ntitle\nasc\n1\nEmma"));
+        assertMalformed(raw("v1\ntitle\nasc\n1"));
+    }
+
+    private static void assertMalformed(String token) {
+        assertEquals("Malformed cursor",
+            assertThrows(IllegalArgumentException.class, () -> BookCursor.decode(token, "title", false)).getMessage());
+    }
+
+    private static String raw(String text) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
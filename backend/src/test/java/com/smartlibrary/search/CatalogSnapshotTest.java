@@ -0,0 +1,162 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogSnapshotTest {
+
+    private static final String[] WORDS = {"alpha", "Alpha", "beta", "Beta", "gamma", "Zeta", "éclair"};
+    private static final BookFilter NONE = new BookFilter(null, null, null, null, null, null, null, null, null, null, null);
+
+    @Test
+    void sortsTextCaseSensitivelyLikeTheDatabase() {
+        CatalogSnapshot.Columns columns = new CatalogSnapshot.Columns();
+        columns.put(book(1, "beta", 1));
+        columns.put(book(2, "Beta", 1));
+        columns.put(book(3, "alpha", 1));
+        columns.put(book(4, "Alpha", 1));
+        assertEquals(List.of(4L, 2L, 3L, 1L), columns.query(NONE, null, BookSortKey.TITLE, false, 0, 10).ids());
+        assertEquals(List.of(1L, 3L, 2L, 4L), columns.query(NONE, null, BookSortKey.TITLE, true, 0, 10).ids());
+    }
+
+    @Test
+    void editsKeepTheCopiesThatDeltasMoved() {
+        BookFilter availableOnly = new BookFilter(null, null, null, null, null, null, null, null, null, null, true);
+        BookFilter revised = new BookFilter("revised", null, null, null, null, null, null, null, null, null, null);
+        // committed: a checkout took the only copy, and an edit that had read one copy changed the title
+        List<BookChangedEvent> checkout = List.of(
+            new BookChangedEvent(book(1, "Emma", 0), BookChangedEvent.Type.AVAILABILITY_CHANGED, -1));
+        List<BookChangedEvent> edit = List.of(
+            new BookChangedEvent(book(1, "Emma, revised", 1), BookChangedEvent.Type.UPDATED));
+
+        for (List<List<BookChangedEvent>> order : List.of(List.of(checkout, edit), List.of(edit, checkout))) {
+            CatalogSnapshot snapshot = new CatalogSnapshot();
+            snapshot.onBookChanged(new BookChangedEvent(book(1, "Emma", 1), BookChangedEvent.Type.CREATED));
+            order.forEach(events -> events.forEach(snapshot::onBookChanged));
+            assertEquals(0, snapshot.query(availableOnly, null, BookSortKey.ID, false, 0, 10).total());
+            assertEquals(List.of(1L), snapshot.query(revised, null, BookSortKey.ID, false, 0, 10).ids());
+
+            snapshot.onBookChanged(new BookChangedEvent(book(1, "Emma, revised", 2), BookChangedEvent.Type.AVAILABILITY_CHANGED, 2));
+            assertEquals(List.of(1L), snapshot.query(availableOnly, null, BookSortKey.ID, false, 0, 10).ids());
+        }
+    }
+
+    @Test
+    void agreesWithABruteForceSortUnderRandomChanges() {
+        Random random = new Random(11);
+        for (int round = 0; round < 100; round++) {
+            CatalogSnapshot.Columns columns = new CatalogSnapshot.Columns();
+            Map<Long, Book> expected = new HashMap<>();
+            int sortAfter = random.nextInt(40);
+            for (int op = 0; op < 300; op++) {
+                // ids come from a small range, so deletes are often followed by re-adding the same id
+                long id = 1 + random.nextInt(40);
+                Book present = expected.get(id);
+                switch (random.nextInt(5)) {
+                    case 0, 1 -> {
+                        Book book = randomBook(random, id);
+                        columns.put(book);
+                        expected.put(id, book);
+                    }
+                    case 2 -> {
+                        columns.remove(id);
+                        expected.remove(id);
+                    }
+                    case 3 -> {
+                        int delta = random.nextInt(5) - 2;
+                        columns.addAvailableCopies(id, delta);
+                        if (present != null) {
+                            present.setAvailableCopies(Math.max(0, present.getAvailableCopies() + delta));
+                        }
+                    }
+                    default -> {
+                        Book book = randomBook(random, id);
+                        columns.put(book, true);
+                        if (present != null) {
+                            book.setAvailableCopies(present.getAvailableCopies());
+                        }
+                        expected.put(id, book);
+                    }
+                }
+                if (op == sortAfter) {
+                    columns.sortAll();
+                }
+                if (op % 10 == 0 || op == 299) {
+                    assertSameOrder(columns, expected, random);
+                }
+            }
+        }
+    }
+
+    private static void assertSameOrder(CatalogSnapshot.Columns columns, Map<Long, Book> expected, Random random) {
+        for (BookSortKey key : BookSortKey.values()) {
+            for (boolean descending : new boolean[] {false, true}) {
+                assertEquals(bruteForce(expected, NONE, key, descending),
+                    columns.query(NONE, null, key, descending, 0, Integer.MAX_VALUE).ids(), key + " descending=" + descending);
+            }
+        }
+        BookFilter filter = new BookFilter(null, null, random.nextBoolean() ? null : word(random),
+            null, null, null, 1990 + random.nextInt(3), null, random.nextInt(3), 4, random.nextBoolean());
+        BookSortKey key = BookSortKey.values()[random.nextInt(BookSortKey.values().length)];
+        boolean descending = random.nextBoolean();
+        List<Long> matching = bruteForce(expected, filter, key, descending);
+        CatalogSnapshot.IdPage page = columns.query(filter, null, key, descending, 1, 5);
+        assertEquals(matching.size(), page.total(), filter.toString());
+        assertEquals(matching.subList(Math.min(1, matching.size()), Math.min(6, matching.size())), page.ids(), filter.toString());
+    }
+
+    // NULLs last in both directions, ties broken by id in the sort direction
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Long> bruteForce(Map<Long, Book> books, BookFilter filter, BookSortKey key, boolean descending) {
+        Comparator<Book> byValue = (a, b) -> ((Comparable) key.valueOf(a)).compareTo(key.valueOf(b));
+        Comparator<Book> order = byValue.thenComparing(Book::getId);
+        List<Book> values = new ArrayList<>();
+        List<Book> nulls = new ArrayList<>();
+        books.values().stream().filter(filter::matches).forEach(book -> (key.valueOf(book) == null ? nulls : values).add(book));
+        values.sort(order);
+        nulls.sort(Comparator.comparing(Book::getId));
+        if (descending) {
+            Collections.reverse(values);
+            Collections.reverse(nulls);
+        }
+        values.addAll(nulls);
+        return values.stream().map(Book::getId).toList();
+    }
+
+    private static Book randomBook(Random random, long id) {
+        Book book = new Book(word(random) + random.nextInt(3), word(random), "isbn-" + id, word(random),
+            random.nextInt(4), 3 + random.nextInt(2));
+        book.setId(id);
+        book.setPublisher(random.nextInt(4) == 0 ? null : word(random));
+        book.setLanguage(random.nextInt(4) == 0 ? null : word(random));
+        book.setPublicationYear(random.nextInt(4) == 0 ? null : 1990 + random.nextInt(5));
+        book.setPageCount(random.nextInt(4) == 0 ? null : 100 + random.nextInt(3));
+        book.setAverageRating(random.nextInt(4) == 0 ? null : random.nextInt(9) / 2.0);
+        book.setRatingCount(random.nextInt(4) == 0 ? null : random.nextInt(3));
+        book.setCreatedAt(random.nextInt(4) == 0 ? null : LocalDateTime.of(2024, 1, 1 + random.nextInt(3), 0, 0));
+        book.setUpdatedAt(random.nextInt(4) == 0 ? null : LocalDateTime.of(2024, 2, 1, 0, 0, random.nextInt(3), random.nextInt(2)));
+        return book;
+    }
+
+    private static String word(Random random) {
+        return WORDS[random.nextInt(WORDS.length)];
+    }
+
+    private static Book book(long id, String title, int availableCopies) {
+        Book book = new Book(title, "Author", "isbn-" + id, "Fiction", availableCopies, 3);
+        book.setId(id);
+        return book;
+    }
+}
@@ -0,0 +1,109 @@
+package com.smartlibrary.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CompletionTrieTest {
+
+    @Test
+    void returnsTheHeaviestCompletionsFirst() {
+        CompletionTrie trie = new CompletionTrie();
+        trie.contribute("t:1", "Dune", "title", 1L, new String[] {"dune"}, 5);
+        trie.contribute("t:2", "Dune Messiah", "title", 2L, new String[] {"dune messiah"}, 3);
+        trie.contribute("t:3", "Dubliners", "title", 3L, new String[] {"dubliners"}, 8);
+        trie.contribute("t:4", "Emma", "title", 4L, new String[] {"emma"}, 9);
+
+        assertEquals(List.of("Dubliners", "Dune", "Dune Messiah"), texts(trie.complete("du", 10)));
+        assertEquals(List.of("Dubliners", "Dune"), texts(trie.complete("du", 2)));
+        assertEquals(List.of("Dune", "Dune Messiah"), texts(trie.complete("dun", 10)));
+        assertEquals(List.of(), texts(trie.complete("x", 10)));
+        assertEquals(List.of(), texts(trie.complete("du", 0)));
+    }
+
+    @Test
+    void emitsAnEntryReachableFromSeveralKeysOnce() {
+        CompletionTrie trie = new CompletionTrie();
+        trie.contribute("a:tolkien", "J. R. R. Tolkien", "author", null,
+            new String[] {"j r r tolkien", "tolkien", "tolkien j r r"}, 4);
+        trie.contribute("t:1", "To the Lighthouse", "title", 1L, new String[] {"to the lighthouse"}, 1);
+
+        assertEquals(List.of("J. R. R. Tolkien", "To the Lighthouse"), texts(trie.complete("to", 10)));
+        assertEquals(List.of("J. R. R. Tolkien"), texts(trie.complete("t", 1)));
+    }
+
+    @Test
+    void accumulatesAndWithdrawsContributions() {
+        CompletionTrie trie = new CompletionTrie();
+        CompletionTrie.Entry first = trie.contribute("c:fiction", "Fiction", "category", null, new String[] {"fiction"}, 2);
+        trie.contribute("c:fantasy", "Fantasy", "category", null, new String[] {"fantasy"}, 3);
+        CompletionTrie.Entry second = trie.contribute("c:fiction", "Fiction", "category", null, new String[] {"fiction"}, 2);
+        assertEquals(List.of("Fiction", "Fantasy"), texts(trie.complete("f", 10)));
+
+        trie.withdraw("c:fiction", first, 2);
+        assertEquals(List.of("Fantasy", "Fiction"), texts(trie.complete("f", 10)));
+        trie.withdraw("c:fiction", second, 2);
+        assertEquals(List.of("Fantasy"), texts(trie.complete("f", 10)));
+        assertEquals(1, trie.size());
+    }
+
+    @Test
+    void truncatesPrefixesToTheIndexedKeyLength() {
+        CompletionTrie trie = new CompletionTrie();
+        String key = "a".repeat(CompletionTrie.MAX_KEY_LENGTH);
+        trie.contribute("t:1", "Long", "title", 1L, new String[] {key}, 1);
+        assertEquals(List.of("Long"), texts(trie.complete(key + "aaaa", 10)));
+    }
+
+    @Test
+    void agreesWithSortingEveryMatch() {
+        Random random = new Random(5);
+        CompletionTrie trie = new CompletionTrie();
+        Map<String, Double> weights = new HashMap<>();
+        for (int i = 0; i < 2000; i++) {
+            String key = randomKey(random);
+            double weight = random.nextInt(1000);
+            if (weights.putIfAbsent(key, weight) == null) {
+                trie.contribute(key, key, "title", (long) i, new String[] {key}, weight);
+            }
+        }
+        for (int i = 0; i < 300; i++) {
+            String prefix = randomKey(random).substring(0, 1 + random.nextInt(3));
+            int limit = 1 + random.nextInt(10);
+            List<CompletionTrie.Entry> results = trie.complete(prefix, limit);
+
+            List<Double> expected = weights.entrySet().stream()
+                .filter(e -> e.getKey().startsWith(prefix))
+                .map(Map.Entry::getValue)
+                .sorted(Comparator.reverseOrder())
+                .limit(limit)
+                .toList();
+            List<Double> actual = new ArrayList<>();
+            for (CompletionTrie.Entry entry : results) {
+                assertTrue(entry.text.startsWith(prefix), entry.text);
+                actual.add(entry.weight);
+            }
+            assertEquals(expected, actual, prefix);
+        }
+    }
+
+    private static List<String> texts(List<CompletionTrie.Entry> entries) {
+        return entries.stream().map(entry -> entry.text).toList();
+    }
+
+    private static String randomKey(Random random) {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0, length = 3 + random.nextInt(8); i < length; i++) {
+            key.append((char) ('a' + random.nextInt(5)));
+        }
+        return key.toString();
+    }
+}
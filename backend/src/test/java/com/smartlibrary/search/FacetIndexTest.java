@@ -0,0 +1,44 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FacetIndexTest {
+
+    @Test
+    void editsKeepTheCopiesThatDeltasMoved() {
+        // committed: a checkout took the only copy, and an edit that had read one copy moved the book
+        List<BookChangedEvent> checkout = List.of(
+            new BookChangedEvent(book(1, "Fiction", 0), BookChangedEvent.Type.AVAILABILITY_CHANGED, -1));
+        List<BookChangedEvent> edit = List.of(
+            new BookChangedEvent(book(1, "Classics", 1), BookChangedEvent.Type.UPDATED));
+
+        for (List<List<BookChangedEvent>> order : List.of(List.of(checkout, edit), List.of(edit, checkout))) {
+            FacetIndex index = new FacetIndex();
+            index.onBookChanged(new BookChangedEvent(book(1, "Fiction", 1), BookChangedEvent.Type.CREATED));
+            index.onBookChanged(new BookChangedEvent(book(2, "Fiction", 2), BookChangedEvent.Type.CREATED));
+            order.forEach(events -> events.forEach(index::onBookChanged));
+            assertEquals(1, index.availableCount());
+            assertEquals(List.of("Classics", "Fiction"), index.categories());
+
+            index.onBookChanged(new BookChangedEvent(book(1, "Classics", 2), BookChangedEvent.Type.AVAILABILITY_CHANGED, 2));
+            assertEquals(2, index.availableCount());
+            index.onBookChanged(new BookChangedEvent(book(2, "Fiction", 0), BookChangedEvent.Type.AVAILABILITY_CHANGED, -3));
+            assertEquals(1, index.availableCount());
+            index.onBookChanged(new BookChangedEvent(book(1, "Classics", 2), BookChangedEvent.Type.DELETED));
+            assertEquals(0, index.availableCount());
+            assertEquals(1, index.bookCount());
+        }
+    }
+
+    private static Book book(long id, String category, int availableCopies) {
+        Book book = new Book("Title " + id, "Author", "isbn-" + id, category, availableCopies, 3);
+        book.setId(id);
+        return book;
+    }
+}
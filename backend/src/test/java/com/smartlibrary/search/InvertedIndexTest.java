@@ -0,0 +1,67 @@
+package com.smartlibrary.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InvertedIndexTest {
+
+    private static final String[] WORDS = {"tolkien", "tolstoy", "ring", "war", "peace", "hobbit", "anna", "return"};
+
+    @Test
+    void reindexingTheSameBooksKeepsTheDocumentNumbersBounded() {
+        InvertedIndex index = new InvertedIndex();
+        for (int round = 0; round < 50; round++) {
+            for (long id = 1; id <= 100; id++) {
+                index.add(id, Map.of("ring", 1f, "edition" + round, 1f));
+            }
+        }
+        assertEquals(100, index.size());
+        assertTrue(index.docNumbers() <= 1024 + 100, index.docNumbers() + " document numbers for 100 books");
+        assertEquals(100, index.search(List.of("ring"), null).size());
+        assertEquals(100, index.search(List.of("edition49"), null).size());
+        assertEquals(0, index.search(List.of("edition3"), null).size());
+    }
+
+    @Test
+    void agreesWithAFreshIndexAcrossCompactions() {
+        Random random = new Random(5);
+        InvertedIndex index = new InvertedIndex();
+        Map<Long, Map<String, Float>> expected = new HashMap<>();
+        for (int op = 0; op < 20000; op++) {
+            long id = 1 + random.nextInt(200);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                Map<String, Float> terms = new HashMap<>();
+                for (int i = random.nextInt(4); i >= 0; i--) {
+                    terms.merge(WORDS[random.nextInt(WORDS.length)], 1f + random.nextInt(2), Float::sum);
+                }
+                index.add(id, terms);
+                expected.put(id, terms);
+            }
+            if (op % 1000 == 999) {
+                InvertedIndex fresh = new InvertedIndex();
+                expected.forEach(fresh::add);
+                assertSameHits(fresh.search(List.of("ring"), "tol"), index.search(List.of("ring"), "tol"));
+                assertSameHits(fresh.search(List.of("war", "peace"), null), index.search(List.of("war", "peace"), null));
+                assertSameHits(fresh.search(List.of(), "re"), index.search(List.of(), "re"));
+            }
+        }
+        assertTrue(index.docNumbers() <= 1024 + 200, index.docNumbers() + " document numbers for 200 books");
+    }
+
+    private static void assertSameHits(List<SearchHit> expected, List<SearchHit> actual) {
+        assertEquals(expected.stream().map(SearchHit::bookId).toList(), actual.stream().map(SearchHit::bookId).toList());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).score(), actual.get(i).score(), 1e-4);
+        }
+    }
+}
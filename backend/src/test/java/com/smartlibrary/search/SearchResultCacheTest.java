@@ -0,0 +1,57 @@
+package com.smartlibrary.search;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SearchResultCacheTest {
+
+    @Test
+    void matchesSortPropertiesExactly() {
+        SearchResultCache.Key byCopies = SearchResultCache.Key.forSearch("emma",
+            PageRequest.of(0, 20, Sort.by("title").and(Sort.by(Sort.Direction.DESC, "availableCopies"))), CountMode.EXACT);
+        SearchResultCache.Key byTotal = SearchResultCache.Key.forSearch("emma",
+            PageRequest.of(0, 20, Sort.by("totalCopies")), CountMode.EXACT);
+
+        assertTrue(byCopies.sortsOn("availableCopies"));
+        assertTrue(byCopies.sortsOn("averageRating", "title"));
+        assertFalse(byTotal.sortsOn("availableCopies", "Copies"));
+        assertFalse(byCopies.sortsOn("Copies"));
+    }
+
+    @Test
+    void availabilityChangesEvictOnlyPagesSortedByCopies() {
+        SearchResultCache cache = new SearchResultCache(100, 60);
+        SearchResultCache.Key byCopies = SearchResultCache.Key.forSearch("emma",
+            PageRequest.of(0, 20, Sort.by("availableCopies")), CountMode.EXACT);
+        SearchResultCache.Key byTitle = SearchResultCache.Key.forSearch("emma",
+            PageRequest.of(0, 20, Sort.by("title")), CountMode.EXACT);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(byCopies, () -> load(loads));
+        cache.get(byTitle, () -> load(loads));
+
+        Book book = new Book("Emma", "Austen", "isbn-1", "Fiction", 0, 1);
+        book.setId(1L);
+        cache.onBookChanged(new BookChangedEvent(book, BookChangedEvent.Type.AVAILABILITY_CHANGED, -1));
+        cache.get(byCopies, () -> load(loads));
+        cache.get(byTitle, () -> load(loads));
+
+        assertEquals(3, loads.get());
+    }
+
+    private static Slice<Book> load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new SliceImpl<>(List.of());
+    }
+}
@@ -0,0 +1,89 @@
+package com.smartlibrary.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TrigramIndexTest {
+
+    private TrigramIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TrigramIndex();
+        index.put(1, "The Great Gatsby");
+        index.put(2, "Great Expectations");
+        index.put(3, "Gatsby's Girl");
+        index.put(4, "abcXbcd");
+    }
+
+    @Test
+    void matchesSubstringsCaseInsensitively() {
+        assertArrayEquals(new long[] {1, 2}, index.matching("GREAT", 10));
+        assertArrayEquals(new long[] {1, 3}, index.matching("gatsby", 10));
+        assertArrayEquals(new long[0], index.matching("nowhere", 10));
+    }
+
+    @Test
+    void verifiesCandidatesThatOnlyShareTheGrams() {
+        // "abcXbcd" holds both grams of "abcd" but not the fragment itself
+        assertArrayEquals(new long[0], index.matching("abcd", 10));
+        assertArrayEquals(new long[] {4}, index.matching("cxb", 10));
+    }
+
+    @Test
+    void declinesFragmentsShorterThanAGramOrOverTheLimit() {
+        assertNull(index.matching("at", 10));
+        assertNull(index.matching("at ", 0));
+        assertNull(index.matching("gat", 1));
+        assertArrayEquals(new long[] {1, 3}, index.matching("gat", 2));
+    }
+
+    @Test
+    void followsUpdatesAndRemovals() {
+        index.put(2, "Hard Times");
+        index.remove(3);
+        assertArrayEquals(new long[] {1}, index.matching("great", 10));
+        assertArrayEquals(new long[] {1}, index.matching("gatsby", 10));
+        assertArrayEquals(new long[] {2}, index.matching("times", 10));
+        index.put(1, null);
+        assertArrayEquals(new long[0], index.matching("great", 10));
+    }
+
+    @Test
+    void agreesWithContainsOnRandomValues() {
+        Random random = new Random(11);
+        Map<Long, String> values = new TreeMap<>();
+        TrigramIndex fresh = new TrigramIndex();
+        for (long id = 1; id <= 500; id++) {
+            String value = randomText(random, 5 + random.nextInt(20));
+            values.put(id, value);
+            fresh.put(id, value);
+        }
+        for (int i = 0; i < 200; i++) {
+            String fragment = randomText(random, 3 + random.nextInt(2));
+            String lower = fragment.toLowerCase(Locale.ROOT);
+            long[] expected = values.entrySet().stream()
+                .filter(e -> e.getValue().toLowerCase(Locale.ROOT).contains(lower))
+                .mapToLong(Map.Entry::getKey)
+                .toArray();
+            assertArrayEquals(expected, fresh.matching(fragment, values.size()), fragment);
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            char c = (char) ('a' + random.nextInt(4));
+            text.append(random.nextBoolean() ? Character.toUpperCase(c) : c);
+        }
+        return text.toString();
+    }
+}
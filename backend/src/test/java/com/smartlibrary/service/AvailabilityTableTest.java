@@ -0,0 +1,209 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.event.BookChangedEvent;
+import com.smartlibrary.model.Book;
+import com.smartlibrary.repository.BookRepository;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class AvailabilityTableTest {
+
+    @Test
+    void storesAndOverwritesCounts() {
+        AvailabilityTable.Stripe stripe = new AvailabilityTable.Stripe();
+        assertEquals(-1, stripe.get(1));
+        stripe.put(1, 3);
+        stripe.put(2, 0);
+        stripe.put(1, 5);
+        assertEquals(5, stripe.get(1));
+        assertEquals(0, stripe.get(2));
+        assertEquals(-1, stripe.get(3));
+    }
+
+    @Test
+    void ignoresKeysThatAreNotIds() {
+        AvailabilityTable.Stripe stripe = new AvailabilityTable.Stripe();
+        stripe.put(0, 4);
+        stripe.put(-7, 4);
+        stripe.add(0, 1);
+        stripe.remove(0);
+        assertEquals(-1, stripe.get(0));
+        assertEquals(-1, stripe.get(-7));
+    }
+
+    @Test
+    void appliesDeltasOnlyToPresentKeysAndNeverBelowZero() {
+        AvailabilityTable.Stripe stripe = new AvailabilityTable.Stripe();
+        stripe.put(1, 1);
+        stripe.add(1, -1);
+        stripe.add(1, -1);
+        assertEquals(0, stripe.get(1));
+        stripe.add(1, 2);
+        assertEquals(2, stripe.get(1));
+        stripe.add(2, 1);
+        assertEquals(-1, stripe.get(2));
+    }
+
+    @Test
+    void keepsTheRemainingKeysReachableAfterEachRemoval() {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            // seven keys stay under the resize threshold, so they share probe chains in sixteen slots
+            List<Long> keys = new ArrayList<>();
+            AvailabilityTable.Stripe stripe = new AvailabilityTable.Stripe();
+            for (int i = 0; i < 7; i++) {
+                long key = 1 + random.nextInt(1000);
+                if (!keys.contains(key)) {
+                    keys.add(key);
+                    stripe.put(key, (int) key);
+                }
+            }
+            Collections.shuffle(keys, random);
+            while (!keys.isEmpty()) {
+                long removed = keys.remove(keys.size() - 1);
+                stripe.remove(removed);
+                assertEquals(-1, stripe.get(removed));
+                for (long key : keys) {
+                    assertEquals((int) key, stripe.get(key));
+                }
+            }
+        }
+    }
+
+    @Test
+    void growsPastItsInitialCapacity() {
+        AvailabilityTable.Stripe stripe = new AvailabilityTable.Stripe();
+        for (long key = 1; key <= 5000; key++) {
+            stripe.put(key, (int) (key % 10));
+        }
+        for (long key = 1; key <= 5000; key++) {
+            assertEquals((int) (key % 10), stripe.get(key));
+        }
+        for (long key = 2; key <= 5000; key += 2) {
+            stripe.remove(key);
+        }
+        for (long key = 1; key <= 5000; key++) {
+            assertEquals(key % 2 == 0 ? -1 : (int) (key % 10), stripe.get(key));
+        }
+    }
+
+    @Test
+    void agreesWithAHashMapUnderRandomOperations() {
+        Random random = new Random(1);
+        for (int round = 0; round < 10; round++) {
+            AvailabilityTable.Stripe stripe = new AvailabilityTable.Stripe();
+            Map<Long, Integer> expected = new HashMap<>();
+            int range = round < 5 ? 64 : 5000;
+            for (int i = 0; i < 20000; i++) {
+                long key = 1 + random.nextInt(range);
+                switch (random.nextInt(4)) {
+                    case 0 -> {
+                        int value = random.nextInt(10);
+                        stripe.put(key, value);
+                        expected.put(key, value);
+                    }
+                    case 1 -> {
+                        stripe.remove(key);
+                        expected.remove(key);
+                    }
+                    case 2 -> {
+                        int delta = random.nextBoolean() ? 1 : -1;
+                        stripe.add(key, delta);
+                        expected.computeIfPresent(key, (k, value) -> Math.max(0, value + delta));
+                    }
+                    default -> assertEquals((int) expected.getOrDefault(key, -1), stripe.get(key));
+                }
+            }
+            for (long key = 1; key <= range; key++) {
+                assertEquals((int) expected.getOrDefault(key, -1), stripe.get(key));
+            }
+        }
+    }
+
+    @Test
+    void editsAndCheckoutsCommuteInEitherOrder() throws Exception {
+        // committed: a checkout took one of three copies, then an edit added two
+        Book edited = book(1, 4);
+        List<BookChangedEvent> checkout = List.of(
+            new BookChangedEvent(book(1, 2), BookChangedEvent.Type.AVAILABILITY_CHANGED, -1));
+        List<BookChangedEvent> edit = List.of(
+            new BookChangedEvent(edited, BookChangedEvent.Type.UPDATED),
+            new BookChangedEvent(edited, BookChangedEvent.Type.AVAILABILITY_CHANGED, 2));
+
+        for (List<List<BookChangedEvent>> order : List.of(List.of(checkout, edit), List.of(edit, checkout))) {
+            Map<Long, Integer> committed = new TreeMap<>(Map.of(1L, 3));
+            AvailabilityTable table = loaded(committed, t -> { }, t -> { });
+            committed.put(1L, 4);
+            order.forEach(events -> events.forEach(table::onBookChanged));
+            assertEquals(4, table.availableCopies(1));
+        }
+    }
+
+    @Test
+    void startsFromTheCreatedCountAndFollowsDeltas() throws Exception {
+        AvailabilityTable table = loaded(new TreeMap<>(), t -> { }, t -> { });
+        table.onBookChanged(new BookChangedEvent(book(7, 2), BookChangedEvent.Type.CREATED));
+        table.onBookChanged(new BookChangedEvent(book(7, 1), BookChangedEvent.Type.AVAILABILITY_CHANGED, -1));
+        assertEquals(1, table.availableCopies(7));
+        table.onBookChanged(new BookChangedEvent(book(7, 1), BookChangedEvent.Type.DELETED));
+        assertEquals(-1, table.availableCopies(7));
+    }
+
+    @Test
+    void countsADeltaOnceWhetherItLandsBeforeOrAfterTheStartupRead() throws Exception {
+        for (boolean beforeRead : new boolean[] {true, false}) {
+            Map<Long, Integer> committed = new TreeMap<>(Map.of(1L, 3));
+            Consumer<AvailabilityTable> checkout = table -> {
+                committed.put(1L, 2);
+                table.onBookChanged(new BookChangedEvent(book(1, 2), BookChangedEvent.Type.AVAILABILITY_CHANGED, -1));
+            };
+            AvailabilityTable table = beforeRead ? loaded(committed, checkout, t -> { }) : loaded(committed, t -> { }, checkout);
+            assertEquals(2, table.availableCopies(1));
+        }
+    }
+
+    // a loaded table over a fake repository; the hooks run around the startup projection read
+    private static AvailabilityTable loaded(Map<Long, Integer> committed, Consumer<AvailabilityTable> beforeRead,
+                                            Consumer<AvailabilityTable> afterRead) throws Exception {
+        AvailabilityTable table = new AvailabilityTable();
+        BookRepository repository = (BookRepository) Proxy.newProxyInstance(BookRepository.class.getClassLoader(),
+            new Class<?>[] {BookRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                case "findAvailabilityAfter" -> {
+                    beforeRead.accept(table);
+                    List<Object[]> rows = rows(committed, committed.keySet().stream().filter(id -> id > (Long) args[0]).toList());
+                    afterRead.accept(table);
+                    yield rows;
+                }
+                case "findAvailability" -> rows(committed, (Collection<?>) args[0]);
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+        Field field = AvailabilityTable.class.getDeclaredField("bookRepository");
+        field.setAccessible(true);
+        field.set(table, repository);
+        table.load();
+        return table;
+    }
+
+    private static List<Object[]> rows(Map<Long, Integer> committed, Collection<?> ids) {
+        return ids.stream().filter(committed::containsKey).map(id -> new Object[] {id, committed.get(id)}).toList();
+    }
+
+    private static Book book(long id, int availableCopies) {
+        Book book = new Book("Title", "Author", "isbn-" + id, "Fiction", availableCopies, 5);
+        book.setId(id);
+        return book;
+    }
+}
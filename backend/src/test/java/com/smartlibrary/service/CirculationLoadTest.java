@@ -0,0 +1,146 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.model.Book;
+import com.smartlibrary.model.User;
+import com.smartlibrary.repository.BookRepository;
+import com.smartlibrary.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// two threads per reader contend for the reader's row lock; H2's default one-second wait is too short
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:circulation-load;LOCK_TIMEOUT=10000")
+@ActiveProfiles("dev")
+class CirculationLoadTest {
+
+    private static final int BOOKS = 20;
+    private static final int COPIES = 50;
+    private static final int READERS = 8;
+    private static final int THREADS_PER_READER = 2;
+    private static final int ROUNDS = 50;
+    private static final int BOOKS_PER_REQUEST = 3;
+
+    @Autowired
+    private CirculationService circulationService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${smartlibrary.circulation.max-active-loans:5}")
+    private int maxActiveLoans;
+
+    @Test
+    void holdsTheLoanLimitUnderConcurrentBatches() throws Exception {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        List<Long> bookIds = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            bookIds.add(bookRepository.save(new Book("Load " + i, "Author", "load-" + i + "-" + run, "Fiction",
+                COPIES, COPIES)).getId());
+        }
+        List<Long> readerIds = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            String username = "load" + i + "-" + run;
+            readerIds.add(userRepository.save(new User(username, username + "@example.com", "password", "Load",
+                String.valueOf(i))).getId());
+        }
+        String readers = readerIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
+
+        ExecutorService pool = Executors.newFixedThreadPool(READERS * THREADS_PER_READER + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger mostLoans = new AtomicInteger();
+        AtomicLong requests = new AtomicLong();
+        AtomicLong lent = new AtomicLong();
+        try {
+            Future<?> watcher = pool.submit(() -> {
+                while (running.get()) {
+                    Integer most = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(n), 0) FROM (SELECT COUNT(*) AS n " +
+                        "FROM borrow_records WHERE status IN ('BORROWED', 'OVERDUE') AND user_id IN (" + readers + ") " +
+                        "GROUP BY user_id) loans", Integer.class);
+                    mostLoans.accumulateAndGet(most, Math::max);
+                }
+            });
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < READERS * THREADS_PER_READER; t++) {
+                Long readerId = readerIds.get(t % READERS);
+                Random random = new Random(t);
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    List<Long> shuffled = new ArrayList<>(bookIds);
+                    for (int round = 0; round < ROUNDS; round++) {
+                        Collections.shuffle(shuffled, random);
+                        List<Long> taken = succeeded(circulationService.checkout(readerId,
+                            List.copyOf(shuffled.subList(0, BOOKS_PER_REQUEST))));
+                        requests.incrementAndGet();
+                        lent.addAndGet(taken.size());
+                        if (!taken.isEmpty()) {
+                            assertEquals(taken, succeeded(circulationService.returnBooks(readerId, taken)));
+                            requests.incrementAndGet();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(5, TimeUnit.MINUTES);
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+            running.set(false);
+            watcher.get(30, TimeUnit.SECONDS);
+
+            System.out.printf("circulation: %d requests (%d copies lent) in %.2f s, %.0f requests/s over %d threads%n",
+                requests.get(), lent.get(), seconds, requests.get() / seconds, READERS * THREADS_PER_READER);
+            assertTrue(lent.get() > 0);
+            assertTrue(mostLoans.get() <= maxActiveLoans, mostLoans.get() + " open loans for one reader");
+            int open = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM borrow_records WHERE status = 'BORROWED' " +
+                "AND user_id IN (" + readers + ")", Integer.class);
+            assertEquals(0, open);
+            for (Long bookId : bookIds) {
+                int available = jdbcTemplate.queryForObject("SELECT available_copies FROM books WHERE id = ?",
+                    Integer.class, bookId);
+                assertEquals(COPIES, available);
+            }
+        } finally {
+            running.set(false);
+            pool.shutdownNow();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Long> succeeded(Map<String, Object> response) {
+        return ((List<Map<String, Object>>) response.get("items")).stream()
+            .filter(item -> Boolean.TRUE.equals(item.get("success")))
+            .map(item -> (Long) item.get("bookId"))
+            .toList();
+    }
+}
@@ -0,0 +1,131 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.model.Book;
+import com.smartlibrary.model.Hold;
+import com.smartlibrary.model.User;
+import com.smartlibrary.repository.BookRepository;
+import com.smartlibrary.repository.BorrowRecordRepository;
+import com.smartlibrary.repository.HoldRepository;
+import com.smartlibrary.repository.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest
+@ActiveProfiles("dev")
+class CirculationServiceTest {
+
+    @Autowired
+    private CirculationService circulationService;
+
+    @Autowired
+    private HoldService holdService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BorrowRecordRepository borrowRecordRepository;
+
+    @Autowired
+    private HoldRepository holdRepository;
+
+    private String run;
+
+    @BeforeEach
+    void setUp() {
+        run = UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    @Test
+    void checksOutAndReturnsAListOfBooks() {
+        Long reader = reader("reader");
+        Long twoCopies = book("Two Copies", 2);
+        Long oneCopy = book("One Copy", 1);
+
+        Map<String, Object> checkout = circulationService.checkout(reader, List.of(twoCopies, oneCopy, twoCopies));
+        assertEquals(2L, checkout.get("succeeded"));
+        assertEquals(List.of(true, true, false), successes(checkout));
+        assertEquals("Listed more than once", items(checkout).get(2).get("message"));
+        assertEquals(1, availableCopies(twoCopies));
+        assertEquals(0, availableCopies(oneCopy));
+        assertEquals(2, activeLoans(reader));
+
+        Map<String, Object> returned = circulationService.returnBooks(reader, List.of(oneCopy, twoCopies));
+        assertEquals(List.of(true, true), successes(returned));
+        assertEquals(0.0, items(returned).get(0).get("fineAmount"));
+        assertEquals(2, availableCopies(twoCopies));
+        assertEquals(1, availableCopies(oneCopy));
+        assertEquals(0, activeLoans(reader));
+
+        Map<String, Object> again = circulationService.returnBooks(reader, List.of(oneCopy));
+        assertEquals(List.of(false), successes(again));
+        assertEquals("Not borrowed by this user", items(again).get(0).get("message"));
+    }
+
+    @Test
+    void setsAReturnedCopyAsideForTheHolder() {
+        Long borrower = reader("borrower");
+        Long holder = reader("holder");
+        Long passerBy = reader("passer");
+        Long book = book("Wanted", 1);
+
+        assertEquals(List.of(true), successes(circulationService.checkout(borrower, List.of(book))));
+        Long holdId = (Long) holdService.placeHold(holder, book).get("holdId");
+        assertEquals(Hold.Status.WAITING, holdStatus(holdId));
+
+        assertEquals(List.of(true), successes(circulationService.returnBooks(borrower, List.of(book))));
+        assertEquals(Hold.Status.READY, holdStatus(holdId));
+        assertEquals(0, availableCopies(book));
+
+        Map<String, Object> refused = circulationService.checkout(passerBy, List.of(book));
+        assertEquals(List.of(false), successes(refused));
+        assertEquals("No available copies", items(refused).get(0).get("message"));
+
+        assertEquals(List.of(true), successes(circulationService.checkout(holder, List.of(book))));
+        assertEquals(Hold.Status.FULFILLED, holdStatus(holdId));
+        assertEquals(0, availableCopies(book));
+        assertEquals(1, activeLoans(holder));
+    }
+
+    private Long reader(String name) {
+        String username = name + "-" + run;
+        return userRepository.save(new User(username, username + "@example.com", "password", name, "Reader")).getId();
+    }
+
+    private Long book(String title, int copies) {
+        return bookRepository.save(new Book(title, "Author", title + "-" + run, "Fiction", copies, copies)).getId();
+    }
+
+    private int availableCopies(Long bookId) {
+        return bookRepository.findById(bookId).orElseThrow().getAvailableCopies();
+    }
+
+    private long activeLoans(Long userId) {
+        return borrowRecordRepository.countActiveBorrowsByUser(userId);
+    }
+
+    private Hold.Status holdStatus(Long holdId) {
+        return holdRepository.findById(holdId).orElseThrow().getStatus();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> items(Map<String, Object> response) {
+        return (List<Map<String, Object>>) response.get("items");
+    }
+
+    private static List<Object> successes(Map<String, Object> response) {
+        return items(response).stream().map(item -> item.get("success")).toList();
+    }
+}
@@ -0,0 +1,194 @@
+package com.smartlibrary.service;
+
+import com.smartlibrary.model.Book;
+import com.smartlibrary.model.User;
+import com.smartlibrary.repository.BookRepository;
+import com.smartlibrary.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// losers of the race wait on the winner's row lock, so give them longer than H2's one second
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:concurrent-checkout;LOCK_TIMEOUT=10000")
+@ActiveProfiles("dev")
+class ConcurrentCheckoutTest {
+
+    private static final int READERS = 8;
+    private static final int HOT_COPIES = 5;
+    private static final int HOT_THREADS = 16;
+    private static final int HOT_ROUNDS = 200;
+
+    @Autowired
+    private CirculationService circulationService;
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void lendsTheLastCopyToExactlyOneReader() throws Exception {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        Long bookId = bookRepository.save(new Book("Last Copy", "Author", "race-" + run, "Fiction", 1, 1)).getId();
+        List<Long> readerIds = new ArrayList<>();
+        for (int i = 0; i < READERS; i++) {
+            readerIds.add(userRepository.save(new User("racer" + i + "-" + run, "racer" + i + "-" + run + "@example.com",
+                "password", "Racer", String.valueOf(i))).getId());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(READERS + 1);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger lowest = new AtomicInteger(Integer.MAX_VALUE);
+        try {
+            Future<?> watcher = pool.submit(() -> {
+                while (running.get()) {
+                    lowest.accumulateAndGet(availableCopies(bookId), Math::min);
+                }
+            });
+            List<Future<Map<String, Object>>> results = new ArrayList<>();
+            for (Long readerId : readerIds) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return circulationService.checkout(readerId, List.of(bookId));
+                }));
+            }
+            start.countDown();
+
+            int lent = 0;
+            for (Future<Map<String, Object>> result : results) {
+                lent += ((Number) result.get(30, TimeUnit.SECONDS).get("succeeded")).intValue();
+            }
+            running.set(false);
+            watcher.get(30, TimeUnit.SECONDS);
+
+            assertEquals(1, lent);
+            assertEquals(0, availableCopies(bookId));
+            assertTrue(lowest.get() >= 0, "available_copies went to " + lowest.get());
+            int loans = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM borrow_records WHERE book_id = ? AND status = 'BORROWED'", Integer.class, bookId);
+            assertEquals(1, loans);
+        } finally {
+            running.set(false);
+            pool.shutdownNow();
+        }
+    }
+
+
+    @Test
+    void singleBookUpdateLendsTheLastCopyOnce() throws Exception {
+        Long bookId = hotBook(1);
+        ExecutorService pool = Executors.newFixedThreadPool(READERS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < READERS; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return take(bookId);
+                }));
+            }
+            start.countDown();
+            int lent = 0;
+            for (Future<Boolean> result : results) {
+                lent += result.get(30, TimeUnit.SECONDS) ? 1 : 0;
+            }
+            assertEquals(1, lent);
+            assertEquals(0, availableCopies(bookId));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void sustainedCheckoutsAndReturnsOnAHotBookNeverOversell() throws Exception {
+        Long bookId = hotBook(HOT_COPIES);
+        ExecutorService pool = Executors.newFixedThreadPool(HOT_THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger out = new AtomicInteger();
+        AtomicInteger mostOut = new AtomicInteger();
+        AtomicLong checkouts = new AtomicLong();
+        AtomicLong refusals = new AtomicLong();
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int i = 0; i < HOT_THREADS; i++) {
+                workers.add(pool.submit(() -> {
+                    start.await();
+                    for (int round = 0; round < HOT_ROUNDS; round++) {
+                        if (!take(bookId)) {
+                            refusals.incrementAndGet();
+                            continue;
+                        }
+                        checkouts.incrementAndGet();
+                        // counted out only between the committed take and the return
+                        mostOut.accumulateAndGet(out.incrementAndGet(), Math::max);
+                        out.decrementAndGet();
+                        bookService.increaseAvailableCopies(bookId);
+                    }
+                    return null;
+                }));
+            }
+            long started = System.nanoTime();
+            start.countDown();
+            for (Future<?> worker : workers) {
+                worker.get(5, TimeUnit.MINUTES);
+            }
+            double seconds = (System.nanoTime() - started) / 1e9;
+
+            System.out.printf("hot book: %d checkouts and %d returns, %d refused, %.0f ops/s over %d threads%n",
+                checkouts.get(), checkouts.get(), refusals.get(),
+                (2 * checkouts.get() + refusals.get()) / seconds, HOT_THREADS);
+            assertEquals(HOT_THREADS * HOT_ROUNDS, checkouts.get() + refusals.get());
+            assertTrue(checkouts.get() > 0);
+            assertTrue(mostOut.get() <= HOT_COPIES, mostOut.get() + " copies out of " + HOT_COPIES);
+            assertEquals(HOT_COPIES, availableCopies(bookId));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // BookService's single-book path: one conditional UPDATE on the book row
+    private boolean take(Long bookId) {
+        try {
+            bookService.decreaseAvailableCopies(bookId);
+            return true;
+        } catch (RuntimeException e) {
+            assertEquals("No available copies for this book", e.getMessage());
+            return false;
+        }
+    }
+
+    private Long hotBook(int copies) {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        return bookRepository.save(new Book("Hot Book", "Author", "hot-" + run, "Fiction", copies, copies)).getId();
+    }
+
+    private int availableCopies(Long bookId) {
+        return jdbcTemplate.queryForObject("SELECT available_copies FROM books WHERE id = ?", Integer.class, bookId);
+    }
+}